@@ -19,14 +19,20 @@
  */
 package org.sonar.server.batch;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import org.apache.commons.io.IOUtils;
 import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.scanner.protocol.input.FileData;
 import org.sonar.scanner.protocol.input.ProjectRepositories;
+import org.sonarqube.ws.MediaTypes;
 import org.sonarqube.ws.WsBatch.WsProjectResponse;
 import org.sonarqube.ws.WsBatch.WsProjectResponse.FileData.Builder;
 
@@ -39,6 +45,7 @@ public class ProjectAction implements BatchWsAction {
   private static final String PARAM_KEY = "key";
   private static final String PARAM_PROFILE = "profile";
   private static final String PARAM_ISSUES_MODE = "issues_mode";
+  private static final String PARAM_FILES_CHANGED_SINCE = "files_changed_since";
 
   private final ProjectDataLoader projectDataLoader;
 
@@ -71,55 +78,70 @@ public class ProjectAction implements BatchWsAction {
       .setDescription("Issues mode or not")
       .setDefaultValue(false)
       .setBooleanPossibleValues();
+
+    action
+      .createParam(PARAM_FILES_CHANGED_SINCE)
+      .setDescription("Timestamp (in ms) of a previous response. When set, hash and revision are returned only for the files " +
+        "whose source changed since this date. The paths of the other files are returned in 'unchangedFilePathsByModule'.")
+      .setSince("6.3")
+      .setExampleValue("1483228800000");
   }
 
   @Override
   public void handle(Request wsRequest, Response wsResponse) throws Exception {
-    ProjectRepositories data = projectDataLoader.load(ProjectDataQuery.create()
+    ProjectDataQuery query = ProjectDataQuery.create()
       .setModuleKey(wsRequest.mandatoryParam(PARAM_KEY))
       .setProfileName(wsRequest.param(PARAM_PROFILE))
-      .setIssuesMode(wsRequest.mandatoryParamAsBoolean(PARAM_ISSUES_MODE)));
+      .setIssuesMode(wsRequest.mandatoryParamAsBoolean(PARAM_ISSUES_MODE))
+      .setFilesChangedSince(wsRequest.paramAsLong(PARAM_FILES_CHANGED_SINCE));
+
+    if (MediaTypes.PROTOBUF.equals(wsRequest.getMediaType())) {
+      writeProtobufStream(query, wsResponse);
+    } else {
+      WsProjectResponse.Builder projectResponse = WsProjectResponse.newBuilder();
+      FileDataByModuleWriter fileDataWriter = new FileDataByModuleWriter(projectResponse::mergeFrom);
+      ProjectRepositories data = projectDataLoader.load(query, fileDataWriter);
+      fileDataWriter.flush();
+      projectResponse.mergeFrom(buildResponse(data));
+      writeProtobuf(projectResponse.build(), wsRequest, wsResponse);
+    }
+  }
 
-    WsProjectResponse projectResponse = buildResponse(data);
-    writeProtobuf(projectResponse, wsRequest, wsResponse);
+  /**
+   * Protobuf messages can be concatenated: the files of each module are written to the response as soon as they
+   * are read from database, instead of building the whole response in memory.
+   */
+  private void writeProtobufStream(ProjectDataQuery query, Response wsResponse) {
+    OutputStream output = wsResponse.stream().output();
+    try {
+      wsResponse.stream().setMediaType(MediaTypes.PROTOBUF);
+      FileDataByModuleWriter fileDataWriter = new FileDataByModuleWriter(message -> writeTo(message, output));
+      ProjectRepositories data = projectDataLoader.load(query, fileDataWriter);
+      fileDataWriter.flush();
+      writeTo(buildResponse(data), output);
+    } finally {
+      IOUtils.closeQuietly(output);
+    }
+  }
+
+  private static void writeTo(WsProjectResponse message, OutputStream output) {
+    try {
+      message.writeTo(output);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write project repository", e);
+    }
   }
 
   private static WsProjectResponse buildResponse(ProjectRepositories data) {
     WsProjectResponse.Builder response = WsProjectResponse.newBuilder();
     setNullable(data.lastAnalysisDate(), response::setLastAnalysisDate, Date::getTime);
     response.setTimestamp(data.timestamp());
-    response.getMutableFileDataByModuleAndPath()
-      .putAll(buildFileDataByModuleAndPath(data));
     response.getMutableSettingsByModule()
       .putAll(buildSettingsByModule(data));
 
     return response.build();
   }
 
-  private static Map<String, WsProjectResponse.FileDataByPath> buildFileDataByModuleAndPath(ProjectRepositories data) {
-    Map<String, WsProjectResponse.FileDataByPath> fileDataByModuleAndPathResponse = new HashMap<>();
-    for (Map.Entry<String, Map<String, FileData>> moduleAndFileDataByPathEntry : data.fileDataByModuleAndPath().entrySet()) {
-      fileDataByModuleAndPathResponse.put(
-        moduleAndFileDataByPathEntry.getKey(),
-        buildFileDataByPath(moduleAndFileDataByPathEntry.getValue()));
-    }
-
-    return fileDataByModuleAndPathResponse;
-  }
-
-  private static WsProjectResponse.FileDataByPath buildFileDataByPath(Map<String, FileData> fileDataByPath) {
-    WsProjectResponse.FileDataByPath.Builder response = WsProjectResponse.FileDataByPath.newBuilder();
-    Map<String, WsProjectResponse.FileData> fileDataByPathResponse = response.getMutableFileDataByPath();
-
-    for (Map.Entry<String, FileData> pathFileDataEntry : fileDataByPath.entrySet()) {
-      fileDataByPathResponse.put(
-        pathFileDataEntry.getKey(),
-        toFileDataResponse(pathFileDataEntry.getValue()));
-    }
-
-    return response.build();
-  }
-
   private static Map<String, WsProjectResponse.Settings> buildSettingsByModule(ProjectRepositories data) {
     Map<String, WsProjectResponse.Settings> settingsByModuleResponse = new HashMap<>();
     for (Map.Entry<String, Map<String, String>> moduleSettingsEntry : data.settings().entrySet()) {
@@ -148,4 +170,47 @@ public class ProjectAction implements BatchWsAction {
     setNullable(fileData.revision(), fileDataBuilder::setRevision);
     return fileDataBuilder.build();
   }
+
+  /**
+   * Groups the files of a module into a {@link WsProjectResponse} which only contains the entries of this module.
+   */
+  private static class FileDataByModuleWriter implements ProjectDataLoader.FileDataHandler {
+    private final Consumer<WsProjectResponse> consumer;
+    private String currentModuleKey = null;
+    private WsProjectResponse.FileDataByPath.Builder fileDataByPath = WsProjectResponse.FileDataByPath.newBuilder();
+    private WsProjectResponse.FilePaths.Builder unchangedFilePaths = WsProjectResponse.FilePaths.newBuilder();
+
+    private FileDataByModuleWriter(Consumer<WsProjectResponse> consumer) {
+      this.consumer = consumer;
+    }
+
+    @Override
+    public void handle(String moduleKey, String path, @Nullable FileData fileData) {
+      if (!moduleKey.equals(currentModuleKey)) {
+        flush();
+        currentModuleKey = moduleKey;
+      }
+      if (fileData == null) {
+        unchangedFilePaths.addPaths(path);
+      } else {
+        fileDataByPath.getMutableFileDataByPath().put(path, toFileDataResponse(fileData));
+      }
+    }
+
+    private void flush() {
+      if (currentModuleKey == null) {
+        return;
+      }
+      WsProjectResponse.Builder response = WsProjectResponse.newBuilder();
+      if (!fileDataByPath.getFileDataByPath().isEmpty()) {
+        response.getMutableFileDataByModuleAndPath().put(currentModuleKey, fileDataByPath.build());
+      }
+      if (unchangedFilePaths.getPathsCount() > 0) {
+        response.getMutableUnchangedFilePathsByModule().put(currentModuleKey, unchangedFilePaths.build());
+      }
+      consumer.accept(response.build());
+      fileDataByPath = WsProjectResponse.FileDataByPath.newBuilder();
+      unchangedFilePaths = WsProjectResponse.FilePaths.newBuilder();
+    }
+  }
 }
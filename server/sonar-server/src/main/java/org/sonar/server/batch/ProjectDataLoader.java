@@ -20,12 +20,16 @@
 package org.sonar.server.batch;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Table;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Scopes;
 import org.sonar.api.server.ServerSide;
@@ -50,6 +54,13 @@ import static org.sonar.server.ws.WsUtils.checkFoundWithOptional;
 @ServerSide
 public class ProjectDataLoader {
 
+  /**
+   * Sources of files are persisted by the Compute Engine in transactions which may be committed after the files are read,
+   * with a date of update earlier than the dates already read. The timestamp returned to the scanner is moved back by this
+   * margin, so that such files are considered as changed by the next request.
+   */
+  static final long FILES_CHANGED_SINCE_SAFETY_MARGIN = 24L * 60 * 60 * 1000;
+
   private final DbClient dbClient;
   private final UserSession userSession;
 
@@ -59,6 +70,21 @@ public class ProjectDataLoader {
   }
 
   public ProjectRepositories load(ProjectDataQuery query) {
+    Table<String, String, FileData> fileDataByModuleAndPath = HashBasedTable.create();
+    ProjectRepositories data = load(query, (moduleKey, path, fileData) -> {
+      if (fileData != null) {
+        fileDataByModuleAndPath.put(moduleKey, path, fileData);
+      }
+    });
+    fileDataByModuleAndPath.cellSet().forEach(cell -> data.addFileData(cell.getRowKey(), cell.getColumnKey(), cell.getValue()));
+    return data;
+  }
+
+  /**
+   * Same as {@link #load(ProjectDataQuery)}, except that files are not kept in the returned {@link ProjectRepositories}
+   * but are streamed to {@code fileDataHandler}, module by module.
+   */
+  public ProjectRepositories load(ProjectDataQuery query, FileDataHandler fileDataHandler) {
     try (DbSession session = dbClient.openSession(false)) {
       ProjectRepositories data = new ProjectRepositories();
       ComponentDto module = checkFoundWithOptional(dbClient.componentDao().selectByKey(session, query.getModuleKey()),
@@ -85,8 +111,10 @@ public class ProjectDataLoader {
       TreeModuleSettings treeModuleSettings = new TreeModuleSettings(moduleUuidsByKey, moduleIdsByKey, modulesTree, modulesTreeSettings);
 
       addSettingsToChildrenModules(data, query.getModuleKey(), Maps.<String, String>newHashMap(), treeModuleSettings, hasScanPerm);
-      List<FilePathWithHashDto> files = searchFilesWithHashAndRevision(session, module);
-      addFileData(data, modulesTree, files);
+      long lastFileUpdate = scrollFileData(session, module, modulesTree, query.getFilesChangedSince(), fileDataHandler);
+      if (lastFileUpdate > FILES_CHANGED_SINCE_SAFETY_MARGIN) {
+        data.setTimestamp(lastFileUpdate - FILES_CHANGED_SINCE_SAFETY_MARGIN);
+      }
 
       // FIXME need real value but actually only used to know if there is a previous analysis in local issue tracking mode so any value is
       // ok
@@ -103,11 +131,6 @@ public class ProjectDataLoader {
     return Qualifiers.PROJECT.equals(module.qualifier()) || Qualifiers.MODULE.equals(module.qualifier());
   }
 
-  private List<FilePathWithHashDto> searchFilesWithHashAndRevision(DbSession session, ComponentDto module) {
-    return module.isRootProject() ? dbClient.componentDao().selectEnabledFilesFromProject(session, module.uuid())
-      : dbClient.componentDao().selectEnabledDescendantFiles(session, module.uuid());
-  }
-
   private ComponentDto getProject(ComponentDto module, DbSession session) {
     if (!module.isRootProject()) {
       return dbClient.componentDao().selectOrFailByUuid(session, module.projectUuid());
@@ -174,16 +197,28 @@ public class ProjectDataLoader {
     return !key.contains(".secured") || hasScanPerm;
   }
 
-  private static void addFileData(ProjectRepositories data, List<ComponentDto> moduleChildren, List<FilePathWithHashDto> files) {
+  /**
+   * @return the greatest date of update of the sources of the files which have been read, or {@code 0} if none
+   */
+  private long scrollFileData(DbSession session, ComponentDto module, List<ComponentDto> moduleChildren, @Nullable Long filesChangedSince,
+    FileDataHandler fileDataHandler) {
     Map<String, String> moduleKeysByUuid = newHashMap();
-    for (ComponentDto module : moduleChildren) {
-      moduleKeysByUuid.put(module.uuid(), module.key());
+    for (ComponentDto moduleChild : moduleChildren) {
+      moduleKeysByUuid.put(moduleChild.uuid(), moduleChild.key());
     }
 
-    for (FilePathWithHashDto file : files) {
-      FileData fileData = new FileData(file.getSrcHash(), file.getRevision());
-      data.addFileData(moduleKeysByUuid.get(file.getModuleUuid()), file.getPath(), fileData);
-    }
+    AtomicLong lastFileUpdate = new AtomicLong();
+    dbClient.componentDao().scrollEnabledFilesOfModuleTree(session, module, context -> {
+      FilePathWithHashDto file = (FilePathWithHashDto) context.getResultObject();
+      String moduleKey = moduleKeysByUuid.get(file.getModuleUuid());
+      if (moduleKey == null || file.getPath() == null) {
+        return;
+      }
+      lastFileUpdate.accumulateAndGet(file.getUpdatedAt(), Math::max);
+      boolean changed = filesChangedSince == null || file.getUpdatedAt() >= filesChangedSince;
+      fileDataHandler.handle(moduleKey, file.getPath(), changed ? new FileData(file.getSrcHash(), file.getRevision()) : null);
+    });
+    return lastFileUpdate.get();
   }
 
   private static void checkPermission(boolean preview, boolean hasScanPerm, boolean hasBrowsePerm) {
@@ -215,6 +250,16 @@ public class ProjectDataLoader {
     return moduleIdsByKey;
   }
 
+  @FunctionalInterface
+  public interface FileDataHandler {
+    /**
+     * Called for each file. All the files of a module are handled consecutively.
+     *
+     * @param fileData {@code null} if the source of the file did not change since {@link ProjectDataQuery#getFilesChangedSince()}
+     */
+    void handle(String moduleKey, String path, @Nullable FileData fileData);
+  }
+
   private static class TreeModuleSettings {
 
     private Map<String, Long> moduleIdsByKey;
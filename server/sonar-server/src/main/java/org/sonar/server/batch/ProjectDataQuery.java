@@ -27,6 +27,7 @@ public class ProjectDataQuery {
   private String projectOrModuleKey;
   private String profileName;
   private boolean issuesMode;
+  private Long filesChangedSince;
 
   private ProjectDataQuery() {
     // No direct call
@@ -60,6 +61,19 @@ public class ProjectDataQuery {
     return this;
   }
 
+  /**
+   * When set, hash and revision are returned only for the files whose source changed since this date
+   */
+  @CheckForNull
+  public Long getFilesChangedSince() {
+    return filesChangedSince;
+  }
+
+  public ProjectDataQuery setFilesChangedSince(@Nullable Long filesChangedSince) {
+    this.filesChangedSince = filesChangedSince;
+    return this;
+  }
+
   public static ProjectDataQuery create() {
     return new ProjectDataQuery();
   }
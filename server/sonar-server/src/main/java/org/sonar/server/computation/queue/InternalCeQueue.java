@@ -48,6 +48,13 @@ public interface InternalCeQueue extends CeQueue {
    */
   Optional<CeTask> peek();
 
+  /**
+   * Registers a listener called when tasks can be peeked without waiting for the next polling of the queue, that is
+   * when tasks have been peeked from database on behalf of idle workers. Tasks submitted by the web server are
+   * only detected by polling.
+   */
+  void addTasksAvailableListener(Runnable listener);
+
   /**
    * Removes all the tasks from the queue, whatever their status. They are marked
    * as {@link Status#CANCELED} in past activity.
@@ -24,69 +24,174 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.log4j.Logger;
+import org.picocontainer.Startable;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.utils.System2;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.ce.queue.CeQueueImpl;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.ce.queue.CeTaskResult;
+import org.sonar.ce.queue.CeTaskSubmit;
 import org.sonar.core.util.UuidFactory;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.ce.CeActivityDto;
 import org.sonar.db.ce.CeQueueDto;
+import org.sonar.server.computation.configuration.CeConfiguration;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
 @ComputeEngineSide
-public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue {
+public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue, Startable {
 
   private final System2 system2;
   private final DbClient dbClient;
   private final CEQueueStatus queueStatus;
+  private final CeConfiguration ceConfiguration;
 
   // state
   private AtomicBoolean peekPaused = new AtomicBoolean(false);
+  // tasks peeked from db on behalf of idle workers, but not handed to them yet. Guarded by this.
+  private final Queue<CeTask> peekedTasks = new ArrayDeque<>();
+  private final List<Runnable> tasksAvailableListeners = new CopyOnWriteArrayList<>();
 
   public InternalCeQueueImpl(System2 system2, DbClient dbClient, UuidFactory uuidFactory, CEQueueStatus queueStatus,
-    DefaultOrganizationProvider defaultOrganizationProvider) {
+    DefaultOrganizationProvider defaultOrganizationProvider, CeConfiguration ceConfiguration) {
     super(dbClient, uuidFactory, defaultOrganizationProvider);
     this.system2 = system2;
     this.dbClient = dbClient;
     this.queueStatus = queueStatus;
+    this.ceConfiguration = ceConfiguration;
   }
 
   @Override
-  public Optional<CeTask> peek() {
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    resetPeekedTasks();
+  }
+
+  @Override
+  public synchronized Optional<CeTask> peek() {
     if (peekPaused.get()) {
       return Optional.absent();
     }
+    CeTask task = pollPeekedTask();
+    if (task == null) {
+      task = peekFromDb();
+    }
+    if (task != null) {
+      queueStatus.addInProgress();
+    }
+    return Optional.fromNullable(task);
+  }
+
+  /**
+   * Tasks kept in memory may have been canceled or deleted since they were peeked. The start date of the others
+   * is the date they are handed to a worker.
+   */
+  @CheckForNull
+  private CeTask pollPeekedTask() {
+    if (peekedTasks.isEmpty()) {
+      return null;
+    }
+    DbSession dbSession = dbClient.openSession(false);
+    try {
+      CeTask task = peekedTasks.poll();
+      while (task != null && !dbClient.ceQueueDao().resetStartedAt(dbSession, task.getUuid())) {
+        task = peekedTasks.poll();
+      }
+      dbSession.commit();
+      return task;
+    } finally {
+      dbClient.closeSession(dbSession);
+    }
+  }
+
+  /**
+   * Tasks are peeked for all the idle workers in a single transaction. The tasks which are not returned are kept in
+   * {@link #peekedTasks} and the other workers are notified that they do not have to wait for the next polling.
+   */
+  @CheckForNull
+  private CeTask peekFromDb() {
     DbSession dbSession = dbClient.openSession(false);
     try {
-      Optional<CeQueueDto> dto = dbClient.ceQueueDao().peek(dbSession);
-      CeTask task = null;
-      if (dto.isPresent()) {
-        task = loadTask(dbSession, dto.get());
-        queueStatus.addInProgress();
+      for (CeQueueDto dto : dbClient.ceQueueDao().peek(dbSession, countIdleWorkers())) {
+        peekedTasks.add(loadTask(dbSession, dto));
       }
-      return Optional.fromNullable(task);
+    } finally {
+      dbClient.closeSession(dbSession);
+    }
+
+    CeTask task = peekedTasks.poll();
+    if (!peekedTasks.isEmpty()) {
+      notifyTasksAvailable();
+    }
+    return task;
+  }
 
+  /**
+   * Tasks which are not handed to workers are put back in queue, so that they can be canceled or peeked
+   * again, possibly by another Compute Engine.
+   */
+  private synchronized void resetPeekedTasks() {
+    if (peekedTasks.isEmpty()) {
+      return;
+    }
+    DbSession dbSession = dbClient.openSession(false);
+    try {
+      CeTask task = peekedTasks.poll();
+      while (task != null) {
+        dbClient.ceQueueDao().resetToPendingStatus(dbSession, task.getUuid());
+        task = peekedTasks.poll();
+      }
+      dbSession.commit();
     } finally {
       dbClient.closeSession(dbSession);
     }
   }
 
+  private int countIdleWorkers() {
+    // the calling worker is idle, whatever the number of tasks in progress
+    long idleWorkers = ceConfiguration.getWorkerCount() - queueStatus.getInProgressCount();
+    return (int) Math.max(1L, idleWorkers);
+  }
+
+  private void notifyTasksAvailable() {
+    for (Runnable listener : tasksAvailableListeners) {
+      listener.run();
+    }
+  }
+
+  @Override
+  public void addTasksAvailableListener(Runnable listener) {
+    tasksAvailableListeners.add(listener);
+  }
+
   @Override
   public int clear() {
     return cancelAll(true);
   }
 
+  @Override
+  protected synchronized int cancelAll(boolean includeInProgress) {
+    resetPeekedTasks();
+    return super.cancelAll(includeInProgress);
+  }
+
   @Override
   public void remove(CeTask task, CeActivityDto.Status status, @Nullable CeTaskResult taskResult, @Nullable Throwable error) {
     checkArgument(error == null || status == CeActivityDto.Status.FAILED, "Error can be provided only when status is FAILED");
@@ -162,6 +267,7 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
   @Override
   public void pausePeek() {
     this.peekPaused.set(true);
+    resetPeekedTasks();
   }
 
   @Override
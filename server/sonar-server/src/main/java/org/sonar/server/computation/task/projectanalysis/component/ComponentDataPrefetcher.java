@@ -0,0 +1,203 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.component;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Loads data of components from database by batches, instead of one request per component.
+ * <p>
+ * When the data of a component is requested but is not loaded yet, the data of the next components, in the order
+ * the visitors traverse the tree (post-order), are loaded by the same requests. The number of components per batch is
+ * adapted to the average size of the data already loaded, so that data loaded in advance does not exceed
+ * {@link #MEMORY_BUDGET} bytes. Each data is expected to be requested only once, so it is released as soon as it
+ * is returned.
+ * </p>
+ * <p>
+ * Components can be requested by several threads, slightly out of post-order. Data loaded in advance is released without
+ * being returned only when a component located after it in post-order is requested and is not loaded yet. Batches are
+ * loaded outside of the lock of the prefetcher, so that threads requesting data of different batches do not wait
+ * for each other.
+ * </p>
+ * <p>
+ * Only the components accepted by the filter have data. The other ones are never loaded.
+ * </p>
+ *
+ * @param <T> type of the data of a component
+ */
+public class ComponentDataPrefetcher<T> {
+
+  static final long MEMORY_BUDGET = 16L * 1024L * 1024L;
+  static final int INITIAL_BATCH_SIZE = 100;
+  static final int MAX_BATCH_SIZE = 1_000;
+
+  private final TreeRootHolder treeRootHolder;
+  private final Predicate<Component> filter;
+  private final Function<Component, String> uuidFunction;
+  private final Function<List<String>, Map<String, T>> loader;
+  private final ToLongFunction<T> weigher;
+
+  // fields below are guarded by this
+  private Map<Component, Integer> indexByComponent;
+  private List<Component> components;
+  private final BitSet requestedIndexes = new BitSet();
+  private final Map<String, Batch> batchByPrefetchedUuid = new HashMap<>();
+  private final Map<String, Integer> indexByPrefetchedUuid = new HashMap<>();
+  private long loadedComponents = 0L;
+  private long loadedBytes = 0L;
+
+  /**
+   * @param filter components which may have data
+   * @param uuidFunction the UUID, which identifies the data of a component in database
+   * @param loader loads the data of the given UUIDs. UUIDs without data may be missing from the result.
+   * @param weigher estimated size in bytes of data in memory
+   */
+  public ComponentDataPrefetcher(TreeRootHolder treeRootHolder, Predicate<Component> filter, Function<Component, String> uuidFunction,
+    Function<List<String>, Map<String, T>> loader, ToLongFunction<T> weigher) {
+    this.treeRootHolder = treeRootHolder;
+    this.filter = filter;
+    this.uuidFunction = uuidFunction;
+    this.loader = loader;
+    this.weigher = weigher;
+  }
+
+  /**
+   * @return the data of the component, or {@code null} if it has no data
+   */
+  @CheckForNull
+  public T get(Component component) {
+    if (!filter.test(component)) {
+      return null;
+    }
+    String uuid = uuidFunction.apply(component);
+    Batch batch;
+    synchronized (this) {
+      Integer index = getIndexByComponent().get(component);
+      if (index != null) {
+        requestedIndexes.set(index);
+      }
+      batch = batchByPrefetchedUuid.remove(uuid);
+      indexByPrefetchedUuid.remove(uuid);
+      if (batch == null) {
+        batch = prefetch(index, uuid);
+      }
+    }
+    return batch.remove(uuid);
+  }
+
+  private Batch prefetch(@Nullable Integer index, String uuid) {
+    List<String> uuids = new ArrayList<>();
+    uuids.add(uuid);
+    if (index == null) {
+      return new Batch(uuids);
+    }
+
+    // data loaded previously for components located before the requested one is not expected to be requested anymore
+    indexByPrefetchedUuid.entrySet().removeIf(entry -> {
+      if (entry.getValue() < index) {
+        batchByPrefetchedUuid.remove(entry.getKey());
+        return true;
+      }
+      return false;
+    });
+
+    Batch batch = new Batch(uuids);
+    int batchSize = batchSize();
+    for (int i = index + 1; i < components.size() && uuids.size() < batchSize; i++) {
+      Component next = components.get(i);
+      if (!requestedIndexes.get(i) && filter.test(next)) {
+        String nextUuid = uuidFunction.apply(next);
+        if (batchByPrefetchedUuid.containsKey(nextUuid)) {
+          // next components are already prefetched
+          break;
+        }
+        uuids.add(nextUuid);
+        batchByPrefetchedUuid.put(nextUuid, batch);
+        indexByPrefetchedUuid.put(nextUuid, i);
+      }
+    }
+    return batch;
+  }
+
+  private int batchSize() {
+    if (loadedComponents == 0L) {
+      return INITIAL_BATCH_SIZE;
+    }
+    long averageBytes = Math.max(1L, loadedBytes / loadedComponents);
+    return (int) Math.max(1L, Math.min(MAX_BATCH_SIZE, MEMORY_BUDGET / averageBytes));
+  }
+
+  private synchronized void addLoadedData(int components, Collection<T> data) {
+    loadedComponents += components;
+    for (T value : data) {
+      loadedBytes += weigher.applyAsLong(value);
+    }
+  }
+
+  private Map<Component, Integer> getIndexByComponent() {
+    if (indexByComponent == null) {
+      components = new ArrayList<>();
+      addInPostOrder(treeRootHolder.getRoot(), components);
+      indexByComponent = new HashMap<>(components.size());
+      for (int i = 0; i < components.size(); i++) {
+        indexByComponent.put(components.get(i), i);
+      }
+    }
+    return indexByComponent;
+  }
+
+  private static void addInPostOrder(Component component, List<Component> components) {
+    for (Component child : component.getChildren()) {
+      addInPostOrder(child, components);
+    }
+    components.add(component);
+  }
+
+  /**
+   * Data of components loaded by the same request. It is loaded by the first thread which requests one of them.
+   */
+  private final class Batch {
+    private final List<String> uuids;
+    private Map<String, T> data;
+
+    private Batch(List<String> uuids) {
+      this.uuids = uuids;
+    }
+
+    @CheckForNull
+    private synchronized T remove(String uuid) {
+      if (data == null) {
+        data = new HashMap<>(loader.apply(uuids));
+        addLoadedData(uuids.size(), data.values());
+      }
+      return data.remove(uuid);
+    }
+  }
+}
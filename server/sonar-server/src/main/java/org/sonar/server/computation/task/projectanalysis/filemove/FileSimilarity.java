@@ -54,4 +54,10 @@ public interface FileSimilarity {
   }
 
   int score(File file1, File file2);
+
+  /**
+   * Same as {@link #score(File, File)} when the score is greater than or equal to {@code minScore}, any score
+   * lower than {@code minScore} otherwise.
+   */
+  int score(File file1, File file2, int minScore);
 }
@@ -31,6 +31,11 @@ public class FileSimilarityImpl implements FileSimilarity {
 
   @Override
   public int score(File file1, File file2) {
+    return score(file1, file2, 0);
+  }
+
+  @Override
+  public int score(File file1, File file2, int minScore) {
     int score = 0;
 
     // TODO check filenames
@@ -38,7 +43,7 @@ public class FileSimilarityImpl implements FileSimilarity {
     List<String> lineHashes1 = file1.getLineHashes();
     List<String> lineHashes2 = file2.getLineHashes();
     if (lineHashes1 != null && lineHashes2 != null) {
-      score += sourceSimilarity.score(lineHashes1, lineHashes2);
+      score += sourceSimilarity.score(lineHashes1, lineHashes2, minScore);
     }
     return score;
   }
@@ -28,4 +28,11 @@ public interface SourceSimilarity {
    * Range: between 0 and 100
    */
   <T extends Object> int score(List<T> left, List<T> right);
+
+  /**
+   * Same as {@link #score(List, List)} when the score is greater than or equal to {@code minScore}. Otherwise the
+   * returned score is lower than {@code minScore} but may differ, as computation stops as soon as it is known
+   * that {@code minScore} can not be reached.
+   */
+  <T extends Object> int score(List<T> left, List<T> right, int minScore);
 }
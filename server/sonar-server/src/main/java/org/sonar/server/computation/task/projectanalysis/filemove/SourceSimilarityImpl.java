@@ -21,6 +21,7 @@ package org.sonar.server.computation.task.projectanalysis.filemove;
 
 import java.util.List;
 
+import static java.lang.Math.abs;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 
@@ -29,7 +30,102 @@ public class SourceSimilarityImpl implements SourceSimilarity {
   @Override
   public <T extends Object> int score(List<T> left, List<T> right) {
     int distance = levenshteinDistance(left, right);
-    return (int) (100 * (1.0 - ((double) distance) / (max(left.size(), right.size()))));
+    return toScore(distance, max(left.size(), right.size()));
+  }
+
+  @Override
+  public <T extends Object> int score(List<T> left, List<T> right, int minScore) {
+    int maxSize = max(left.size(), right.size());
+    if (maxSize == 0) {
+      return score(left, right);
+    }
+    int maxDistance = maxDistance(maxSize, minScore);
+    // the distance is at least the difference of sizes
+    if (maxDistance < 0 || abs(left.size() - right.size()) > maxDistance) {
+      return 0;
+    }
+    int distance = boundedLevenshteinDistance(left, right, maxDistance);
+    if (distance > maxDistance) {
+      return 0;
+    }
+    return toScore(distance, maxSize);
+  }
+
+  private static int toScore(int distance, int maxSize) {
+    return (int) (100 * (1.0 - ((double) distance) / maxSize));
+  }
+
+  /**
+   * Greatest distance for which the score of lists of at most {@code maxSize} elements is still greater than or
+   * equal to {@code minScore}, -1 if there is none.
+   */
+  private static int maxDistance(int maxSize, int minScore) {
+    int distance = min(maxSize, max(0, (int) ((long) maxSize * (100 - minScore) / 100)));
+    // adjust the estimate so that the result is consistent with the rounding of toScore
+    while (distance < maxSize && toScore(distance + 1, maxSize) >= minScore) {
+      distance++;
+    }
+    while (distance >= 0 && toScore(distance, maxSize) < minScore) {
+      distance--;
+    }
+    return distance;
+  }
+
+  /**
+   * Levenshtein distance restricted to the band of diagonals which can hold a path of cost lower than or equal to
+   * {@code maxDistance}. The distance is exact when it is lower than or equal to {@code maxDistance}, otherwise
+   * {@code maxDistance + 1} is returned.
+   */
+  <T extends Object> int boundedLevenshteinDistance(List<T> left, List<T> right, int maxDistance) {
+    int leftSize = left.size();
+    int rightSize = right.size();
+    int[] leftHashes = hashCodes(left);
+    int[] rightHashes = hashCodes(right);
+    int limit = maxDistance + 1;
+
+    int[] cost = new int[leftSize + 1];
+    int[] newcost = new int[leftSize + 1];
+    for (int i = 0; i <= leftSize; i++) {
+      cost[i] = min(i, limit);
+    }
+
+    for (int j = 1; j <= rightSize; j++) {
+      int from = max(1, j - maxDistance);
+      int to = min(leftSize, j + maxDistance);
+      // cells at the left and at the right of the band are out of reach
+      newcost[from - 1] = from == 1 ? min(j, limit) : limit;
+      if (to < leftSize) {
+        newcost[to + 1] = limit;
+      }
+      int rowMin = newcost[from - 1];
+
+      for (int i = from; i <= to; i++) {
+        // hash codes are compared first as equals() may be expensive
+        int match = leftHashes[i - 1] == rightHashes[j - 1] && left.get(i - 1).equals(right.get(j - 1)) ? 0 : 1;
+        int value = min(min(cost[i] + 1, newcost[i - 1] + 1), cost[i - 1] + match);
+        newcost[i] = min(value, limit);
+        rowMin = min(rowMin, newcost[i]);
+      }
+
+      if (rowMin >= limit) {
+        // every path goes through this row, the distance can only be greater
+        return limit;
+      }
+      int[] swap = cost;
+      cost = newcost;
+      newcost = swap;
+    }
+    return cost[leftSize];
+  }
+
+  private static <T> int[] hashCodes(List<T> list) {
+    int[] hashCodes = new int[list.size()];
+    int i = 0;
+    for (T element : list) {
+      hashCodes[i] = element.hashCode();
+      i++;
+    }
+    return hashCodes;
   }
 
   <T extends Object> int levenshteinDistance(List<T> left, List<T> right) {
@@ -20,7 +20,9 @@
 package org.sonar.server.computation.task.projectanalysis.issue;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
@@ -61,17 +63,7 @@ public class BaseIssuesLoader {
       session.getMapper(IssueMapper.class).selectNonClosedByComponentUuid(componentUuid, new ResultHandler() {
         @Override
         public void handleResult(ResultContext resultContext) {
-          DefaultIssue issue = ((IssueDto) resultContext.getResultObject()).toDefaultIssue();
-
-          // TODO this field should be set outside this class
-          if (!isActive(issue.ruleKey()) || ruleRepository.getByKey(issue.ruleKey()).getStatus() == RuleStatus.REMOVED) {
-            issue.setOnDisabledRule(true);
-            // TODO to be improved, why setOnDisabledRule(true) is not enough ?
-            issue.setBeingClosed(true);
-          }
-          // FIXME
-          issue.setSelectedAt(System.currentTimeMillis());
-          result.add(issue);
+          result.add(toDefaultIssue((IssueDto) resultContext.getResultObject()));
         }
       });
       return result;
@@ -80,6 +72,36 @@ public class BaseIssuesLoader {
     }
   }
 
+  /**
+   * Loads the open issues of several components at once.
+   *
+   * @return the issues grouped by component UUID. Components without open issues are missing.
+   */
+  public Map<String, List<DefaultIssue>> loadForComponentUuids(List<String> componentUuids) {
+    Map<String, List<DefaultIssue>> result = new HashMap<>();
+    try (DbSession session = dbClient.openSession(false)) {
+      dbClient.issueDao().selectNonClosedByComponentUuids(session, componentUuids, resultContext -> {
+        DefaultIssue issue = toDefaultIssue((IssueDto) resultContext.getResultObject());
+        result.computeIfAbsent(issue.componentUuid(), uuid -> new ArrayList<>()).add(issue);
+      });
+      return result;
+    }
+  }
+
+  private DefaultIssue toDefaultIssue(IssueDto dto) {
+    DefaultIssue issue = dto.toDefaultIssue();
+
+    // TODO this field should be set outside this class
+    if (!isActive(issue.ruleKey()) || ruleRepository.getByKey(issue.ruleKey()).getStatus() == RuleStatus.REMOVED) {
+      issue.setOnDisabledRule(true);
+      // TODO to be improved, why setOnDisabledRule(true) is not enough ?
+      issue.setBeingClosed(true);
+    }
+    // FIXME
+    issue.setSelectedAt(System.currentTimeMillis());
+    return issue;
+  }
+
   private boolean isActive(RuleKey ruleKey) {
     return activeRulesHolder.get(ruleKey).isPresent();
   }
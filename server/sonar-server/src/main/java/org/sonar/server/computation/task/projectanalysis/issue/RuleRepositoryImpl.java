@@ -84,7 +84,7 @@ public class RuleRepositoryImpl implements RuleRepository {
     requireNonNull(key, "RuleKey can not be null");
   }
 
-  private void ensureInitialized() {
+  private synchronized void ensureInitialized() {
     if (rulesByKey == null) {
       DbSession dbSession = dbClient.openSession(false);
       try {
@@ -19,72 +19,100 @@
  */
 package org.sonar.server.computation.task.projectanalysis.issue;
 
+import com.google.common.base.Optional;
+import com.google.common.base.Splitter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import javax.annotation.CheckForNull;
-import javax.annotation.Nullable;
+import java.util.Map;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.tracking.Input;
 import org.sonar.core.issue.tracking.LazyInput;
 import org.sonar.core.issue.tracking.LineHashSequence;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
-import org.sonar.db.MyBatis;
+import org.sonar.db.source.FileSourceDto;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.ComponentDataPrefetcher;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository.OriginalFile;
 
 /**
- * Factory of {@link Input} of base data for issue tracking. Data are lazy-loaded.
+ * Factory of {@link Input} of base data for issue tracking. Data are lazy-loaded, by batches of components.
  */
 public class TrackerBaseInputFactory {
   private static final LineHashSequence EMPTY_LINE_HASH_SEQUENCE = new LineHashSequence(Collections.<String>emptyList());
+  private static final Splitter END_OF_LINE_SPLITTER = Splitter.on('\n');
+  private static final long ESTIMATED_ISSUE_BYTES = 1_000L;
+  private static final long ESTIMATED_LINE_BYTES = 80L;
 
-  private final BaseIssuesLoader baseIssuesLoader;
   private final DbClient dbClient;
   private final MovedFilesRepository movedFilesRepository;
+  private final ComponentDataPrefetcher<List<DefaultIssue>> issuesPrefetcher;
+  private final ComponentDataPrefetcher<List<String>> lineHashesPrefetcher;
 
-  public TrackerBaseInputFactory(BaseIssuesLoader baseIssuesLoader, DbClient dbClient, MovedFilesRepository movedFilesRepository) {
-    this.baseIssuesLoader = baseIssuesLoader;
+  public TrackerBaseInputFactory(BaseIssuesLoader baseIssuesLoader, DbClient dbClient, MovedFilesRepository movedFilesRepository,
+    TreeRootHolder treeRootHolder, ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues) {
     this.dbClient = dbClient;
     this.movedFilesRepository = movedFilesRepository;
+    this.issuesPrefetcher = new ComponentDataPrefetcher<>(treeRootHolder,
+      component -> componentsWithUnprocessedIssues.getUuids().contains(effectiveUuid(component)),
+      this::effectiveUuid,
+      baseIssuesLoader::loadForComponentUuids,
+      issues -> issues.size() * ESTIMATED_ISSUE_BYTES);
+    this.lineHashesPrefetcher = new ComponentDataPrefetcher<>(treeRootHolder,
+      component -> component.getType() == Component.Type.FILE,
+      this::effectiveUuid,
+      this::loadLineHashes,
+      hashes -> hashes.size() * ESTIMATED_LINE_BYTES);
   }
 
   public Input<DefaultIssue> create(Component component) {
-    return new BaseLazyInput(component, movedFilesRepository.getOriginalFile(component).orNull());
+    return new BaseLazyInput(component);
+  }
+
+  /**
+   * UUID of the component in database, which is the UUID of the original file when the file has been moved
+   */
+  private String effectiveUuid(Component component) {
+    Optional<OriginalFile> originalFile = movedFilesRepository.getOriginalFile(component);
+    return originalFile.isPresent() ? originalFile.get().getUuid() : component.getUuid();
+  }
+
+  private Map<String, List<String>> loadLineHashes(List<String> fileUuids) {
+    Map<String, List<String>> result = new HashMap<>();
+    try (DbSession session = dbClient.openSession(false)) {
+      dbClient.fileSourceDao().selectLineHashesByFileUuids(session, fileUuids, resultContext -> {
+        FileSourceDto dto = (FileSourceDto) resultContext.getResultObject();
+        String lineHashes = dto.getLineHashes();
+        result.put(dto.getFileUuid(), lineHashes == null ? Collections.emptyList() : END_OF_LINE_SPLITTER.splitToList(lineHashes));
+      });
+      return result;
+    }
   }
 
   private class BaseLazyInput extends LazyInput<DefaultIssue> {
     private final Component component;
-    @CheckForNull
-    private final String effectiveUuid;
 
-    private BaseLazyInput(Component component, @Nullable OriginalFile originalFile) {
+    private BaseLazyInput(Component component) {
       this.component = component;
-      this.effectiveUuid = originalFile == null ? component.getUuid() : originalFile.getUuid();
     }
 
     @Override
     protected LineHashSequence loadLineHashSequence() {
-      if (component.getType() != Component.Type.FILE) {
+      List<String> hashes = lineHashesPrefetcher.get(component);
+      if (hashes == null || hashes.isEmpty()) {
         return EMPTY_LINE_HASH_SEQUENCE;
       }
-      
-      DbSession session = dbClient.openSession(false);
-      try {
-        List<String> hashes = dbClient.fileSourceDao().selectLineHashes(session, effectiveUuid);
-        if (hashes == null || hashes.isEmpty()) {
-          return EMPTY_LINE_HASH_SEQUENCE;
-        }
-        return new LineHashSequence(hashes);
-      } finally {
-        MyBatis.closeQuietly(session);
-      }
+      return new LineHashSequence(hashes);
     }
 
     @Override
     protected List<DefaultIssue> loadIssues() {
-      return baseIssuesLoader.loadForComponentUuid(effectiveUuid);
+      List<DefaultIssue> issues = issuesPrefetcher.get(component);
+      return issues == null ? new ArrayList<>() : issues;
     }
   }
 }
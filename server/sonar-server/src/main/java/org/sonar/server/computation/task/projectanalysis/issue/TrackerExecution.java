@@ -19,25 +19,140 @@
  */
 package org.sonar.server.computation.task.projectanalysis.issue;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.picocontainer.Startable;
+import org.sonar.api.config.Settings;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.tracking.Tracker;
 import org.sonar.core.issue.tracking.Tracking;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 
-public class TrackerExecution {
+/**
+ * Tracks issues of components. When {@link #THREADS_PROPERTY} is greater than 1, the tracking of the next files, in the
+ * order they are visited, is executed in advance by a pool of threads: inputs of different files are loaded and matched
+ * concurrently, while the tracked issues are still integrated one component after the other by the caller.
+ */
+public class TrackerExecution implements Startable {
+
+  @VisibleForTesting
+  static final String THREADS_PROPERTY = "sonar.internal.ce.issueTracking.threads";
+
+  /**
+   * Number of files tracked in advance is bounded, as each tracking keeps issues and line hashes in memory.
+   */
+  private static final int FILES_AHEAD_PER_THREAD = 2;
 
   private final TrackerBaseInputFactory baseInputFactory;
   private final TrackerRawInputFactory rawInputFactory;
   private final Tracker<DefaultIssue, DefaultIssue> tracker;
+  private final TreeRootHolder treeRootHolder;
+  private final int threads;
+  private final Map<Component, Future<Tracking<DefaultIssue, DefaultIssue>>> trackingsInProgress = new HashMap<>();
+
+  private ExecutorService executor;
+  private List<Component> files;
+  private Map<Component, Integer> indexByFile;
 
   public TrackerExecution(TrackerBaseInputFactory baseInputFactory, TrackerRawInputFactory rawInputFactory,
-    Tracker<DefaultIssue, DefaultIssue> tracker) {
+    Tracker<DefaultIssue, DefaultIssue> tracker, TreeRootHolder treeRootHolder, Settings settings) {
     this.baseInputFactory = baseInputFactory;
     this.rawInputFactory = rawInputFactory;
     this.tracker = tracker;
+    this.treeRootHolder = treeRootHolder;
+    this.threads = settings.getInt(THREADS_PROPERTY);
+  }
+
+  @VisibleForTesting
+  int getThreads() {
+    return threads > 0 ? threads : 1;
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
   }
 
   public Tracking<DefaultIssue, DefaultIssue> track(Component component) {
+    if (getThreads() == 1 || component.getType() != Component.Type.FILE) {
+      return doTrack(component);
+    }
+
+    Future<Tracking<DefaultIssue, DefaultIssue>> tracking = trackingsInProgress.remove(component);
+    if (tracking == null) {
+      tracking = submit(component);
+    }
+    submitNextFiles(component);
+    try {
+      return tracking.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(String.format("Interrupted while tracking issues of component '%s'", component.getKey()), e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private Tracking<DefaultIssue, DefaultIssue> doTrack(Component component) {
     return tracker.track(rawInputFactory.create(component), baseInputFactory.create(component));
   }
+
+  private Future<Tracking<DefaultIssue, DefaultIssue>> submit(Component file) {
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(getThreads(), new ThreadFactoryBuilder().setNameFormat("TrackerExecution-%d").setDaemon(true).build());
+    }
+    return executor.submit(() -> doTrack(file));
+  }
+
+  private void submitNextFiles(Component file) {
+    Integer index = getIndexByFile().get(file);
+    if (index == null) {
+      return;
+    }
+    int last = Math.min(files.size() - 1, index + getThreads() * FILES_AHEAD_PER_THREAD);
+    for (int i = index + 1; i <= last; i++) {
+      Component next = files.get(i);
+      if (!trackingsInProgress.containsKey(next)) {
+        trackingsInProgress.put(next, submit(next));
+      }
+    }
+  }
+
+  private Map<Component, Integer> getIndexByFile() {
+    if (indexByFile == null) {
+      files = new ArrayList<>();
+      addFilesInPostOrder(treeRootHolder.getRoot(), files);
+      indexByFile = new HashMap<>(files.size());
+      for (int i = 0; i < files.size(); i++) {
+        indexByFile.put(files.get(i), i);
+      }
+    }
+    return indexByFile;
+  }
+
+  private static void addFilesInPostOrder(Component component, List<Component> files) {
+    for (Component child : component.getChildren()) {
+      addFilesInPostOrder(child, files);
+    }
+    if (component.getType() == Component.Type.FILE) {
+      files.add(component);
+    }
+  }
 }
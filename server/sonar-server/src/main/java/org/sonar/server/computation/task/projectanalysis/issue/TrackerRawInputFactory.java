@@ -42,7 +42,6 @@ import org.sonar.server.computation.task.projectanalysis.issue.filter.IssueFilte
 import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepository;
 import org.sonar.server.rule.CommonRuleKeys;
 
-import static com.google.common.collect.Lists.newArrayList;
 import static org.apache.commons.lang.StringUtils.isNotEmpty;
 
 public class TrackerRawInputFactory {
@@ -75,13 +74,10 @@ public class TrackerRawInputFactory {
 
     @Override
     protected LineHashSequence loadLineHashSequence() {
-      List<String> lines;
       if (component.getType() == Component.Type.FILE) {
-        lines = newArrayList(sourceLinesRepository.readLines(component));
-      } else {
-        lines = Collections.emptyList();
+        return new LineHashSequence(sourceLinesRepository.readLineHashes(component));
       }
-      return LineHashSequence.createForLines(lines);
+      return new LineHashSequence(Collections.<String>emptyList());
     }
 
     @Override
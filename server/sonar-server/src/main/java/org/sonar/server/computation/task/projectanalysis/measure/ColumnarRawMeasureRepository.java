@@ -0,0 +1,289 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Columnar implementation of MeasureRepository which supports only raw measures of report components.
+ * <p>
+ * Measures are stored by metric, in arrays indexed by the report ref of the components. Measures of numeric values,
+ * which are the vast majority, are stored as primitives (value and variation) and are created again when read. Other
+ * measures (String and Level values, measures with data, description, quality gate status or developer) are stored as
+ * objects.
+ * </p>
+ *
+ * Intended to be used as a delegate of other MeasureRepository implementations (hence the final keyword).
+ */
+public final class ColumnarRawMeasureRepository implements MeasureRepository {
+  private static final Measure.ValueType[] VALUE_TYPES = Measure.ValueType.values();
+
+  private final Map<String, Column> columnsByMetricKey = new HashMap<>();
+
+  /**
+   * @throws UnsupportedOperationException all the time, not supported
+   */
+  @Override
+  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+    // fail fast
+    requireNonNull(component);
+    requireNonNull(metric);
+
+    return Optional.fromNullable(find(component, metric, null));
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (find(component, metric, measure.getDeveloper()) != null) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be set only once for a specific Component (key=%s), Metric (key=%s). Use update method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public void update(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (find(component, metric, measure.getDeveloper()) == null) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be updated only if one already exists for a specific Component (key=%s), Metric (key=%s). Use add method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  private static void checkValueTypeConsistency(Metric metric, Measure measure) {
+    checkArgument(
+      measure.getValueType() == Measure.ValueType.NO_VALUE || measure.getValueType() == metric.getType().getValueType(),
+      format(
+        "Measure's ValueType (%s) is not consistent with the Metric's ValueType (%s)",
+        measure.getValueType(), metric.getType().getValueType()));
+  }
+
+  @Override
+  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+    requireNonNull(metric);
+    requireNonNull(component);
+    Column column = columnsByMetricKey.get(metric.getKey());
+    if (column == null) {
+      return ImmutableSet.of();
+    }
+    ImmutableSet.Builder<Measure> builder = ImmutableSet.builder();
+    column.addAll(toRef(component), builder);
+    return builder.build();
+  }
+
+  @Override
+  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+    int ref = toRef(component);
+    ImmutableSetMultimap.Builder<String, Measure> builder = ImmutableSetMultimap.builder();
+    for (Map.Entry<String, Column> entry : columnsByMetricKey.entrySet()) {
+      ImmutableSet.Builder<Measure> measures = ImmutableSet.builder();
+      entry.getValue().addAll(ref, measures);
+      builder.putAll(entry.getKey(), measures.build());
+    }
+    return builder.build();
+  }
+
+  public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
+    requireNonNull(component);
+    requireNonNull(measure);
+    requireNonNull(overridePolicy);
+
+    int ref = toRef(component);
+    Column column = columnsByMetricKey.get(metric.getKey());
+    if (column == null) {
+      column = new Column();
+      columnsByMetricKey.put(metric.getKey(), column);
+    }
+    if (overridePolicy == OverridePolicy.OVERRIDE || column.get(ref, measure.getDeveloper()) == null) {
+      column.put(ref, measure);
+    }
+  }
+
+  @CheckForNull
+  private Measure find(Component component, Metric metric, @Nullable Developer developer) {
+    int ref = toRef(component);
+    Column column = columnsByMetricKey.get(metric.getKey());
+    return column == null ? null : column.get(ref, developer);
+  }
+
+  private static int toRef(Component component) {
+    return component.getReportAttributes().getRef();
+  }
+
+  /**
+   * Measures of a metric, indexed by report ref of components.
+   */
+  private static final class Column {
+    private static final byte ABSENT = 0;
+    /**
+     * States of measures stored as objects. States of measures stored as primitives are ordinal of value type + 1.
+     */
+    private static final byte OBJECT = -1;
+    private static final byte HAS_VARIATION = 0x40;
+    private static final byte VALUE_TYPE_MASK = 0x3F;
+
+    private byte[] states = new byte[0];
+    private double[] values = new double[0];
+    @CheckForNull
+    private double[] variations;
+    @CheckForNull
+    private Map<Integer, Measure> objects;
+    @CheckForNull
+    private Map<Integer, Map<Developer, Measure>> developerMeasures;
+
+    @CheckForNull
+    Measure get(int ref, @Nullable Developer developer) {
+      if (developer != null) {
+        Map<Developer, Measure> measures = developerMeasures == null ? null : developerMeasures.get(ref);
+        return measures == null ? null : measures.get(developer);
+      }
+      if (ref >= states.length || states[ref] == ABSENT) {
+        return null;
+      }
+      byte state = states[ref];
+      if (state == OBJECT) {
+        return objects.get(ref);
+      }
+      Measure.ValueType valueType = VALUE_TYPES[(state & VALUE_TYPE_MASK) - 1];
+      Double value = valueType == Measure.ValueType.NO_VALUE ? null : values[ref];
+      Double variation = (state & HAS_VARIATION) != 0 ? variations[ref] : null;
+      return Measure.createFromPrimitive(valueType, value, variation);
+    }
+
+    void addAll(int ref, ImmutableSet.Builder<Measure> builder) {
+      Measure measure = get(ref, null);
+      if (measure != null) {
+        builder.add(measure);
+      }
+      if (developerMeasures != null && developerMeasures.containsKey(ref)) {
+        builder.addAll(developerMeasures.get(ref).values());
+      }
+    }
+
+    void put(int ref, Measure measure) {
+      if (measure.getDeveloper() != null) {
+        if (developerMeasures == null) {
+          developerMeasures = new HashMap<>();
+        }
+        // developers are compared by identity, as in MeasureKey
+        developerMeasures.computeIfAbsent(ref, r -> new IdentityHashMap<>()).put(measure.getDeveloper(), measure);
+        return;
+      }
+
+      ensureCapacity(ref);
+      if (states[ref] == OBJECT) {
+        objects.remove(ref);
+      }
+      if (!isPrimitive(measure)) {
+        if (objects == null) {
+          objects = new HashMap<>();
+        }
+        objects.put(ref, measure);
+        states[ref] = OBJECT;
+        return;
+      }
+
+      byte state = (byte) (measure.getValueType().ordinal() + 1);
+      values[ref] = toDouble(measure);
+      if (measure.hasVariation()) {
+        if (variations == null) {
+          variations = new double[values.length];
+        }
+        variations[ref] = measure.getVariation();
+        state |= HAS_VARIATION;
+      }
+      states[ref] = state;
+    }
+
+    private void ensureCapacity(int ref) {
+      if (ref >= states.length) {
+        int newLength = Math.max(ref + 1, states.length + (states.length >> 1));
+        states = Arrays.copyOf(states, newLength);
+        values = Arrays.copyOf(values, newLength);
+        if (variations != null) {
+          variations = Arrays.copyOf(variations, newLength);
+        }
+      }
+    }
+
+    private static boolean isPrimitive(Measure measure) {
+      switch (measure.getValueType()) {
+        case NO_VALUE:
+        case BOOLEAN:
+        case INT:
+        case LONG:
+        case DOUBLE:
+          return measure.getData() == null && measure.getDescription() == null && !measure.hasQualityGateStatus();
+        default:
+          return false;
+      }
+    }
+
+    private static double toDouble(Measure measure) {
+      switch (measure.getValueType()) {
+        case BOOLEAN:
+          return measure.getBooleanValue() ? 1.0d : 0.0d;
+        case INT:
+          return measure.getIntValue();
+        case LONG:
+          return measure.getLongValue();
+        case DOUBLE:
+          return measure.getDoubleValue();
+        default:
+          return 0.0d;
+      }
+    }
+  }
+}
@@ -99,6 +99,14 @@ public final class Measure {
     return new NewMeasureBuilder();
   }
 
+  /**
+   * Creates again a measure without developer, data, description nor quality gate status, from its value stored as a
+   * primitive (see {@link ColumnarRawMeasureRepository}). Unlike {@link NewMeasureBuilder}, the value is not scaled.
+   */
+  static Measure createFromPrimitive(ValueType valueType, @Nullable Double value, @Nullable Double variation) {
+    return new Measure(valueType, null, value, null, null, null, null, variation);
+  }
+
   public static UpdateMeasureBuilder updatedMeasureBuilder(Measure measure) {
     return new UpdateMeasureBuilder(measure);
   }
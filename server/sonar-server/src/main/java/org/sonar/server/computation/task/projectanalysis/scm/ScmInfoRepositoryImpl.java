@@ -21,7 +21,9 @@ package org.sonar.server.computation.task.projectanalysis.scm;
 
 import com.google.common.base.Optional;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import javax.annotation.CheckForNull;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.db.DbClient;
@@ -31,6 +33,8 @@ import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.ComponentDataPrefetcher;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepository;
 
 import static java.util.Objects.requireNonNull;
@@ -45,12 +49,18 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
   private final SourceHashRepository sourceHashRepository;
 
   private final Map<Component, ScmInfo> scmInfoCache = new HashMap<>();
+  // changesets read from report to select the files loaded by sourcePrefetcher, released once their ScmInfo is created
+  private final Map<Component, ScannerReport.Changesets> changesetsCache = new HashMap<>();
+  private final ComponentDataPrefetcher<FileSourceDto> sourcePrefetcher;
 
-  public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, AnalysisMetadataHolder analysisMetadataHolder, DbClient dbClient, SourceHashRepository sourceHashRepository) {
+  public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, AnalysisMetadataHolder analysisMetadataHolder, DbClient dbClient,
+    SourceHashRepository sourceHashRepository, TreeRootHolder treeRootHolder) {
     this.batchReportReader = batchReportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.dbClient = dbClient;
     this.sourceHashRepository = sourceHashRepository;
+    this.sourcePrefetcher = new ComponentDataPrefetcher<>(treeRootHolder, this::isCopiedFromDb, Component::getUuid, this::loadSources,
+      dto -> dto.getBinaryData().length);
   }
 
   @Override
@@ -81,15 +91,32 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
   }
 
   private ScmInfo getScmInfoForComponent(Component component) {
-    ScannerReport.Changesets changesets = batchReportReader.readChangesets(component.getReportAttributes().getRef());
-    if (changesets == null) {
-      LOGGER.trace("No SCM info for file '{}'", component.getKey());
-      return NoScmInfo.INSTANCE;
+    try {
+      ScannerReport.Changesets changesets = readChangesets(component);
+      if (changesets == null) {
+        LOGGER.trace("No SCM info for file '{}'", component.getKey());
+        return NoScmInfo.INSTANCE;
+      }
+      if (changesets.getCopyFromPrevious()) {
+        return getScmInfoFromDb(component);
+      }
+      return getScmInfoFromReport(component, changesets);
+    } finally {
+      changesetsCache.remove(component);
     }
-    if (changesets.getCopyFromPrevious()) {
-      return getScmInfoFromDb(component);
+  }
+
+  /**
+   * Changesets of a file are read only once from report, even when the file is also checked by {@link #isCopiedFromDb(Component)}.
+   */
+  @CheckForNull
+  private ScannerReport.Changesets readChangesets(Component file) {
+    if (changesetsCache.containsKey(file)) {
+      return changesetsCache.get(file);
     }
-    return getScmInfoFromReport(component, changesets);
+    ScannerReport.Changesets changesets = batchReportReader.readChangesets(file.getReportAttributes().getRef());
+    changesetsCache.put(file, changesets);
+    return changesets;
   }
 
   private ScmInfo getScmInfoFromDb(Component file) {
@@ -98,15 +125,32 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
     }
 
     LOGGER.trace("Reading SCM info from db for file '{}'", file.getKey());
-    DbSession dbSession = dbClient.openSession(false);
-    try {
-      FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, file.getUuid());
-      if (dto == null || !sourceHashRepository.getRawSourceHash(file).equals(dto.getSrcHash())) {
-        return NoScmInfo.INSTANCE;
-      }
-      return DbScmInfo.create(file, dto.getSourceData().getLinesList()).or(NoScmInfo.INSTANCE);
-    } finally {
-      dbClient.closeSession(dbSession);
+    FileSourceDto dto = sourcePrefetcher.get(file);
+    if (dto == null || !sourceHashRepository.getRawSourceHash(file).equals(dto.getSrcHash())) {
+      return NoScmInfo.INSTANCE;
+    }
+    return DbScmInfo.create(file, dto.getSourceData().getLinesList()).or(NoScmInfo.INSTANCE);
+  }
+
+  /**
+   * Whether the SCM info of the file is read from database. Sources of these files are loaded by batches.
+   */
+  private boolean isCopiedFromDb(Component component) {
+    if (component.getType() != Component.Type.FILE || analysisMetadataHolder.isFirstAnalysis()) {
+      return false;
+    }
+    ScannerReport.Changesets changesets = readChangesets(component);
+    return changesets != null && changesets.getCopyFromPrevious();
+  }
+
+  private Map<String, FileSourceDto> loadSources(List<String> fileUuids) {
+    Map<String, FileSourceDto> result = new HashMap<>();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      dbClient.fileSourceDao().selectSourcesByFileUuids(dbSession, fileUuids, resultContext -> {
+        FileSourceDto dto = (FileSourceDto) resultContext.getResultObject();
+        result.put(dto.getFileUuid(), dto);
+      });
+      return result;
     }
   }
 
@@ -45,15 +45,12 @@ public class ComputeFileSourceData {
     Data data = new Data(numberOfLines);
     while (linesIterator.hasNext()) {
       currentLine++;
-      read(data, linesIterator.next(), linesIterator.hasNext());
+      read(data, linesIterator.next());
     }
     return data;
   }
 
-  private void read(Data data, String source, boolean hasNextLine) {
-    data.linesHashesComputer.addLine(source);
-    data.sourceHashComputer.addLine(source, hasNextLine);
-
+  private void read(Data data, String source) {
     DbFileSources.Line.Builder lineBuilder = data.fileSourceBuilder.addLinesBuilder()
       .setSource(source)
       .setLine(currentLine);
@@ -62,22 +59,33 @@ public class ComputeFileSourceData {
     }
   }
 
+  /**
+   * Hashes are computed on demand, as they are usually already known by the caller.
+   */
   public static class Data {
     private static final Joiner LINE_RETURN_JOINER = Joiner.on('\n');
 
-    private final SourceLinesHashesComputer linesHashesComputer;
-    private final SourceHashComputer sourceHashComputer = new SourceHashComputer();
+    private final int lineCount;
     private final DbFileSources.Data.Builder fileSourceBuilder = DbFileSources.Data.newBuilder();
 
     public Data(int lineCount) {
-      this.linesHashesComputer = new SourceLinesHashesComputer(lineCount);
+      this.lineCount = lineCount;
     }
 
     public String getSrcHash() {
+      SourceHashComputer sourceHashComputer = new SourceHashComputer();
+      Iterator<DbFileSources.Line> lines = fileSourceBuilder.getLinesList().iterator();
+      while (lines.hasNext()) {
+        sourceHashComputer.addLine(lines.next().getSource(), lines.hasNext());
+      }
       return sourceHashComputer.getHash();
     }
 
     public String getLineHashes() {
+      SourceLinesHashesComputer linesHashesComputer = new SourceLinesHashesComputer(lineCount);
+      for (DbFileSources.Line line : fileSourceBuilder.getLinesList()) {
+        linesHashesComputer.addLine(line.getSource());
+      }
       return LINE_RETURN_JOINER.join(linesHashesComputer.getLineHashes());
     }
 
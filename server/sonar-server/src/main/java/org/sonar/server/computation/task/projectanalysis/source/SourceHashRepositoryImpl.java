@@ -22,8 +22,6 @@ package org.sonar.server.computation.task.projectanalysis.source;
 import java.util.HashMap;
 import java.util.Map;
 import javax.annotation.Nullable;
-import org.sonar.core.hash.SourceHashComputer;
-import org.sonar.core.util.CloseableIterator;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -58,16 +56,7 @@ public class SourceHashRepositoryImpl implements SourceHashRepository {
   }
 
   private String computeRawSourceHash(Component file) {
-    SourceHashComputer sourceHashComputer = new SourceHashComputer();
-    CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
-    try {
-      while (linesIterator.hasNext()) {
-        sourceHashComputer.addLine(linesIterator.next(), linesIterator.hasNext());
-      }
-      return sourceHashComputer.getHash();
-    } finally {
-      linesIterator.close();
-    }
+    return sourceLinesRepository.readSourceHash(file);
   }
 
   private static String checkSourceHash(String fileKey, @Nullable String newSourceHash) {
@@ -0,0 +1,163 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.source;
+
+import com.google.common.base.Optional;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.MessageLite;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import javax.annotation.Nullable;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.Duplication;
+import org.sonar.server.computation.task.projectanalysis.duplication.DuplicationRepository;
+import org.sonar.server.computation.task.projectanalysis.duplication.InProjectDuplicate;
+import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
+import org.sonar.server.computation.task.projectanalysis.scm.Changeset;
+import org.sonar.server.computation.task.projectanalysis.scm.ScmInfo;
+import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepository;
+
+/**
+ * Computes a hash of all the data {@link ComputeFileSourceData} builds the data of a file from: source, coverage,
+ * highlighting, symbols, SCM and duplications. When this hash is the same as the one of the previous analysis,
+ * the data of the file does not need to be computed again.
+ * <p>
+ * Each kind of data is hashed on its own, then the hashes of all the kinds of data are hashed together. Report data
+ * are hashed as read from the report, without being converted to lines.
+ */
+public class SourceInputsHasher {
+
+  /**
+   * To be incremented when the way data of files are computed changes, so that data computed by previous versions
+   * are not considered up-to-date.
+   */
+  private static final int VERSION = 1;
+
+  private static final byte INNER_DUPLICATE = 1;
+  private static final byte IN_PROJECT_DUPLICATE = 2;
+  private static final byte CROSS_PROJECT_DUPLICATE = 3;
+
+  private final BatchReportReader reportReader;
+  private final ScmInfoRepository scmInfoRepository;
+  private final DuplicationRepository duplicationRepository;
+
+  public SourceInputsHasher(BatchReportReader reportReader, ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository) {
+    this.reportReader = reportReader;
+    this.scmInfoRepository = scmInfoRepository;
+    this.duplicationRepository = duplicationRepository;
+  }
+
+  /**
+   * @param srcHash hash of the source of the file, as computed by {@link SourceLinesRepository#readSourceHash(Component)}
+   */
+  public String hash(Component file, String srcHash) {
+    int ref = file.getReportAttributes().getRef();
+    try {
+      MessageDigest digest = DigestUtils.getMd5Digest();
+      DataOutputStream output = new DataOutputStream(new DigestOutputStream(ByteStreams.nullOutputStream(), digest));
+      output.writeInt(VERSION);
+      output.writeUTF(srcHash);
+      output.writeInt(file.getFileAttributes().getLines());
+      output.write(hashOf(reportReader.readComponentCoverage(ref)));
+      output.write(hashOf(reportReader.readComponentSyntaxHighlighting(ref)));
+      output.write(hashOf(reportReader.readComponentSymbols(ref)));
+      output.write(hashOf(scmInfoRepository.getScmInfo(file)));
+      output.write(hashOf(duplicationRepository.getDuplications(file)));
+      output.flush();
+      return Hex.encodeHexString(digest.digest());
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Fail to hash source data of file %s", file.getKey()), e);
+    }
+  }
+
+  private static byte[] hashOf(CloseableIterator<? extends MessageLite> messages) throws IOException {
+    MessageDigest digest = DigestUtils.getMd5Digest();
+    try (DigestOutputStream output = new DigestOutputStream(ByteStreams.nullOutputStream(), digest)) {
+      while (messages.hasNext()) {
+        // length of messages is written so that the sequence is not ambiguous
+        messages.next().writeDelimitedTo(output);
+      }
+    } finally {
+      messages.close();
+    }
+    return digest.digest();
+  }
+
+  private static byte[] hashOf(Optional<ScmInfo> scmInfo) throws IOException {
+    MessageDigest digest = DigestUtils.getMd5Digest();
+    try (DataOutputStream output = new DataOutputStream(new DigestOutputStream(ByteStreams.nullOutputStream(), digest))) {
+      if (scmInfo.isPresent()) {
+        for (Changeset changeset : scmInfo.get().getAllChangesets()) {
+          writeNullableString(output, changeset.getRevision());
+          writeNullableString(output, changeset.getAuthor());
+          output.writeLong(changeset.getDate());
+        }
+      }
+    }
+    return digest.digest();
+  }
+
+  private static byte[] hashOf(Iterable<Duplication> duplications) throws IOException {
+    MessageDigest digest = DigestUtils.getMd5Digest();
+    try (DataOutputStream output = new DataOutputStream(new DigestOutputStream(ByteStreams.nullOutputStream(), digest))) {
+      for (Duplication duplication : duplications) {
+        writeTextBlock(output, duplication.getOriginal());
+        output.writeInt(duplication.getDuplicates().size());
+        for (Duplicate duplicate : duplication.getDuplicates()) {
+          writeDuplicate(output, duplicate);
+        }
+      }
+    }
+    return digest.digest();
+  }
+
+  private static void writeDuplicate(DataOutputStream output, Duplicate duplicate) throws IOException {
+    if (duplicate instanceof InProjectDuplicate) {
+      output.writeByte(IN_PROJECT_DUPLICATE);
+      output.writeUTF(((InProjectDuplicate) duplicate).getFile().getKey());
+    } else if (duplicate instanceof CrossProjectDuplicate) {
+      output.writeByte(CROSS_PROJECT_DUPLICATE);
+      output.writeUTF(((CrossProjectDuplicate) duplicate).getFileKey());
+    } else {
+      output.writeByte(INNER_DUPLICATE);
+    }
+    writeTextBlock(output, duplicate.getTextBlock());
+  }
+
+  private static void writeTextBlock(DataOutputStream output, TextBlock textBlock) throws IOException {
+    output.writeInt(textBlock.getStart());
+    output.writeInt(textBlock.getEnd());
+  }
+
+  private static void writeNullableString(DataOutputStream output, @Nullable String s) throws IOException {
+    output.writeBoolean(s != null);
+    if (s != null) {
+      output.writeUTF(s);
+    }
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.source;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import javax.annotation.CheckForNull;
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.sonar.api.utils.TempFolder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Sources of files decoded from the report, along with their hashes, shared by the steps of a task.
+ * <p>
+ * Sources are kept in memory up to a memory budget. Beyond the budget, the least recently used sources are
+ * written to a temporary file in a compressed form, from which they are read again without computing
+ * hashes again.
+ * </p>
+ */
+class SourceLinesCache {
+  private static final long OBJECT_OVERHEAD = 40L;
+  private static final int MD5_LENGTH = 16;
+
+  private final TempFolder tempFolder;
+  private final long memoryBudget;
+  private final LinkedHashMap<Integer, FileSource> inMemory = new LinkedHashMap<>(16, 0.75F, true);
+  private final Map<Integer, Block> onDisk = new HashMap<>();
+  private long memoryUsage = 0L;
+  private File file;
+  private long fileLength = 0L;
+
+  SourceLinesCache(TempFolder tempFolder, long memoryBudget) {
+    this.tempFolder = tempFolder;
+    this.memoryBudget = memoryBudget;
+  }
+
+  @CheckForNull
+  synchronized FileSource get(int ref) {
+    FileSource source = inMemory.get(ref);
+    if (source == null) {
+      Block block = onDisk.get(ref);
+      if (block != null) {
+        source = read(block);
+        putInMemory(ref, source);
+      }
+    }
+    return source;
+  }
+
+  synchronized void put(int ref, FileSource source) {
+    putInMemory(ref, source);
+  }
+
+  synchronized void remove(int ref) {
+    FileSource source = inMemory.remove(ref);
+    if (source != null) {
+      memoryUsage -= source.weight;
+    }
+    onDisk.remove(ref);
+  }
+
+  synchronized long getMemoryUsage() {
+    return memoryUsage;
+  }
+
+  synchronized int getSpilledSources() {
+    return onDisk.size();
+  }
+
+  private void putInMemory(int ref, FileSource source) {
+    FileSource previous = inMemory.put(ref, source);
+    if (previous != null) {
+      memoryUsage -= previous.weight;
+    }
+    memoryUsage += source.weight;
+
+    // least recently used sources are spilled first. The source which has just been put is always kept in memory.
+    Iterator<Map.Entry<Integer, FileSource>> it = inMemory.entrySet().iterator();
+    while (memoryUsage > memoryBudget && inMemory.size() > 1) {
+      Map.Entry<Integer, FileSource> eldest = it.next();
+      if (!onDisk.containsKey(eldest.getKey())) {
+        onDisk.put(eldest.getKey(), write(eldest.getValue()));
+      }
+      memoryUsage -= eldest.getValue().weight;
+      it.remove();
+    }
+  }
+
+  private Block write(FileSource source) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream output = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+        writeBytes(output, source.srcHash.getBytes(UTF_8));
+        output.writeInt(source.lines.size());
+        for (String line : source.lines) {
+          writeBytes(output, line.getBytes(UTF_8));
+        }
+        for (String lineHash : source.lineHashes) {
+          // hashes of empty lines are empty
+          output.writeBoolean(!lineHash.isEmpty());
+          if (!lineHash.isEmpty()) {
+            output.write(Hex.decodeHex(lineHash.toCharArray()));
+          }
+        }
+      }
+      if (file == null) {
+        file = tempFolder.newFile("sources", ".dat");
+      }
+      try (OutputStream output = new FileOutputStream(file, true)) {
+        bytes.writeTo(output);
+      }
+      Block block = new Block(fileLength, bytes.size());
+      fileLength += bytes.size();
+      return block;
+    } catch (IOException | DecoderException e) {
+      throw new IllegalStateException("Fail to write sources to " + file, e);
+    }
+  }
+
+  private FileSource read(Block block) {
+    byte[] bytes = new byte[block.length];
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+      randomAccessFile.seek(block.position);
+      randomAccessFile.readFully(bytes);
+      try (DataInputStream input = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)))) {
+        String srcHash = new String(readBytes(input), UTF_8);
+        int lineCount = input.readInt();
+        List<String> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+          lines.add(new String(readBytes(input), UTF_8));
+        }
+        List<String> lineHashes = new ArrayList<>(lineCount);
+        byte[] md5 = new byte[MD5_LENGTH];
+        for (int i = 0; i < lineCount; i++) {
+          if (input.readBoolean()) {
+            input.readFully(md5);
+            lineHashes.add(Hex.encodeHexString(md5));
+          } else {
+            lineHashes.add("");
+          }
+        }
+        return new FileSource(lines, lineHashes, srcHash);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read sources from " + file, e);
+    }
+  }
+
+  private static void writeBytes(DataOutputStream output, byte[] bytes) throws IOException {
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInputStream input) throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    return bytes;
+  }
+
+  static final class FileSource {
+    private final List<String> lines;
+    private final List<String> lineHashes;
+    private final String srcHash;
+    private final long weight;
+
+    FileSource(List<String> lines, List<String> lineHashes, String srcHash) {
+      this.lines = lines;
+      this.lineHashes = lineHashes;
+      this.srcHash = srcHash;
+      this.weight = weigh(lines) + weigh(lineHashes);
+    }
+
+    List<String> getLines() {
+      return lines;
+    }
+
+    List<String> getLineHashes() {
+      return lineHashes;
+    }
+
+    String getSrcHash() {
+      return srcHash;
+    }
+
+    private static long weigh(List<String> strings) {
+      long weight = OBJECT_OVERHEAD;
+      for (String s : strings) {
+        weight += OBJECT_OVERHEAD + 2L * s.length();
+      }
+      return weight;
+    }
+  }
+
+  private static final class Block {
+    private final long position;
+    private final int length;
+
+    private Block(long position, int length) {
+      this.position = position;
+      this.length = length;
+    }
+  }
+}
@@ -19,6 +19,7 @@
  */
 package org.sonar.server.computation.task.projectanalysis.source;
 
+import java.util.List;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 
@@ -38,4 +39,32 @@ public interface SourceLinesRepository {
    * @throws IllegalStateException if the file has no source code in the report
    */
   CloseableIterator<String> readLines(Component component);
+
+  /**
+   * The hashes of the source lines of a given component from the report, as computed by
+   * {@link org.sonar.core.hash.SourceLinesHashesComputer}.
+   *
+   * @throws NullPointerException if argument is {@code null}
+   * @throws IllegalArgumentException if component is not a {@link Component.Type#FILE}
+   * @throws IllegalStateException if the file has no source code in the report
+   * @see #readLines(Component)
+   */
+  List<String> readLineHashes(Component component);
+
+  /**
+   * The hash of the source of a given component from the report, as computed by
+   * {@link org.sonar.core.hash.SourceHashComputer}.
+   *
+   * @throws NullPointerException if argument is {@code null}
+   * @throws IllegalArgumentException if component is not a {@link Component.Type#FILE}
+   * @throws IllegalStateException if the file has no source code in the report
+   * @see #readLines(Component)
+   */
+  String readSourceHash(Component component);
+
+  /**
+   * Releases the source of a given component, once the last step which reads it has been executed.
+   * The source is read again from the report if it is requested afterwards.
+   */
+  void release(Component component);
 }
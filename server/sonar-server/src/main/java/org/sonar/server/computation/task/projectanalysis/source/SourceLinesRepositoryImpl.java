@@ -19,35 +19,100 @@
  */
 package org.sonar.server.computation.task.projectanalysis.source;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import java.util.ArrayList;
+import java.util.List;
+import org.sonar.api.utils.TempFolder;
+import org.sonar.core.hash.SourceHashComputer;
+import org.sonar.core.hash.SourceLinesHashesComputer;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.source.SourceLinesCache.FileSource;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static java.util.Collections.unmodifiableList;
 import static java.util.Objects.requireNonNull;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.FILE;
 
+/**
+ * Source lines are decoded from the report and hashed in a single pass. They are cached, so that the steps which need
+ * them do not read the report again, until {@link #release(Component)} is called.
+ */
 public class SourceLinesRepositoryImpl implements SourceLinesRepository {
 
+  private static final long MEMORY_BUDGET = 32L * 1024L * 1024L;
+
   private final BatchReportReader reportReader;
+  private final SourceLinesCache cache;
+
+  public SourceLinesRepositoryImpl(BatchReportReader reportReader, TempFolder tempFolder) {
+    this(reportReader, new SourceLinesCache(tempFolder, MEMORY_BUDGET));
+  }
 
-  public SourceLinesRepositoryImpl(BatchReportReader reportReader) {
+  @VisibleForTesting
+  SourceLinesRepositoryImpl(BatchReportReader reportReader, SourceLinesCache cache) {
     this.reportReader = reportReader;
+    this.cache = cache;
   }
 
   @Override
   public CloseableIterator<String> readLines(Component file) {
+    return CloseableIterator.from(getSource(file).getLines().iterator());
+  }
+
+  @Override
+  public List<String> readLineHashes(Component file) {
+    return getSource(file).getLineHashes();
+  }
+
+  @Override
+  public String readSourceHash(Component file) {
+    return getSource(file).getSrcHash();
+  }
+
+  @Override
+  public void release(Component file) {
+    checkFile(file);
+    cache.remove(file.getReportAttributes().getRef());
+  }
+
+  private FileSource getSource(Component file) {
+    checkFile(file);
+    int ref = file.getReportAttributes().getRef();
+    FileSource source = cache.get(ref);
+    if (source == null) {
+      // read out of the lock of the cache, so that several files can be read concurrently
+      source = load(file);
+      cache.put(ref, source);
+    }
+    return source;
+  }
+
+  private static void checkFile(Component file) {
     requireNonNull(file, "Component should not be bull");
     checkArgument(file.getType() == FILE, "Component '%s' is not a file", file);
+  }
 
+  private FileSource load(Component file) {
     Optional<CloseableIterator<String>> linesIteratorOptional = reportReader.readFileSource(file.getReportAttributes().getRef());
-
     checkState(linesIteratorOptional.isPresent(), "File '%s' has no source code", file);
-    CloseableIterator<String> lineIterator = linesIteratorOptional.get();
 
-    return new ComponentLinesCloseableIterator(file, lineIterator, file.getFileAttributes().getLines());
+    int numberOfLines = file.getFileAttributes().getLines();
+    List<String> lines = new ArrayList<>(numberOfLines);
+    SourceLinesHashesComputer linesHashesComputer = new SourceLinesHashesComputer(numberOfLines);
+    SourceHashComputer sourceHashComputer = new SourceHashComputer();
+    try (CloseableIterator<String> linesIterator = new ComponentLinesCloseableIterator(file, linesIteratorOptional.get(), numberOfLines)) {
+      while (linesIterator.hasNext()) {
+        String line = linesIterator.next();
+        lines.add(line);
+        linesHashesComputer.addLine(line);
+        sourceHashComputer.addLine(line, linesIterator.hasNext());
+      }
+    }
+    return new FileSource(unmodifiableList(lines), linesHashesComputer.getLineHashes(), sourceHashComputer.getHash());
   }
 
   private static class ComponentLinesCloseableIterator extends CloseableIterator<String> {
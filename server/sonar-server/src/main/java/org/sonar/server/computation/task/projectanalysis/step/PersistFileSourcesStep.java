@@ -19,6 +19,7 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
 import java.util.ArrayList;
@@ -55,6 +56,7 @@ import org.sonar.server.computation.task.projectanalysis.source.HighlightingLine
 import org.sonar.server.computation.task.projectanalysis.source.LineReader;
 import org.sonar.server.computation.task.projectanalysis.source.RangeOffsetConverter;
 import org.sonar.server.computation.task.projectanalysis.source.ScmLineReader;
+import org.sonar.server.computation.task.projectanalysis.source.SourceInputsHasher;
 import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepository;
 import org.sonar.server.computation.task.projectanalysis.source.SymbolsLineReader;
 import org.sonar.server.computation.task.step.ComputationStep;
@@ -62,6 +64,7 @@ import org.sonar.server.computation.task.step.ComputationStep;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
 public class PersistFileSourcesStep implements ComputationStep {
+  private static final Joiner LINE_RETURN_JOINER = Joiner.on('\n');
 
   private final DbClient dbClient;
   private final System2 system2;
@@ -70,6 +73,7 @@ public class PersistFileSourcesStep implements ComputationStep {
   private final SourceLinesRepository sourceLinesRepository;
   private final ScmInfoRepository scmInfoRepository;
   private final DuplicationRepository duplicationRepository;
+  private final SourceInputsHasher sourceInputsHasher;
 
   public PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
     ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository) {
@@ -80,6 +84,7 @@ public class PersistFileSourcesStep implements ComputationStep {
     this.sourceLinesRepository = sourceLinesRepository;
     this.scmInfoRepository = scmInfoRepository;
     this.duplicationRepository = duplicationRepository;
+    this.sourceInputsHasher = new SourceInputsHasher(reportReader, scmInfoRepository, duplicationRepository);
   }
 
   @Override
@@ -118,28 +123,45 @@ public class PersistFileSourcesStep implements ComputationStep {
 
     @Override
     public void visitFile(Component file) {
+      try {
+        // hashes have already been computed when source has been read from report
+        String srcHash = sourceLinesRepository.readSourceHash(file);
+        String inputsHash = sourceInputsHasher.hash(file, srcHash);
+        FileSourceDto previousDto = previousFileSourcesByUuid.get(file.getUuid());
+        if (previousDto != null && inputsHash.equals(previousDto.getInputsHash())) {
+          // none of the data the file source is computed from has changed since previous analysis
+          return;
+        }
+        persistSource(file, srcHash, inputsHash, previousDto);
+      } catch (Exception e) {
+        throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
+      } finally {
+        // this step is the last one to read sources
+        sourceLinesRepository.release(file);
+      }
+    }
+
+    private void persistSource(Component file, String srcHash, String inputsHash, @Nullable FileSourceDto previousDto) {
       CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
       LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file);
       try {
         ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), file.getFileAttributes().getLines());
         ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
-        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
-      } catch (Exception e) {
-        throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
+        persistSource(fileSourceData, file, srcHash, inputsHash, previousDto, lineReaders.getLatestChange());
       } finally {
         linesIterator.close();
         lineReaders.close();
       }
     }
 
-    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
+    private void persistSource(ComputeFileSourceData.Data fileSourceData, Component file, String srcHash, String inputsHash,
+      @Nullable FileSourceDto previousDto, @Nullable Changeset latestChange) {
       DbFileSources.Data fileData = fileSourceData.getFileSourceData();
+      String componentUuid = file.getUuid();
 
       byte[] data = FileSourceDto.encodeSourceData(fileData);
       String dataHash = DigestUtils.md5Hex(data);
-      String srcHash = fileSourceData.getSrcHash();
-      String lineHashes = fileSourceData.getLineHashes();
-      FileSourceDto previousDto = previousFileSourcesByUuid.get(componentUuid);
+      String lineHashes = LINE_RETURN_JOINER.join(sourceLinesRepository.readLineHashes(file));
 
       if (previousDto == null) {
         FileSourceDto dto = new FileSourceDto()
@@ -150,6 +172,7 @@ public class PersistFileSourcesStep implements ComputationStep {
           .setSrcHash(srcHash)
           .setDataHash(dataHash)
           .setLineHashes(lineHashes)
+          .setInputsHash(inputsHash)
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
           .setRevision(computeRevision(latestChange));
@@ -168,9 +191,17 @@ public class PersistFileSourcesStep implements ComputationStep {
             .setSrcHash(srcHash)
             .setLineHashes(lineHashes)
             .setRevision(revision)
+            .setInputsHash(inputsHash)
             .setUpdatedAt(system2.now());
           dbClient.fileSourceDao().update(session, previousDto);
           session.commit();
+        } else {
+          // data is unchanged, only the hash of its inputs differs, for example because it has never been computed
+          // (progressive migration). Only the inputs hash is written, date of update is kept as the file source
+          // does not need to be indexed again.
+          previousDto.setInputsHash(inputsHash);
+          dbClient.fileSourceDao().updateInputsHash(session, previousDto);
+          session.commit();
         }
       }
     }
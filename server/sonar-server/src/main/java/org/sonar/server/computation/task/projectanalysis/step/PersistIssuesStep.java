@@ -19,91 +19,262 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.CheckForNull;
+import org.apache.ibatis.executor.BatchResult;
+import org.sonar.api.config.Settings;
 import org.sonar.api.issue.IssueComment;
 import org.sonar.api.utils.System2;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.DefaultIssueComment;
 import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.MyBatis;
 import org.sonar.db.issue.IssueChangeDto;
-import org.sonar.db.issue.IssueChangeMapper;
 import org.sonar.db.issue.IssueDto;
 import org.sonar.db.issue.IssueMapper;
-import org.sonar.server.computation.task.projectanalysis.issue.UpdateConflictResolver;
-import org.sonar.db.DbSession;
-import org.sonar.db.MyBatis;
 import org.sonar.server.computation.task.projectanalysis.issue.IssueCache;
 import org.sonar.server.computation.task.projectanalysis.issue.RuleRepository;
-import org.sonar.db.DbClient;
-import org.sonar.core.util.CloseableIterator;
+import org.sonar.server.computation.task.projectanalysis.issue.UpdateConflictResolver;
 import org.sonar.server.computation.task.step.ComputationStep;
 
+/**
+ * Persists new and changed issues of {@link IssueCache}. Issues are read from the cache by a background thread while
+ * the previous ones are written. Inserts of issues, updates of issues and inserts of changes are grouped in distinct
+ * batches of {@link #BATCH_SIZE_PROPERTY} rows, each batch being sent to the database in a single round-trip.
+ */
 public class PersistIssuesStep implements ComputationStep {
 
+  @VisibleForTesting
+  static final String BATCH_SIZE_PROPERTY = "sonar.internal.ce.persistIssues.batchSize";
+  private static final int DEFAULT_BATCH_SIZE = 1000;
+
   private final DbClient dbClient;
   private final System2 system2;
   private final UpdateConflictResolver conflictResolver;
   private final RuleRepository ruleRepository;
   private final IssueCache issueCache;
+  private final int batchSize;
 
   public PersistIssuesStep(DbClient dbClient, System2 system2, UpdateConflictResolver conflictResolver,
-    RuleRepository ruleRepository, IssueCache issueCache) {
+    RuleRepository ruleRepository, IssueCache issueCache, Settings settings) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.conflictResolver = conflictResolver;
     this.ruleRepository = ruleRepository;
     this.issueCache = issueCache;
+    this.batchSize = settings.getInt(BATCH_SIZE_PROPERTY);
+  }
+
+  @VisibleForTesting
+  int getBatchSize() {
+    return batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
   }
 
   @Override
   public void execute() {
     DbSession session = dbClient.openSession(true);
-    IssueMapper mapper = session.getMapper(IssueMapper.class);
-    IssueChangeMapper changeMapper = session.getMapper(IssueChangeMapper.class);
-
-    CloseableIterator<DefaultIssue> issues = issueCache.traverse();
+    IssueReader reader = new IssueReader(issueCache.traverse(), getBatchSize());
     try {
-      while (issues.hasNext()) {
-        DefaultIssue issue = issues.next();
-        boolean saved = false;
-        if (issue.isNew()) {
-          Integer ruleId = ruleRepository.getByKey(issue.ruleKey()).getId();
-          IssueDto dto = IssueDto.toDtoForComputationInsert(issue, ruleId, system2.now());
-          mapper.insert(dto);
-          saved = true;
-        } else if (issue.isChanged()) {
-          IssueDto dto = IssueDto.toDtoForUpdate(issue, system2.now());
-          int updateCount = mapper.updateIfBeforeSelectedDate(dto);
-          if (updateCount == 0) {
-            // End-user and scan changed the issue at the same time.
-            // See https://jira.sonarsource.com/browse/SONAR-4309
-            conflictResolver.resolve(issue, mapper);
-          }
-          saved = true;
-        }
-        if (saved) {
-          insertChanges(changeMapper, issue);
-        }
+      Batches batches = new Batches(session);
+      DefaultIssue issue = reader.next();
+      while (issue != null) {
+        batches.add(issue);
+        issue = reader.next();
       }
-      session.flushStatements();
+      batches.flush();
       session.commit();
     } finally {
+      reader.close();
       MyBatis.closeQuietly(session);
-      issues.close();
     }
   }
 
-  private static void insertChanges(IssueChangeMapper mapper, DefaultIssue issue) {
-    for (IssueComment comment : issue.comments()) {
-      DefaultIssueComment c = (DefaultIssueComment) comment;
-      if (c.isNew()) {
-        IssueChangeDto changeDto = IssueChangeDto.of(c);
-        mapper.insert(changeDto);
+  private class Batches {
+    private final DbSession session;
+    private final IssueMapper mapper;
+    private final List<IssueDto> inserts = new ArrayList<>();
+    private final List<IssueDto> updates = new ArrayList<>();
+    private final List<DefaultIssue> updatedIssues = new ArrayList<>();
+    private final List<IssueChangeDto> changes = new ArrayList<>();
+
+    private Batches(DbSession session) {
+      this.session = session;
+      this.mapper = session.getMapper(IssueMapper.class);
+    }
+
+    void add(DefaultIssue issue) {
+      if (issue.isNew()) {
+        Integer ruleId = ruleRepository.getByKey(issue.ruleKey()).getId();
+        inserts.add(IssueDto.toDtoForComputationInsert(issue, ruleId, system2.now()));
+      } else {
+        updates.add(IssueDto.toDtoForUpdate(issue, system2.now()));
+        updatedIssues.add(issue);
+      }
+      addChanges(issue);
+
+      if (inserts.size() >= getBatchSize()) {
+        flushInserts();
+      }
+      if (updates.size() >= getBatchSize()) {
+        flushUpdates();
+      }
+      if (changes.size() >= getBatchSize()) {
+        flushChanges();
+      }
+    }
+
+    private void addChanges(DefaultIssue issue) {
+      for (IssueComment comment : issue.comments()) {
+        DefaultIssueComment c = (DefaultIssueComment) comment;
+        if (c.isNew()) {
+          changes.add(IssueChangeDto.of(c));
+        }
+      }
+      FieldDiffs diffs = issue.currentChange();
+      if (!issue.isNew() && diffs != null) {
+        changes.add(IssueChangeDto.of(issue.key(), diffs));
+      }
+    }
+
+    void flush() {
+      flushInserts();
+      flushUpdates();
+      flushChanges();
+    }
+
+    private void flushInserts() {
+      if (!inserts.isEmpty()) {
+        dbClient.issueDao().insert(session, inserts);
+        session.flushStatements();
+        inserts.clear();
+      }
+    }
+
+    private void flushChanges() {
+      if (!changes.isEmpty()) {
+        dbClient.issueChangeDao().insert(session, changes);
+        session.flushStatements();
+        changes.clear();
+      }
+    }
+
+    /**
+     * Updates are executed in their own batch so that the number of rows updated by each statement is known.
+     */
+    private void flushUpdates() {
+      if (updates.isEmpty()) {
+        return;
+      }
+      Map<Object, DefaultIssue> issuesByDto = new IdentityHashMap<>();
+      for (int i = 0; i < updates.size(); i++) {
+        mapper.updateIfBeforeSelectedDate(updates.get(i));
+        issuesByDto.put(updates.get(i), updatedIssues.get(i));
+      }
+      List<DefaultIssue> conflicts = new ArrayList<>();
+      for (BatchResult result : session.flushStatements()) {
+        int[] updateCounts = result.getUpdateCounts();
+        List<Object> parameters = result.getParameterObjects();
+        for (int i = 0; i < updateCounts.length; i++) {
+          if (updateCounts[i] == 0) {
+            conflicts.add(issuesByDto.get(parameters.get(i)));
+          }
+        }
+      }
+      for (DefaultIssue conflict : conflicts) {
+        // End-user and scan changed the issue at the same time.
+        // See https://jira.sonarsource.com/browse/SONAR-4309
+        conflictResolver.resolve(conflict, mapper);
+      }
+      session.flushStatements();
+      updates.clear();
+      updatedIssues.clear();
+    }
+  }
+
+  /**
+   * Deserializes, in a background thread, the issues to be persisted, so that reading the cache is executed
+   * while the database is written. The end of issues, or the failure of reading, is signaled by {@link #END_OF_ISSUES}.
+   */
+  private static class IssueReader implements AutoCloseable {
+    private static final DefaultIssue END_OF_ISSUES = new DefaultIssue();
+
+    private final CloseableIterator<DefaultIssue> issues;
+    private final BlockingQueue<DefaultIssue> queue;
+    private final ExecutorService executor;
+    private final Future<Void> reading;
+    private boolean ended = false;
+
+    IssueReader(CloseableIterator<DefaultIssue> issues, int capacity) {
+      this.issues = issues;
+      this.queue = new ArrayBlockingQueue<>(capacity);
+      this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("PersistIssuesStep-%d").setDaemon(true).build());
+      this.reading = executor.submit(this::read);
+    }
+
+    private Void read() throws InterruptedException {
+      try {
+        while (issues.hasNext()) {
+          DefaultIssue issue = issues.next();
+          if (issue.isNew() || issue.isChanged()) {
+            queue.put(issue);
+          }
+        }
+        return null;
+      } finally {
+        try {
+          issues.close();
+        } finally {
+          queue.put(END_OF_ISSUES);
+        }
+      }
+    }
+
+    /**
+     * @return the next issue to be persisted, or {@code null} when all the issues have been read
+     */
+    @CheckForNull
+    DefaultIssue next() {
+      if (ended) {
+        return null;
+      }
+      try {
+        DefaultIssue issue = queue.take();
+        if (issue == END_OF_ISSUES) {
+          ended = true;
+          // propagates failure of reading, if any
+          reading.get();
+          return null;
+        }
+        return issue;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while reading issues", e);
+      } catch (ExecutionException e) {
+        throw Throwables.propagate(e.getCause());
       }
     }
-    FieldDiffs diffs = issue.currentChange();
-    if (!issue.isNew() && diffs != null) {
-      IssueChangeDto changeDto = IssueChangeDto.of(issue.key(), diffs);
-      mapper.insert(changeDto);
+
+    @Override
+    public void close() {
+      if (!executor.shutdownNow().isEmpty()) {
+        // reading has never started
+        issues.close();
+      }
     }
   }
 
@@ -22,7 +22,6 @@ package org.sonar.server.computation.taskprocessor;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListenableScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.CheckForNull;
@@ -31,8 +30,7 @@ import org.picocontainer.Startable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.computation.configuration.CeConfiguration;
-
-import static com.google.common.util.concurrent.Futures.addCallback;
+import org.sonar.server.computation.queue.InternalCeQueue;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startable {
@@ -40,15 +38,17 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
 
   private final CeProcessingSchedulerExecutorService executorService;
   private final CeWorkerCallable workerRunnable;
+  private final InternalCeQueue queue;
 
   private final long delayBetweenTasks;
   private final TimeUnit timeUnit;
   private final ChainingCallback[] chainingCallbacks;
 
   public CeProcessingSchedulerImpl(CeConfiguration ceConfiguration,
-    CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerCallable workerRunnable) {
+    CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerCallable workerRunnable, InternalCeQueue queue) {
     this.executorService = processingExecutorService;
     this.workerRunnable = workerRunnable;
+    this.queue = queue;
 
     this.delayBetweenTasks = ceConfiguration.getQueuePollingDelay();
     this.timeUnit = MILLISECONDS;
@@ -67,9 +67,18 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
 
   @Override
   public void startScheduling() {
+    queue.addTasksAvailableListener(this::wakeUpWorkers);
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      chainingCallback.chainWithDelay();
+    }
+  }
+
+  /**
+   * Workers waiting for the next polling of the queue are executed right away
+   */
+  private void wakeUpWorkers() {
     for (ChainingCallback chainingCallback : chainingCallbacks) {
-      ListenableScheduledFuture<Boolean> future = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
-      addCallback(future, chainingCallback, executorService);
+      chainingCallback.wakeUp();
     }
   }
 
@@ -82,8 +91,10 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
 
   private class ChainingCallback implements FutureCallback<Boolean> {
     private final AtomicBoolean keepRunning = new AtomicBoolean(true);
+    // the future of worker and whether its execution is delayed are changed together. Guarded by this.
     @CheckForNull
     private ListenableFuture<Boolean> workerFuture;
+    private boolean delayed = false;
 
     @Override
     public void onSuccess(@Nullable Boolean result) {
@@ -103,15 +114,17 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       }
     }
 
-    private void chainWithoutDelay() {
+    private synchronized void chainWithoutDelay() {
       if (keepRunning()) {
+        delayed = false;
         workerFuture = executorService.submit(workerRunnable);
       }
       addCallback();
     }
 
-    private void chainWithDelay() {
+    private synchronized void chainWithDelay() {
       if (keepRunning()) {
+        delayed = true;
         workerFuture = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
       }
       addCallback();
@@ -123,11 +136,21 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       }
     }
 
+    /**
+     * Cancelling the delayed execution of the worker makes {@link #onFailure(Throwable)} chain it without delay.
+     */
+    public synchronized void wakeUp() {
+      if (delayed && workerFuture != null) {
+        delayed = false;
+        workerFuture.cancel(false);
+      }
+    }
+
     private boolean keepRunning() {
       return keepRunning.get();
     }
 
-    public void stop() {
+    public synchronized void stop() {
       this.keepRunning.set(false);
       if (workerFuture != null) {
         workerFuture.cancel(false);
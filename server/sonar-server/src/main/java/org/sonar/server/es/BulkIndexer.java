@@ -22,9 +22,11 @@ package org.sonar.server.es;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
 import java.util.Map;
-import java.util.concurrent.Semaphore;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
@@ -39,6 +41,7 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHitField;
 import org.elasticsearch.search.sort.SortOrder;
@@ -52,10 +55,14 @@ import static java.lang.String.format;
 /**
  * Helper to bulk requests in an efficient way :
  * <ul>
- *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
+ *   <li>bulk request is sent on the wire when its size is higher than 1Mb</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
+ *   <li>on large table indexing, size of bulk requests and number of concurrent requests are adapted
+ *   to the latency of requests and to the rejections by Elasticsearch</li>
+ *   <li>documents rejected by Elasticsearch because it is overloaded are sent again</li>
  *   <li>index refresh is optional (enabled by default)</li>
  * </ul>
+ * Metrics are exposed through JMX, see {@link BulkIndexerMBean}.
  */
 public class BulkIndexer implements Startable {
 
@@ -63,6 +70,7 @@ public class BulkIndexer implements Startable {
   private static final long FLUSH_BYTE_SIZE = new ByteSizeValue(1, ByteSizeUnit.MB).bytes();
   private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
   private static final String ALREADY_STARTED_MESSAGE = "Bulk indexing is already started";
+  private static final int MAX_RETRY_ROUNDS = 5;
 
   private final EsClient client;
   private final String indexName;
@@ -72,7 +80,10 @@ public class BulkIndexer implements Startable {
   private Map<String, Object> largeInitialSettings = null;
   private final AtomicLong counter = new AtomicLong(0L);
   private final int concurrentRequests;
-  private final Semaphore semaphore;
+  private final BulkIndexerMetrics metrics;
+  private BulkLimiter limiter;
+  private final Queue<ActionRequest> rejectedRequests = new ConcurrentLinkedQueue<>();
+  private long startedAt;
   private final ProgressLogger progress;
 
   public BulkIndexer(EsClient client, String indexName) {
@@ -83,7 +94,7 @@ public class BulkIndexer implements Startable {
 
     // see https://jira.sonarsource.com/browse/SONAR-8075
     this.concurrentRequests = Math.max(1, Runtime.getRuntime().availableProcessors() / 5);
-    this.semaphore = new Semaphore(concurrentRequests);
+    this.metrics = client.getBulkIndexerMetrics(indexName);
   }
 
   /**
@@ -96,7 +107,11 @@ public class BulkIndexer implements Startable {
     return this;
   }
 
+  /**
+   * Size in bytes above which bulk requests are sent. On large indexing, this is only the initial size, which is then adapted.
+   */
   public BulkIndexer setFlushByteSize(long flushByteSize) {
+    Preconditions.checkState(bulkRequest == null, ALREADY_STARTED_MESSAGE);
     this.flushByteSize = flushByteSize;
     return this;
   }
@@ -123,18 +138,29 @@ public class BulkIndexer implements Startable {
 
       updateSettings(bulkSettings);
     }
+    limiter = new BulkLimiter(metrics, flushByteSize, concurrentRequests, Runtime.getRuntime().availableProcessors() / 2, large);
     bulkRequest = client.prepareBulk().setRefresh(false);
     counter.set(0L);
+    startedAt = System.nanoTime();
     progress.start();
   }
 
   public void add(ActionRequest request) {
+    addRejectedRequests();
     bulkRequest.request().add(request);
-    if (bulkRequest.request().estimatedSizeInBytes() >= flushByteSize) {
+    if (bulkRequest.request().estimatedSizeInBytes() >= limiter.getFlushByteSize()) {
       executeBulk();
     }
   }
 
+  private void addRejectedRequests() {
+    ActionRequest rejected = rejectedRequests.poll();
+    while (rejected != null) {
+      bulkRequest.request().add(rejected);
+      rejected = rejectedRequests.poll();
+    }
+  }
+
   public void addDeletion(SearchRequestBuilder searchRequest) {
     searchRequest
       .addSort("_doc", SortOrder.ASC)
@@ -184,16 +210,25 @@ public class BulkIndexer implements Startable {
 
   @Override
   public void stop() {
-    if (bulkRequest.numberOfActions() > 0) {
-      executeBulk();
-    }
-    try {
-      if (semaphore.tryAcquire(concurrentRequests, 10, TimeUnit.MINUTES)) {
-        semaphore.release(concurrentRequests);
+    int retryRounds = 0;
+    do {
+      addRejectedRequests();
+      if (bulkRequest.numberOfActions() > 0) {
+        executeBulk();
+      }
+      try {
+        limiter.awaitCompletion(10, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes", e);
       }
-    } catch (InterruptedException e) {
-      throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes", e);
+      retryRounds++;
+    } while (!rejectedRequests.isEmpty() && retryRounds < MAX_RETRY_ROUNDS);
+    if (!rejectedRequests.isEmpty()) {
+      LOGGER.error("Fail to index {} documents in index [{}], Elasticsearch is overloaded", rejectedRequests.size(), indexName);
+      rejectedRequests.clear();
     }
+    long durationMs = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    metrics.setLastThroughput(counter.get() * 1_000L / durationMs);
     progress.stop();
     client.prepareRefresh(indexName).get();
     if (large) {
@@ -216,33 +251,55 @@ public class BulkIndexer implements Startable {
   private void executeBulk() {
     final BulkRequestBuilder req = this.bulkRequest;
     this.bulkRequest = client.prepareBulk().setRefresh(false);
-    semaphore.acquireUninterruptibly();
-    req.execute(new BulkResponseActionListener(req));
+    limiter.acquire();
+    req.execute(new BulkResponseActionListener(req, limiter));
   }
 
   private class BulkResponseActionListener implements ActionListener<BulkResponse> {
     private final BulkRequestBuilder req;
+    private final BulkLimiter limiter;
+    private final long sentAt = System.nanoTime();
 
-    BulkResponseActionListener(BulkRequestBuilder req) {
+    BulkResponseActionListener(BulkRequestBuilder req, BulkLimiter limiter) {
       this.req = req;
+      this.limiter = limiter;
     }
 
     @Override
     public void onResponse(BulkResponse response) {
-      semaphore.release();
-      counter.addAndGet(response.getItems().length);
-
+      long latency = System.nanoTime() - sentAt;
+      int failures = 0;
+      int retries = 0;
       for (BulkItemResponse item : response.getItems()) {
         if (item.isFailed()) {
-          LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+          if (item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+            rejectedRequests.add(req.request().requests().get(item.getItemId()));
+            retries++;
+          } else {
+            LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+            failures++;
+          }
         }
       }
+      int items = response.getItems().length;
+      counter.addAndGet(items - retries);
+      metrics.onResponse(latency, items - failures - retries, failures, retries);
+      limiter.release(TimeUnit.NANOSECONDS.toMillis(latency), retries > 0);
     }
 
     @Override
     public void onFailure(Throwable e) {
-      semaphore.release();
-      LOGGER.error("Fail to execute bulk index request: " + req, e);
+      long latency = System.nanoTime() - sentAt;
+      int items = req.request().numberOfActions();
+      boolean rejected = ExceptionsHelper.status(e) == RestStatus.TOO_MANY_REQUESTS;
+      if (rejected) {
+        rejectedRequests.addAll(req.request().requests());
+        metrics.onResponse(latency, 0, 0, items);
+      } else {
+        LOGGER.error("Fail to execute bulk index request: " + req, e);
+        metrics.onResponse(latency, 0, items, 0);
+      }
+      limiter.release(TimeUnit.NANOSECONDS.toMillis(latency), rejected);
     }
   }
 }
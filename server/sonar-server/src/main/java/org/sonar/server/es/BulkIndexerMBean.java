@@ -0,0 +1,79 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+/**
+ * Metrics of the bulk requests sent to an index since startup. There is one MBean per index,
+ * named {@link #OBJECT_NAME_PREFIX} followed by the name of the index.
+ */
+public interface BulkIndexerMBean {
+
+  String OBJECT_NAME_PREFIX = "SonarQube:name=BulkIndexer,index=";
+
+  /**
+   * Count of documents successfully indexed or deleted.
+   */
+  long getSuccessCount();
+
+  /**
+   * Count of documents which could not be indexed or deleted, excluding the ones rejected then retried.
+   */
+  long getFailureCount();
+
+  /**
+   * Count of documents rejected by Elasticsearch because it was overloaded, then sent again.
+   */
+  long getRetryCount();
+
+  /**
+   * Count of bulk requests, partially or completely rejected by Elasticsearch because it was overloaded.
+   */
+  long getRejectedRequestCount();
+
+  /**
+   * Count of bulk requests sent to Elasticsearch.
+   */
+  long getRequestCount();
+
+  /**
+   * Average time between sending a bulk request and receiving its response, in milliseconds.
+   */
+  long getAverageRequestLatency();
+
+  /**
+   * Total time spent waiting for a bulk request to be sent, because of the limit of concurrent requests, in milliseconds.
+   */
+  long getQueueWaitTime();
+
+  /**
+   * Number of documents indexed or deleted per second during the last bulk indexation.
+   */
+  long getLastThroughput();
+
+  /**
+   * Size in bytes above which the last bulk indexation sent its requests.
+   */
+  long getFlushByteSize();
+
+  /**
+   * Maximum number of concurrent requests of the last bulk indexation.
+   */
+  int getConcurrentRequests();
+}
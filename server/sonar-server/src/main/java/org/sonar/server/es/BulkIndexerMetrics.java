@@ -0,0 +1,117 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of {@link BulkIndexer}, shared by all the bulk indexations of an index.
+ *
+ * @see BulkIndexerMetricsRegistry
+ */
+class BulkIndexerMetrics implements BulkIndexerMBean {
+
+  private final AtomicLong successCount = new AtomicLong();
+  private final AtomicLong failureCount = new AtomicLong();
+  private final AtomicLong retryCount = new AtomicLong();
+  private final AtomicLong rejectedRequestCount = new AtomicLong();
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong requestLatencyNanos = new AtomicLong();
+  private final AtomicLong queueWaitNanos = new AtomicLong();
+  private volatile long lastThroughput = 0L;
+  private volatile long flushByteSize = 0L;
+  private volatile int concurrentRequests = 0;
+
+  void onResponse(long latencyNanos, int successes, int failures, int retries) {
+    requestCount.incrementAndGet();
+    requestLatencyNanos.addAndGet(latencyNanos);
+    successCount.addAndGet(successes);
+    failureCount.addAndGet(failures);
+    if (retries > 0) {
+      retryCount.addAndGet(retries);
+      rejectedRequestCount.incrementAndGet();
+    }
+  }
+
+  void onQueueWait(long nanos) {
+    queueWaitNanos.addAndGet(nanos);
+  }
+
+  void setLastThroughput(long documentsPerSecond) {
+    this.lastThroughput = documentsPerSecond;
+  }
+
+  void setLimits(long flushByteSize, int concurrentRequests) {
+    this.flushByteSize = flushByteSize;
+    this.concurrentRequests = concurrentRequests;
+  }
+
+  @Override
+  public long getSuccessCount() {
+    return successCount.get();
+  }
+
+  @Override
+  public long getFailureCount() {
+    return failureCount.get();
+  }
+
+  @Override
+  public long getRetryCount() {
+    return retryCount.get();
+  }
+
+  @Override
+  public long getRejectedRequestCount() {
+    return rejectedRequestCount.get();
+  }
+
+  @Override
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  @Override
+  public long getAverageRequestLatency() {
+    long requests = requestCount.get();
+    return requests == 0L ? 0L : TimeUnit.NANOSECONDS.toMillis(requestLatencyNanos.get() / requests);
+  }
+
+  @Override
+  public long getQueueWaitTime() {
+    return TimeUnit.NANOSECONDS.toMillis(queueWaitNanos.get());
+  }
+
+  @Override
+  public long getLastThroughput() {
+    return lastThroughput;
+  }
+
+  @Override
+  public long getFlushByteSize() {
+    return flushByteSize;
+  }
+
+  @Override
+  public int getConcurrentRequests() {
+    return concurrentRequests;
+  }
+}
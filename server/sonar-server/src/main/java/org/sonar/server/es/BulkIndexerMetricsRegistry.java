@@ -0,0 +1,79 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.picocontainer.Startable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.server.ServerSide;
+import org.sonar.process.Jmx;
+
+/**
+ * Metrics of {@link BulkIndexer} by index. Each index has its own MBean, registered when the index is bulk
+ * indexed for the first time and unregistered when the container is stopped.
+ */
+@ServerSide
+@ComputeEngineSide
+public class BulkIndexerMetricsRegistry implements Startable {
+
+  private final ConcurrentMap<String, BulkIndexerMetrics> metricsByIndex = new ConcurrentHashMap<>();
+  private boolean started = false;
+
+  @Override
+  public synchronized void start() {
+    started = true;
+    metricsByIndex.forEach(BulkIndexerMetricsRegistry::register);
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (started) {
+      started = false;
+      metricsByIndex.keySet().forEach(indexName -> Jmx.unregister(objectName(indexName)));
+    }
+  }
+
+  BulkIndexerMetrics forIndex(String indexName) {
+    BulkIndexerMetrics metrics = metricsByIndex.get(indexName);
+    if (metrics == null) {
+      metrics = createMetrics(indexName);
+    }
+    return metrics;
+  }
+
+  private synchronized BulkIndexerMetrics createMetrics(String indexName) {
+    return metricsByIndex.computeIfAbsent(indexName, name -> {
+      BulkIndexerMetrics metrics = new BulkIndexerMetrics();
+      if (started) {
+        register(name, metrics);
+      }
+      return metrics;
+    });
+  }
+
+  private static void register(String indexName, BulkIndexerMetrics metrics) {
+    Jmx.register(objectName(indexName), metrics);
+  }
+
+  static String objectName(String indexName) {
+    return BulkIndexerMBean.OBJECT_NAME_PREFIX + indexName;
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the size of bulk requests and the number of concurrent bulk requests of a {@link BulkIndexer}.
+ * <p>
+ * In adaptive mode, both limits are increased while requests are quickly executed, and are decreased
+ * when requests are slow or rejected by Elasticsearch (additive increase, multiplicative decrease).
+ * Otherwise they never change.
+ * </p>
+ */
+class BulkLimiter {
+
+  static final long FLUSH_BYTE_SIZE_STEP = 1024L * 1024L;
+  static final long MIN_FLUSH_BYTE_SIZE = 256L * 1024L;
+  static final long MAX_FLUSH_BYTE_SIZE = 16L * FLUSH_BYTE_SIZE_STEP;
+  static final long LOW_LATENCY_MS = 500L;
+  static final long HIGH_LATENCY_MS = 3_000L;
+
+  private final BulkIndexerMetrics metrics;
+  private final boolean adaptive;
+  private final int maxConcurrentRequests;
+  private long flushByteSize;
+  private int concurrentRequests;
+  private int inProgressRequests = 0;
+
+  BulkLimiter(BulkIndexerMetrics metrics, long flushByteSize, int concurrentRequests, int maxConcurrentRequests, boolean adaptive) {
+    this.metrics = metrics;
+    this.flushByteSize = flushByteSize;
+    this.concurrentRequests = concurrentRequests;
+    this.maxConcurrentRequests = Math.max(concurrentRequests, maxConcurrentRequests);
+    this.adaptive = adaptive;
+    metrics.setLimits(flushByteSize, concurrentRequests);
+  }
+
+  synchronized long getFlushByteSize() {
+    return flushByteSize;
+  }
+
+  synchronized int getConcurrentRequests() {
+    return concurrentRequests;
+  }
+
+  /**
+   * Waits, without being interruptible, until a new request can be sent.
+   */
+  synchronized void acquire() {
+    long start = System.nanoTime();
+    boolean interrupted = false;
+    while (inProgressRequests >= concurrentRequests) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    inProgressRequests++;
+    metrics.onQueueWait(System.nanoTime() - start);
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Called when the response of a request is received.
+   *
+   * @param latencyMs time between sending the request and receiving its response
+   * @param rejected whether the request has been totally or partially rejected because Elasticsearch is overloaded
+   */
+  synchronized void release(long latencyMs, boolean rejected) {
+    inProgressRequests--;
+    if (adaptive) {
+      adapt(latencyMs, rejected);
+    }
+    notifyAll();
+  }
+
+  private void adapt(long latencyMs, boolean rejected) {
+    if (rejected) {
+      concurrentRequests = Math.max(1, concurrentRequests / 2);
+      flushByteSize = Math.max(MIN_FLUSH_BYTE_SIZE, flushByteSize / 2);
+    } else if (latencyMs > HIGH_LATENCY_MS) {
+      flushByteSize = Math.max(MIN_FLUSH_BYTE_SIZE, flushByteSize / 2);
+    } else if (latencyMs < LOW_LATENCY_MS) {
+      concurrentRequests = Math.min(maxConcurrentRequests, concurrentRequests + 1);
+      flushByteSize = Math.min(MAX_FLUSH_BYTE_SIZE, flushByteSize + FLUSH_BYTE_SIZE_STEP);
+    }
+    metrics.setLimits(flushByteSize, concurrentRequests);
+  }
+
+  /**
+   * Waits until all the requests are completed.
+   *
+   * @return false if some requests are still in progress after the timeout
+   */
+  synchronized boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (inProgressRequests > 0) {
+      long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      if (remaining <= 0L) {
+        return false;
+      }
+      wait(remaining);
+    }
+    return true;
+  }
+}
@@ -79,9 +79,19 @@ public class EsClient implements Closeable {
   public static final Logger LOGGER = Loggers.get("es");
 
   private final Client nativeClient;
+  private final BulkIndexerMetricsRegistry bulkIndexerMetrics;
 
   public EsClient(Client nativeClient) {
+    this(nativeClient, new BulkIndexerMetricsRegistry());
+  }
+
+  public EsClient(Client nativeClient, BulkIndexerMetricsRegistry bulkIndexerMetrics) {
     this.nativeClient = requireNonNull(nativeClient);
+    this.bulkIndexerMetrics = requireNonNull(bulkIndexerMetrics);
+  }
+
+  BulkIndexerMetrics getBulkIndexerMetrics(String indexName) {
+    return bulkIndexerMetrics.forIndex(indexName);
   }
 
   public RefreshRequestBuilder prepareRefresh(String... indices) {
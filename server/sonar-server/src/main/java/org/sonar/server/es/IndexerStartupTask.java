@@ -19,9 +19,21 @@
  */
 package org.sonar.server.es;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.api.utils.log.Profiler;
 import org.sonar.server.component.index.ComponentIndexer;
 import org.sonar.server.issue.index.IssueIndexer;
 import org.sonar.server.measure.index.ProjectMeasuresIndexer;
@@ -30,8 +42,15 @@ import org.sonar.server.test.index.TestIndexer;
 import org.sonar.server.user.index.UserIndexer;
 import org.sonar.server.view.index.ViewIndexer;
 
+/**
+ * Indexes the data missing in Elasticsearch. Authorizations are indexed first, then the other indices are indexed
+ * one after the other, or concurrently when the internal property {@link #CONCURRENCY_PROPERTY} is greater than 1.
+ */
 public class IndexerStartupTask {
 
+  @VisibleForTesting
+  static final String CONCURRENCY_PROPERTY = "sonar.internal.es.startupIndexing.concurrency";
+
   private static final Logger LOG = Loggers.get(IndexerStartupTask.class);
 
   private final TestIndexer testIndexer;
@@ -65,27 +84,49 @@ public class IndexerStartupTask {
   public void execute() {
     if (!settings.getBoolean("sonar.internal.es.disableIndexes")) {
 
-      LOG.info("Index authorization");
-      permissionIndexer.indexAllIfEmpty();
-
-      LOG.info("Index issues");
-      issueIndexer.index();
-
-      LOG.info("Index tests");
-      testIndexer.index();
-
-      LOG.info("Index users");
-      userIndexer.index();
+      // issues require authorizations to be indexed
+      index("authorization", permissionIndexer::indexAllIfEmpty);
 
-      LOG.info("Index views");
-      viewIndexer.index();
+      Map<String, Runnable> indexations = new LinkedHashMap<>();
+      indexations.put("issues", issueIndexer::index);
+      indexations.put("tests", testIndexer::index);
+      indexations.put("users", userIndexer::index);
+      indexations.put("views", viewIndexer::index);
+      indexations.put("project measures", projectMeasuresIndexer::index);
+      indexations.put("components", componentIndexer::index);
 
-      LOG.info("Index project measures");
-      projectMeasuresIndexer.index();
+      int concurrency = settings.getInt(CONCURRENCY_PROPERTY);
+      if (concurrency > 1) {
+        indexConcurrently(indexations, concurrency);
+      } else {
+        indexations.forEach(IndexerStartupTask::index);
+      }
+    }
+  }
 
-      LOG.info("Index components");
-      componentIndexer.index();
+  private static void indexConcurrently(Map<String, Runnable> indexations, int concurrency) {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, indexations.size()),
+      new ThreadFactoryBuilder().setNameFormat("IndexerStartup-%d").build());
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      indexations.forEach((label, indexation) -> futures.add(executor.submit(() -> index(label, indexation))));
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during indexation", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
     }
   }
 
+  private static void index(String label, Runnable indexation) {
+    Profiler profiler = Profiler.create(LOG).startInfo("Index " + label);
+    indexation.run();
+    profiler.stopInfo();
+  }
+
 }
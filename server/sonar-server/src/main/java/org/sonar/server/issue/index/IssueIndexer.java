@@ -19,12 +19,21 @@
  */
 package org.sonar.server.issue.index;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.Nullable;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
@@ -44,17 +53,38 @@ import static org.sonar.server.issue.index.IssueIndexDefinition.FIELD_ISSUE_TECH
 import static org.sonar.server.issue.index.IssueIndexDefinition.INDEX;
 import static org.sonar.server.issue.index.IssueIndexDefinition.TYPE_ISSUE;
 
+/**
+ * Indexes issues. A full indexation is done by a pool of {@link #THREADS_PROPERTY} threads when this
+ * internal property is greater than 1: issues are partitioned by ranges of project UUIDs, which are read concurrently
+ * on different connections to database. Documents are built by the threads reading them and are then sent to
+ * Elasticsearch by a single {@link BulkIndexer}.
+ */
 public class IssueIndexer extends BaseIndexer implements ProjectIndexer, NeedAuthorizationIndexer {
 
+  @VisibleForTesting
+  static final String THREADS_PROPERTY = "sonar.internal.es.issues.indexing.threads";
+
+  /**
+   * Projects do not have the same number of issues, so there are more partitions than threads
+   * to balance the load between threads.
+   */
+  private static final int PARTITIONS_PER_THREAD = 4;
   private static final String DELETE_ERROR_MESSAGE = "Fail to delete some issues of project [%s]";
   private static final int MAX_BATCH_SIZE = 1000;
   private static final AuthorizationScope AUTHORIZATION_SCOPE = new AuthorizationScope(INDEX, project -> Qualifiers.PROJECT.equals(project.getQualifier()));
 
   private final DbClient dbClient;
+  private final int threads;
 
-  public IssueIndexer(System2 system2, DbClient dbClient, EsClient esClient) {
+  public IssueIndexer(System2 system2, DbClient dbClient, EsClient esClient, Settings settings) {
     super(system2, esClient, 300, INDEX, TYPE_ISSUE, FIELD_ISSUE_TECHNICAL_UPDATED_AT);
     this.dbClient = dbClient;
+    this.threads = settings.getInt(THREADS_PROPERTY);
+  }
+
+  @VisibleForTesting
+  int getThreads() {
+    return threads > 0 ? threads : 1;
   }
 
   @Override
@@ -96,6 +126,9 @@ public class IssueIndexer extends BaseIndexer implements ProjectIndexer, NeedAut
   }
 
   private long doIndex(BulkIndexer bulk, long lastUpdatedAt, @Nullable String projectUuid) {
+    if (lastUpdatedAt == 0L && projectUuid == null && getThreads() > 1) {
+      return doIndexConcurrently(bulk);
+    }
     try (DbSession dbSession = dbClient.openSession(false)) {
       IssueResultSetIterator rowIt = IssueResultSetIterator.create(dbClient, dbSession, lastUpdatedAt, projectUuid);
       long maxDate = doIndex(bulk, rowIt);
@@ -118,6 +151,62 @@ public class IssueIndexer extends BaseIndexer implements ProjectIndexer, NeedAut
     return maxDate;
   }
 
+  private long doIndexConcurrently(BulkIndexer bulk) {
+    List<String> projectUuids;
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      projectUuids = IssueResultSetIterator.selectProjectUuids(dbClient, dbSession);
+    }
+    // bounds of partitions, in the order of database. The first partition is not bounded below.
+    int partitions = Math.min(projectUuids.size(), getThreads() * PARTITIONS_PER_THREAD);
+    List<String> bounds = new ArrayList<>(partitions + 1);
+    bounds.add(null);
+    for (int i = 1; i < partitions; i++) {
+      bounds.add(projectUuids.get(i * projectUuids.size() / partitions));
+    }
+    bounds.add(null);
+
+    bulk.start();
+    ExecutorService executor = Executors.newFixedThreadPool(getThreads(), new ThreadFactoryBuilder().setNameFormat("IssueIndexer-%d").build());
+    try {
+      List<Future<Long>> futures = new ArrayList<>();
+      for (int i = 0; i < partitions; i++) {
+        String fromProjectUuid = bounds.get(i);
+        String toProjectUuid = bounds.get(i + 1);
+        futures.add(executor.submit(() -> indexProjectRange(bulk, fromProjectUuid, toProjectUuid)));
+      }
+      long maxDate = 0L;
+      for (Future<Long> future : futures) {
+        maxDate = Math.max(maxDate, future.get());
+      }
+      bulk.stop();
+      return maxDate;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during indexation of issues", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private long indexProjectRange(BulkIndexer bulk, @Nullable String fromProjectUuid, @Nullable String toProjectUuid) {
+    try (DbSession dbSession = dbClient.openSession(false);
+      IssueResultSetIterator rowIt = IssueResultSetIterator.createForProjectRange(dbClient, dbSession, fromProjectUuid, toProjectUuid)) {
+      long maxDate = 0L;
+      while (rowIt.hasNext()) {
+        IssueDoc issue = rowIt.next();
+        IndexRequest request = newIndexRequest(issue);
+        // BulkIndexer is not thread-safe
+        synchronized (bulk) {
+          bulk.add(request);
+        }
+        maxDate = Math.max(maxDate, issue.getTechnicalUpdateDate().getTime());
+      }
+      return maxDate;
+    }
+  }
+
   @Override
   public void deleteProject(String uuid) {
     BulkIndexer bulk = new BulkIndexer(esClient, INDEX);
@@ -27,7 +27,9 @@ import com.google.common.collect.Maps;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.lang.StringUtils;
@@ -92,6 +94,8 @@ class IssueResultSetIterator extends ResultSetIterator<IssueDoc> {
 
   private static final String PROJECT_FILTER = " AND root.uuid=?";
 
+  private static final String SQL_PROJECT_UUIDS = "select distinct i.project_uuid from issues i order by i.project_uuid";
+
   private static final Splitter TAGS_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
 
   private static final Splitter MODULE_PATH_SPLITTER = Splitter.on('.').trimResults().omitEmptyStrings();
@@ -119,6 +123,52 @@ class IssueResultSetIterator extends ResultSetIterator<IssueDoc> {
     }
   }
 
+  /**
+   * Selects the issues of the projects whose UUID is greater than or equal to {@code fromProjectUuid} and less
+   * than {@code toProjectUuid}. Bounds are ignored when {@code null}.
+   */
+  static IssueResultSetIterator createForProjectRange(DbClient dbClient, DbSession session, @Nullable String fromProjectUuid,
+    @Nullable String toProjectUuid) {
+    try {
+      List<String> conditions = new ArrayList<>();
+      if (fromProjectUuid != null) {
+        conditions.add("i.project_uuid>=?");
+      }
+      if (toProjectUuid != null) {
+        conditions.add("i.project_uuid<?");
+      }
+      String sql = conditions.isEmpty() ? SQL_ALL : (SQL_ALL + " where " + StringUtils.join(conditions, " and "));
+      PreparedStatement stmt = dbClient.getMyBatis().newScrollingSelectStatement(session, sql);
+      int index = 1;
+      if (fromProjectUuid != null) {
+        stmt.setString(index, fromProjectUuid);
+        index++;
+      }
+      if (toProjectUuid != null) {
+        stmt.setString(index, toProjectUuid);
+      }
+      return new IssueResultSetIterator(stmt);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to prepare SQL request to select issues of projects from " + fromProjectUuid + " to " + toProjectUuid, e);
+    }
+  }
+
+  /**
+   * UUIDs of the projects having issues, in the order of the database
+   */
+  static List<String> selectProjectUuids(DbClient dbClient, DbSession session) {
+    List<String> uuids = new ArrayList<>();
+    try (PreparedStatement stmt = dbClient.getMyBatis().newScrollingSelectStatement(session, SQL_PROJECT_UUIDS);
+      ResultSet rs = stmt.executeQuery()) {
+      while (rs.next()) {
+        uuids.add(rs.getString(1));
+      }
+      return uuids;
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to select UUIDs of projects having issues", e);
+    }
+  }
+
   @CheckForNull
   private static String extractDirPath(@Nullable String filePath, String scope) {
     if (filePath != null) {
@@ -52,6 +52,7 @@ import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTreeQuery;
 import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.measure.MeasureDto;
+import org.sonar.db.measure.MeasureQuery;
 import org.sonar.db.measure.MeasureTreeQuery;
 import org.sonar.db.metric.MetricDto;
 import org.sonar.db.metric.MetricDtoFunctions;
@@ -104,14 +105,15 @@ public class ComponentTreeDataLoader {
       ComponentTreeQuery componentTreeQuery = toComponentTreeQuery(wsRequest, baseComponent);
       List<ComponentDto> components = searchComponents(dbSession, componentTreeQuery);
       List<MetricDto> metrics = searchMetrics(dbSession, wsRequest);
-      Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, componentTreeQuery, components,
-        metrics, developerId);
-
-      components = filterComponents(components, measuresByComponentUuidAndMetric, metrics, wsRequest);
-      components = sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
+      // only measures of the metric to sort by are loaded for the whole tree
+      Table<String, MetricDto, MeasureDto> sortMeasuresByComponentUuidAndMetric = searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, componentTreeQuery,
+        components, metricToSort(metrics, wsRequest), developerId);
 
+      components = filterComponents(components, sortMeasuresByComponentUuidAndMetric, metrics, wsRequest);
       int componentCount = components.size();
-      components = paginateComponents(components, wsRequest);
+      components = sortAndPaginateComponents(components, wsRequest, metrics, sortMeasuresByComponentUuidAndMetric);
+
+      Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = searchMeasuresOfPage(dbSession, baseComponent, components, metrics, developerId);
 
       return ComponentTreeData.builder()
         .setBaseComponent(baseComponent)
@@ -198,6 +200,45 @@ public class ComponentTreeDataLoader {
     return measuresByComponentUuidAndMetric;
   }
 
+  private static List<MetricDto> metricToSort(List<MetricDto> metrics, ComponentTreeWsRequest wsRequest) {
+    String metricKeyToSort = wsRequest.getMetricSort();
+    if (metricKeyToSort == null) {
+      return Collections.emptyList();
+    }
+    return metrics.stream()
+      .filter(m -> metricKeyToSort.equals(m.getKey()))
+      .collect(Collectors.toList(1));
+  }
+
+  /**
+   * Measures of the requested metrics, for the base component and the components of the page only
+   */
+  private Table<String, MetricDto, MeasureDto> searchMeasuresOfPage(DbSession dbSession, ComponentDto baseComponent, List<ComponentDto> components,
+    List<MetricDto> metrics, @Nullable Long developerId) {
+    Map<Integer, MetricDto> metricsById = Maps.uniqueIndex(metrics, MetricDto::getId);
+    List<String> componentUuids = new ArrayList<>(components.size() + 1);
+    componentUuids.add(baseComponent.uuid());
+    components.forEach(c -> componentUuids.add(c.uuid()));
+    MeasureQuery measureQuery = MeasureQuery.builder()
+      .setComponentUuids(baseComponent.projectUuid(), componentUuids)
+      .setPersonId(developerId)
+      .setMetricIds(new ArrayList<>(metricsById.keySet()))
+      .build();
+    List<MeasureDto> measureDtos = dbClient.measureDao().selectByQuery(dbSession, measureQuery);
+
+    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = HashBasedTable.create(componentUuids.size(), metrics.size());
+    for (MeasureDto measureDto : measureDtos) {
+      measuresByComponentUuidAndMetric.put(
+        measureDto.getComponentUuid(),
+        metricsById.get(measureDto.getMetricId()),
+        measureDto);
+    }
+
+    addBestValuesToMeasures(measuresByComponentUuidAndMetric, components, metrics);
+
+    return measuresByComponentUuidAndMetric;
+  }
+
   /**
    * Conditions for best value measure:
    * <ul>
@@ -245,16 +286,15 @@ public class ComponentTreeDataLoader {
     return WITH_MEASURES_ONLY_METRIC_SORT_FILTER.equals(wsRequest.getMetricSortFilter());
   }
 
-  private static List<ComponentDto> sortComponents(List<ComponentDto> components, ComponentTreeWsRequest wsRequest, List<MetricDto> metrics,
+  private static List<ComponentDto> sortAndPaginateComponents(List<ComponentDto> components, ComponentTreeWsRequest wsRequest, List<MetricDto> metrics,
     Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric) {
-    return ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
-  }
-
-  private static List<ComponentDto> paginateComponents(List<ComponentDto> components, ComponentTreeWsRequest wsRequest) {
-    return components.stream()
-      .skip(offset(wsRequest.getPage(), wsRequest.getPageSize()))
-      .limit(wsRequest.getPageSize())
-      .collect(Collectors.toList(wsRequest.getPageSize()));
+    int offset = offset(wsRequest.getPage(), wsRequest.getPageSize());
+    if (offset >= components.size()) {
+      return Collections.emptyList();
+    }
+    List<ComponentDto> firstComponents = ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric,
+      offset + wsRequest.getPageSize());
+    return firstComponents.subList(offset, firstComponents.size());
   }
 
   @CheckForNull
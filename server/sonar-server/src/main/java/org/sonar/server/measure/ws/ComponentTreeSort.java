@@ -20,9 +20,12 @@
 package org.sonar.server.measure.ws;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
+import com.google.common.collect.Range;
 import com.google.common.collect.Table;
 import java.util.EnumSet;
 import java.util.List;
@@ -32,6 +35,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.Metric.ValueType;
+import org.sonar.core.util.stream.Collectors;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.measure.MeasureDto;
 import org.sonar.db.metric.MetricDto;
@@ -71,6 +75,30 @@ public class ComponentTreeSort {
     if (sortParameters == null || sortParameters.isEmpty()) {
       return components;
     }
+    return ordering(wsRequest, metrics, measuresByComponentUuidAndMetric).immutableSortedCopy(components);
+  }
+
+  /**
+   * Same as {@link #sortComponents(List, ComponentTreeWsRequest, List, Table)}, but only the {@code limit} first components
+   * are returned. Components are selected without sorting the whole list, and equal components keep their original order.
+   */
+  public static List<ComponentDto> sortComponents(List<ComponentDto> components, ComponentTreeWsRequest wsRequest, List<MetricDto> metrics,
+    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric, int limit) {
+    List<String> sortParameters = wsRequest.getSort();
+    if (sortParameters == null || sortParameters.isEmpty()) {
+      return components.subList(0, Math.min(limit, components.size()));
+    }
+    Ordering<ComponentDto> ordering = ordering(wsRequest, metrics, measuresByComponentUuidAndMetric);
+    Ordering<Integer> indexOrdering = ordering.onResultOf(components::get).compound(Ordering.natural());
+    return indexOrdering.leastOf(ContiguousSet.create(Range.closedOpen(0, components.size()), DiscreteDomain.integers()), limit)
+      .stream()
+      .map(components::get)
+      .collect(Collectors.toList());
+  }
+
+  private static Ordering<ComponentDto> ordering(ComponentTreeWsRequest wsRequest, List<MetricDto> metrics,
+    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric) {
+    List<String> sortParameters = wsRequest.getSort();
     boolean isAscending = wsRequest.getAsc();
     Map<String, Ordering<ComponentDto>> orderingsBySortField = ImmutableMap.<String, Ordering<ComponentDto>>builder()
       .put(NAME_SORT, componentNameOrdering(isAscending))
@@ -90,7 +118,7 @@ public class ComponentTreeSort {
       }
     }
 
-    return primaryOrdering.immutableSortedCopy(components);
+    return primaryOrdering;
   }
 
   private static Ordering<ComponentDto> componentNameOrdering(boolean isAscending) {
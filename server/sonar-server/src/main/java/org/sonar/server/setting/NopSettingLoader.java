@@ -32,4 +32,9 @@ public class NopSettingLoader implements SettingLoader {
     // nothing to load
   }
 
+  @Override
+  public String loadVersion() {
+    return "";
+  }
+
 }
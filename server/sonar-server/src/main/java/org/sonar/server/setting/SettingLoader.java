@@ -29,4 +29,10 @@ public interface SettingLoader {
 
   void loadAll(ImmutableMap.Builder<String, String> appendTo);
 
+  /**
+   * Value which changes each time a setting is saved, renamed or deleted. It allows to reload all
+   * settings only when needed. Versions are compared with {@link String#equals(Object)}.
+   */
+  String loadVersion();
+
 }
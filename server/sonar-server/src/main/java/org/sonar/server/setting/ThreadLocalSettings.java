@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
+import javax.annotation.CheckForNull;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.config.Encryption;
@@ -48,14 +49,21 @@ import static com.google.common.base.Preconditions.checkState;
  * been called. That allows to remove complexity with handling of cleanup of thread-local cache
  * on daemon threads (notifications) or startup "main" thread.
  * </p>
+ *
+ * <p>
+ * When enabled, the thread-local cache reads the database properties from a snapshot shared by
+ * all threads. The snapshot is reloaded by {@link #load()} only when the version of the properties
+ * stored in database has changed, so that reading a setting does not execute any SQL request.
+ * </p>
  */
 @ComputeEngineSide
 @ServerSide
 public class ThreadLocalSettings extends Settings {
 
   private final Properties systemProps;
-  private static final ThreadLocal<Map<String, String>> CACHE = new ThreadLocal<>();
+  private static final ThreadLocal<ThreadCache> CACHE = new ThreadLocal<>();
   private SettingLoader settingLoader;
+  private volatile Snapshot snapshot;
 
   public ThreadLocalSettings(PropertyDefinitions definitions, Properties props) {
     this(definitions, props, new NopSettingLoader());
@@ -78,6 +86,7 @@ public class ThreadLocalSettings extends Settings {
 
   protected void setSettingLoader(SettingLoader settingLoader) {
     this.settingLoader = Objects.requireNonNull(settingLoader);
+    this.snapshot = null;
   }
 
   @Override
@@ -92,39 +101,27 @@ public class ThreadLocalSettings extends Settings {
       return Optional.of(value);
     }
 
-    Map<String, String> dbProps = CACHE.get();
+    ThreadCache cache = CACHE.get();
     // caching is disabled
-    if (dbProps == null) {
+    if (cache == null) {
       return Optional.ofNullable(settingLoader.load(key));
     }
-
-    String loadedValue;
-    if (dbProps.containsKey(key)) {
-      // property may not exist in db. In this case key is present
-      // in cache but value is null
-      loadedValue = dbProps.get(key);
-    } else {
-      // cache the effective value (null if the property
-      // is not persisted)
-      loadedValue = settingLoader.load(key);
-      dbProps.put(key, loadedValue);
-    }
-    return Optional.ofNullable(loadedValue);
+    return Optional.ofNullable(cache.get(key));
   }
 
   @Override
   protected void set(String key, String value) {
-    Map<String, String> dbProps = CACHE.get();
-    if (dbProps != null) {
-      dbProps.put(key, value);
+    ThreadCache cache = CACHE.get();
+    if (cache != null) {
+      cache.overriddenProps.put(key, value);
     }
   }
 
   @Override
   protected void remove(String key) {
-    Map<String, String> dbProps = CACHE.get();
-    if (dbProps != null) {
-      dbProps.remove(key);
+    ThreadCache cache = CACHE.get();
+    if (cache != null) {
+      cache.overriddenProps.remove(key);
     }
   }
 
@@ -136,7 +133,19 @@ public class ThreadLocalSettings extends Settings {
   public void load() {
     checkState(CACHE.get() == null,
       "load called twice for thread '%s' or state wasn't cleared last time it was used", Thread.currentThread().getName());
-    CACHE.set(new HashMap<>());
+    CACHE.set(new ThreadCache(loadSnapshot().dbProps));
+  }
+
+  private Snapshot loadSnapshot() {
+    String version = settingLoader.loadVersion();
+    Snapshot current = this.snapshot;
+    if (current == null || !current.version.equals(version)) {
+      ImmutableMap.Builder<String, String> dbProps = ImmutableMap.builder();
+      settingLoader.loadAll(dbProps);
+      current = new Snapshot(version, dbProps.build());
+      this.snapshot = current;
+    }
+    return current;
   }
 
   /**
@@ -153,4 +162,32 @@ public class ThreadLocalSettings extends Settings {
     systemProps.entrySet().forEach(entry -> builder.put((String) entry.getKey(), (String) entry.getValue()));
     return builder.build();
   }
+
+  private static final class Snapshot {
+    private final String version;
+    private final Map<String, String> dbProps;
+
+    private Snapshot(String version, Map<String, String> dbProps) {
+      this.version = version;
+      this.dbProps = dbProps;
+    }
+  }
+
+  private static final class ThreadCache {
+    private final Map<String, String> dbProps;
+    private final Map<String, String> overriddenProps = new HashMap<>();
+
+    private ThreadCache(Map<String, String> dbProps) {
+      this.dbProps = dbProps;
+    }
+
+    @CheckForNull
+    private String get(String key) {
+      String value = overriddenProps.get(key);
+      if (value != null) {
+        return value;
+      }
+      return dbProps.get(key);
+    }
+  }
 }
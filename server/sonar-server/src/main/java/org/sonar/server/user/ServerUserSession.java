@@ -22,9 +22,7 @@ package org.sonar.server.user;
 import com.google.common.base.Optional;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.SetMultimap;
-import java.util.ArrayList;
+import com.google.common.collect.ImmutableSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -49,24 +47,23 @@ public class ServerUserSession extends AbstractUserSession {
   private final UserDto userDto;
   private final DbClient dbClient;
   private final Supplier<List<GroupDto>> groups;
-  private SetMultimap<String, String> projectUuidByPermission = HashMultimap.create();
-  private SetMultimap<String, String> permissionsByOrganizationUuid;
+  private final Supplier<UserPermissionsCache.Permissions> permissions;
   private Map<String, String> projectUuidByComponentUuid = newHashMap();
-  private List<String> projectPermissionsCheckedByUuid = new ArrayList<>();
 
-  private ServerUserSession(DbClient dbClient, @Nullable UserDto userDto) {
+  private ServerUserSession(DbClient dbClient, UserPermissionsCache permissionsCache, @Nullable UserDto userDto) {
     this.userDto = userDto;
     this.dbClient = dbClient;
     this.groups = Suppliers.memoize(this::loadGroups);
+    this.permissions = Suppliers.memoize(() -> permissionsCache.get(getLogin(), getGroups()));
   }
 
-  public static ServerUserSession createForUser(DbClient dbClient, UserDto userDto) {
+  public static ServerUserSession createForUser(DbClient dbClient, UserPermissionsCache permissionsCache, UserDto userDto) {
     requireNonNull(userDto, "UserDto must not be null");
-    return new ServerUserSession(dbClient, userDto);
+    return new ServerUserSession(dbClient, permissionsCache, userDto);
   }
 
-  public static ServerUserSession createForAnonymous(DbClient dbClient) {
-    return new ServerUserSession(dbClient, null);
+  public static ServerUserSession createForAnonymous(DbClient dbClient, UserPermissionsCache permissionsCache) {
+    return new ServerUserSession(dbClient, permissionsCache, null);
   }
 
   private List<GroupDto> loadGroups() {
@@ -113,25 +110,15 @@ public class ServerUserSession extends AbstractUserSession {
 
   @Override
   public boolean hasOrganizationPermission(String organizationUuid, String permission) {
-    if (permissionsByOrganizationUuid == null) {
-      permissionsByOrganizationUuid = HashMultimap.create();
-    }
-    Set<String> permissions;
-    if (permissionsByOrganizationUuid.containsKey(organizationUuid)) {
-      permissions = permissionsByOrganizationUuid.get(organizationUuid);
-    } else {
-      permissions = loadOrganizationPermissions(organizationUuid);
-      permissionsByOrganizationUuid.putAll(organizationUuid, permissions);
-    }
-    return permissions.contains(permission);
+    return permissions.get().getOrganizationPermissions(organizationUuid, this::loadOrganizationPermissions).contains(permission);
   }
 
   private Set<String> loadOrganizationPermissions(String organizationUuid) {
     try (DbSession dbSession = dbClient.openSession(false)) {
       if (userDto != null && userDto.getId() != null) {
-        return dbClient.authorizationDao().selectOrganizationPermissions(dbSession, organizationUuid, userDto.getId());
+        return ImmutableSet.copyOf(dbClient.authorizationDao().selectOrganizationPermissions(dbSession, organizationUuid, userDto.getId()));
       }
-      return dbClient.authorizationDao().selectOrganizationPermissionsOfAnonymous(dbSession, organizationUuid);
+      return ImmutableSet.copyOf(dbClient.authorizationDao().selectOrganizationPermissionsOfAnonymous(dbSession, organizationUuid));
     }
   }
 
@@ -161,20 +148,13 @@ public class ServerUserSession extends AbstractUserSession {
 
   // To keep private
   private boolean hasProjectPermissionByUuid(String permission, String projectUuid) {
-    if (!projectPermissionsCheckedByUuid.contains(permission)) {
-      try (DbSession dbSession = dbClient.openSession(false)) {
-        Collection<String> projectUuids = dbClient.authorizationDao().selectAuthorizedRootProjectsUuids(dbSession, getUserId(), permission);
-        addProjectPermission(permission, projectUuids);
-      }
-    }
-    return projectUuidByPermission.get(permission).contains(projectUuid);
+    return permissions.get().getProjectUuids(permission, this::loadAuthorizedProjectUuids).contains(projectUuid);
   }
 
-  private void addProjectPermission(String permission, Collection<String> authorizedProjectUuids) {
-    for (String key : authorizedProjectUuids) {
-      projectUuidByPermission.put(permission, key);
+  private Set<String> loadAuthorizedProjectUuids(String permission) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return ImmutableSet.copyOf(dbClient.authorizationDao().selectAuthorizedRootProjectsUuids(dbSession, getUserId(), permission));
     }
-    projectPermissionsCheckedByUuid.add(permission);
   }
 
 }
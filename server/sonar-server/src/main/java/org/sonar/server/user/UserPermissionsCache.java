@@ -0,0 +1,173 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.server.ServerSide;
+import org.sonar.core.util.stream.Collectors;
+import org.sonar.db.user.GroupDto;
+
+/**
+ * Permissions loaded by {@link ServerUserSession}, shared by all the requests of the same user and groups.
+ * <p>
+ * The cache is bounded by the total number of project UUIDs and organization permissions it holds, so that
+ * the projects authorized on large instances do not exhaust the heap.
+ * The cache is invalidated by {@link #invalidate()} when permissions are changed by the current process.
+ * As permissions can also be changed by other processes, entries expire after a short delay.
+ */
+@ServerSide
+@ComputeEngineSide
+public class UserPermissionsCache {
+
+  private static final long MAX_WEIGHT = 500_000L;
+  private static final long EXPIRATION_IN_SECONDS = 60L;
+
+  private final AtomicLong generation = new AtomicLong();
+  private final Cache<Key, Set<String>> cache;
+
+  public UserPermissionsCache() {
+    this(MAX_WEIGHT);
+  }
+
+  @VisibleForTesting
+  UserPermissionsCache(long maxWeight) {
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(maxWeight)
+      .weigher((Key key, Set<String> value) -> 1 + value.size())
+      .expireAfterWrite(EXPIRATION_IN_SECONDS, TimeUnit.SECONDS)
+      .build();
+  }
+
+  Permissions get(@Nullable String login, Collection<GroupDto> groups) {
+    return new Permissions(new UserKey(generation.get(), login, groups.stream().map(GroupDto::getId).collect(Collectors.toSet())));
+  }
+
+  /**
+   * Must be called after the commit of a change of permissions. Permissions loaded before are not used anymore.
+   */
+  public void invalidate() {
+    generation.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  class Permissions {
+    private final UserKey userKey;
+
+    private Permissions(UserKey userKey) {
+      this.userKey = userKey;
+    }
+
+    Set<String> getProjectUuids(String permission, Function<String, Set<String>> loader) {
+      return getOrLoad(new Key(userKey, Key.Type.PROJECT_UUIDS, permission), loader);
+    }
+
+    Set<String> getOrganizationPermissions(String organizationUuid, Function<String, Set<String>> loader) {
+      return getOrLoad(new Key(userKey, Key.Type.ORGANIZATION_PERMISSIONS, organizationUuid), loader);
+    }
+
+    /**
+     * The database is requested outside of any lock. The same value can be loaded concurrently, only the first one is kept.
+     */
+    private Set<String> getOrLoad(Key key, Function<String, Set<String>> loader) {
+      Set<String> value = cache.getIfPresent(key);
+      if (value == null) {
+        value = loader.apply(key.name);
+        Set<String> previous = cache.asMap().putIfAbsent(key, value);
+        if (previous != null) {
+          value = previous;
+        }
+      }
+      return value;
+    }
+  }
+
+  private static final class UserKey {
+    private final long generation;
+    @Nullable
+    private final String login;
+    private final Set<Long> groupIds;
+
+    private UserKey(long generation, @Nullable String login, Set<Long> groupIds) {
+      this.generation = generation;
+      this.login = login;
+      this.groupIds = groupIds;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      UserKey userKey = (UserKey) o;
+      return generation == userKey.generation && Objects.equals(login, userKey.login) && groupIds.equals(userKey.groupIds);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(generation, login, groupIds);
+    }
+  }
+
+  private static final class Key {
+    private enum Type {
+      PROJECT_UUIDS, ORGANIZATION_PERMISSIONS
+    }
+
+    private final UserKey userKey;
+    private final Type type;
+    private final String name;
+
+    private Key(UserKey userKey, Type type, String name) {
+      this.userKey = userKey;
+      this.type = type;
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return userKey.equals(key.userKey) && type == key.type && name.equals(key.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(userKey, type, name);
+    }
+  }
+}
@@ -19,12 +19,24 @@
  */
 package org.sonar.server.util.cache;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.System2;
@@ -33,15 +45,28 @@ import org.sonar.server.util.ObjectInputStreamIterator;
 
 /**
  * Serialize and deserialize objects on disk. No search capabilities, only traversal (full scan).
+ * <p>
+ * By default objects are stored with Java serialization. When a {@link DiskCacheCodec} is provided, objects
+ * are written by the codec through buffered file channels, optionally compressed with LZ4. Each appender then
+ * writes its own LZ4 stream at the end of the file.
  */
 public class DiskCache<O extends Serializable> {
 
+  private static final int BUFFER_SIZE = 64 * 1024;
+  // written before each object encoded by codec, so that end of file can be detected between objects
+  private static final int CODEC_RECORD_MARKER = 1;
+
   private final File file;
   private final System2 system2;
+  @Nullable
+  private final DiskCacheCodec<O> codec;
+  private final boolean compressed;
 
   public DiskCache(File file, System2 system2) {
     this.system2 = system2;
     this.file = file;
+    this.codec = null;
+    this.compressed = false;
     OutputStream output = null;
     boolean threw = true;
     try {
@@ -63,29 +88,66 @@ public class DiskCache<O extends Serializable> {
     }
   }
 
+  /**
+   * @param compressed whether objects are compressed with LZ4. It saves disk I/O at the cost of some CPU.
+   */
+  public DiskCache(File file, System2 system2, DiskCacheCodec<O> codec, boolean compressed) {
+    this.system2 = system2;
+    this.file = file;
+    this.codec = codec;
+    this.compressed = compressed;
+    try {
+      // creates or truncates the file, so that "traverse()" can be called on empty cache
+      FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING).close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write into file: " + file, e);
+    }
+  }
+
   public DiskAppender newAppender() {
     return new DiskAppender();
   }
 
   public CloseableIterator<O> traverse() {
     try {
-      return new ObjectInputStreamIterator<>(FileUtils.openInputStream(file));
+      if (codec == null) {
+        return new ObjectInputStreamIterator<>(FileUtils.openInputStream(file));
+      }
+      InputStream input = new BufferedInputStream(Channels.newInputStream(FileChannel.open(file.toPath(), StandardOpenOption.READ)), BUFFER_SIZE);
+      if (compressed) {
+        input = new LZ4SegmentsInputStream(input);
+      }
+      return new CodecIterator(new DataInputStream(input));
     } catch (IOException e) {
       throw new IllegalStateException("Fail to traverse file: " + file, e);
     }
   }
 
   public class DiskAppender implements AutoCloseable {
-    private final ObjectOutputStream output;
+    private final OutputStream output;
+    @CheckForNull
+    private final ObjectOutputStream objectOutput;
+    @CheckForNull
+    private final DataOutputStream dataOutput;
 
     private DiskAppender() {
       try {
-        this.output = new ObjectOutputStream(new FileOutputStream(file, true)) {
-          @Override
-          protected void writeStreamHeader() throws IOException {
-            // do not write stream headers as it's already done in constructor of DiskCache
-          }
-        };
+        if (codec == null) {
+          this.objectOutput = new ObjectOutputStream(new FileOutputStream(file, true)) {
+            @Override
+            protected void writeStreamHeader() throws IOException {
+              // do not write stream headers as it's already done in constructor of DiskCache
+            }
+          };
+          this.dataOutput = null;
+          this.output = objectOutput;
+        } else {
+          OutputStream channelOutput = Channels.newOutputStream(FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+          OutputStream segmentOutput = compressed ? new LZ4BlockOutputStream(channelOutput) : channelOutput;
+          this.objectOutput = null;
+          this.dataOutput = new DataOutputStream(new BufferedOutputStream(segmentOutput, BUFFER_SIZE));
+          this.output = dataOutput;
+        }
       } catch (IOException e) {
         throw new IllegalStateException("Fail to open file " + file, e);
       }
@@ -93,8 +155,13 @@ public class DiskCache<O extends Serializable> {
 
     public DiskAppender append(O object) {
       try {
-        output.writeObject(object);
-        output.reset();
+        if (objectOutput != null) {
+          objectOutput.writeObject(object);
+          objectOutput.reset();
+        } else {
+          dataOutput.writeByte(CODEC_RECORD_MARKER);
+          codec.write(object, dataOutput);
+        }
         return this;
       } catch (IOException e) {
         throw new IllegalStateException("Fail to write into file " + file, e);
@@ -106,4 +173,84 @@ public class DiskCache<O extends Serializable> {
       system2.close(output);
     }
   }
+
+  private class CodecIterator extends CloseableIterator<O> {
+    private final DataInputStream input;
+
+    private CodecIterator(DataInputStream input) {
+      this.input = input;
+    }
+
+    @Override
+    protected O doNext() {
+      try {
+        int marker = input.read();
+        if (marker == -1) {
+          return null;
+        }
+        if (marker != CODEC_RECORD_MARKER) {
+          throw new IllegalStateException("Corrupted file " + file);
+        }
+        return codec.read(input);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read file " + file, e);
+      }
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  /**
+   * Reads the LZ4 streams written by the successive appenders, one after the other.
+   * {@link LZ4BlockInputStream} stops at the end mark of the first stream.
+   */
+  private static class LZ4SegmentsInputStream extends InputStream {
+    private final InputStream input;
+    @CheckForNull
+    private LZ4BlockInputStream segment;
+
+    private LZ4SegmentsInputStream(InputStream input) {
+      // mark/reset is required to detect end of file between segments
+      this.input = input.markSupported() ? input : new BufferedInputStream(input);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = segment == null ? -1 : segment.read();
+      while (b == -1 && nextSegment()) {
+        b = segment.read();
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = segment == null ? -1 : segment.read(b, off, len);
+      while (read == -1 && nextSegment()) {
+        read = segment.read(b, off, len);
+      }
+      return read;
+    }
+
+    /**
+     * {@link LZ4BlockInputStream} fails on empty streams, so end of file is checked before opening a segment
+     */
+    private boolean nextSegment() throws IOException {
+      input.mark(1);
+      if (input.read() == -1) {
+        return false;
+      }
+      input.reset();
+      segment = new LZ4BlockInputStream(input);
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+  }
 }
@@ -19,9 +19,11 @@
  */
 package org.sonar.server.ws;
 
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.net.HttpHeaders;
+import com.google.common.net.MediaType;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
@@ -46,6 +48,8 @@ public class ServletRequest extends ValidatingRequest {
     "protobuf", MediaTypes.PROTOBUF,
     "text", MediaTypes.TXT);
 
+  private static final Splitter ACCEPT_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
   public ServletRequest(HttpServletRequest source) {
     this.source = source;
   }
@@ -118,9 +122,51 @@ public class ServletRequest extends ValidatingRequest {
     return url.toString();
   }
 
+  /**
+   * The supported media type with the highest quality in the header "Accept", for example
+   * "application/x-protobuf" for "application/json;q=0.9, application/x-protobuf".
+   */
   @CheckForNull
   private String acceptedContentTypeInResponse() {
-    return source.getHeader(HttpHeaders.ACCEPT);
+    String accept = source.getHeader(HttpHeaders.ACCEPT);
+    if (accept == null) {
+      return null;
+    }
+    String acceptedMediaType = null;
+    float acceptedQuality = 0F;
+    for (String range : ACCEPT_SPLITTER.split(accept)) {
+      MediaType mediaType = parseMediaType(range);
+      if (mediaType != null) {
+        String type = mediaType.withoutParameters().toString();
+        float quality = quality(mediaType);
+        if (quality > acceptedQuality && SUPPORTED_MEDIA_TYPES_BY_URL_SUFFIX.containsValue(type)) {
+          acceptedMediaType = type;
+          acceptedQuality = quality;
+        }
+      }
+    }
+    return acceptedMediaType;
+  }
+
+  @CheckForNull
+  private static MediaType parseMediaType(String range) {
+    try {
+      return MediaType.parse(range);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static float quality(MediaType mediaType) {
+    List<String> values = mediaType.parameters().get("q");
+    if (values.isEmpty()) {
+      return 1F;
+    }
+    try {
+      return Float.parseFloat(values.get(0));
+    } catch (NumberFormatException e) {
+      return 0F;
+    }
   }
 
   @CheckForNull
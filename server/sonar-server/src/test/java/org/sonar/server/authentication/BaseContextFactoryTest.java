@@ -35,6 +35,7 @@ import org.sonar.db.DbTester;
 import org.sonar.db.user.UserDto;
 import org.sonar.server.authentication.event.AuthenticationEvent;
 import org.sonar.server.user.ThreadLocalUserSession;
+import org.sonar.server.user.UserPermissionsCache;
 import org.sonar.server.user.UserSession;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -73,7 +74,7 @@ public class BaseContextFactoryTest {
   private BaseIdentityProvider identityProvider = mock(BaseIdentityProvider.class);
   private JwtHttpHandler jwtHttpHandler = mock(JwtHttpHandler.class);
 
-  private BaseContextFactory underTest = new BaseContextFactory(dbClient, userIdentityAuthenticator, server, jwtHttpHandler, threadLocalUserSession);
+  private BaseContextFactory underTest = new BaseContextFactory(dbClient, userIdentityAuthenticator, server, jwtHttpHandler, threadLocalUserSession, new UserPermissionsCache());
 
   @Before
   public void setUp() throws Exception {
@@ -39,6 +39,7 @@ import org.sonar.server.authentication.event.AuthenticationEvent;
 import org.sonar.server.authentication.event.AuthenticationException;
 import org.sonar.server.user.ServerUserSession;
 import org.sonar.server.user.ThreadLocalUserSession;
+import org.sonar.server.user.UserPermissionsCache;
 import org.sonar.server.user.UserSession;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -80,7 +81,7 @@ public class UserSessionInitializerTest {
   private UserDto user = newUserDto();
 
   private UserSessionInitializer underTest = new UserSessionInitializer(dbClient, settings, jwtHttpHandler, basicAuthenticator,
-    ssoAuthenticator, userSession, authenticationEvent);
+    ssoAuthenticator, userSession, authenticationEvent, new UserPermissionsCache());
 
   @Before
   public void setUp() throws Exception {
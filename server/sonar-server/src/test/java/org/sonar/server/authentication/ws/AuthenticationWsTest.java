@@ -30,7 +30,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class AuthenticationWsTest {
 
   WsTester tester = new WsTester(new AuthenticationWs(Arrays.asList(
-    new LoginAction(null, null, null, null, null),
+    new LoginAction(null, null, null, null, null, null),
     new LogoutAction(null, null),
     new ValidateAction(null, null, null))));
 
@@ -19,6 +19,7 @@
  */
 package org.sonar.server.batch;
 
+import com.google.common.collect.ImmutableMap;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -49,33 +50,30 @@ public class ProjectActionTest {
   public void project_referentials() throws Exception {
     String projectKey = "org.codehaus.sonar:sonar";
 
-    ProjectRepositories projectReferentials = mock(ProjectRepositories.class);
-    when(projectReferentials.toJson()).thenReturn("{\"settingsByModule\": {}}");
-
     ArgumentCaptor<ProjectDataQuery> queryArgumentCaptor = ArgumentCaptor.forClass(ProjectDataQuery.class);
-    when(projectDataLoader.load(queryArgumentCaptor.capture())).thenReturn(projectReferentials);
+    when(projectDataLoader.load(queryArgumentCaptor.capture(), any(ProjectDataLoader.FileDataHandler.class))).thenReturn(new ProjectRepositories());
 
     TestResponse response = ws.newRequest()
       .setParam("key", projectKey)
       .setParam("profile", "Default")
       .setParam("preview", "false")
       .execute();
-    assertJson(response.getInput()).isSimilarTo("{\"settingsByModule\": {}}");
+    assertJson(response.getInput()).isSimilarTo("{\"timestamp\": 0}");
 
     assertThat(queryArgumentCaptor.getValue().getModuleKey()).isEqualTo(projectKey);
     assertThat(queryArgumentCaptor.getValue().getProfileName()).isEqualTo("Default");
     assertThat(queryArgumentCaptor.getValue().isIssuesMode()).isFalse();
+    assertThat(queryArgumentCaptor.getValue().getFilesChangedSince()).isNull();
   }
 
   /**
    * SONAR-7084
    */
   @Test
-  public void do_not_fail_when_a_path_is_null() throws Exception {
+  public void do_not_fail_when_there_is_no_file() throws Exception {
     String projectKey = "org.codehaus.sonar:sonar";
 
-    ProjectRepositories projectRepositories = new ProjectRepositories().addFileData("module-1", null, new FileData(null, null));
-    when(projectDataLoader.load(any(ProjectDataQuery.class))).thenReturn(projectRepositories);
+    when(projectDataLoader.load(any(ProjectDataQuery.class), any(ProjectDataLoader.FileDataHandler.class))).thenReturn(new ProjectRepositories());
 
     TestResponse result = ws.newRequest()
       .setMediaType(MediaTypes.PROTOBUF)
@@ -86,4 +84,74 @@ public class ProjectActionTest {
     WsProjectResponse wsProjectResponse = WsProjectResponse.parseFrom(result.getInputStream());
     assertThat(wsProjectResponse.getFileDataByModuleAndPath()).isEmpty();
   }
+
+  @Test
+  public void stream_files_grouped_by_module() throws Exception {
+    mockFiles();
+
+    TestResponse result = ws.newRequest()
+      .setMediaType(MediaTypes.PROTOBUF)
+      .setParam("key", "module-1")
+      .execute();
+
+    WsProjectResponse wsProjectResponse = WsProjectResponse.parseFrom(result.getInputStream());
+    verifyResponse(wsProjectResponse);
+  }
+
+  @Test
+  public void return_files_in_json() throws Exception {
+    mockFiles();
+
+    TestResponse result = ws.newRequest()
+      .setParam("key", "module-1")
+      .execute();
+
+    assertJson(result.getInput()).isSimilarTo("{" +
+      "  \"timestamp\": 1500000000000," +
+      "  \"settingsByModule\": {\"module-1\": {\"sonar.foo\": \"bar\"}}," +
+      "  \"fileDataByModuleAndPath\": {" +
+      "    \"module-1\": {\"src/A.java\": {\"hash\": \"hashA\", \"revision\": \"rev1\"}}," +
+      "    \"module-2\": {\"src/C.java\": {\"hash\": \"hashC\"}}" +
+      "  }," +
+      "  \"unchangedFilePathsByModule\": {\"module-1\": {\"paths\": [\"src/B.java\"]}}" +
+      "}");
+  }
+
+  @Test
+  public void pass_date_of_previous_response_to_loader() throws Exception {
+    ArgumentCaptor<ProjectDataQuery> queryArgumentCaptor = ArgumentCaptor.forClass(ProjectDataQuery.class);
+    when(projectDataLoader.load(queryArgumentCaptor.capture(), any(ProjectDataLoader.FileDataHandler.class))).thenReturn(new ProjectRepositories());
+
+    ws.newRequest()
+      .setMediaType(MediaTypes.PROTOBUF)
+      .setParam("key", "module-1")
+      .setParam("files_changed_since", "1500000000000")
+      .execute();
+
+    assertThat(queryArgumentCaptor.getValue().getFilesChangedSince()).isEqualTo(1_500_000_000_000L);
+  }
+
+  private void mockFiles() {
+    ProjectRepositories projectRepositories = new ProjectRepositories()
+      .addSettings("module-1", ImmutableMap.of("sonar.foo", "bar"));
+    projectRepositories.setTimestamp(1_500_000_000_000L);
+    when(projectDataLoader.load(any(ProjectDataQuery.class), any(ProjectDataLoader.FileDataHandler.class))).thenAnswer(invocation -> {
+      ProjectDataLoader.FileDataHandler handler = (ProjectDataLoader.FileDataHandler) invocation.getArguments()[1];
+      handler.handle("module-1", "src/A.java", new FileData("hashA", "rev1"));
+      handler.handle("module-1", "src/B.java", null);
+      handler.handle("module-2", "src/C.java", new FileData("hashC", null));
+      return projectRepositories;
+    });
+  }
+
+  private static void verifyResponse(WsProjectResponse response) {
+    assertThat(response.getTimestamp()).isEqualTo(1_500_000_000_000L);
+    assertThat(response.getSettingsByModule().get("module-1").getSettings()).containsEntry("sonar.foo", "bar");
+    assertThat(response.getFileDataByModuleAndPath()).containsOnlyKeys("module-1", "module-2");
+    assertThat(response.getFileDataByModuleAndPath().get("module-1").getFileDataByPath()).containsOnlyKeys("src/A.java");
+    assertThat(response.getFileDataByModuleAndPath().get("module-1").getFileDataByPath().get("src/A.java").getHash()).isEqualTo("hashA");
+    assertThat(response.getFileDataByModuleAndPath().get("module-2").getFileDataByPath().get("src/C.java").hasRevision()).isFalse();
+    assertThat(response.getUnchangedFilePathsByModule()).containsOnlyKeys("module-1");
+    assertThat(response.getUnchangedFilePathsByModule().get("module-1").getPathsList()).containsExactly("src/B.java");
+  }
 }
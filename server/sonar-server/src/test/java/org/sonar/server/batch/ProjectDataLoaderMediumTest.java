@@ -21,6 +21,7 @@ package org.sonar.server.batch;
 
 import com.google.common.collect.ImmutableMap;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 import org.junit.After;
 import org.junit.Before;
@@ -602,6 +603,89 @@ public class ProjectDataLoaderMediumTest {
     assertThat(ref.fileData(project.key(), projectFile.path())).isNull();
   }
 
+  @Test
+  public void return_only_paths_of_files_unchanged_since_date() {
+    OrganizationDto organizationDto = OrganizationTesting.newOrganizationDto();
+    dbClient.organizationDao().insert(dbSession, organizationDto);
+    ComponentDto project = ComponentTesting.newProjectDto(organizationDto);
+    userSessionRule.logIn().addProjectUuidPermissions(SCAN_EXECUTION, project.uuid());
+    dbClient.componentDao().insert(dbSession, project);
+    addDefaultProfile();
+
+    ComponentDto unchangedFile = ComponentTesting.newFileDto(project, null, "unchangedFile").setPath("src/Unchanged.xoo");
+    dbClient.componentDao().insert(dbSession, unchangedFile);
+    tester.get(FileSourceDao.class).insert(newFileSourceDto(unchangedFile).setSrcHash("123456").setUpdatedAt(1_000L));
+    ComponentDto changedFile = ComponentTesting.newFileDto(project, null, "changedFile").setPath("src/Changed.xoo");
+    dbClient.componentDao().insert(dbSession, changedFile);
+    tester.get(FileSourceDao.class).insert(newFileSourceDto(changedFile).setSrcHash("789456").setUpdatedAt(2_000L));
+    dbSession.commit();
+
+    Map<String, FileData> fileDataByPath = new HashMap<>();
+    ProjectRepositories ref = underTest.load(ProjectDataQuery.create().setModuleKey(project.key()).setFilesChangedSince(2_000L),
+      (moduleKey, path, fileData) -> {
+        assertThat(moduleKey).isEqualTo(project.key());
+        fileDataByPath.put(path, fileData);
+      });
+
+    assertThat(ref.fileDataByModuleAndPath()).isEmpty();
+    assertThat(fileDataByPath).containsOnlyKeys(unchangedFile.path(), changedFile.path());
+    assertThat(fileDataByPath.get(unchangedFile.path())).isNull();
+    assertThat(fileDataByPath.get(changedFile.path()).hash()).isEqualTo("789456");
+  }
+
+  @Test
+  public void timestamp_is_last_update_of_files_minus_safety_margin() {
+    OrganizationDto organizationDto = OrganizationTesting.newOrganizationDto();
+    dbClient.organizationDao().insert(dbSession, organizationDto);
+    ComponentDto project = ComponentTesting.newProjectDto(organizationDto);
+    userSessionRule.logIn().addProjectUuidPermissions(SCAN_EXECUTION, project.uuid());
+    dbClient.componentDao().insert(dbSession, project);
+    addDefaultProfile();
+
+    long lastUpdate = 1_500_000_000_000L;
+    ComponentDto file = ComponentTesting.newFileDto(project, null, "file").setPath("src/File.xoo");
+    dbClient.componentDao().insert(dbSession, file);
+    tester.get(FileSourceDao.class).insert(newFileSourceDto(file).setSrcHash("123456").setUpdatedAt(lastUpdate - 5_000L));
+    ComponentDto lastUpdatedFile = ComponentTesting.newFileDto(project, null, "lastUpdatedFile").setPath("src/LastUpdated.xoo");
+    dbClient.componentDao().insert(dbSession, lastUpdatedFile);
+    tester.get(FileSourceDao.class).insert(newFileSourceDto(lastUpdatedFile).setSrcHash("789456").setUpdatedAt(lastUpdate));
+    dbSession.commit();
+
+    ProjectRepositories ref = underTest.load(ProjectDataQuery.create().setModuleKey(project.key()));
+
+    assertThat(ref.timestamp()).isEqualTo(lastUpdate - ProjectDataLoader.FILES_CHANGED_SINCE_SAFETY_MARGIN);
+  }
+
+  @Test
+  public void return_data_of_file_committed_after_timestamp_of_previous_response() {
+    OrganizationDto organizationDto = OrganizationTesting.newOrganizationDto();
+    dbClient.organizationDao().insert(dbSession, organizationDto);
+    ComponentDto project = ComponentTesting.newProjectDto(organizationDto);
+    userSessionRule.logIn().addProjectUuidPermissions(SCAN_EXECUTION, project.uuid());
+    dbClient.componentDao().insert(dbSession, project);
+    addDefaultProfile();
+
+    long lastUpdate = 1_500_000_000_000L;
+    ComponentDto file = ComponentTesting.newFileDto(project, null, "file").setPath("src/File.xoo");
+    dbClient.componentDao().insert(dbSession, file);
+    tester.get(FileSourceDao.class).insert(newFileSourceDto(file).setSrcHash("123456").setUpdatedAt(lastUpdate));
+    dbSession.commit();
+    long previousTimestamp = underTest.load(ProjectDataQuery.create().setModuleKey(project.key())).timestamp();
+
+    // source updated before the last update already read, but committed after the previous response
+    ComponentDto lateFile = ComponentTesting.newFileDto(project, null, "lateFile").setPath("src/Late.xoo");
+    dbClient.componentDao().insert(dbSession, lateFile);
+    tester.get(FileSourceDao.class).insert(newFileSourceDto(lateFile).setSrcHash("789456").setUpdatedAt(lastUpdate - 1_000L));
+    dbSession.commit();
+
+    Map<String, FileData> fileDataByPath = new HashMap<>();
+    underTest.load(ProjectDataQuery.create().setModuleKey(project.key()).setFilesChangedSince(previousTimestamp),
+      (moduleKey, path, fileData) -> fileDataByPath.put(path, fileData));
+
+    assertThat(fileDataByPath).containsOnlyKeys(file.path(), lateFile.path());
+    assertThat(fileDataByPath.get(lateFile.path()).hash()).isEqualTo("789456");
+  }
+
   private void addDefaultProfile() {
     QualityProfileDto profileDto = newQProfileDto(QProfileName.createFor(ServerTester.Xoo.KEY, "SonarQube way"), "abcd").setRulesUpdatedAt(
       formatDateTime(new Date())).setDefault(true);
@@ -27,7 +27,6 @@ import javax.annotation.Nullable;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
-import org.sonar.api.utils.System2;
 import org.sonar.api.utils.internal.TestSystem2;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.ce.queue.CeTask;
@@ -42,6 +41,7 @@ import org.sonar.db.ce.CeQueueDto;
 import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTesting;
+import org.sonar.server.computation.configuration.CeConfigurationRule;
 import org.sonar.server.computation.monitoring.CEQueueStatusImpl;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
@@ -51,25 +51,29 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.guava.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class InternalCeQueueImplTest {
 
   private static final String AN_ANALYSIS_UUID = "U1";
 
-  private System2 system2 = new TestSystem2().setNow(1_450_000_000_000L);
+  private TestSystem2 system2 = new TestSystem2().setNow(1_450_000_000_000L);
 
   @Rule
   public ExpectedException expectedException = ExpectedException.none();
   @Rule
   public DbTester dbTester = DbTester.create(system2);
+  @Rule
+  public CeConfigurationRule ceConfiguration = new CeConfigurationRule();
 
   private DbSession session = dbTester.getSession();
 
   private UuidFactory uuidFactory = UuidFactoryImpl.INSTANCE;
   private CEQueueStatus queueStatus = new CEQueueStatusImpl(dbTester.getDbClient());
   private DefaultOrganizationProvider defaultOrganizationProvider = TestDefaultOrganizationProvider.from(dbTester);
-  private InternalCeQueue underTest = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, defaultOrganizationProvider);
+  private InternalCeQueueImpl underTest = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, defaultOrganizationProvider,
+    ceConfiguration);
 
   @Test
   public void submit_returns_task_populated_from_CeTaskSubmit_and_creates_CeQueue_row() {
@@ -241,6 +245,111 @@ public class InternalCeQueueImplTest {
     assertThat(peek.isPresent()).isFalse();
   }
 
+  @Test
+  public void peek_tasks_of_all_idle_workers_at_once() throws Exception {
+    ceConfiguration.setWorkerCount(2);
+    CeTask task1 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    CeTask task3 = submit(CeTaskTypes.REPORT, "PROJECT_3");
+    Runnable listener = mock(Runnable.class);
+    underTest.addTasksAvailableListener(listener);
+
+    assertThat(underTest.peek().get().getUuid()).isEqualTo(task1.getUuid());
+    // second task is kept for the other worker, which is notified
+    verify(listener).run();
+    verifyCeQueueStatus(task2, CeQueueDto.Status.IN_PROGRESS);
+    verifyCeQueueStatus(task3, CeQueueDto.Status.PENDING);
+
+    assertThat(underTest.peek().get().getUuid()).isEqualTo(task2.getUuid());
+    assertThat(queueStatus.getInProgressCount()).isEqualTo(2);
+
+    // no idle workers, but the calling one
+    assertThat(underTest.peek().get().getUuid()).isEqualTo(task3.getUuid());
+    assertThat(underTest.peek().isPresent()).isFalse();
+    verify(listener).run();
+  }
+
+  @Test
+  public void start_date_of_peeked_task_is_the_date_it_is_handed_to_worker() throws Exception {
+    ceConfiguration.setWorkerCount(2);
+    CeTask task1 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    underTest.peek();
+
+    system2.setNow(1_450_000_001_000L);
+    assertThat(underTest.peek().get().getUuid()).isEqualTo(task2.getUuid());
+
+    assertThat(selectCeQueueDto(task1).getStartedAt()).isEqualTo(1_450_000_000_000L);
+    assertThat(selectCeQueueDto(task2).getStartedAt()).isEqualTo(1_450_000_001_000L);
+  }
+
+  @Test
+  public void do_not_hand_peeked_task_if_canceled_in_the_meantime() throws Exception {
+    ceConfiguration.setWorkerCount(2);
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    underTest.peek();
+    underTest.cancel(dbTester.getSession(), selectCeQueueDto(task2));
+
+    assertThat(underTest.peek().isPresent()).isFalse();
+  }
+
+  @Test
+  public void peeked_tasks_are_reset_to_pending_when_peek_is_paused() throws Exception {
+    ceConfiguration.setWorkerCount(2);
+    CeTask task1 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    underTest.peek();
+
+    underTest.pausePeek();
+
+    verifyCeQueueStatus(task1, CeQueueDto.Status.IN_PROGRESS);
+    verifyCeQueueStatus(task2, CeQueueDto.Status.PENDING);
+    assertThat(underTest.peek().isPresent()).isFalse();
+
+    underTest.resumePeek();
+    assertThat(underTest.peek().get().getUuid()).isEqualTo(task2.getUuid());
+  }
+
+  @Test
+  public void peeked_tasks_are_reset_to_pending_when_stopped() throws Exception {
+    ceConfiguration.setWorkerCount(2);
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    underTest.peek();
+
+    underTest.stop();
+
+    verifyCeQueueStatus(task2, CeQueueDto.Status.PENDING);
+  }
+
+  @Test
+  public void cancelAll_cancels_peeked_tasks_not_handed_to_workers() throws Exception {
+    ceConfiguration.setWorkerCount(2);
+    CeTask inProgressTask = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask peekedTask = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    underTest.peek();
+
+    assertThat(underTest.cancelAll()).isEqualTo(1);
+
+    verifyCeQueueStatus(inProgressTask, CeQueueDto.Status.IN_PROGRESS);
+    assertThat(dbTester.getDbClient().ceActivityDao().selectByUuid(dbTester.getSession(), peekedTask.getUuid()).get().getStatus())
+      .isEqualTo(CeActivityDto.Status.CANCELED);
+    assertThat(underTest.peek().isPresent()).isFalse();
+  }
+
+  @Test
+  public void clear_removes_peeked_tasks_not_handed_to_workers() throws Exception {
+    ceConfiguration.setWorkerCount(2);
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    submit(CeTaskTypes.REPORT, "PROJECT_2");
+    underTest.peek();
+
+    assertThat(underTest.clear()).isEqualTo(2);
+
+    assertThat(underTest.peek().isPresent()).isFalse();
+  }
+
   @Test
   public void peek_nothing_if_paused() throws Exception {
     submit(CeTaskTypes.REPORT, "PROJECT_1");
@@ -331,6 +440,14 @@ public class InternalCeQueueImplTest {
     assertThat(task.getSubmitterLogin()).isEqualTo(taskSubmit.getSubmitterLogin());
   }
 
+  private void verifyCeQueueStatus(CeTask task, CeQueueDto.Status expected) {
+    assertThat(selectCeQueueDto(task).getStatus()).isEqualTo(expected);
+  }
+
+  private CeQueueDto selectCeQueueDto(CeTask task) {
+    return dbTester.getDbClient().ceQueueDao().selectByUuid(dbTester.getSession(), task.getUuid()).get();
+  }
+
   private void verifyCeQueueDtoForTaskSubmit(CeTaskSubmit taskSubmit) {
     Optional<CeQueueDto> queueDto = dbTester.getDbClient().ceQueueDao().selectByUuid(dbTester.getSession(), taskSubmit.getUuid());
     assertThat(queueDto.isPresent()).isTrue();
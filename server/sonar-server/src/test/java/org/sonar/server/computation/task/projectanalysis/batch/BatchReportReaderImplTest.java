@@ -25,6 +25,7 @@ import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.sonar.api.utils.internal.JUnitTempFolder;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.scanner.protocol.output.ScannerReport;
@@ -54,6 +55,8 @@ public class BatchReportReaderImplTest {
 
   @Rule
   public JUnitTempFolder tempFolder = new JUnitTempFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
 
   private ScannerReportWriter writer;
   private BatchReportReaderImpl underTest;
@@ -315,4 +318,22 @@ public class BatchReportReaderImplTest {
     assertThat(res).containsExactly(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2);
     res.close();
   }
+
+  @Test
+  public void stop_releases_packed_report() {
+    writer.writeComponent(COMPONENT);
+    writer.pack();
+    assertThat(underTest.readComponent(COMPONENT_REF)).isEqualTo(COMPONENT);
+
+    underTest.stop();
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Packed report is closed");
+    underTest.readComponent(COMPONENT_REF);
+  }
+
+  @Test
+  public void stop_does_nothing_if_report_has_not_been_read() {
+    underTest.stop();
+  }
 }
@@ -0,0 +1,165 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.component.ReportComponent.builder;
+
+public class ComponentDataPrefetcherTest {
+
+  private static final Component FILE_1 = builder(Component.Type.FILE, 3).setUuid("F1").build();
+  private static final Component FILE_2 = builder(Component.Type.FILE, 4).setUuid("F2").build();
+  private static final Component FILE_3 = builder(Component.Type.FILE, 6).setUuid("F3").build();
+  private static final Component DIRECTORY_1 = builder(Component.Type.DIRECTORY, 2).setUuid("D1").addChildren(FILE_1, FILE_2).build();
+  private static final Component DIRECTORY_2 = builder(Component.Type.DIRECTORY, 5).setUuid("D2").addChildren(FILE_3).build();
+  private static final Component PROJECT = builder(Component.Type.PROJECT, 1).setUuid("P").addChildren(DIRECTORY_1, DIRECTORY_2).build();
+
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(PROJECT);
+
+  private List<List<String>> requests = new ArrayList<>();
+
+  @Test
+  public void load_data_of_next_components_in_post_order() {
+    ComponentDataPrefetcher<String> underTest = newPrefetcher(1L);
+
+    assertThat(underTest.get(FILE_1)).isEqualTo("data of F1");
+    assertThat(underTest.get(FILE_2)).isEqualTo("data of F2");
+    assertThat(underTest.get(FILE_3)).isEqualTo("data of F3");
+
+    assertThat(requests).containsExactly(asList("F1", "F2", "F3"));
+  }
+
+  @Test
+  public void return_null_and_do_not_load_components_rejected_by_filter() {
+    ComponentDataPrefetcher<String> underTest = newPrefetcher(1L);
+
+    assertThat(underTest.get(DIRECTORY_1)).isNull();
+    assertThat(underTest.get(PROJECT)).isNull();
+
+    assertThat(requests).isEmpty();
+  }
+
+  @Test
+  public void data_is_released_once_returned() {
+    ComponentDataPrefetcher<String> underTest = newPrefetcher(1L);
+
+    assertThat(underTest.get(FILE_2)).isEqualTo("data of F2");
+    assertThat(underTest.get(FILE_2)).isEqualTo("data of F2");
+
+    assertThat(requests).containsExactly(asList("F2", "F3"), singletonList("F2"));
+  }
+
+  @Test
+  public void return_null_when_loader_has_no_data() {
+    ComponentDataPrefetcher<String> underTest = new ComponentDataPrefetcher<>(treeRootHolder, c -> c.getType() == Component.Type.FILE,
+      Component::getUuid, uuids -> {
+        requests.add(uuids);
+        return new HashMap<>();
+      }, String::length);
+
+    assertThat(underTest.get(FILE_1)).isNull();
+    assertThat(underTest.get(FILE_2)).isNull();
+
+    assertThat(requests).hasSize(1);
+  }
+
+  @Test
+  public void batch_size_is_reduced_when_data_is_large() {
+    // each data of first batch weighs the whole memory budget, so that next batches contain only one component
+    ComponentDataPrefetcher<String> underTest = newPrefetcher(ComponentDataPrefetcher.MEMORY_BUDGET);
+
+    underTest.get(FILE_1);
+    underTest.get(FILE_2);
+    underTest.get(FILE_3);
+    // skipped data is not kept
+    underTest.get(FILE_1);
+    underTest.get(FILE_2);
+
+    assertThat(requests).containsExactly(asList("F1", "F2", "F3"), singletonList("F1"), singletonList("F2"));
+  }
+
+  @Test
+  public void load_only_requested_component_when_it_is_not_in_tree() {
+    Component other = builder(Component.Type.FILE, 10).setUuid("OTHER").build();
+    ComponentDataPrefetcher<String> underTest = newPrefetcher(1L);
+
+    assertThat(underTest.get(other)).isEqualTo("data of OTHER");
+
+    assertThat(requests).containsExactly(singletonList("OTHER"));
+  }
+
+  @Test
+  public void keep_data_of_batch_when_requested_out_of_order() {
+    ComponentDataPrefetcher<String> underTest = newPrefetcher(1L);
+
+    assertThat(underTest.get(FILE_2)).isEqualTo("data of F2");
+    assertThat(underTest.get(FILE_1)).isEqualTo("data of F1");
+    assertThat(underTest.get(FILE_3)).isEqualTo("data of F3");
+
+    assertThat(requests).containsExactly(asList("F2", "F3"), singletonList("F1"));
+  }
+
+  @Test
+  public void keep_data_of_next_batch_when_component_of_previous_batch_is_requested_out_of_order() {
+    List<Component> files = new ArrayList<>();
+    for (int i = 0; i < 250; i++) {
+      files.add(builder(Component.Type.FILE, 100 + i).setUuid("F" + i).build());
+    }
+    treeRootHolder.setRoot(builder(Component.Type.PROJECT, 1).setUuid("P").addChildren(files.toArray(new Component[0])).build());
+    ComponentDataPrefetcher<String> underTest = newPrefetcher(1L);
+
+    for (int i = 0; i < 98; i++) {
+      assertThat(underTest.get(files.get(i))).isEqualTo("data of F" + i);
+    }
+    // first component of next batch is requested before the last ones of first batch
+    assertThat(underTest.get(files.get(100))).isEqualTo("data of F100");
+    assertThat(underTest.get(files.get(99))).isEqualTo("data of F99");
+    assertThat(underTest.get(files.get(98))).isEqualTo("data of F98");
+    for (int i = 101; i < 250; i++) {
+      assertThat(underTest.get(files.get(i))).isEqualTo("data of F" + i);
+    }
+
+    assertThat(requests).hasSize(4);
+    assertThat(requests.get(0)).hasSize(ComponentDataPrefetcher.INITIAL_BATCH_SIZE).startsWith("F0").endsWith("F99");
+    assertThat(requests.get(1)).hasSize(150).startsWith("F100").endsWith("F249");
+    // data of previous batch is released, but not data of next batch
+    assertThat(requests.get(2)).containsExactly("F99");
+    assertThat(requests.get(3)).containsExactly("F98");
+  }
+
+  private ComponentDataPrefetcher<String> newPrefetcher(long weight) {
+    return new ComponentDataPrefetcher<>(treeRootHolder, c -> c.getType() == Component.Type.FILE, Component::getUuid, uuids -> {
+      requests.add(uuids);
+      Map<String, String> result = new HashMap<>();
+      uuids.forEach(uuid -> result.put(uuid, "data of " + uuid));
+      return result;
+    }, data -> weight);
+  }
+}
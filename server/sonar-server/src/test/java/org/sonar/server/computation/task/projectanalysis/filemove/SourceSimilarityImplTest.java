@@ -19,7 +19,10 @@
  */
 package org.sonar.server.computation.task.projectanalysis.filemove;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -53,4 +56,75 @@ public class SourceSimilarityImplTest {
     assertThat(underTest.score(asList("a"), asList("a", "b", "c"))).isEqualTo(33);
     assertThat(underTest.score(asList("a", "b", "c"), asList("a"))).isEqualTo(33);
   }
+
+  @Test
+  public void bounded_score_is_the_same_as_score_when_greater_than_or_equal_to_min_score() {
+    assertThat(underTest.score(asList("a", "b", "c"), asList("a", "b", "c"), 85)).isEqualTo(100);
+    assertThat(underTest.score(asList("a", "b", "c", "d"), asList("a", "b", "e", "f"), 50)).isEqualTo(50);
+    assertThat(underTest.score(asList("a"), asList("a", "b", "c"), 33)).isEqualTo(33);
+    assertThat(underTest.score(Collections.<String>emptyList(), Collections.<String>emptyList(), 85))
+      .isEqualTo(underTest.score(Collections.<String>emptyList(), Collections.<String>emptyList()));
+  }
+
+  @Test
+  public void bounded_score_is_lower_than_min_score_when_score_is_lower_than_min_score() {
+    assertThat(underTest.score(asList("a", "b", "c", "d"), asList("a", "b", "e", "f"), 51)).isLessThan(51);
+    // sizes are too different
+    assertThat(underTest.score(asList("a"), asList("a", "b", "c"), 34)).isLessThan(34);
+    assertThat(underTest.score(asList("a", "b", "c"), asList("d", "e"), 1)).isLessThan(1);
+  }
+
+  @Test
+  public void bounded_score_is_consistent_with_score_on_random_sources() {
+    Random random = new Random(42);
+    for (int k = 0; k < 500; k++) {
+      List<String> left = randomSource(random);
+      List<String> right = mutate(random, left);
+      int score = underTest.score(left, right);
+      for (int minScore : new int[] {0, 50, 85, 90, 100}) {
+        int boundedScore = underTest.score(left, right, minScore);
+        if (score >= minScore) {
+          assertThat(boundedScore).isEqualTo(score);
+        } else {
+          assertThat(boundedScore).isLessThan(minScore);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void bounded_levenshtein_distance_is_exact_up_to_max_distance() {
+    List<String> left = asList("a", "b", "c", "d", "e");
+    List<String> right = asList("a", "x", "c", "y");
+    assertThat(underTest.levenshteinDistance(left, right)).isEqualTo(3);
+    assertThat(underTest.boundedLevenshteinDistance(left, right, 3)).isEqualTo(3);
+    assertThat(underTest.boundedLevenshteinDistance(left, right, 5)).isEqualTo(3);
+    assertThat(underTest.boundedLevenshteinDistance(left, right, 2)).isEqualTo(3);
+    assertThat(underTest.boundedLevenshteinDistance(left, right, 1)).isEqualTo(2);
+  }
+
+  private static List<String> randomSource(Random random) {
+    int size = random.nextInt(60);
+    List<String> lines = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      lines.add("line" + random.nextInt(20));
+    }
+    return lines;
+  }
+
+  private static List<String> mutate(Random random, List<String> source) {
+    List<String> lines = new ArrayList<>(source);
+    int changes = random.nextInt(1 + source.size() / 4);
+    for (int i = 0; i < changes; i++) {
+      int operation = random.nextInt(3);
+      if (operation == 0 || lines.isEmpty()) {
+        lines.add(random.nextInt(lines.size() + 1), "added" + random.nextInt(5));
+      } else if (operation == 1) {
+        lines.remove(random.nextInt(lines.size()));
+      } else {
+        lines.set(random.nextInt(lines.size()), "changed" + random.nextInt(5));
+      }
+    }
+    return lines;
+  }
 }
@@ -0,0 +1,192 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class DefaultIssueCodecTest {
+
+  private static final Date DATE = new Date(1_500_000_000_000L);
+
+  private DefaultIssueCodec underTest = new DefaultIssueCodec();
+
+  @Test
+  public void write_and_read_issue_with_all_fields() throws Exception {
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ABCD")
+      .setType(RuleType.BUG)
+      .setComponentUuid("FILE1")
+      .setComponentKey("PROJECT:File1")
+      .setModuleUuid("MODULE1")
+      .setModuleUuidPath(".MODULE1.")
+      .setProjectUuid("PROJECT1")
+      .setProjectKey("PROJECT")
+      .setRuleKey(RuleKey.of("xoo", "x1"))
+      .setLanguage("xoo")
+      .setSeverity(Severity.MAJOR)
+      .setManualSeverity(true)
+      .setMessage("the message")
+      .setLine(10)
+      .setGap(2.5)
+      .setEffort(Duration.create(15L))
+      .setStatus("RESOLVED")
+      .setResolution("FIXED")
+      .setAssignee("john")
+      .setChecksum("checksum")
+      .setAttribute("JIRA", "FOO-123")
+      .setAuthorLogin("author")
+      .setTags(asList("tag1", "tag2"))
+      .setLocations(DbIssues.Locations.newBuilder().setTextRange(DbCommons.TextRange.newBuilder().setStartLine(10).setEndLine(12)).build())
+      .setCreationDate(DATE)
+      .setUpdateDate(DATE)
+      .setCloseDate(DATE)
+      .setNew(false)
+      .setBeingClosed(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setSelectedAt(1_000L)
+      .addComment(new DefaultIssueComment().setKey("COMMENT1").setIssueKey("ABCD").setUserLogin("john").setMarkdownText("comment")
+        .setCreatedAt(DATE).setUpdatedAt(DATE).setNew(true));
+
+    DefaultIssue read = writeAndRead(issue);
+
+    assertThat(read.key()).isEqualTo("ABCD");
+    assertThat(read.type()).isEqualTo(RuleType.BUG);
+    assertThat(read.componentUuid()).isEqualTo("FILE1");
+    assertThat(read.componentKey()).isEqualTo("PROJECT:File1");
+    assertThat(read.moduleUuid()).isEqualTo("MODULE1");
+    assertThat(read.moduleUuidPath()).isEqualTo(".MODULE1.");
+    assertThat(read.projectUuid()).isEqualTo("PROJECT1");
+    assertThat(read.projectKey()).isEqualTo("PROJECT");
+    assertThat(read.ruleKey()).isEqualTo(RuleKey.of("xoo", "x1"));
+    assertThat(read.language()).isEqualTo("xoo");
+    assertThat(read.severity()).isEqualTo(Severity.MAJOR);
+    assertThat(read.manualSeverity()).isTrue();
+    assertThat(read.message()).isEqualTo("the message");
+    assertThat(read.line()).isEqualTo(10);
+    assertThat(read.gap()).isEqualTo(2.5);
+    assertThat(read.effortInMinutes()).isEqualTo(15L);
+    assertThat(read.status()).isEqualTo("RESOLVED");
+    assertThat(read.resolution()).isEqualTo("FIXED");
+    assertThat(read.assignee()).isEqualTo("john");
+    assertThat(read.checksum()).isEqualTo("checksum");
+    assertThat(read.attributes()).containsOnly(entry("JIRA", "FOO-123"));
+    assertThat(read.authorLogin()).isEqualTo("author");
+    assertThat(read.tags()).containsExactly("tag1", "tag2");
+    assertThat(read.<DbIssues.Locations>getLocations()).isEqualTo(issue.getLocations());
+    assertThat(read.creationDate()).isEqualTo(DATE);
+    assertThat(read.updateDate()).isEqualTo(DATE);
+    assertThat(read.closeDate()).isEqualTo(DATE);
+    assertThat(read.isNew()).isFalse();
+    assertThat(read.isBeingClosed()).isTrue();
+    assertThat(read.isOnDisabledRule()).isTrue();
+    assertThat(read.isChanged()).isTrue();
+    assertThat(read.mustSendNotifications()).isTrue();
+    assertThat(read.selectedAt()).isEqualTo(1_000L);
+    assertThat(read.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) read.comments().get(0);
+    assertThat(comment.key()).isEqualTo("COMMENT1");
+    assertThat(comment.issueKey()).isEqualTo("ABCD");
+    assertThat(comment.userLogin()).isEqualTo("john");
+    assertThat(comment.markdownText()).isEqualTo("comment");
+    assertThat(comment.createdAt()).isEqualTo(DATE);
+    assertThat(comment.updatedAt()).isEqualTo(DATE);
+    assertThat(comment.isNew()).isTrue();
+  }
+
+  @Test
+  public void write_and_read_issue_with_only_mandatory_fields() throws Exception {
+    DefaultIssue read = writeAndRead(new DefaultIssue().setKey("ABCD"));
+
+    assertThat(read.key()).isEqualTo("ABCD");
+    assertThat(read.type()).isNull();
+    assertThat(read.ruleKey()).isNull();
+    assertThat(read.status()).isNull();
+    assertThat(read.line()).isNull();
+    assertThat(read.effort()).isNull();
+    assertThat(read.<DbIssues.Locations>getLocations()).isNull();
+    assertThat(read.attributes()).isEmpty();
+    assertThat(read.tags()).isEmpty();
+    assertThat(read.comments()).isEmpty();
+    assertThat(read.changes()).isEmpty();
+    assertThat(read.currentChange()).isNull();
+    assertThat(read.isNew()).isTrue();
+  }
+
+  @Test
+  public void keep_current_change_as_one_of_changes() throws Exception {
+    FieldDiffs previousChange = new FieldDiffs().setIssueKey("ABCD").setUserLogin("john").setCreationDate(DATE);
+    previousChange.setDiff("severity", Severity.MINOR, Severity.MAJOR);
+    DefaultIssue issue = new DefaultIssue().setKey("ABCD").addChange(previousChange);
+    IssueChangeContext context = IssueChangeContext.createScan(DATE);
+    issue.setFieldChange(context, "line", 5, 10);
+    issue.setFieldChange(context, "effort", 10L, 20L);
+
+    DefaultIssue read = writeAndRead(issue);
+
+    assertThat(read.changes()).hasSize(3);
+    FieldDiffs readPrevious = read.changes().get(0);
+    assertThat(readPrevious.issueKey()).isEqualTo("ABCD");
+    assertThat(readPrevious.userLogin()).isEqualTo("john");
+    assertThat(readPrevious.creationDate()).isEqualTo(DATE);
+    assertThat(readPrevious.get("severity").oldValue()).isEqualTo(Severity.MINOR);
+    assertThat(readPrevious.get("severity").newValue()).isEqualTo(Severity.MAJOR);
+
+    FieldDiffs readCurrent = read.currentChange();
+    assertThat(read.changes().get(1)).isSameAs(readCurrent);
+    assertThat(read.changes().get(2)).isSameAs(readCurrent);
+    assertThat(readCurrent.diffs().keySet()).containsExactly("line", "effort");
+    assertThat(readCurrent.get("line").oldValue()).isEqualTo(5);
+    assertThat(readCurrent.get("effort").newValue()).isEqualTo(20L);
+  }
+
+  private DefaultIssue writeAndRead(DefaultIssue issue) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      underTest.write(issue, output);
+    }
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      DefaultIssue read = underTest.read(input);
+      assertThat(input.read()).isEqualTo(-1);
+      return read;
+    }
+  }
+}
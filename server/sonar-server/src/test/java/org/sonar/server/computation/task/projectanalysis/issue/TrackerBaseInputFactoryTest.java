@@ -20,33 +20,52 @@
 package org.sonar.server.computation.task.projectanalysis.issue;
 
 import com.google.common.base.Optional;
+import java.util.Collections;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.source.FileSourceDao;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
 
+import static com.google.common.collect.Sets.newHashSet;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class TrackerBaseInputFactoryTest {
   private static final String FILE_UUID = "uuid";
+  private static final String FILE_2_UUID = "uuid 2";
   private static final ReportComponent FILE = ReportComponent.builder(Component.Type.FILE, 1).setUuid(FILE_UUID).build();
+  private static final ReportComponent FILE_2 = ReportComponent.builder(Component.Type.FILE, 2).setUuid(FILE_2_UUID).build();
+  private static final ReportComponent PROJECT = ReportComponent.builder(Component.Type.PROJECT, 3).setUuid("project uuid")
+    .addChildren(FILE, FILE_2).build();
+
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(PROJECT);
 
   private BaseIssuesLoader baseIssuesLoader = mock(BaseIssuesLoader.class);
   private DbClient dbClient = mock(DbClient.class);
   private DbSession dbSession = mock(DbSession.class);
   private FileSourceDao fileSourceDao = mock(FileSourceDao.class);
+  private ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues = new ComponentsWithUnprocessedIssues();
 
   private MovedFilesRepository movedFilesRepository = mock(MovedFilesRepository.class);
 
-  private TrackerBaseInputFactory underTest = new TrackerBaseInputFactory(baseIssuesLoader, dbClient, movedFilesRepository);
+  private TrackerBaseInputFactory underTest = new TrackerBaseInputFactory(baseIssuesLoader, dbClient, movedFilesRepository, treeRootHolder,
+    componentsWithUnprocessedIssues);
 
   @Before
   public void setUp() throws Exception {
@@ -54,13 +73,14 @@ public class TrackerBaseInputFactoryTest {
     when(dbClient.fileSourceDao()).thenReturn(fileSourceDao);
     when(movedFilesRepository.getOriginalFile(any(Component.class)))
       .thenReturn(Optional.<MovedFilesRepository.OriginalFile>absent());
+    when(baseIssuesLoader.loadForComponentUuids(anyListOf(String.class))).thenReturn(Collections.emptyMap());
   }
 
   @Test
   public void create_returns_Input_which_retrieves_lines_hashes_of_specified_file_component_when_it_has_no_original_file() {
     underTest.create(FILE).getLineHashSequence();
 
-    verify(fileSourceDao).selectLineHashes(dbSession, FILE_UUID);
+    verify(fileSourceDao).selectLineHashesByFileUuids(eq(dbSession), eq(asList(FILE_UUID, FILE_2_UUID)), any());
   }
 
   @Test
@@ -73,20 +93,30 @@ public class TrackerBaseInputFactoryTest {
 
     underTest.create(FILE).getLineHashSequence();
 
-    verify(fileSourceDao).selectLineHashes(dbSession, originalUuid);
-    verify(fileSourceDao, times(0)).selectLineHashes(dbSession, FILE_UUID);
+    verify(fileSourceDao).selectLineHashesByFileUuids(eq(dbSession), eq(asList(originalUuid, FILE_2_UUID)), any());
+  }
+
+  @Test
+  public void lines_hashes_of_next_files_are_loaded_by_the_same_request() {
+    underTest.create(FILE).getLineHashSequence();
+    underTest.create(FILE_2).getLineHashSequence();
+
+    verify(fileSourceDao, times(1)).selectLineHashesByFileUuids(eq(dbSession), anyListOf(String.class), any());
   }
 
   @Test
   public void create_returns_Input_which_retrieves_issues_of_specified_file_component_when_it_has_no_original_file() {
+    componentsWithUnprocessedIssues.setUuids(newHashSet(FILE_UUID));
+
     underTest.create(FILE).getIssues();
 
-    verify(baseIssuesLoader).loadForComponentUuid(FILE_UUID);
+    verify(baseIssuesLoader).loadForComponentUuids(singletonList(FILE_UUID));
   }
 
   @Test
   public void create_returns_Input_which_retrieves_issues_of_original_file_of_component_when_it_has_one() {
     String originalUuid = "original uuid";
+    componentsWithUnprocessedIssues.setUuids(newHashSet(originalUuid));
 
     when(movedFilesRepository.getOriginalFile(FILE)).thenReturn(
         Optional.of(new MovedFilesRepository.OriginalFile(6542, originalUuid, "original key"))
@@ -94,7 +124,25 @@ public class TrackerBaseInputFactoryTest {
 
     underTest.create(FILE).getIssues();
 
-    verify(baseIssuesLoader).loadForComponentUuid(originalUuid);
-    verify(baseIssuesLoader, times(0)).loadForComponentUuid(FILE_UUID);
+    verify(baseIssuesLoader).loadForComponentUuids(singletonList(originalUuid));
+  }
+
+  @Test
+  public void issues_of_next_files_are_loaded_by_the_same_request() {
+    componentsWithUnprocessedIssues.setUuids(newHashSet(FILE_UUID, FILE_2_UUID));
+
+    underTest.create(FILE).getIssues();
+    underTest.create(FILE_2).getIssues();
+
+    verify(baseIssuesLoader, times(1)).loadForComponentUuids(asList(FILE_UUID, FILE_2_UUID));
+  }
+
+  @Test
+  public void do_not_load_issues_of_components_without_unprocessed_issues() {
+    componentsWithUnprocessedIssues.setUuids(Collections.emptySet());
+
+    assertThat(underTest.create(FILE).getIssues()).isEmpty();
+
+    verifyZeroInteractions(baseIssuesLoader);
   }
 }
@@ -0,0 +1,141 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.tracking.Input;
+import org.sonar.core.issue.tracking.Tracker;
+import org.sonar.core.issue.tracking.Tracking;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonar.server.computation.task.projectanalysis.component.ReportComponent.builder;
+
+public class TrackerExecutionTest {
+
+  private static final Component FILE_1 = builder(Component.Type.FILE, 2).build();
+  private static final Component FILE_2 = builder(Component.Type.FILE, 3).build();
+  private static final Component FILE_3 = builder(Component.Type.FILE, 4).build();
+  private static final Component PROJECT = builder(Component.Type.PROJECT, 1).addChildren(FILE_1, FILE_2, FILE_3).build();
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(PROJECT);
+
+  private TrackerBaseInputFactory baseInputFactory = mock(TrackerBaseInputFactory.class);
+  private TrackerRawInputFactory rawInputFactory = mock(TrackerRawInputFactory.class);
+  private Tracker<DefaultIssue, DefaultIssue> tracker = mock(Tracker.class);
+  private MapSettings settings = new MapSettings();
+  private TrackerExecution underTest;
+
+  @After
+  public void tearDown() {
+    if (underTest != null) {
+      underTest.stop();
+    }
+  }
+
+  @Test
+  public void single_thread_by_default() {
+    underTest = newTrackerExecution();
+
+    assertThat(underTest.getThreads()).isEqualTo(1);
+  }
+
+  @Test
+  public void track_component_in_current_thread() {
+    underTest = newTrackerExecution();
+    Tracking<DefaultIssue, DefaultIssue> tracking = mockTracking(FILE_1);
+
+    assertThat(underTest.track(FILE_1)).isSameAs(tracking);
+
+    verify(rawInputFactory).create(FILE_1);
+    verify(rawInputFactory, times(0)).create(FILE_2);
+  }
+
+  @Test
+  public void track_next_files_in_advance_when_multiple_threads() {
+    settings.setProperty(TrackerExecution.THREADS_PROPERTY, 2);
+    underTest = newTrackerExecution();
+    Tracking<DefaultIssue, DefaultIssue> tracking1 = mockTracking(FILE_1);
+    Tracking<DefaultIssue, DefaultIssue> tracking2 = mockTracking(FILE_2);
+    Tracking<DefaultIssue, DefaultIssue> tracking3 = mockTracking(FILE_3);
+
+    assertThat(underTest.track(FILE_1)).isSameAs(tracking1);
+    verify(rawInputFactory, timeout(10_000)).create(FILE_2);
+    verify(rawInputFactory, timeout(10_000)).create(FILE_3);
+
+    assertThat(underTest.track(FILE_2)).isSameAs(tracking2);
+    assertThat(underTest.track(FILE_3)).isSameAs(tracking3);
+    verify(rawInputFactory, times(1)).create(FILE_2);
+    verify(rawInputFactory, times(1)).create(FILE_3);
+  }
+
+  @Test
+  public void track_components_which_are_not_files_in_current_thread() {
+    settings.setProperty(TrackerExecution.THREADS_PROPERTY, 2);
+    underTest = newTrackerExecution();
+    Tracking<DefaultIssue, DefaultIssue> tracking = mockTracking(PROJECT);
+
+    assertThat(underTest.track(PROJECT)).isSameAs(tracking);
+
+    verify(rawInputFactory, times(0)).create(FILE_1);
+  }
+
+  @Test
+  public void propagate_failure_of_tracking_in_advance() {
+    settings.setProperty(TrackerExecution.THREADS_PROPERTY, 2);
+    underTest = newTrackerExecution();
+    when(rawInputFactory.create(FILE_1)).thenThrow(new IllegalStateException("failure"));
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("failure");
+
+    underTest.track(FILE_1);
+  }
+
+  private TrackerExecution newTrackerExecution() {
+    return new TrackerExecution(baseInputFactory, rawInputFactory, tracker, treeRootHolder, settings);
+  }
+
+  private Tracking<DefaultIssue, DefaultIssue> mockTracking(Component component) {
+    Input<DefaultIssue> rawInput = mock(Input.class);
+    Input<DefaultIssue> baseInput = mock(Input.class);
+    Tracking<DefaultIssue, DefaultIssue> tracking = mock(Tracking.class);
+    when(rawInputFactory.create(component)).thenReturn(rawInput);
+    when(baseInputFactory.create(component)).thenReturn(baseInput);
+    when(tracker.track(same(rawInput), any(Input.class))).thenReturn(tracking);
+    return tracking;
+  }
+}
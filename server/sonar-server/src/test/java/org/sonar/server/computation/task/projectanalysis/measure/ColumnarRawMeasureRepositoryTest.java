@@ -0,0 +1,151 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.collect.SetMultimap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.component.DumbDeveloper;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.measure.Measure.newMeasureBuilder;
+
+public class ColumnarRawMeasureRepositoryTest {
+
+  private static final ReportComponent FILE = ReportComponent.builder(Component.Type.FILE, 1).setKey("file").build();
+  private static final ReportComponent OTHER_FILE = ReportComponent.builder(Component.Type.FILE, 1_000).setKey("other file").build();
+  private static final Metric INT_METRIC = new MetricImpl(1, "int", "int", Metric.MetricType.INT);
+  private static final Metric FLOAT_METRIC = new MetricImpl(2, "float", "float", Metric.MetricType.FLOAT, 1, null, false);
+  private static final Metric STRING_METRIC = new MetricImpl(3, "string", "string", Metric.MetricType.STRING);
+  private static final Developer DEVELOPER = new DumbDeveloper("DEV1");
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private ColumnarRawMeasureRepository underTest = new ColumnarRawMeasureRepository();
+
+  @Test
+  public void numeric_measures_are_read_with_same_value_and_variation() {
+    underTest.add(FILE, INT_METRIC, newMeasureBuilder().setVariation(-2.5d).create(12));
+    underTest.add(OTHER_FILE, INT_METRIC, newMeasureBuilder().create(5));
+    underTest.add(FILE, FLOAT_METRIC, newMeasureBuilder().create(1.26d, 1));
+
+    Measure intMeasure = underTest.getRawMeasure(FILE, INT_METRIC).get();
+    assertThat(intMeasure.getValueType()).isEqualTo(Measure.ValueType.INT);
+    assertThat(intMeasure.getIntValue()).isEqualTo(12);
+    assertThat(intMeasure.getVariation()).isEqualTo(-2.5d);
+    Measure otherIntMeasure = underTest.getRawMeasure(OTHER_FILE, INT_METRIC).get();
+    assertThat(otherIntMeasure.getIntValue()).isEqualTo(5);
+    assertThat(otherIntMeasure.hasVariation()).isFalse();
+    assertThat(underTest.getRawMeasure(FILE, FLOAT_METRIC).get().getDoubleValue()).isEqualTo(1.3d);
+  }
+
+  @Test
+  public void no_value_measures_are_read_without_value() {
+    underTest.add(FILE, INT_METRIC, newMeasureBuilder().createNoValue());
+
+    assertThat(underTest.getRawMeasure(FILE, INT_METRIC).get().getValueType()).isEqualTo(Measure.ValueType.NO_VALUE);
+  }
+
+  @Test
+  public void other_measures_are_stored_as_is() {
+    Measure stringMeasure = newMeasureBuilder().create("value");
+    Measure measureWithData = newMeasureBuilder().create(3, "data");
+    underTest.add(FILE, STRING_METRIC, stringMeasure);
+    underTest.add(FILE, INT_METRIC, measureWithData);
+
+    assertThat(underTest.getRawMeasure(FILE, STRING_METRIC).get()).isSameAs(stringMeasure);
+    assertThat(underTest.getRawMeasure(FILE, INT_METRIC).get()).isSameAs(measureWithData);
+  }
+
+  @Test
+  public void update_replaces_object_measure_by_numeric_measure() {
+    underTest.add(FILE, INT_METRIC, newMeasureBuilder().create(3, "data"));
+
+    underTest.update(FILE, INT_METRIC, newMeasureBuilder().create(4));
+
+    Measure measure = underTest.getRawMeasure(FILE, INT_METRIC).get();
+    assertThat(measure.getIntValue()).isEqualTo(4);
+    assertThat(measure.getData()).isNull();
+  }
+
+  @Test
+  public void developer_measures_are_distinct_from_component_measure() {
+    Measure devMeasure = newMeasureBuilder().forDeveloper(DEVELOPER).create(2);
+    underTest.add(FILE, INT_METRIC, newMeasureBuilder().create(1));
+    underTest.add(FILE, INT_METRIC, devMeasure);
+
+    assertThat(underTest.getRawMeasure(FILE, INT_METRIC).get().getIntValue()).isEqualTo(1);
+    assertThat(underTest.getRawMeasures(FILE, INT_METRIC)).hasSize(2).contains(devMeasure);
+  }
+
+  @Test
+  public void getRawMeasures_returns_measures_of_all_metrics() {
+    underTest.add(FILE, INT_METRIC, newMeasureBuilder().create(1));
+    underTest.add(FILE, STRING_METRIC, newMeasureBuilder().create("value"));
+    underTest.add(OTHER_FILE, FLOAT_METRIC, newMeasureBuilder().create(1d, 1));
+
+    SetMultimap<String, Measure> measures = underTest.getRawMeasures(FILE);
+
+    assertThat(measures.keySet()).containsOnly("int", "string");
+    assertThat(underTest.getRawMeasures(ReportComponent.builder(Component.Type.FILE, 2_000).build()).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void add_does_not_override_existing_measure_with_DO_NOT_OVERRIDE_policy() {
+    underTest.add(FILE, INT_METRIC, newMeasureBuilder().create(1));
+
+    underTest.add(FILE, INT_METRIC, newMeasureBuilder().create(2), OverridePolicy.DO_NOT_OVERRIDE);
+
+    assertThat(underTest.getRawMeasure(FILE, INT_METRIC).get().getIntValue()).isEqualTo(1);
+  }
+
+  @Test
+  public void add_fails_if_measure_already_exists() {
+    underTest.add(FILE, INT_METRIC, newMeasureBuilder().create(1));
+
+    expectedException.expect(UnsupportedOperationException.class);
+    expectedException.expectMessage("a measure can be set only once for a specific Component (key=file), Metric (key=int). Use update method");
+
+    underTest.add(FILE, INT_METRIC, newMeasureBuilder().create(2));
+  }
+
+  @Test
+  public void update_fails_if_measure_does_not_exist() {
+    expectedException.expect(UnsupportedOperationException.class);
+    expectedException.expectMessage("a measure can be updated only if one already exists for a specific Component (key=file), Metric (key=int). Use add method");
+
+    underTest.update(FILE, INT_METRIC, newMeasureBuilder().create(2));
+  }
+
+  @Test
+  public void add_fails_if_value_type_is_not_consistent_with_metric() {
+    expectedException.expect(IllegalArgumentException.class);
+
+    underTest.add(FILE, INT_METRIC, newMeasureBuilder().create("value"));
+  }
+}
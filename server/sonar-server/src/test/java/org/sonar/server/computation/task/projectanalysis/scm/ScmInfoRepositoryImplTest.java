@@ -32,6 +32,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.TempFolder;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.core.hash.SourceHashComputer;
 import org.sonar.db.DbClient;
@@ -46,6 +47,8 @@ import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.ViewsComponent;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepository;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepositoryImpl;
@@ -54,6 +57,8 @@ import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepos
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.guava.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.sonar.api.utils.log.LoggerLevel.TRACE;
 import static org.sonar.server.computation.task.projectanalysis.component.ReportComponent.builder;
@@ -82,11 +87,13 @@ public class ScmInfoRepositoryImplTest {
   public AnalysisMetadataHolderRule analysisMetadataHolder = new AnalysisMetadataHolderRule();
   @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(FILE);
 
   DbClient dbClient = dbTester.getDbClient();
 
   ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(reportReader, analysisMetadataHolder, dbClient,
-    new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(reportReader)));
+    new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(reportReader, mock(TempFolder.class))), treeRootHolder);
 
   @Test
   public void read_from_report() throws Exception {
@@ -210,7 +217,8 @@ public class ScmInfoRepositoryImplTest {
     AnalysisMetadataHolder analysisMetadataHolder = mock(AnalysisMetadataHolder.class);
     DbClient dbClient = mock(DbClient.class);
     SourceHashRepository sourceHashRepository = mock(SourceHashRepository.class);
-    ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository);
+    ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository,
+      mock(TreeRootHolder.class));
 
     assertThat(underTest.getScmInfo(component)).isAbsent();
 
@@ -231,6 +239,29 @@ public class ScmInfoRepositoryImplTest {
     assertThat(logTester.logs(TRACE)).isEmpty();
   }
 
+  @Test
+  public void read_changesets_of_file_only_once() throws Exception {
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+    Component file2 = builder(Component.Type.FILE, 2).setKey("FILE2_KEY").setUuid("FILE2_UUID").build();
+    treeRootHolder.setRoot(builder(Component.Type.PROJECT, 3).setUuid("PROJECT_UUID").addChildren(FILE, file2).build());
+    addCopyFromPreviousChangesetInReport();
+    reportReader.putChangesets(ScannerReport.Changesets.newBuilder()
+      .setComponentRef(2)
+      .addChangeset(ScannerReport.Changesets.Changeset.newBuilder().setAuthor("john").setDate(DATE_1).setRevision("rev-1"))
+      .addChangesetIndexByLine(0)
+      .build());
+    BatchReportReader spiedReportReader = spy(reportReader);
+    underTest = new ScmInfoRepositoryImpl(spiedReportReader, analysisMetadataHolder, dbClient,
+      new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(reportReader, mock(TempFolder.class))), treeRootHolder);
+
+    // changesets of file2 are read when sources of next files copied from db are loaded
+    assertThat(underTest.getScmInfo(FILE)).isAbsent();
+    assertThat(underTest.getScmInfo(file2).get().getAllChangesets()).hasSize(1);
+
+    verify(spiedReportReader).readChangesets(FILE_REF);
+    verify(spiedReportReader).readChangesets(2);
+  }
+
   @Test
   public void not_read_in_db_on_first_analysis_when_CopyFromPrevious_is_true() throws Exception {
     analysisMetadataHolder.setBaseAnalysis(null);
@@ -32,7 +32,6 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.sonar.core.hash.SourceHashComputer;
-import org.sonar.core.util.CloseableIterator;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.component.ViewsComponent;
@@ -127,19 +126,19 @@ public class SourceHashRepositoryImplTest {
 
   @Test
   public void getRawSourceHash_reads_lines_from_SourceLinesRepository_only_the_first_time() {
-    when(mockedSourceLinesRepository.readLines(FILE_COMPONENT)).thenReturn(CloseableIterator.from(Arrays.asList(SOME_LINES).iterator()));
+    when(mockedSourceLinesRepository.readSourceHash(FILE_COMPONENT)).thenReturn("hash");
 
     String rawSourceHash = mockedUnderTest.getRawSourceHash(FILE_COMPONENT);
     String rawSourceHash1 = mockedUnderTest.getRawSourceHash(FILE_COMPONENT);
 
     assertThat(rawSourceHash).isSameAs(rawSourceHash1);
-    verify(mockedSourceLinesRepository, times(1)).readLines(FILE_COMPONENT);
+    verify(mockedSourceLinesRepository, times(1)).readSourceHash(FILE_COMPONENT);
   }
 
   @Test
   public void getRawSourceHash_let_exception_go_through() {
     IllegalArgumentException thrown = new IllegalArgumentException("this IAE will cause the hash computation to fail");
-    when(mockedSourceLinesRepository.readLines(FILE_COMPONENT)).thenThrow(thrown);
+    when(mockedSourceLinesRepository.readSourceHash(FILE_COMPONENT)).thenThrow(thrown);
 
     expectedException.expect(IllegalArgumentException.class);
     expectedException.expectMessage(thrown.getMessage());
@@ -0,0 +1,116 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.source;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.FileAttributes;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.duplication.DuplicationRepositoryRule;
+import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
+import org.sonar.server.computation.task.projectanalysis.scm.Changeset;
+import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepositoryRule;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourceInputsHasherTest {
+
+  private static final int FILE_REF = 2;
+  private static final String SRC_HASH = "ee5a58024a155466b43bc559d953e018";
+  private static final Component FILE = ReportComponent.builder(Component.Type.FILE, FILE_REF)
+    .setFileAttributes(new FileAttributes(false, null, 3))
+    .build();
+
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).addChildren(FILE).build());
+  @Rule
+  public BatchReportReaderRule reportReader = new BatchReportReaderRule();
+  @Rule
+  public ScmInfoRepositoryRule scmInfoRepository = new ScmInfoRepositoryRule();
+  @Rule
+  public DuplicationRepositoryRule duplicationRepository = DuplicationRepositoryRule.create(treeRootHolder);
+
+  private SourceInputsHasher underTest = new SourceInputsHasher(reportReader, scmInfoRepository, duplicationRepository);
+
+  @Test
+  public void hash_is_stable() {
+    String hash = underTest.hash(FILE, SRC_HASH);
+
+    assertThat(hash).hasSize(32);
+    assertThat(underTest.hash(FILE, SRC_HASH)).isEqualTo(hash);
+  }
+
+  @Test
+  public void hash_changes_with_source() {
+    assertThat(underTest.hash(FILE, SRC_HASH)).isNotEqualTo(underTest.hash(FILE, "137f72c3708c6bd0de00a0e5a69c699b"));
+  }
+
+  @Test
+  public void hash_changes_with_coverage() {
+    String hash = underTest.hash(FILE, SRC_HASH);
+
+    reportReader.putCoverage(FILE_REF, singletonList(ScannerReport.LineCoverage.newBuilder().setLine(1).setHits(true).build()));
+
+    assertThat(underTest.hash(FILE, SRC_HASH)).isNotEqualTo(hash);
+  }
+
+  @Test
+  public void hash_changes_with_highlighting_and_symbols() {
+    String hash = underTest.hash(FILE, SRC_HASH);
+
+    reportReader.putSyntaxHighlighting(FILE_REF, singletonList(ScannerReport.SyntaxHighlightingRule.newBuilder()
+      .setRange(ScannerReport.TextRange.newBuilder().setStartLine(1).setEndLine(1).setStartOffset(0).setEndOffset(2).build())
+      .setType(ScannerReport.SyntaxHighlightingRule.HighlightingType.KEYWORD)
+      .build()));
+    String hashWithHighlighting = underTest.hash(FILE, SRC_HASH);
+    assertThat(hashWithHighlighting).isNotEqualTo(hash);
+
+    reportReader.putSymbols(FILE_REF, singletonList(ScannerReport.Symbol.newBuilder()
+      .setDeclaration(ScannerReport.TextRange.newBuilder().setStartLine(1).setEndLine(1).setStartOffset(2).setEndOffset(4).build())
+      .build()));
+    assertThat(underTest.hash(FILE, SRC_HASH)).isNotEqualTo(hashWithHighlighting);
+  }
+
+  @Test
+  public void hash_changes_with_scm() {
+    String hash = underTest.hash(FILE, SRC_HASH);
+
+    scmInfoRepository.setScmInfo(FILE_REF, Changeset.newChangesetBuilder().setAuthor("john").setDate(123456789L).setRevision("rev-1").build());
+    String hashWithScm = underTest.hash(FILE, SRC_HASH);
+    assertThat(hashWithScm).isNotEqualTo(hash);
+
+    scmInfoRepository.setScmInfo(FILE_REF, Changeset.newChangesetBuilder().setAuthor("john").setDate(123456789L).setRevision("rev-2").build());
+    assertThat(underTest.hash(FILE, SRC_HASH)).isNotEqualTo(hashWithScm);
+  }
+
+  @Test
+  public void hash_changes_with_duplications() {
+    String hash = underTest.hash(FILE, SRC_HASH);
+
+    duplicationRepository.addDuplication(FILE_REF, new TextBlock(1, 2), "other:file", new TextBlock(3, 4));
+
+    assertThat(underTest.hash(FILE, SRC_HASH)).isNotEqualTo(hash);
+  }
+}
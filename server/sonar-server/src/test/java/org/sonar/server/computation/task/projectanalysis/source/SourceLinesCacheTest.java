@@ -0,0 +1,107 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.source;
+
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.internal.DefaultTempFolder;
+import org.sonar.core.hash.SourceHashComputer;
+import org.sonar.core.hash.SourceLinesHashesComputer;
+import org.sonar.server.computation.task.projectanalysis.source.SourceLinesCache.FileSource;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourceLinesCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private DefaultTempFolder tempFolder;
+
+  @Before
+  public void setUp() throws Exception {
+    tempFolder = new DefaultTempFolder(temp.newFolder());
+  }
+
+  @Test
+  public void keep_sources_in_memory_within_budget() {
+    SourceLinesCache underTest = new SourceLinesCache(tempFolder, Long.MAX_VALUE);
+    FileSource source = source("line1", "line2");
+
+    underTest.put(1, source);
+
+    assertThat(underTest.get(1)).isSameAs(source);
+    assertThat(underTest.get(2)).isNull();
+    assertThat(underTest.getMemoryUsage()).isPositive();
+    assertThat(underTest.getSpilledSources()).isZero();
+  }
+
+  @Test
+  public void spill_least_recently_used_sources_to_disk_when_over_budget() {
+    FileSource source1 = source("line1", "", "  line 3 ", "été");
+    FileSource source2 = source("other line");
+    SourceLinesCache underTest = new SourceLinesCache(tempFolder, source1.getLines().size());
+
+    underTest.put(1, source1);
+    underTest.put(2, source2);
+
+    assertThat(underTest.getSpilledSources()).isEqualTo(1);
+    FileSource read = underTest.get(1);
+    assertThat(read).isNotSameAs(source1);
+    assertThat(read.getLines()).isEqualTo(source1.getLines());
+    assertThat(read.getLineHashes()).isEqualTo(source1.getLineHashes());
+    assertThat(read.getSrcHash()).isEqualTo(source1.getSrcHash());
+
+    // source 2 has been spilled in turn, but source 1 is not written twice
+    assertThat(underTest.getSpilledSources()).isEqualTo(2);
+    assertThat(underTest.get(2).getLines()).containsExactly("other line");
+    assertThat(underTest.get(1).getLines()).isEqualTo(source1.getLines());
+  }
+
+  @Test
+  public void remove_source_from_memory_and_disk() {
+    SourceLinesCache underTest = new SourceLinesCache(tempFolder, 1L);
+    underTest.put(1, source("line1"));
+    underTest.put(2, source("line2"));
+
+    underTest.remove(1);
+    underTest.remove(2);
+
+    assertThat(underTest.get(1)).isNull();
+    assertThat(underTest.get(2)).isNull();
+    assertThat(underTest.getMemoryUsage()).isZero();
+    assertThat(underTest.getSpilledSources()).isZero();
+  }
+
+  private static FileSource source(String... lines) {
+    List<String> list = asList(lines);
+    SourceLinesHashesComputer linesHashesComputer = new SourceLinesHashesComputer();
+    SourceHashComputer sourceHashComputer = new SourceHashComputer();
+    for (int i = 0; i < lines.length; i++) {
+      linesHashesComputer.addLine(lines[i]);
+      sourceHashComputer.addLine(lines[i], i < lines.length - 1);
+    }
+    return new FileSource(list, linesHashesComputer.getLineHashes(), sourceHashComputer.getHash());
+  }
+}
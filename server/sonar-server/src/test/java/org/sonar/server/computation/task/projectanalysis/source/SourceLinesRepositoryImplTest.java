@@ -22,12 +22,17 @@ package org.sonar.server.computation.task.projectanalysis.source;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.TempFolder;
+import org.sonar.core.hash.SourceHashComputer;
+import org.sonar.core.hash.SourceLinesHashesComputer;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.FileAttributes;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 import static org.sonar.server.computation.task.projectanalysis.component.ReportComponent.builder;
 
 public class SourceLinesRepositoryImplTest {
@@ -42,7 +47,8 @@ public class SourceLinesRepositoryImplTest {
   @Rule
   public BatchReportReaderRule reportReader = new BatchReportReaderRule();
 
-  SourceLinesRepositoryImpl underTest = new SourceLinesRepositoryImpl(reportReader);
+  SourceLinesCache cache = new SourceLinesCache(mock(TempFolder.class), Long.MAX_VALUE);
+  SourceLinesRepositoryImpl underTest = new SourceLinesRepositoryImpl(reportReader, cache);
 
   @Test
   public void read_lines_from_report() throws Exception {
@@ -51,6 +57,38 @@ public class SourceLinesRepositoryImplTest {
     assertThat(underTest.readLines(createComponent(2))).containsOnly("line1", "line2");
   }
 
+  @Test
+  public void read_hashes_from_report() throws Exception {
+    reportReader.putFileSourceLines(FILE_REF, "line1", "  ", "line3");
+    Component file = createComponent(3);
+
+    SourceLinesHashesComputer linesHashesComputer = new SourceLinesHashesComputer();
+    SourceHashComputer sourceHashComputer = new SourceHashComputer();
+    for (String line : asList("line1", "  ", "line3")) {
+      linesHashesComputer.addLine(line);
+      sourceHashComputer.addLine(line, !"line3".equals(line));
+    }
+    assertThat(underTest.readLineHashes(file)).isEqualTo(linesHashesComputer.getLineHashes());
+    assertThat(underTest.readSourceHash(file)).isEqualTo(sourceHashComputer.getHash());
+  }
+
+  @Test
+  public void source_is_read_from_report_only_once_until_released() throws Exception {
+    reportReader.putFileSourceLines(FILE_REF, "line1", "line2");
+    Component file = createComponent(2);
+
+    consume(underTest.readLines(file));
+    SourceLinesCache.FileSource source = cache.get(FILE_REF);
+    assertThat(source).isNotNull();
+    underTest.readLineHashes(file);
+    underTest.readSourceHash(file);
+    assertThat(cache.get(FILE_REF)).isSameAs(source);
+
+    underTest.release(file);
+    assertThat(cache.get(FILE_REF)).isNull();
+    assertThat(underTest.readLines(file)).containsExactly("line1", "line2");
+  }
+
   @Test
   public void read_lines_adds_one_extra_empty_line_when_sourceLine_has_elements_count_equals_to_lineCount_minus_1() throws Exception {
     reportReader.putFileSourceLines(FILE_REF, "line1", "line2");
@@ -23,7 +23,11 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import org.junit.rules.ExternalResource;
+import org.sonar.core.hash.SourceHashComputer;
+import org.sonar.core.hash.SourceLinesHashesComputer;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 
@@ -42,13 +46,40 @@ public class SourceLinesRepositoryRule extends ExternalResource implements Sourc
 
   @Override
   public CloseableIterator<String> readLines(Component component) {
+    return CloseableIterator.from(getLines(component).iterator());
+  }
+
+  @Override
+  public List<String> readLineHashes(Component component) {
+    Collection<String> componentLines = getLines(component);
+    SourceLinesHashesComputer linesHashesComputer = new SourceLinesHashesComputer(componentLines.size());
+    componentLines.forEach(linesHashesComputer::addLine);
+    return linesHashesComputer.getLineHashes();
+  }
+
+  @Override
+  public String readSourceHash(Component component) {
+    SourceHashComputer sourceHashComputer = new SourceHashComputer();
+    Iterator<String> componentLines = getLines(component).iterator();
+    while (componentLines.hasNext()) {
+      sourceHashComputer.addLine(componentLines.next(), componentLines.hasNext());
+    }
+    return sourceHashComputer.getHash();
+  }
+
+  @Override
+  public void release(Component component) {
+    // nothing to do
+  }
+
+  private Collection<String> getLines(Component component) {
     checkNotNull(component, "Component should not be bull");
     if (!component.getType().equals(FILE)) {
       throw new IllegalArgumentException(String.format("Component '%s' is not a file", component));
     }
     Collection<String> componentLines = lines.get(component.getReportAttributes().getRef());
     checkState(!componentLines.isEmpty(), String.format("File '%s' has no source code", component));
-    return CloseableIterator.from(componentLines.iterator());
+    return componentLines;
   }
 
   public SourceLinesRepositoryRule addLine(int componentRef, String line) {
@@ -281,7 +281,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     long past = 150000L;
     String srcHash = "137f72c3708c6bd0de00a0e5a69c699b";
     String lineHashes = "137f72c3708c6bd0de00a0e5a69c699b";
-    String dataHash = "29f25900140c94db38035128cb6de6a2";
+    String dataHash = "91d21c3c9a5ed53527164e06a8cef976";
 
     dbClient.fileSourceDao().insert(dbTester.getSession(), new FileSourceDto()
       .setProjectUuid(PROJECT_UUID)
@@ -311,6 +311,55 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getDataHash()).isEqualTo(dataHash);
     assertThat(fileSourceDto.getCreatedAt()).isEqualTo(past);
     assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(past);
+    assertThat(fileSourceDto.getSourceData().getLinesList()).extracting("source").containsExactly("line1");
+    // missing hash of inputs is set without changing date of update
+    assertThat(fileSourceDto.getInputsHash()).isNotNull();
+  }
+
+  @Test
+  public void persist_inputs_hash() {
+    initBasicReport(2);
+
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID);
+    assertThat(fileSourceDto.getInputsHash()).hasSize(32);
+  }
+
+  @Test
+  public void do_not_compute_sources_when_inputs_have_not_changed() {
+    initBasicReport(2);
+    underTest.execute();
+    // data hash is altered to detect whether sources are computed again
+    FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID);
+    dbClient.fileSourceDao().update(session, dto.setDataHash("altered"));
+    session.commit();
+    when(system2.now()).thenReturn(NOW + 1_000L);
+
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID);
+    assertThat(fileSourceDto.getDataHash()).isEqualTo("altered");
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW);
+  }
+
+  @Test
+  public void compute_sources_when_coverage_has_changed() {
+    initBasicReport(1);
+    underTest.execute();
+    String inputsHash = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID).getInputsHash();
+    when(system2.now()).thenReturn(NOW + 1_000L);
+
+    reportReader.putCoverage(FILE_REF, newArrayList(ScannerReport.LineCoverage.newBuilder()
+      .setLine(1)
+      .setHits(true)
+      .build()));
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID);
+    assertThat(fileSourceDto.getInputsHash()).isNotEqualTo(inputsHash);
+    assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(NOW + 1_000L);
+    assertThat(fileSourceDto.getSourceData().getLines(0).getLineHits()).isEqualTo(1);
   }
 
   @Test
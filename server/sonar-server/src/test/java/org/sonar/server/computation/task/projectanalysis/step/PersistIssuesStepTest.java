@@ -23,21 +23,25 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.Severity;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.rules.RuleType;
 import org.sonar.api.utils.System2;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.DefaultIssueComment;
 import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTesting;
 import org.sonar.db.issue.IssueDto;
+import org.sonar.db.issue.IssueTesting;
 import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleTesting;
@@ -47,6 +51,7 @@ import org.sonar.server.computation.task.projectanalysis.issue.IssueCache;
 import org.sonar.server.computation.task.projectanalysis.issue.RuleRepositoryImpl;
 import org.sonar.server.computation.task.projectanalysis.issue.UpdateConflictResolver;
 import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.util.cache.DiskCache;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -59,6 +64,9 @@ public class PersistIssuesStepTest extends BaseStepTest {
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
 
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
   @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
 
@@ -73,6 +81,8 @@ public class PersistIssuesStepTest extends BaseStepTest {
 
   IssueCache issueCache;
 
+  MapSettings settings = new MapSettings();
+
   ComputationStep step;
 
   @Override
@@ -87,7 +97,7 @@ public class PersistIssuesStepTest extends BaseStepTest {
     when(system2.now()).thenReturn(NOW);
     reportReader.setMetadata(ScannerReport.Metadata.getDefaultInstance());
 
-    step = new PersistIssuesStep(dbClient, system2, new UpdateConflictResolver(), new RuleRepositoryImpl(dbClient), issueCache);
+    step = new PersistIssuesStep(dbClient, system2, new UpdateConflictResolver(), new RuleRepositoryImpl(dbClient), issueCache, settings);
   }
 
   @After
@@ -130,6 +140,125 @@ public class PersistIssuesStepTest extends BaseStepTest {
     assertThat(result.getType()).isEqualTo(RuleType.BUG.getDbConstant());
   }
 
+  @Test
+  public void insert_new_issues_by_batches() {
+    settings.setProperty(PersistIssuesStep.BATCH_SIZE_PROPERTY, 3);
+    RuleDto rule = RuleTesting.newDto(RuleKey.of("xoo", "S01"));
+    dbClient.ruleDao().insert(session, rule);
+    OrganizationDto organizationDto = dbTester.organizations().insert();
+    ComponentDto project = ComponentTesting.newProjectDto(organizationDto);
+    dbClient.componentDao().insert(session, project);
+    ComponentDto file = ComponentTesting.newFileDto(project, null);
+    dbClient.componentDao().insert(session, file);
+    session.commit();
+
+    DiskCache<DefaultIssue>.DiskAppender appender = issueCache.newAppender();
+    for (int i = 0; i < 10; i++) {
+      appender.append(new DefaultIssue()
+        .setKey("ISSUE_" + i)
+        .setType(RuleType.CODE_SMELL)
+        .setRuleKey(rule.getKey())
+        .setComponentUuid(file.uuid())
+        .setProjectUuid(project.uuid())
+        .setSeverity(Severity.BLOCKER)
+        .setStatus(Issue.STATUS_OPEN)
+        .setNew(true)
+        .addComment(new DefaultIssueComment()
+          .setKey("COMMENT_" + i)
+          .setIssueKey("ISSUE_" + i)
+          .setUserLogin("john")
+          .setMarkdownText("Some text")
+          .setNew(true)));
+    }
+    // neither new nor changed
+    appender.append(new DefaultIssue()
+      .setKey("UNCHANGED")
+      .setRuleKey(rule.getKey())
+      .setComponentUuid(file.uuid())
+      .setProjectUuid(project.uuid())
+      .setNew(false)
+      .setChanged(false));
+    appender.close();
+
+    step.execute();
+
+    assertThat(dbTester.countRowsOfTable("issues")).isEqualTo(10);
+    assertThat(dbTester.countRowsOfTable("issue_changes")).isEqualTo(10);
+    assertThat(dbClient.issueDao().selectOrFailByKey(session, "ISSUE_9").getRuleKey()).isEqualTo(rule.getKey());
+  }
+
+  @Test
+  public void fail_if_issues_can_not_be_read() {
+    IssueCache failingCache = mock(IssueCache.class);
+    when(failingCache.traverse()).thenReturn(new CloseableIterator<DefaultIssue>() {
+      @Override
+      protected DefaultIssue doNext() {
+        throw new IllegalStateException("Fail to read issue");
+      }
+
+      @Override
+      protected void doClose() {
+        // nothing to do
+      }
+    });
+    step = new PersistIssuesStep(dbClient, system2, new UpdateConflictResolver(), new RuleRepositoryImpl(dbClient), failingCache, settings);
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to read issue");
+
+    step.execute();
+  }
+
+  @Test
+  public void default_batch_size_is_used_when_property_is_not_set() {
+    assertThat(((PersistIssuesStep) step).getBatchSize()).isEqualTo(1000);
+
+    settings.setProperty(PersistIssuesStep.BATCH_SIZE_PROPERTY, 50);
+    step = new PersistIssuesStep(dbClient, system2, new UpdateConflictResolver(), new RuleRepositoryImpl(dbClient), issueCache, settings);
+    assertThat(((PersistIssuesStep) step).getBatchSize()).isEqualTo(50);
+  }
+
+  @Test
+  public void resolve_conflict_when_issue_has_been_updated_after_being_selected() {
+    RuleDto rule = RuleTesting.newDto(RuleKey.of("xoo", "S01"));
+    dbClient.ruleDao().insert(session, rule);
+    OrganizationDto organizationDto = dbTester.organizations().insert();
+    ComponentDto project = ComponentTesting.newProjectDto(organizationDto);
+    dbClient.componentDao().insert(session, project);
+    ComponentDto file = ComponentTesting.newFileDto(project, null);
+    dbClient.componentDao().insert(session, file);
+    dbClient.issueDao().insert(session, IssueTesting.newDto(rule, file, project)
+      .setKee("ISSUE")
+      .setMessage("old message")
+      .setStatus(Issue.STATUS_CONFIRMED)
+      .setResolution(null)
+      .setUpdatedAt(NOW - 1_000L));
+    session.commit();
+
+    // issue has been updated in db after being selected for tracking
+    issueCache.newAppender().append(new DefaultIssue()
+      .setKey("ISSUE")
+      .setType(RuleType.CODE_SMELL)
+      .setRuleKey(rule.getKey())
+      .setComponentUuid(file.uuid())
+      .setProjectUuid(project.uuid())
+      .setSeverity(Severity.BLOCKER)
+      .setMessage("new message")
+      .setStatus(Issue.STATUS_CLOSED)
+      .setResolution(Issue.RESOLUTION_FIXED)
+      .setSelectedAt(NOW - 2_000L)
+      .setNew(false)
+      .setChanged(true)).close();
+
+    step.execute();
+
+    // status and resolution of db are kept
+    IssueDto result = dbClient.issueDao().selectOrFailByKey(session, "ISSUE");
+    assertThat(result.getMessage()).isEqualTo("new message");
+    assertThat(result.getStatus()).isEqualTo(Issue.STATUS_CONFIRMED);
+    assertThat(result.getResolution()).isNull();
+  }
+
   @Test
   public void close_issue() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
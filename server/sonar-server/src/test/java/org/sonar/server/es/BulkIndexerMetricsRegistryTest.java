@@ -0,0 +1,82 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.lang.management.ManagementFactory;
+import javax.annotation.CheckForNull;
+import javax.management.InstanceNotFoundException;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkIndexerMetricsRegistryTest {
+
+  private BulkIndexerMetricsRegistry underTest = new BulkIndexerMetricsRegistry();
+
+  @After
+  public void tearDown() {
+    underTest.stop();
+  }
+
+  @Test
+  public void register_metrics_of_index_when_started() throws Exception {
+    BulkIndexerMetrics metrics = underTest.forIndex("foo");
+    assertThat(getMBean("foo")).isNull();
+
+    underTest.start();
+    assertThat(getMBean("foo")).isNotNull();
+    assertThat(underTest.forIndex("foo")).isSameAs(metrics);
+
+    underTest.stop();
+    assertThat(getMBean("foo")).isNull();
+  }
+
+  @Test
+  public void register_metrics_of_index_bulk_indexed_after_start() throws Exception {
+    underTest.start();
+    assertThat(getMBean("foo")).isNull();
+
+    underTest.forIndex("foo").onResponse(1_000L, 3, 0, 0);
+
+    assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(
+      new ObjectName(BulkIndexerMetricsRegistry.objectName("foo")), "SuccessCount")).isEqualTo(3L);
+  }
+
+  @Test
+  public void do_not_fail_when_stopping_unstarted() throws Exception {
+    underTest.forIndex("foo");
+
+    underTest.stop();
+
+    assertThat(getMBean("foo")).isNull();
+  }
+
+  @CheckForNull
+  private static ObjectInstance getMBean(String indexName) throws Exception {
+    try {
+      return ManagementFactory.getPlatformMBeanServer().getObjectInstance(new ObjectName(BulkIndexerMetricsRegistry.objectName(indexName)));
+    } catch (InstanceNotFoundException e) {
+      return null;
+    }
+  }
+}
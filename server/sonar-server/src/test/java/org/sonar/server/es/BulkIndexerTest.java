@@ -59,6 +59,24 @@ public class BulkIndexerTest {
     assertThat(count()).isEqualTo(2);
   }
 
+  @Test
+  public void update_metrics_of_index() throws Exception {
+    BulkIndexerMetrics metrics = esTester.client().getBulkIndexerMetrics(FakeIndexDefinition.INDEX);
+    long successes = metrics.getSuccessCount();
+    long requests = metrics.getRequestCount();
+
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+    indexer.start();
+    indexer.add(newIndexRequest(42));
+    indexer.add(newIndexRequest(78));
+    indexer.stop();
+
+    assertThat(metrics.getSuccessCount()).isEqualTo(successes + 2);
+    assertThat(metrics.getRequestCount()).isEqualTo(requests + 1);
+    assertThat(metrics.getFailureCount()).isEqualTo(0);
+    assertThat(metrics.getConcurrentRequests()).isGreaterThan(0);
+  }
+
   @Test
   public void large_indexing() {
     // index has one replica
@@ -0,0 +1,133 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.es.BulkLimiter.FLUSH_BYTE_SIZE_STEP;
+import static org.sonar.server.es.BulkLimiter.HIGH_LATENCY_MS;
+import static org.sonar.server.es.BulkLimiter.MAX_FLUSH_BYTE_SIZE;
+import static org.sonar.server.es.BulkLimiter.MIN_FLUSH_BYTE_SIZE;
+
+public class BulkLimiterTest {
+
+  private static final long FLUSH_BYTE_SIZE = 2 * FLUSH_BYTE_SIZE_STEP;
+
+  private BulkIndexerMetrics metrics = new BulkIndexerMetrics();
+
+  @Test
+  public void limits_do_not_change_if_not_adaptive() {
+    BulkLimiter underTest = new BulkLimiter(metrics, FLUSH_BYTE_SIZE, 2, 8, false);
+
+    underTest.acquire();
+    underTest.release(1L, false);
+    underTest.acquire();
+    underTest.release(1L, true);
+
+    assertThat(underTest.getFlushByteSize()).isEqualTo(FLUSH_BYTE_SIZE);
+    assertThat(underTest.getConcurrentRequests()).isEqualTo(2);
+    assertThat(metrics.getFlushByteSize()).isEqualTo(FLUSH_BYTE_SIZE);
+    assertThat(metrics.getConcurrentRequests()).isEqualTo(2);
+  }
+
+  @Test
+  public void increase_limits_when_requests_are_fast() {
+    BulkLimiter underTest = new BulkLimiter(metrics, FLUSH_BYTE_SIZE, 2, 3, true);
+
+    underTest.acquire();
+    underTest.release(1L, false);
+    assertThat(underTest.getFlushByteSize()).isEqualTo(FLUSH_BYTE_SIZE + FLUSH_BYTE_SIZE_STEP);
+    assertThat(underTest.getConcurrentRequests()).isEqualTo(3);
+
+    underTest.acquire();
+    underTest.release(1L, false);
+    // maximum number of concurrent requests is reached
+    assertThat(underTest.getConcurrentRequests()).isEqualTo(3);
+    assertThat(metrics.getConcurrentRequests()).isEqualTo(3);
+    assertThat(metrics.getFlushByteSize()).isEqualTo(FLUSH_BYTE_SIZE + 2 * FLUSH_BYTE_SIZE_STEP);
+  }
+
+  @Test
+  public void flush_byte_size_does_not_exceed_maximum() {
+    BulkLimiter underTest = new BulkLimiter(metrics, MAX_FLUSH_BYTE_SIZE, 1, 1, true);
+
+    underTest.acquire();
+    underTest.release(1L, false);
+
+    assertThat(underTest.getFlushByteSize()).isEqualTo(MAX_FLUSH_BYTE_SIZE);
+  }
+
+  @Test
+  public void decrease_flush_byte_size_when_requests_are_slow() {
+    BulkLimiter underTest = new BulkLimiter(metrics, FLUSH_BYTE_SIZE, 4, 8, true);
+
+    underTest.acquire();
+    underTest.release(HIGH_LATENCY_MS + 1, false);
+
+    assertThat(underTest.getFlushByteSize()).isEqualTo(FLUSH_BYTE_SIZE / 2);
+    assertThat(underTest.getConcurrentRequests()).isEqualTo(4);
+  }
+
+  @Test
+  public void decrease_limits_when_requests_are_rejected() {
+    BulkLimiter underTest = new BulkLimiter(metrics, MIN_FLUSH_BYTE_SIZE + 1, 4, 8, true);
+
+    underTest.acquire();
+    underTest.release(1L, true);
+    assertThat(underTest.getFlushByteSize()).isEqualTo(MIN_FLUSH_BYTE_SIZE);
+    assertThat(underTest.getConcurrentRequests()).isEqualTo(2);
+
+    underTest.acquire();
+    underTest.release(1L, true);
+    underTest.acquire();
+    underTest.release(1L, true);
+    assertThat(underTest.getFlushByteSize()).isEqualTo(MIN_FLUSH_BYTE_SIZE);
+    assertThat(underTest.getConcurrentRequests()).isEqualTo(1);
+  }
+
+  @Test
+  public void await_completion_of_requests() throws Exception {
+    BulkLimiter underTest = new BulkLimiter(metrics, FLUSH_BYTE_SIZE, 2, 2, false);
+    assertThat(underTest.awaitCompletion(1, TimeUnit.MILLISECONDS)).isTrue();
+
+    underTest.acquire();
+    assertThat(underTest.awaitCompletion(1, TimeUnit.MILLISECONDS)).isFalse();
+
+    underTest.release(1L, false);
+    assertThat(underTest.awaitCompletion(1, TimeUnit.MILLISECONDS)).isTrue();
+  }
+
+  @Test
+  public void acquire_waits_for_completion_of_a_request_when_limit_is_reached() throws Exception {
+    BulkLimiter underTest = new BulkLimiter(metrics, FLUSH_BYTE_SIZE, 1, 1, false);
+    underTest.acquire();
+
+    Thread thread = new Thread(underTest::acquire);
+    thread.start();
+    thread.join(100L);
+    assertThat(thread.isAlive()).isTrue();
+
+    underTest.release(1L, false);
+    thread.join();
+    assertThat(metrics.getQueueWaitTime()).isPositive();
+  }
+}
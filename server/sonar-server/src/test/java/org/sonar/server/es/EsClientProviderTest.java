@@ -62,7 +62,7 @@ public class EsClientProviderTest {
     settings.setProperty(ProcessProperties.SEARCH_HOST, localhost);
     settings.setProperty(ProcessProperties.SEARCH_PORT, 8080);
 
-    EsClient client = underTest.provide(settings);
+    EsClient client = underTest.provide(settings, new BulkIndexerMetricsRegistry());
     TransportClient transportClient = (TransportClient) client.nativeClient();
     assertThat(transportClient.transportAddresses()).hasSize(1);
     TransportAddress address = transportClient.transportAddresses().get(0);
@@ -71,7 +71,7 @@ public class EsClientProviderTest {
     assertThat(logTester.logs(LoggerLevel.INFO)).has(new Condition<>(s -> s.contains("Connected to local Elasticsearch: [" + localhost + ":8080]"), ""));
 
     // keep in cache
-    assertThat(underTest.provide(settings)).isSameAs(client);
+    assertThat(underTest.provide(settings, new BulkIndexerMetricsRegistry())).isSameAs(client);
   }
 
   @Test
@@ -80,7 +80,7 @@ public class EsClientProviderTest {
     settings.setProperty(ProcessProperties.CLUSTER_SEARCH_DISABLED, true);
     settings.setProperty(ProcessProperties.CLUSTER_SEARCH_HOSTS, format("%s:8080,%s:8081", localhost, localhost));
 
-    EsClient client = underTest.provide(settings);
+    EsClient client = underTest.provide(settings, new BulkIndexerMetricsRegistry());
     TransportClient transportClient = (TransportClient) client.nativeClient();
     assertThat(transportClient.transportAddresses()).hasSize(2);
     TransportAddress address = transportClient.transportAddresses().get(0);
@@ -92,7 +92,7 @@ public class EsClientProviderTest {
     assertThat(logTester.logs(LoggerLevel.INFO)).has(new Condition<>(s -> s.contains("Connected to remote Elasticsearch: [" + localhost + ":8080, " + localhost + ":8081]"), ""));
 
     // keep in cache
-    assertThat(underTest.provide(settings)).isSameAs(client);
+    assertThat(underTest.provide(settings, new BulkIndexerMetricsRegistry())).isSameAs(client);
   }
 
   @Test
@@ -103,6 +103,6 @@ public class EsClientProviderTest {
 
     expectedException.expect(IllegalArgumentException.class);
     expectedException.expectMessage("Badly formatted Elasticsearch host: missing_colon");
-    underTest.provide(settings);
+    underTest.provide(settings, new BulkIndexerMetricsRegistry());
   }
 }
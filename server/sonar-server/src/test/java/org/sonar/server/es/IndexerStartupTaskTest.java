@@ -0,0 +1,100 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
+import org.sonar.server.component.index.ComponentIndexer;
+import org.sonar.server.issue.index.IssueIndexer;
+import org.sonar.server.measure.index.ProjectMeasuresIndexer;
+import org.sonar.server.permission.index.PermissionIndexer;
+import org.sonar.server.test.index.TestIndexer;
+import org.sonar.server.user.index.UserIndexer;
+import org.sonar.server.view.index.ViewIndexer;
+
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class IndexerStartupTaskTest {
+
+  private TestIndexer testIndexer = mock(TestIndexer.class);
+  private PermissionIndexer permissionIndexer = mock(PermissionIndexer.class);
+  private IssueIndexer issueIndexer = mock(IssueIndexer.class);
+  private UserIndexer userIndexer = mock(UserIndexer.class);
+  private ViewIndexer viewIndexer = mock(ViewIndexer.class);
+  private ProjectMeasuresIndexer projectMeasuresIndexer = mock(ProjectMeasuresIndexer.class);
+  private ComponentIndexer componentIndexer = mock(ComponentIndexer.class);
+  private Settings settings = new MapSettings();
+
+  private IndexerStartupTask underTest = new IndexerStartupTask(testIndexer, permissionIndexer, issueIndexer, userIndexer, viewIndexer,
+    projectMeasuresIndexer, componentIndexer, settings);
+
+  @Test
+  public void index_sequentially_by_default() {
+    underTest.execute();
+
+    InOrder inOrder = inOrder(permissionIndexer, issueIndexer, testIndexer, userIndexer, viewIndexer, projectMeasuresIndexer, componentIndexer);
+    inOrder.verify(permissionIndexer).indexAllIfEmpty();
+    inOrder.verify(issueIndexer).index();
+    inOrder.verify(testIndexer).index();
+    inOrder.verify(userIndexer).index();
+    inOrder.verify(viewIndexer).index();
+    inOrder.verify(projectMeasuresIndexer).index();
+    inOrder.verify(componentIndexer).index();
+  }
+
+  @Test
+  public void index_concurrently_after_authorizations() {
+    settings.setProperty(IndexerStartupTask.CONCURRENCY_PROPERTY, "3");
+
+    underTest.execute();
+
+    InOrder inOrder = inOrder(permissionIndexer, issueIndexer);
+    inOrder.verify(permissionIndexer).indexAllIfEmpty();
+    inOrder.verify(issueIndexer).index();
+    verify(testIndexer).index();
+    verify(userIndexer).index();
+    verify(viewIndexer).index();
+    verify(projectMeasuresIndexer).index();
+    verify(componentIndexer).index();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void propagate_failure_of_concurrent_indexation() {
+    settings.setProperty(IndexerStartupTask.CONCURRENCY_PROPERTY, "3");
+    doThrow(new IllegalStateException("expected")).when(userIndexer).index();
+
+    underTest.execute();
+  }
+
+  @Test
+  public void do_nothing_if_indexes_are_disabled() {
+    settings.setProperty("sonar.internal.es.disableIndexes", true);
+
+    underTest.execute();
+
+    verifyZeroInteractions(permissionIndexer, issueIndexer, testIndexer, userIndexer, viewIndexer, projectMeasuresIndexer, componentIndexer);
+  }
+}
@@ -85,7 +85,7 @@ public class IssueIndexTest {
   public ExpectedException expectedException = ExpectedException.none();
 
   private IssueIndex underTest;
-  private IssueIndexer issueIndexer = new IssueIndexer(system2, null, tester.client());
+  private IssueIndexer issueIndexer = new IssueIndexer(system2, null, tester.client(), new MapSettings());
   private ViewIndexer viewIndexer = new ViewIndexer(system2, null, tester.client());
   private PermissionIndexerTester authorizationIndexerTester = new PermissionIndexerTester(tester, issueIndexer);
 
@@ -47,7 +47,7 @@ public class IssueIndexerTest {
   @Rule
   public DbTester dbTester = DbTester.create(system2);
 
-  private IssueIndexer underTest = new IssueIndexer(system2, dbTester.getDbClient(), esTester.client());
+  private IssueIndexer underTest = new IssueIndexer(system2, dbTester.getDbClient(), esTester.client(), new MapSettings());
 
   @Test
   public void index_nothing() {
@@ -81,6 +81,32 @@ public class IssueIndexerTest {
     assertThat(doc.getTechnicalUpdateDate().getTime()).isEqualTo(1550000000000L);
   }
 
+  @Test
+  public void index_all_issues_concurrently() {
+    dbTester.prepareDbUnit(getClass(), "index_project.xml");
+    underTest = new IssueIndexer(system2, dbTester.getDbClient(), esTester.client(), new MapSettings().setProperty(IssueIndexer.THREADS_PROPERTY, 2));
+
+    underTest.index();
+
+    verifyIssueKeys("ABCDE", "EDCBA");
+  }
+
+  @Test
+  public void index_nothing_concurrently() {
+    underTest = new IssueIndexer(system2, dbTester.getDbClient(), esTester.client(), new MapSettings().setProperty(IssueIndexer.THREADS_PROPERTY, 2));
+
+    underTest.index();
+
+    assertThat(esTester.countDocuments("issues", "issue")).isEqualTo(0);
+  }
+
+  @Test
+  public void default_threads() {
+    assertThat(underTest.getThreads()).isEqualTo(1);
+    assertThat(new IssueIndexer(system2, dbTester.getDbClient(), esTester.client(), new MapSettings().setProperty(IssueIndexer.THREADS_PROPERTY, 0)).getThreads())
+      .isEqualTo(1);
+  }
+
   @Test
   public void indexProject_creates_docs_of_specific_project() {
     dbTester.prepareDbUnit(getClass(), "index_project.xml");
@@ -151,6 +151,28 @@ public class IssueResultSetIteratorTest {
     assertThat(issuesByKey).hasSize(1);
   }
 
+  @Test
+  public void iterator_over_issues_from_range_of_projects() {
+    dbTester.prepareDbUnit(getClass(), "many_projects.xml");
+
+    assertThat(issuesByKey(IssueResultSetIterator.createForProjectRange(dbTester.getDbClient(), dbTester.getSession(), null, null)))
+      .containsOnlyKeys("ABCDE", "BCDEF", "EDCBA");
+    assertThat(issuesByKey(IssueResultSetIterator.createForProjectRange(dbTester.getDbClient(), dbTester.getSession(), null, "THE_PROJECT_2")))
+      .containsOnlyKeys("ABCDE", "BCDEF");
+    assertThat(issuesByKey(IssueResultSetIterator.createForProjectRange(dbTester.getDbClient(), dbTester.getSession(), "THE_PROJECT_2", null)))
+      .containsOnlyKeys("EDCBA");
+    assertThat(issuesByKey(IssueResultSetIterator.createForProjectRange(dbTester.getDbClient(), dbTester.getSession(), "THE_PROJECT_1", "THE_PROJECT_2")))
+      .containsOnlyKeys("ABCDE", "BCDEF");
+  }
+
+  @Test
+  public void select_uuids_of_projects_having_issues() {
+    dbTester.prepareDbUnit(getClass(), "many_projects.xml");
+
+    assertThat(IssueResultSetIterator.selectProjectUuids(dbTester.getDbClient(), dbTester.getSession()))
+      .containsExactly("THE_PROJECT_1", "THE_PROJECT_2");
+  }
+
   @Test
   public void extract_directory_path() {
     dbTester.prepareDbUnit(getClass(), "extract_directory_path.xml");
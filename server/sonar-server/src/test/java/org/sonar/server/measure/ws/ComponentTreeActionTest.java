@@ -290,6 +290,41 @@ public class ComponentTreeActionTest {
     assertThat(response.getPaging().getTotal()).isEqualTo(9);
   }
 
+  @Test
+  public void load_all_requested_measures_of_components_of_page_when_sorted_by_metric() {
+    ComponentDto projectDto = newProjectDto(db.getDefaultOrganization(), "project-uuid");
+    SnapshotDto projectSnapshot = componentDb.insertProjectAndSnapshot(projectDto);
+    ComponentDto file1 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-1"));
+    ComponentDto file2 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-2"));
+    ComponentDto file3 = componentDb.insertComponent(newFileDto(projectDto, null, "file-uuid-3"));
+    MetricDto ncloc = insertNclocMetric();
+    MetricDto coverage = insertCoverageMetric();
+    dbClient.measureDao().insert(dbSession,
+      newMeasureDto(ncloc, projectDto, projectSnapshot).setValue(60.0d),
+      newMeasureDto(coverage, projectDto, projectSnapshot).setValue(50.0d),
+      newMeasureDto(ncloc, file1, projectSnapshot).setValue(10.0d),
+      newMeasureDto(ncloc, file2, projectSnapshot).setValue(20.0d),
+      newMeasureDto(ncloc, file3, projectSnapshot).setValue(30.0d),
+      newMeasureDto(coverage, file1, projectSnapshot).setValue(3.0d),
+      newMeasureDto(coverage, file2, projectSnapshot).setValue(2.0d),
+      newMeasureDto(coverage, file3, projectSnapshot).setValue(1.0d));
+    db.commit();
+
+    ComponentTreeWsResponse response = call(ws.newRequest()
+      .setParam(PARAM_BASE_COMPONENT_ID, "project-uuid")
+      .setParam(Param.SORT, METRIC_SORT)
+      .setParam(PARAM_METRIC_SORT, "coverage")
+      .setParam(PARAM_METRIC_KEYS, "ncloc,coverage")
+      .setParam(Param.PAGE, "2")
+      .setParam(Param.PAGE_SIZE, "1"));
+
+    assertThat(response.getPaging().getTotal()).isEqualTo(3);
+    assertThat(response.getBaseComponent().getMeasuresList()).extracting("value").containsOnly("60", "50.0");
+    assertThat(response.getComponentsList()).extracting("id").containsExactly("file-uuid-2");
+    assertThat(response.getComponents(0).getMeasuresList()).extracting("metric").containsOnly("ncloc", "coverage");
+    assertThat(response.getComponents(0).getMeasuresList()).extracting("value").containsOnly("20", "2.0");
+  }
+
   @Test
   public void sort_by_metric_value() {
     ComponentDto projectDto = newProjectDto(db.getDefaultOrganization(), "project-uuid");
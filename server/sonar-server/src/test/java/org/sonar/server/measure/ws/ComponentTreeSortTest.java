@@ -234,6 +234,32 @@ public class ComponentTreeSortTest {
       .containsExactly("path-1", "path-2", "path-3");
   }
 
+  @Test
+  public void sort_only_first_components() {
+    components.add(newComponentWithoutSnapshotId("name-without-measure", "qualifier-without-measure", "path-without-measure"));
+    ComponentTreeWsRequest wsRequest = newRequest(singletonList(METRIC_SORT), false, NUM_METRIC_KEY);
+
+    List<ComponentDto> result = ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric, 3);
+
+    assertThat(result).extracting("path").containsExactly("path-9", "path-8", "path-7");
+    assertThat(ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric, 20))
+      .containsExactlyElementsOf(sortComponents(wsRequest));
+  }
+
+  @Test
+  public void sort_only_first_components_keeps_original_order_of_equal_components() {
+    components = newArrayList(
+      newComponentWithoutSnapshotId("name-2", "qualifier-1", "path-1"),
+      newComponentWithoutSnapshotId("name-1", "qualifier-1", "path-2"),
+      newComponentWithoutSnapshotId("name-1", "qualifier-1", "path-3"),
+      newComponentWithoutSnapshotId("name-1", "qualifier-1", "path-4"));
+    ComponentTreeWsRequest wsRequest = newRequest(singletonList(NAME_SORT), true, null);
+
+    List<ComponentDto> result = ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric, 2);
+
+    assertThat(result).extracting("path").containsExactly("path-2", "path-3");
+  }
+
   private List<ComponentDto> sortComponents(ComponentTreeWsRequest wsRequest) {
     return ComponentTreeSort.sortComponents(components, wsRequest, metrics, measuresByComponentUuidAndMetric);
   }
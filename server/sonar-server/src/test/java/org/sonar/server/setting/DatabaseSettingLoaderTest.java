@@ -74,6 +74,15 @@ public class DatabaseSettingLoaderTest {
   assertThat(map.build()).containsOnly(entry("foo", "1"), entry("bar", "2"));
  }
 
+  @Test
+  public void loadVersion_changes_when_a_property_is_saved() {
+    String version = underTest.loadVersion();
+
+    insertPropertyIntoDb(A_KEY, "foo");
+
+    assertThat(underTest.loadVersion()).isNotEqualTo(version);
+  }
+
   private void insertPropertyIntoDb(String key, String value) {
     dbTester.getDbClient().propertiesDao().saveProperty(new PropertyDto().setKey(key).setValue(value));
   }
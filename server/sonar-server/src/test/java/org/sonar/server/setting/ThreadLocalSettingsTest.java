@@ -213,6 +213,37 @@ public class ThreadLocalSettingsTest {
     underTest.unload();
   }
 
+  @Test
+  public void database_properties_are_loaded_once_while_they_do_not_change() throws InterruptedException {
+    insertPropertyIntoDb(A_KEY, "v1");
+    underTest = create(Collections.emptyMap());
+
+    underTest.load();
+    assertThat(underTest.get(A_KEY).get()).isEqualTo("v1");
+    assertThat(underTest.get("missing")).isNotPresent();
+    underTest.unload();
+    verifyValueInNewThread(underTest, "v1");
+    assertThat(dbSettingLoader.loadAllCalls).isEqualTo(1);
+
+    insertPropertyIntoDb(A_KEY, "v2");
+    verifyValueInNewThread(underTest, "v2");
+    verifyValueInNewThread(underTest, "v2");
+    assertThat(dbSettingLoader.loadAllCalls).isEqualTo(2);
+  }
+
+  @Test
+  public void removing_property_from_cache_restores_database_value() throws InterruptedException {
+    insertPropertyIntoDb(A_KEY, "from db");
+    underTest = create(Collections.emptyMap());
+
+    underTest.load();
+    underTest.set(A_KEY, "overridden");
+    assertThat(underTest.get(A_KEY).get()).isEqualTo("overridden");
+    verifyValueInNewThread(underTest, "from db");
+    underTest.remove(A_KEY);
+    assertThat(underTest.get(A_KEY).get()).isEqualTo("from db");
+  }
+
   @Test
   public void change_setting_loader() {
     underTest = new ThreadLocalSettings(new PropertyDefinitions(), new Properties());
@@ -272,14 +303,18 @@ public class ThreadLocalSettingsTest {
 
   private static class MapSettingLoader implements SettingLoader {
     private final Map<String, String> map = new HashMap<>();
+    private long version = 0L;
+    private int loadAllCalls = 0;
 
     public MapSettingLoader put(String key, String value) {
       map.put(key, value);
+      version++;
       return this;
     }
 
     public MapSettingLoader remove(String key) {
       map.remove(key);
+      version++;
       return this;
     }
 
@@ -290,7 +325,13 @@ public class ThreadLocalSettingsTest {
 
     @Override
     public void loadAll(ImmutableMap.Builder<String, String> appendTo) {
+      loadAllCalls++;
       appendTo.putAll(map);
     }
+
+    @Override
+    public String loadVersion() {
+      return String.valueOf(version);
+    }
   }
 }
@@ -64,6 +64,7 @@ public class ServerUserSessionTest {
   public ExpectedException expectedException = ExpectedException.none();
 
   private DbClient dbClient = db.getDbClient();
+  private UserPermissionsCache permissionsCache = new UserPermissionsCache();
   private UserDto userDto = newUserDto().setLogin(LOGIN);
   private OrganizationDto organization;
   private ComponentDto project;
@@ -213,12 +214,43 @@ public class ServerUserSessionTest {
     assertThat(session.hasOrganizationPermission("another-org", GlobalPermissions.PROVISIONING)).isFalse();
   }
 
+  @Test
+  public void permissions_are_shared_by_sessions_of_same_user_until_cache_is_invalidated() {
+    addProjectPermissions(project, UserRole.USER);
+    assertThat(newUserSession(userDto).hasComponentUuidPermission(UserRole.USER, FILE_UUID)).isTrue();
+    assertThat(newUserSession(userDto).hasComponentUuidPermission(UserRole.ADMIN, FILE_UUID)).isFalse();
+
+    addProjectPermissions(project, UserRole.ADMIN);
+    assertThat(newUserSession(userDto).hasComponentUuidPermission(UserRole.ADMIN, FILE_UUID)).isFalse();
+
+    permissionsCache.invalidate();
+    assertThat(newUserSession(userDto).hasComponentUuidPermission(UserRole.ADMIN, FILE_UUID)).isTrue();
+  }
+
+  @Test
+  public void permissions_are_reloaded_when_groups_of_user_change() {
+    GroupDto group = db.users().insertGroup(organization);
+    db.users().insertPermissionOnGroup(group, GlobalPermissions.PROVISIONING);
+    assertThat(newUserSession(userDto).hasOrganizationPermission(organization.getUuid(), GlobalPermissions.PROVISIONING)).isFalse();
+
+    db.users().insertMember(group, userDto);
+    assertThat(newUserSession(userDto).hasOrganizationPermission(organization.getUuid(), GlobalPermissions.PROVISIONING)).isTrue();
+  }
+
+  @Test
+  public void permissions_of_logged_in_user_are_not_shared_with_anonymous() {
+    db.users().insertPermissionOnUser(organization, userDto, GlobalPermissions.PROVISIONING);
+    assertThat(newUserSession(userDto).hasOrganizationPermission(organization.getUuid(), GlobalPermissions.PROVISIONING)).isTrue();
+
+    assertThat(newAnonymousSession().hasOrganizationPermission(organization.getUuid(), GlobalPermissions.PROVISIONING)).isFalse();
+  }
+
   private ServerUserSession newUserSession(UserDto userDto) {
-    return createForUser(dbClient, userDto);
+    return createForUser(dbClient, permissionsCache, userDto);
   }
 
   private ServerUserSession newAnonymousSession() {
-    return createForAnonymous(dbClient);
+    return createForAnonymous(dbClient, permissionsCache);
   }
 
   private void addProjectPermissions(ComponentDto component, String... permissions) {
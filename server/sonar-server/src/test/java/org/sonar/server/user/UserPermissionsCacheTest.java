@@ -0,0 +1,90 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import org.junit.Test;
+import org.sonar.db.user.GroupDto;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UserPermissionsCacheTest {
+
+  private List<String> loadedKeys = new ArrayList<>();
+  private Function<String, Set<String>> loader = key -> {
+    loadedKeys.add(key);
+    return ImmutableSet.of(key + "_1", key + "_2", key + "_3");
+  };
+
+  private UserPermissionsCache underTest = new UserPermissionsCache();
+
+  @Test
+  public void share_permissions_of_same_user_and_groups() {
+    List<GroupDto> groups = asList(new GroupDto().setId(1L), new GroupDto().setId(2L));
+
+    Set<String> projectUuids = underTest.get("john", groups).getProjectUuids("user", loader);
+    assertThat(underTest.get("john", groups).getProjectUuids("user", loader)).isSameAs(projectUuids);
+    assertThat(underTest.get("john", groups).getOrganizationPermissions("org1", loader)).isNotSameAs(projectUuids);
+
+    assertThat(loadedKeys).containsExactly("user", "org1");
+  }
+
+  @Test
+  public void do_not_share_permissions_of_different_users_or_groups() {
+    underTest.get("john", asList(new GroupDto().setId(1L))).getProjectUuids("user", loader);
+    underTest.get("jane", asList(new GroupDto().setId(1L))).getProjectUuids("user", loader);
+    underTest.get("john", asList(new GroupDto().setId(2L))).getProjectUuids("user", loader);
+    underTest.get(null, Collections.emptyList()).getProjectUuids("user", loader);
+
+    assertThat(loadedKeys).containsExactly("user", "user", "user", "user");
+  }
+
+  @Test
+  public void reload_permissions_after_invalidation() {
+    underTest.get("john", Collections.emptyList()).getProjectUuids("user", loader);
+
+    underTest.invalidate();
+    underTest.get("john", Collections.emptyList()).getProjectUuids("user", loader);
+
+    assertThat(loadedKeys).containsExactly("user", "user");
+  }
+
+  @Test
+  public void evict_permissions_when_max_weight_is_reached() {
+    // each entry weighs 4: 3 UUIDs + 1
+    underTest = new UserPermissionsCache(40L);
+
+    for (int i = 0; i < 100; i++) {
+      underTest.get("user" + i, Collections.emptyList()).getProjectUuids("user", loader);
+    }
+    loadedKeys.clear();
+    for (int i = 0; i < 100; i++) {
+      underTest.get("user" + i, Collections.emptyList()).getProjectUuids("user", loader);
+    }
+
+    assertThat(loadedKeys.size()).isGreaterThanOrEqualTo(90);
+  }
+}
@@ -25,6 +25,9 @@ import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
@@ -77,4 +80,55 @@ public class DiskCacheTest {
       assertThat(e).hasMessage("expected error");
     }
   }
+
+  @Test
+  public void write_and_read_with_codec() throws Exception {
+    verifyWriteAndReadWithCodec(new DiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec(), false));
+  }
+
+  @Test
+  public void write_and_read_with_codec_and_compression() throws Exception {
+    verifyWriteAndReadWithCodec(new DiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec(), true));
+  }
+
+  @Test
+  public void fail_if_file_is_not_writable_with_codec() throws Exception {
+    try {
+      new DiskCache<>(temp.newFolder(), System2.INSTANCE, new StringCodec(), true);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("Fail to write into file");
+    }
+  }
+
+  private static void verifyWriteAndReadWithCodec(DiskCache<String> cache) {
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).isEmpty();
+    }
+
+    cache.newAppender()
+      .append("foo")
+      .append("bar")
+      .close();
+    // empty appender
+    cache.newAppender().close();
+    cache.newAppender()
+      .append("baz")
+      .close();
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("foo", "bar", "baz");
+    }
+  }
+
+  private static class StringCodec implements DiskCacheCodec<String> {
+    @Override
+    public void write(String object, DataOutput output) throws IOException {
+      output.writeUTF(object);
+    }
+
+    @Override
+    public String read(DataInput input) throws IOException {
+      return input.readUTF();
+    }
+  }
 }
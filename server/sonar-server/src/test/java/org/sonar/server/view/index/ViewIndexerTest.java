@@ -68,7 +68,7 @@ public class ViewIndexerTest {
 
   private DbClient dbClient = dbTester.getDbClient();
   private DbSession dbSession = dbTester.getSession();
-  private IssueIndexer issueIndexer = new IssueIndexer(system2, dbClient, esTester.client());
+  private IssueIndexer issueIndexer = new IssueIndexer(system2, dbClient, esTester.client(), new MapSettings());
   private PermissionIndexer permissionIndexer = new PermissionIndexer(dbClient, esTester.client(), issueIndexer);
   private ViewIndexer underTest = (ViewIndexer) new ViewIndexer(system2, dbClient, esTester.client());
 
@@ -138,7 +138,7 @@ public class ViewIndexerTest {
   @Test
   public void clear_views_lookup_cache_on_index_view_uuid() {
     IssueIndex issueIndex = new IssueIndex(esTester.client(), System2.INSTANCE, userSessionRule, new AuthorizationTypeSupport(userSessionRule));
-    IssueIndexer issueIndexer = new IssueIndexer(system2, dbClient, esTester.client());
+    IssueIndexer issueIndexer = new IssueIndexer(system2, dbClient, esTester.client(), new MapSettings());
 
     String viewUuid = "ABCD";
 
@@ -67,6 +67,28 @@ public class ServletRequestTest {
     assertThat(underTest.getMediaType()).isEqualTo(MediaTypes.DEFAULT);
   }
 
+  @Test
+  public void media_type_is_the_supported_type_with_highest_quality_in_accept_header() throws Exception {
+    when(source.getRequestURI()).thenReturn("/path/to/resource/search");
+
+    when(source.getHeader(HttpHeaders.ACCEPT)).thenReturn("application/x-protobuf, application/json");
+    assertThat(underTest.getMediaType()).isEqualTo(MediaTypes.PROTOBUF);
+
+    when(source.getHeader(HttpHeaders.ACCEPT)).thenReturn("application/json;q=0.9, application/x-protobuf");
+    assertThat(underTest.getMediaType()).isEqualTo(MediaTypes.PROTOBUF);
+
+    when(source.getHeader(HttpHeaders.ACCEPT)).thenReturn("application/x-protobuf;q=0.5, application/json;q=0.8");
+    assertThat(underTest.getMediaType()).isEqualTo(MediaTypes.JSON);
+  }
+
+  @Test
+  public void default_media_type_when_no_type_of_accept_header_is_supported() throws Exception {
+    when(source.getHeader(HttpHeaders.ACCEPT)).thenReturn("text/html,application/xhtml+xml,*/*;q=0.8");
+    when(source.getRequestURI()).thenReturn("/path/to/resource/search");
+
+    assertThat(underTest.getMediaType()).isEqualTo(MediaTypes.DEFAULT);
+  }
+
   @Test
   public void media_type_taken_in_url_first() throws Exception {
     when(source.getHeader(HttpHeaders.ACCEPT)).thenReturn(MediaTypes.JSON);
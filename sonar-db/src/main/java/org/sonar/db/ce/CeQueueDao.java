@@ -20,21 +20,24 @@
 package org.sonar.db.ce;
 
 import com.google.common.base.Optional;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.ibatis.session.RowBounds;
 import org.sonar.api.utils.System2;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Collections.emptyList;
 import static org.sonar.db.ce.CeQueueDto.Status.IN_PROGRESS;
 import static org.sonar.db.ce.CeQueueDto.Status.PENDING;
 
 public class CeQueueDao implements Dao {
 
-  private static final RowBounds ONE_ROW_LIMIT = new RowBounds(0, 1);
-
   private final System2 system2;
 
   public CeQueueDao(System2 system2) {
@@ -100,6 +103,25 @@ public class CeQueueDao implements Dao {
     mapper(session).resetAllToPendingStatus(system2.now());
   }
 
+  /**
+   * Update the row with: STATUS='PENDING', STARTED_AT=NULL, UPDATED_AT={now} if it is in progress
+   *
+   * @return false if the task does not exist or is not in progress
+   */
+  public boolean resetToPendingStatus(DbSession session, String uuid) {
+    return mapper(session).updateIfStatus(uuid, PENDING, null, system2.now(), IN_PROGRESS) == 1;
+  }
+
+  /**
+   * Update the row with: STARTED_AT={now}, UPDATED_AT={now} if it is in progress
+   *
+   * @return false if the task does not exist or is not in progress, for example because it has been canceled
+   */
+  public boolean resetStartedAt(DbSession session, String uuid) {
+    long now = system2.now();
+    return mapper(session).updateIfStatus(uuid, IN_PROGRESS, now, now, IN_PROGRESS) == 1;
+  }
+
   public int countByStatus(DbSession dbSession, CeQueueDto.Status status) {
     return mapper(dbSession).countByStatusAndComponentUuid(status, null);
   }
@@ -109,24 +131,46 @@ public class CeQueueDao implements Dao {
   }
 
   public Optional<CeQueueDto> peek(DbSession session) {
-    List<String> taskUuids = mapper(session).selectEligibleForPeek(ONE_ROW_LIMIT);
-    if (taskUuids.isEmpty()) {
+    List<CeQueueDto> dtos = peek(session, 1);
+    if (dtos.isEmpty()) {
       return Optional.absent();
     }
+    return Optional.of(dtos.get(0));
+  }
 
-    String taskUuid = taskUuids.get(0);
-    return tryToPeek(session, taskUuid);
+  /**
+   * Changes the status of at most {@code maxTasks} of the oldest pending tasks to {@link CeQueueDto.Status#IN_PROGRESS}
+   * in a single transaction. As for {@link #peek(DbSession)}, a single task is peeked by component.
+   *
+   * @return the peeked tasks, ordered from oldest to newest
+   */
+  public List<CeQueueDto> peek(DbSession session, int maxTasks) {
+    checkArgument(maxTasks > 0, "Number of tasks to peek must be greater than zero");
+    List<CeQueueDto> eligibles = mapper(session).selectEligibleForPeek(new RowBounds(0, maxTasks));
+    Set<String> peekedComponentUuids = new HashSet<>();
+    List<CeQueueDto> result = new ArrayList<>(eligibles.size());
+    for (CeQueueDto eligible : eligibles) {
+      String componentUuid = eligible.getComponentUuid();
+      if (componentUuid == null || peekedComponentUuids.add(componentUuid)) {
+        CeQueueDto peeked = tryToPeek(session, eligible.getUuid());
+        if (peeked != null) {
+          result.add(peeked);
+        }
+      }
+    }
+    if (!result.isEmpty()) {
+      session.commit();
+    }
+    return result;
   }
 
-  private Optional<CeQueueDto> tryToPeek(DbSession session, String taskUuid) {
+  @CheckForNull
+  private CeQueueDto tryToPeek(DbSession session, String taskUuid) {
     int touchedRows = mapper(session).updateIfStatus(taskUuid, IN_PROGRESS, system2.now(), system2.now(), PENDING);
     if (touchedRows != 1) {
-      return Optional.absent();
+      return null;
     }
-
-    CeQueueDto result = mapper(session).selectByUuid(taskUuid);
-    session.commit();
-    return Optional.of(result);
+    return mapper(session).selectByUuid(taskUuid);
   }
 
   private static CeQueueMapper mapper(DbSession session) {
@@ -130,6 +130,19 @@ public class ComponentDao implements Dao {
     return mapper(session).selectEnabledFilesFromProject(rootComponentUuid);
   }
 
+  /**
+   * Streams the enabled files of a project or of a module (including the files of its sub-modules) to {@code handler}.
+   * Files are ordered by module, so that all the files of a module are handled consecutively.
+   */
+  public void scrollEnabledFilesOfModuleTree(DbSession session, ComponentDto module, ResultHandler handler) {
+    requireNonNull(handler);
+    if (module.isRootProject()) {
+      mapper(session).scrollEnabledFilesFromProject(module.uuid(), handler);
+    } else {
+      mapper(session).scrollDescendantFiles(module.uuid(), Scopes.FILE, true, handler);
+    }
+  }
+
   public List<ComponentDto> selectByIds(DbSession session, Collection<Long> ids) {
     return executeLargeInputs(ids, mapper(session)::selectByIds);
   }
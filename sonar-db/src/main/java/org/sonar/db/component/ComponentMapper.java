@@ -96,6 +96,11 @@ public interface ComponentMapper {
   List<FilePathWithHashDto> selectDescendantFiles(@Param("moduleUuid") String moduleUuid, @Param(value = "scope") String scope,
     @Param(value = "excludeDisabled") boolean excludeDisabled);
 
+  void scrollEnabledFilesFromProject(@Param("projectUuid") String projectUuid, ResultHandler handler);
+
+  void scrollDescendantFiles(@Param("moduleUuid") String moduleUuid, @Param(value = "scope") String scope,
+    @Param(value = "excludeDisabled") boolean excludeDisabled, ResultHandler handler);
+
   /**
    * Return uuids and project uuids from list of qualifiers
    * <p/>
@@ -28,6 +28,7 @@ public class FilePathWithHashDto {
   private String path;
   private String srcHash;
   private String revision;
+  private long updatedAt;
 
   public String getSrcHash() {
     return srcHash;
@@ -62,6 +63,17 @@ public class FilePathWithHashDto {
     this.revision = revision;
   }
 
+  /**
+   * Date of the last change of the file source. Only loaded by {@link ComponentDao#scrollEnabledFilesOfModuleTree}.
+   */
+  public long getUpdatedAt() {
+    return updatedAt;
+  }
+
+  public void setUpdatedAt(long updatedAt) {
+    this.updatedAt = updatedAt;
+  }
+
   public String getUuid() {
     return uuid;
   }
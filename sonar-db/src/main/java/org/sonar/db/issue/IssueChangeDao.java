@@ -19,6 +19,7 @@
  */
 package org.sonar.db.issue;
 
+import com.google.common.collect.Iterables;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -33,6 +34,8 @@ import static org.sonar.db.DatabaseUtils.executeLargeInputs;
 
 public class IssueChangeDao implements Dao {
 
+  private static final int MAX_CHANGES_PER_INSERT = 250;
+
   private final MyBatis mybatis;
 
   public IssueChangeDao(MyBatis mybatis) {
@@ -69,6 +72,17 @@ public class IssueChangeDao implements Dao {
     mapper(session).insert(change);
   }
 
+  /**
+   * Inserts the changes by multi-row statements. The number of rows per statement is bounded so that statements
+   * do not exceed the limit of parameters of the databases (2100 on MSSQL).
+   */
+  public void insert(DbSession session, Collection<IssueChangeDto> changes) {
+    IssueChangeMapper mapper = mapper(session);
+    for (List<IssueChangeDto> partition : Iterables.partition(changes, MAX_CHANGES_PER_INSERT)) {
+      mapper.insertMultiple(partition);
+    }
+  }
+
   public boolean delete(DbSession session, String key) {
     IssueChangeMapper mapper = mapper(session);
     int count = mapper.delete(key);
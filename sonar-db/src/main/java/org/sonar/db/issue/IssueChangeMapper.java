@@ -27,6 +27,11 @@ public interface IssueChangeMapper {
 
   void insert(IssueChangeDto dto);
 
+  /**
+   * Inserts all the changes with a single statement
+   */
+  void insertMultiple(@Param("changes") List<IssueChangeDto> changes);
+
   int delete(String key);
 
   int update(IssueChangeDto change);
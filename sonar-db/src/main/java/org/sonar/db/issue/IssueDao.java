@@ -21,6 +21,7 @@ package org.sonar.db.issue;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicates;
+import com.google.common.collect.Iterables;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -28,15 +29,19 @@ import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.RowNotFoundException;
 
 import static com.google.common.collect.FluentIterable.from;
 import static org.sonar.db.DatabaseUtils.executeLargeInputs;
+import static org.sonar.db.DatabaseUtils.executeLargeInputsWithoutOutput;
 
 public class IssueDao implements Dao {
 
+  private static final int MAX_ISSUES_PER_INSERT = 80;
+
   public java.util.Optional<IssueDto> selectByKey(DbSession session, String key) {
     return java.util.Optional.ofNullable(mapper(session).selectByKey(key));
   }
@@ -86,6 +91,16 @@ public class IssueDao implements Dao {
     }
   }
 
+  /**
+   * Each row returns a {@link IssueDto}. Rows are ordered by component UUID.
+   */
+  public void selectNonClosedByComponentUuids(DbSession session, Collection<String> componentUuids, ResultHandler resultHandler) {
+    executeLargeInputsWithoutOutput(componentUuids, partition -> {
+      mapper(session).selectNonClosedByComponentUuids(partition, resultHandler);
+      return null;
+    });
+  }
+
   public Set<String> selectComponentUuidsOfOpenIssuesForProjectUuid(DbSession session, String projectUuid) {
     return mapper(session).selectComponentUuidsOfOpenIssuesForProjectUuid(projectUuid);
   }
@@ -94,6 +109,17 @@ public class IssueDao implements Dao {
     mapper(session).insert(dto);
   }
 
+  /**
+   * Inserts the issues by multi-row statements. The number of rows per statement is bounded so that statements
+   * do not exceed the limit of parameters of the databases (2100 on MSSQL).
+   */
+  public void insert(DbSession session, Collection<IssueDto> dtos) {
+    IssueMapper mapper = mapper(session);
+    for (List<IssueDto> partition : Iterables.partition(dtos, MAX_ISSUES_PER_INSERT)) {
+      mapper.insertMultiple(partition);
+    }
+  }
+
   public void insert(DbSession session, IssueDto dto, IssueDto... others) {
     IssueMapper mapper = mapper(session);
     mapper.insert(dto);
@@ -30,12 +30,19 @@ public interface IssueMapper {
 
   void selectNonClosedByComponentUuid(@Param("componentUuid") String componentUuid, ResultHandler resultHandler);
 
+  void selectNonClosedByComponentUuids(@Param("componentUuids") List<String> componentUuids, ResultHandler resultHandler);
+
   Set<String> selectComponentUuidsOfOpenIssuesForProjectUuid(String projectUuid);
 
   List<IssueDto> selectByKeys(List<String> keys);
 
   void insert(IssueDto issue);
 
+  /**
+   * Inserts all the issues with a single statement
+   */
+  void insertMultiple(@Param("issues") List<IssueDto> issues);
+
   int update(IssueDto issue);
 
   int updateIfBeforeSelectedDate(IssueDto issue);
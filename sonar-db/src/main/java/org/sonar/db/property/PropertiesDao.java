@@ -107,6 +107,17 @@ public class PropertiesDao implements Dao {
     return getMapper(session).selectGlobalProperties();
   }
 
+  /**
+   * Value which changes each time a global property is saved, renamed or deleted. It is made of the greatest creation
+   * date and of the number of global properties. Properties are re-inserted with the current date when saved and get the
+   * current date when renamed, so saving or renaming increases the greatest creation date, unless done within the same
+   * millisecond as the previous change. Deleting decreases the number of properties.
+   */
+  public String selectGlobalPropertiesVersion(DbSession session) {
+    GlobalPropertiesVersion version = getMapper(session).selectGlobalPropertiesVersion();
+    return version.lastCreatedAt() + "-" + version.count();
+  }
+
   @CheckForNull
   public PropertyDto selectGlobalProperty(DbSession session, String propertyKey) {
     return getMapper(session).selectByKey(new PropertyDto().setKey(propertyKey));
@@ -282,7 +293,7 @@ public class PropertiesDao implements Dao {
 
     if (!newKey.equals(oldKey)) {
       try (DbSession session = mybatis.openSession(false)) {
-        getMapper(session).renamePropertyKey(oldKey, newKey);
+        getMapper(session).renamePropertyKey(oldKey, newKey, system2.now());
         session.commit();
       }
     }
@@ -31,6 +31,8 @@ public interface PropertiesMapper {
 
   List<PropertyDto> selectGlobalProperties();
 
+  GlobalPropertiesVersion selectGlobalPropertiesVersion();
+
   List<PropertyDto> selectProjectProperties(String resourceKey);
 
   PropertyDto selectByKey(PropertyDto key);
@@ -67,5 +69,5 @@ public interface PropertiesMapper {
 
   int deleteByQuery(@Param("query") PropertyQuery query);
 
-  int renamePropertyKey(@Param("oldKey") String oldKey, @Param("newKey") String newKey);
+  int renamePropertyKey(@Param("oldKey") String oldKey, @Param("newKey") String newKey, @Param("now") long now);
 }
@@ -20,22 +20,29 @@
 package org.sonar.db.source;
 
 import com.google.common.base.Splitter;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 import javax.annotation.CheckForNull;
 import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
+import org.sonar.db.protobuf.DbFileSources;
 import org.sonar.db.source.FileSourceDto.Type;
 
+import static org.sonar.db.DatabaseUtils.executeLargeInputsWithoutOutput;
+
 public class FileSourceDao implements Dao {
 
   private static final Splitter END_OF_LINE_SPLITTER = Splitter.on('\n');
@@ -60,6 +67,41 @@ public class FileSourceDao implements Dao {
     }
   }
 
+  /**
+   * Lines of the source of a file whose number is between {@code from} and {@code toInclusive}. Only the blocks of
+   * lines containing this range are read from the column BINARY_DATA and decompressed.
+   *
+   * @return {@code null} if the file has no source
+   */
+  @CheckForNull
+  public List<DbFileSources.Line> selectSourceLines(DbSession dbSession, String fileUuid, int from, int toInclusive) {
+    Connection connection = dbSession.getConnection();
+    PreparedStatement pstmt = null;
+    ResultSet rs = null;
+    InputStream input = null;
+    try {
+      pstmt = connection.prepareStatement("SELECT binary_data FROM file_sources WHERE file_uuid=? AND data_type=?");
+      pstmt.setString(1, fileUuid);
+      pstmt.setString(2, Type.SOURCE);
+      rs = pstmt.executeQuery();
+      if (!rs.next()) {
+        return null;
+      }
+      input = rs.getBinaryStream(1);
+      if (input == null) {
+        return Collections.emptyList();
+      }
+      return SourceLineBlocks.decode(input, from, toInclusive).getLinesList();
+    } catch (SQLException | IOException e) {
+      throw new IllegalStateException("Fail to read FILE_SOURCES.BINARY_DATA of file " + fileUuid, e);
+    } finally {
+      IOUtils.closeQuietly(input);
+      // connection belongs to the session, which may be used by caller after this method
+      DbUtils.closeQuietly(rs);
+      DbUtils.closeQuietly(pstmt);
+    }
+  }
+
   @CheckForNull
   public List<String> selectLineHashes(DbSession dbSession, String fileUuid) {
     Connection connection = dbSession.getConnection();
@@ -109,6 +151,28 @@ public class FileSourceDao implements Dao {
     }
   }
 
+  /**
+   * Each row returns a {@link FileSourceDto} of a source file, with only the fields fileUuid and lineHashes.
+   * Rows are ordered by file UUID.
+   */
+  public void selectLineHashesByFileUuids(DbSession dbSession, Collection<String> fileUuids, ResultHandler resultHandler) {
+    executeLargeInputsWithoutOutput(fileUuids, partition -> {
+      mapper(dbSession).selectLineHashesByFileUuids(partition, Type.SOURCE, resultHandler);
+      return null;
+    });
+  }
+
+  /**
+   * Each row returns a {@link FileSourceDto} of a source file, with only the fields fileUuid, binaryData and srcHash.
+   * Rows are ordered by file UUID.
+   */
+  public void selectSourcesByFileUuids(DbSession dbSession, Collection<String> fileUuids, ResultHandler resultHandler) {
+    executeLargeInputsWithoutOutput(fileUuids, partition -> {
+      mapper(dbSession).selectSourcesByFileUuids(partition, Type.SOURCE, resultHandler);
+      return null;
+    });
+  }
+
   public void insert(FileSourceDto dto) {
     DbSession session = mybatis.openSession(false);
     try {
@@ -137,6 +201,13 @@ public class FileSourceDao implements Dao {
     mapper(session).update(dto);
   }
 
+  /**
+   * Only writes the inputs hash of the given row, leaving data, line hashes and dates untouched.
+   */
+  public void updateInputsHash(DbSession session, FileSourceDto dto) {
+    mapper(session).updateInputsHash(dto);
+  }
+
   private static FileSourceMapper mapper(DbSession session) {
     return session.getMapper(FileSourceMapper.class);
   }
@@ -19,8 +19,6 @@
  */
 package org.sonar.db.source;
 
-import com.google.protobuf.CodedInputStream;
-import com.google.protobuf.InvalidProtocolBufferException;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -38,9 +36,6 @@ import static java.lang.String.format;
 
 public class FileSourceDto {
 
-  private static final String SIZE_LIMIT_EXCEEDED_EXCEPTION_MESSAGE = "Protocol message was too large.  May be malicious.  " +
-    "Use CodedInputStream.setSizeLimit() to increase the size limit.";
-
   private Long id;
   private String projectUuid;
   private String fileUuid;
@@ -52,6 +47,7 @@ public class FileSourceDto {
   private String dataType;
   private String dataHash;
   private String revision;
+  private String inputsHash;
 
   public Long getId() {
     return id;
@@ -95,7 +91,7 @@ public class FileSourceDto {
 
   public DbFileSources.Data decodeSourceData(byte[] binaryData) {
     try {
-      return decodeRegularSourceData(binaryData);
+      return SourceLineBlocks.decode(new ByteArrayInputStream(binaryData));
     } catch (IOException e) {
       throw new IllegalStateException(
         format("Fail to decompress and deserialize source data [id=%s,fileUuid=%s,projectUuid=%s]", id, fileUuid, projectUuid),
@@ -103,40 +99,15 @@ public class FileSourceDto {
     }
   }
 
-  private static DbFileSources.Data decodeRegularSourceData(byte[] binaryData) throws IOException {
-    try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData))) {
-      return DbFileSources.Data.parseFrom(lz4Input);
-    } catch (InvalidProtocolBufferException e) {
-      if (SIZE_LIMIT_EXCEEDED_EXCEPTION_MESSAGE.equals(e.getMessage())) {
-        return decodeHugeSourceData(binaryData);
-      }
-      throw e;
-    }
-  }
-
-  private static DbFileSources.Data decodeHugeSourceData(byte[] binaryData) throws IOException {
-    try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData))) {
-      CodedInputStream input = CodedInputStream.newInstance(lz4Input);
-      input.setSizeLimit(Integer.MAX_VALUE);
-      return DbFileSources.Data.parseFrom(input);
-    }
-  }
-
   /**
    * Serialize and compress protobuf message {@link org.sonar.db.protobuf.DbFileSources.Data}
-   * in the column BINARY_DATA.
+   * in the column BINARY_DATA. Lines are compressed by blocks, see {@link SourceLineBlocks}.
    */
   public static byte[] encodeSourceData(DbFileSources.Data data) {
-    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
-    LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(byteOutput);
     try {
-      data.writeTo(compressedOutput);
-      compressedOutput.close();
-      return byteOutput.toByteArray();
+      return SourceLineBlocks.encode(data);
     } catch (IOException e) {
       throw new IllegalStateException("Fail to serialize and compress source data", e);
-    } finally {
-      IOUtils.closeQuietly(compressedOutput);
     }
   }
 
@@ -290,6 +261,20 @@ public class FileSourceDto {
     return this;
   }
 
+  /**
+   * Hash of the data the binary data is computed from (source, coverage, highlighting, symbols, SCM and duplications).
+   * {@code null} when it has never been computed.
+   */
+  @CheckForNull
+  public String getInputsHash() {
+    return inputsHash;
+  }
+
+  public FileSourceDto setInputsHash(@Nullable String inputsHash) {
+    this.inputsHash = inputsHash;
+    return this;
+  }
+
   public static class Type {
     public static final String SOURCE = "SOURCE";
     public static final String TEST = "TEST";
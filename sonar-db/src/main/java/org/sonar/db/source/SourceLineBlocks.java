@@ -0,0 +1,207 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.source;
+
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.CodedInputStream;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.sonar.db.protobuf.DbFileSources;
+
+import static com.google.common.io.ByteStreams.readFully;
+import static com.google.common.io.ByteStreams.skipFully;
+
+/**
+ * Format of column FILE_SOURCES.BINARY_DATA for sources. Lines are stored in blocks of {@link #LINES_PER_BLOCK}
+ * lines, each block being a {@link DbFileSources.Data} message compressed independently with LZ4. Blocks are
+ * preceded by an index, so that a range of lines is read by decompressing only the blocks containing it:
+ * <pre>
+ *   magic number
+ *   number of blocks (int)
+ *   for each block: first line, last line, compressed size, uncompressed size (int)
+ *   compressed blocks
+ * </pre>
+ * Data written before this format is a single {@link DbFileSources.Data} message compressed by
+ * {@link net.jpountz.lz4.LZ4BlockOutputStream}. It is still supported when reading.
+ */
+final class SourceLineBlocks {
+
+  static final int LINES_PER_BLOCK = 500;
+
+  private static final byte[] MAGIC = {'S', 'L', 'B', '1'};
+  private static final int NO_LINE = -1;
+
+  private SourceLineBlocks() {
+    // only statics
+  }
+
+  static byte[] encode(DbFileSources.Data data) throws IOException {
+    LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+    List<DbFileSources.Line> lines = data.getLinesList();
+    List<Block> blocks = new ArrayList<>();
+    List<byte[]> compressedBlocks = new ArrayList<>();
+    int compressedSize = 0;
+    for (int start = 0; start < lines.size(); start += LINES_PER_BLOCK) {
+      List<DbFileSources.Line> blockLines = lines.subList(start, Math.min(lines.size(), start + LINES_PER_BLOCK));
+      byte[] raw = DbFileSources.Data.newBuilder().addAllLines(blockLines).build().toByteArray();
+      byte[] compressed = compressor.compress(raw);
+      blocks.add(new Block(firstLine(blockLines), lastLine(blockLines), compressed.length, raw.length));
+      compressedBlocks.add(compressed);
+      compressedSize += compressed.length;
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAGIC.length + 4 + blocks.size() * 16 + compressedSize);
+    DataOutputStream output = new DataOutputStream(bytes);
+    output.write(MAGIC);
+    output.writeInt(blocks.size());
+    for (Block block : blocks) {
+      output.writeInt(block.firstLine);
+      output.writeInt(block.lastLine);
+      output.writeInt(block.compressedSize);
+      output.writeInt(block.rawSize);
+    }
+    for (byte[] compressed : compressedBlocks) {
+      output.write(compressed);
+    }
+    output.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decodes all the lines. The input stream is not closed.
+   */
+  static DbFileSources.Data decode(InputStream input) throws IOException {
+    return decode(input, Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Decodes the lines whose number is between {@code from} and {@code toInclusive}. Lines without number are decoded
+   * only when all the lines are requested. The input stream is not closed.
+   */
+  static DbFileSources.Data decode(InputStream input, int from, int toInclusive) throws IOException {
+    BufferedInputStream bufferedInput = new BufferedInputStream(input);
+    bufferedInput.mark(MAGIC.length);
+    byte[] magic = new byte[MAGIC.length];
+    int read = ByteStreams.read(bufferedInput, magic, 0, magic.length);
+    if (read != MAGIC.length || !Arrays.equals(magic, MAGIC)) {
+      bufferedInput.reset();
+      return filter(decodeSingleBlock(bufferedInput), from, toInclusive);
+    }
+
+    DataInputStream dataInput = new DataInputStream(bufferedInput);
+    int blockCount = dataInput.readInt();
+    Block[] blocks = new Block[blockCount];
+    for (int i = 0; i < blockCount; i++) {
+      blocks[i] = new Block(dataInput.readInt(), dataInput.readInt(), dataInput.readInt(), dataInput.readInt());
+    }
+
+    boolean all = from == Integer.MIN_VALUE && toInclusive == Integer.MAX_VALUE;
+    LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+    DbFileSources.Data.Builder result = DbFileSources.Data.newBuilder();
+    for (Block block : blocks) {
+      if (all || block.overlaps(from, toInclusive)) {
+        byte[] compressed = new byte[block.compressedSize];
+        readFully(dataInput, compressed);
+        byte[] raw = decompressor.decompress(compressed, block.rawSize);
+        result.addAllLines(parse(CodedInputStream.newInstance(raw)).getLinesList());
+      } else if (block.firstLine > toInclusive) {
+        // lines are ordered, following blocks are not requested either
+        break;
+      } else {
+        skipFully(dataInput, block.compressedSize);
+      }
+    }
+    return all ? result.build() : filter(result.build(), from, toInclusive);
+  }
+
+  private static DbFileSources.Data decodeSingleBlock(InputStream input) throws IOException {
+    // LZ4BlockInputStream closes the underlying stream, which is closed by callers anyway
+    LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(input);
+    return parse(CodedInputStream.newInstance(lz4Input));
+  }
+
+  private static DbFileSources.Data parse(CodedInputStream input) throws IOException {
+    // files with a lot of lines exceed the default limit of 64MB
+    input.setSizeLimit(Integer.MAX_VALUE);
+    return DbFileSources.Data.parseFrom(input);
+  }
+
+  private static DbFileSources.Data filter(DbFileSources.Data data, int from, int toInclusive) {
+    if (from == Integer.MIN_VALUE && toInclusive == Integer.MAX_VALUE) {
+      return data;
+    }
+    DbFileSources.Data.Builder result = DbFileSources.Data.newBuilder();
+    for (DbFileSources.Line line : data.getLinesList()) {
+      if (line.hasLine() && line.getLine() >= from && line.getLine() <= toInclusive) {
+        result.addLines(line);
+      }
+    }
+    return result.build();
+  }
+
+  private static int firstLine(List<DbFileSources.Line> lines) {
+    int first = NO_LINE;
+    for (DbFileSources.Line line : lines) {
+      if (line.hasLine() && (first == NO_LINE || line.getLine() < first)) {
+        first = line.getLine();
+      }
+    }
+    return first;
+  }
+
+  private static int lastLine(List<DbFileSources.Line> lines) {
+    int last = NO_LINE;
+    for (DbFileSources.Line line : lines) {
+      if (line.hasLine() && line.getLine() > last) {
+        last = line.getLine();
+      }
+    }
+    return last;
+  }
+
+  private static class Block {
+    private final int firstLine;
+    private final int lastLine;
+    private final int compressedSize;
+    private final int rawSize;
+
+    private Block(int firstLine, int lastLine, int compressedSize, int rawSize) {
+      this.firstLine = firstLine;
+      this.lastLine = lastLine;
+      this.compressedSize = compressedSize;
+      this.rawSize = rawSize;
+    }
+
+    private boolean overlaps(int from, int toInclusive) {
+      return firstLine != NO_LINE && firstLine <= toInclusive && lastLine >= from;
+    }
+  }
+}
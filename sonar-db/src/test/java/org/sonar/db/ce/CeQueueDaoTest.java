@@ -124,6 +124,36 @@ public class CeQueueDaoTest {
     verifyCeQueueStatuses(TASK_UUID_1, PENDING, TASK_UUID_2, PENDING, TASK_UUID_3, PENDING);
   }
 
+  @Test
+  public void test_resetToPendingStatus() throws Exception {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    insert(TASK_UUID_2, COMPONENT_UUID_1, IN_PROGRESS);
+
+    assertThat(underTest.resetToPendingStatus(db.getSession(), TASK_UUID_1)).isFalse();
+    assertThat(underTest.resetToPendingStatus(db.getSession(), TASK_UUID_2)).isTrue();
+    assertThat(underTest.resetToPendingStatus(db.getSession(), "UNKNOWN")).isFalse();
+    db.getSession().commit();
+
+    verifyCeQueueStatuses(TASK_UUID_1, PENDING, TASK_UUID_2, PENDING);
+    assertThat(underTest.selectByUuid(db.getSession(), TASK_UUID_2).get().getStartedAt()).isNull();
+  }
+
+  @Test
+  public void test_resetStartedAt() throws Exception {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    insert(TASK_UUID_2, COMPONENT_UUID_1, IN_PROGRESS);
+    system2.setNow(INIT_TIME + 1_000);
+
+    assertThat(underTest.resetStartedAt(db.getSession(), TASK_UUID_1)).isFalse();
+    assertThat(underTest.resetStartedAt(db.getSession(), TASK_UUID_2)).isTrue();
+    assertThat(underTest.resetStartedAt(db.getSession(), "UNKNOWN")).isFalse();
+    db.getSession().commit();
+
+    verifyCeQueueStatuses(TASK_UUID_1, PENDING, TASK_UUID_2, IN_PROGRESS);
+    assertThat(underTest.selectByUuid(db.getSession(), TASK_UUID_1).get().getStartedAt()).isNull();
+    assertThat(underTest.selectByUuid(db.getSession(), TASK_UUID_2).get().getStartedAt()).isEqualTo(INIT_TIME + 1_000);
+  }
+
   @Test
   public void peek_none_if_no_pendings() throws Exception {
     assertThat(underTest.peek(db.getSession()).isPresent()).isFalse();
@@ -182,6 +212,34 @@ public class CeQueueDaoTest {
     assertThat(peek.get().getUuid()).isEqualTo(TASK_UUID_2);
   }
 
+  @Test
+  public void peek_several_tasks_at_once() throws Exception {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 1_000_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_2, PENDING);
+    system2.setNow(INIT_TIME + 2_000_000);
+    insert(TASK_UUID_3, COMPONENT_UUID_2, PENDING);
+
+    List<CeQueueDto> peeked = underTest.peek(db.getSession(), 3);
+
+    // only the oldest task of PROJECT_2 is peeked
+    assertThat(peeked).extracting(CeQueueDto::getUuid).containsExactly(TASK_UUID_1, TASK_UUID_2);
+    assertThat(peeked).extracting(CeQueueDto::getStatus).containsOnly(IN_PROGRESS);
+    verifyCeQueueStatuses(TASK_UUID_1, IN_PROGRESS, TASK_UUID_2, IN_PROGRESS, TASK_UUID_3, PENDING);
+
+    assertThat(underTest.peek(db.getSession(), 3)).isEmpty();
+  }
+
+  @Test
+  public void peek_at_most_the_requested_number_of_tasks() throws Exception {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 1_000_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_2, PENDING);
+
+    assertThat(underTest.peek(db.getSession(), 1)).extracting(CeQueueDto::getUuid).containsExactly(TASK_UUID_1);
+    verifyCeQueueStatuses(TASK_UUID_1, IN_PROGRESS, TASK_UUID_2, PENDING);
+  }
+
   @Test
   public void select_by_query() {
     // task status not in query
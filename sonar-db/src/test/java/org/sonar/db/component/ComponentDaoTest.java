@@ -482,6 +482,29 @@ public class ComponentDaoTest {
     assertThat(underTest.selectEnabledFilesFromProject(dbSession, "unknown")).isEmpty();
   }
 
+  @Test
+  public void scroll_enabled_files_of_module_tree() {
+    db.prepareDbUnit(getClass(), "select_module_files_tree.xml");
+
+    // From root project
+    List<FilePathWithHashDto> files = scrollEnabledFilesOfModuleTree("ABCD");
+    assertThat(files).extracting("uuid").containsExactly("EFGHI", "HIJK");
+    assertThat(files).extracting("moduleUuid").containsExactly("EFGH", "FGHI");
+    assertThat(files).extracting("srcHash").containsExactly("srcEFGHI", "srcHIJK");
+    assertThat(files).extracting("revision").containsOnly("123456789");
+    assertThat(files).extracting("updatedAt").containsOnly(1412952242000L);
+
+    // From sub module
+    assertThat(scrollEnabledFilesOfModuleTree("FGHI")).extracting("uuid").containsOnly("HIJK");
+  }
+
+  private List<FilePathWithHashDto> scrollEnabledFilesOfModuleTree(String moduleUuid) {
+    List<FilePathWithHashDto> files = new ArrayList<>();
+    underTest.scrollEnabledFilesOfModuleTree(dbSession, underTest.selectOrFailByUuid(dbSession, moduleUuid),
+      context -> files.add((FilePathWithHashDto) context.getResultObject()));
+    return files;
+  }
+
   @Test
   public void select_all_components_from_project() {
     db.prepareDbUnit(getClass(), "multi-modules.xml");
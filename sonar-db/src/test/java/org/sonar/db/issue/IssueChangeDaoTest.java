@@ -19,6 +19,7 @@
  */
 package org.sonar.db.issue;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import org.junit.Rule;
@@ -109,6 +110,30 @@ public class IssueChangeDaoTest {
     db.assertDbUnit(getClass(), "insert-result.xml", new String[] {"id"}, "issue_changes");
   }
 
+  @Test
+  public void insert_changes_by_multi_row_statements() {
+    List<IssueChangeDto> changes = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      changes.add(new IssueChangeDto()
+        .setKey("CHANGE_" + i)
+        .setUserLogin("emmerik")
+        .setChangeData("Some text " + i)
+        .setChangeType("comment")
+        .setIssueKey("ABCDE")
+        .setCreatedAt(1_500_000_000_000L)
+        .setUpdatedAt(1_501_000_000_000L)
+        .setIssueChangeCreationDate(1_502_000_000_000L));
+    }
+
+    underTest.insert(db.getSession(), changes);
+    db.getSession().commit();
+
+    assertThat(db.countRowsOfTable("issue_changes")).isEqualTo(300);
+    Optional<IssueChangeDto> comment = underTest.selectCommentByKey(db.getSession(), "CHANGE_299");
+    assertThat(comment.get().getChangeData()).isEqualTo("Some text 299");
+    assertThat(comment.get().getIssueChangeCreationDate()).isEqualTo(1_502_000_000_000L);
+  }
+
   @Test
   public void update() {
     db.prepareDbUnit(getClass(), "update.xml");
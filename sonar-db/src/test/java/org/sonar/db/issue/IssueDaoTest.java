@@ -19,6 +19,7 @@
  */
 package org.sonar.db.issue;
 
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
@@ -122,6 +123,48 @@ public class IssueDaoTest {
     assertThat(issues).extracting("key").containsExactly("I2", "I1");
   }
 
+  @Test
+  public void selectNonClosedByComponentUuids() {
+    // contains I1 and I2
+    prepareTables();
+    underTest.insert(dbTester.getSession(), newIssueDto("I3")
+      .setStatus("CLOSED")
+      .setRuleId(RULE.getId())
+      .setComponentUuid(FILE_UUID)
+      .setProjectUuid(PROJECT_UUID));
+    dbTester.getSession().commit();
+
+    List<IssueDto> issues = new ArrayList<>();
+    underTest.selectNonClosedByComponentUuids(dbTester.getSession(), asList(FILE_UUID, "unknown"),
+      context -> issues.add((IssueDto) context.getResultObject()));
+
+    assertThat(issues).extracting("key").containsOnly("I1", "I2");
+    assertThat(issues).extracting(IssueDto::getComponentUuid).containsOnly(FILE_UUID);
+  }
+
+  @Test
+  public void insert_issues_by_multi_row_statements() {
+    prepareTables();
+    List<IssueDto> dtos = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      dtos.add(newIssueDto("ISSUE_" + i)
+        .setRuleId(RULE.getId())
+        .setComponentUuid(FILE_UUID)
+        .setProjectUuid(PROJECT_UUID));
+    }
+
+    underTest.insert(dbTester.getSession(), dtos);
+    dbTester.getSession().commit();
+
+    assertThat(dbTester.countRowsOfTable("issues")).isEqualTo(202);
+    IssueDto issue = underTest.selectOrFailByKey(dbTester.getSession(), "ISSUE_199");
+    assertThat(issue.getRuleId()).isEqualTo(RULE.getId());
+    assertThat(issue.getComponentUuid()).isEqualTo(FILE_UUID);
+    assertThat(issue.getMessage()).isEqualTo("the message");
+    assertThat(issue.getGap()).isEqualTo(3.14);
+    assertThat(issue.getIssueCloseTime()).isEqualTo(1_450_000_000_000L);
+  }
+
   private static IssueDto newIssueDto(String key) {
     IssueDto dto = new IssueDto();
     dto.setComponent(new ComponentDto().setKey("struts:Action").setId(123L).setUuid("component-uuid"));
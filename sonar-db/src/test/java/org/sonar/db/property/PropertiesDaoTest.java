@@ -204,6 +204,54 @@ public class PropertiesDaoTest {
       .hasValue("two");
   }
 
+  @Test
+  public void selectGlobalPropertiesVersion_changes_when_global_properties_are_saved_or_deleted() {
+    when(system2.now()).thenReturn(DATE_1, DATE_2, DATE_3, DATE_4);
+    String emptyVersion = underTest.selectGlobalPropertiesVersion(session);
+
+    underTest.saveProperty(session, new PropertyDto().setKey("global.one").setValue("one"));
+    String version1 = underTest.selectGlobalPropertiesVersion(session);
+    assertThat(version1).isNotEqualTo(emptyVersion);
+
+    underTest.saveProperty(session, new PropertyDto().setKey("global.one").setValue("two"));
+    String version2 = underTest.selectGlobalPropertiesVersion(session);
+    assertThat(version2).isNotIn(emptyVersion, version1);
+
+    underTest.saveProperty(session, new PropertyDto().setKey("project.one").setValue("one").setResourceId(10L));
+    underTest.saveProperty(session, new PropertyDto().setKey("user.one").setValue("one").setUserId(100L));
+    assertThat(underTest.selectGlobalPropertiesVersion(session)).isEqualTo(version2);
+
+    underTest.deleteGlobalProperty("global.one", session);
+    assertThat(underTest.selectGlobalPropertiesVersion(session)).isEqualTo(emptyVersion);
+  }
+
+  @Test
+  public void selectGlobalPropertiesVersion_changes_when_global_properties_are_replaced_by_others() throws SQLException {
+    insertProperty("global.one", "one", null, null, DATE_1);
+    insertProperty("global.two", "two", null, null, DATE_3);
+    String version = underTest.selectGlobalPropertiesVersion(session);
+
+    underTest.deleteGlobalProperty("global.one", session);
+    underTest.deleteGlobalProperty("global.two", session);
+    // same number of properties and same sum of creation dates
+    insertProperty("global.three", "three", null, null, DATE_2);
+    insertProperty("global.four", "four", null, null, DATE_2);
+
+    assertThat(underTest.selectGlobalPropertiesVersion(session)).isNotEqualTo(version);
+  }
+
+  @Test
+  public void selectGlobalPropertiesVersion_changes_when_a_global_property_is_renamed() throws SQLException {
+    insertProperty("global.one", "one", null, null, DATE_1);
+    insertProperty("global.two", "two", null, null, DATE_2);
+    String version = underTest.selectGlobalPropertiesVersion(session);
+
+    when(system2.now()).thenReturn(DATE_3);
+    underTest.renamePropertyKey("global.one", "global.renamed");
+
+    assertThat(underTest.selectGlobalPropertiesVersion(session)).isNotEqualTo(version);
+  }
+
   @Test
   @UseDataProvider("allValuesForSelect")
   public void selectGlobalProperties_supports_all_values(String dbValue, String expected) throws SQLException {
@@ -901,6 +949,7 @@ public class PropertiesDaoTest {
     long id5 = insertProperty("old_name", "doc4", null, 100L, DATE_1);
     long id6 = insertProperty("old_name", "doc5", null, 101L, DATE_1);
 
+    when(system2.now()).thenReturn(DATE_2);
     underTest.renamePropertyKey("old_name", "new_name");
 
     assertThatPropertiesRow(id1)
@@ -914,31 +963,31 @@ public class PropertiesDaoTest {
       .hasNoResourceId()
       .hasNoUserId()
       .hasTextValue("doc1")
-      .hasCreatedAt(DATE_1);
+      .hasCreatedAt(DATE_2);
     assertThatPropertiesRow(id3)
       .hasKey("new_name")
       .hasResourceId(15)
       .hasNoUserId()
       .hasTextValue("doc2")
-      .hasCreatedAt(DATE_1);
+      .hasCreatedAt(DATE_2);
     assertThatPropertiesRow(id4)
       .hasKey("new_name")
       .hasResourceId(16)
       .hasNoUserId()
       .hasTextValue("doc3")
-      .hasCreatedAt(DATE_1);
+      .hasCreatedAt(DATE_2);
     assertThatPropertiesRow(id5)
       .hasKey("new_name")
       .hasNoResourceId()
       .hasUserId(100)
       .hasTextValue("doc4")
-      .hasCreatedAt(DATE_1);
+      .hasCreatedAt(DATE_2);
     assertThatPropertiesRow(id6)
       .hasKey("new_name")
       .hasNoResourceId()
       .hasUserId(101)
       .hasTextValue("doc5")
-      .hasCreatedAt(DATE_1);
+      .hasCreatedAt(DATE_2);
   }
 
   @Test
@@ -21,6 +21,8 @@ package org.sonar.db.source;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Function;
 import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
@@ -29,8 +31,10 @@ import org.junit.Test;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
+import org.sonar.db.protobuf.DbFileSources;
 import org.sonar.db.source.FileSourceDto.Type;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 
@@ -69,6 +73,31 @@ public class FileSourceDaoTest {
     assertThat(fn.result).isEqualTo("ABC\\nDEF\\nGHI");
   }
 
+  @Test
+  public void select_line_hashes_by_file_uuids() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    List<FileSourceDto> dtos = new ArrayList<>();
+    underTest.selectLineHashesByFileUuids(session, asList("FILE1_UUID", "unknown"), context -> dtos.add((FileSourceDto) context.getResultObject()));
+
+    assertThat(dtos).hasSize(1);
+    assertThat(dtos.get(0).getFileUuid()).isEqualTo("FILE1_UUID");
+    assertThat(dtos.get(0).getLineHashes()).isEqualTo("ABC\\nDEF\\nGHI");
+  }
+
+  @Test
+  public void select_sources_by_file_uuids() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    List<FileSourceDto> dtos = new ArrayList<>();
+    underTest.selectSourcesByFileUuids(session, asList("FILE1_UUID", "unknown"), context -> dtos.add((FileSourceDto) context.getResultObject()));
+
+    assertThat(dtos).hasSize(1);
+    assertThat(dtos.get(0).getFileUuid()).isEqualTo("FILE1_UUID");
+    assertThat(dtos.get(0).getBinaryData()).isNotEmpty();
+    assertThat(dtos.get(0).getSrcHash()).isEqualTo("FILE_HASH");
+  }
+
   @Test
   public void no_line_hashes_on_unknown_file() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
@@ -89,6 +118,32 @@ public class FileSourceDaoTest {
     assertThat(fn.result).isNull();
   }
 
+  @Test
+  public void select_source_lines_in_range() {
+    DbFileSources.Data.Builder data = DbFileSources.Data.newBuilder();
+    for (int i = 1; i <= 1200; i++) {
+      data.addLinesBuilder().setLine(i).setSource("line " + i);
+    }
+    underTest.insert(new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid("FILE2_UUID")
+      .setSourceData(data.build())
+      .setDataType(Type.SOURCE)
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000000L));
+
+    List<DbFileSources.Line> lines = underTest.selectSourceLines(session, "FILE2_UUID", 499, 502);
+
+    assertThat(lines).extracting(DbFileSources.Line::getLine).containsExactly(499, 500, 501, 502);
+    assertThat(lines).extracting(DbFileSources.Line::getSource).containsExactly("line 499", "line 500", "line 501", "line 502");
+    assertThat(underTest.selectSourceLines(session, "FILE2_UUID", 1, Integer.MAX_VALUE)).hasSize(1200);
+  }
+
+  @Test
+  public void select_source_lines_returns_null_if_file_does_not_exist() {
+    assertThat(underTest.selectSourceLines(session, "UNKNOWN", 1, 10)).isNull();
+  }
+
   @Test
   public void insert() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
@@ -175,6 +230,28 @@ public class FileSourceDaoTest {
       "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "created_at", "updated_at", "data_type", "revision");
   }
 
+  @Test
+  public void update_inputs_hash_only() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    byte[] binaryData = underTest.selectSourceByFileUuid(session, "FILE1_UUID").getBinaryData();
+
+    underTest.updateInputsHash(session, new FileSourceDto()
+      .setId(101L)
+      .setBinaryData("ignored data".getBytes())
+      .setDataHash("IGNORED_DATA_HASH")
+      .setUpdatedAt(1500000000002L)
+      .setInputsHash("NEW_INPUTS_HASH"));
+    session.commit();
+
+    FileSourceDto dto = underTest.selectSourceByFileUuid(session, "FILE1_UUID");
+    assertThat(dto.getInputsHash()).isEqualTo("NEW_INPUTS_HASH");
+    assertThat(dto.getDataHash()).isEqualTo("hash");
+    assertThat(dto.getSrcHash()).isEqualTo("FILE_HASH");
+    assertThat(dto.getLineHashes()).isEqualTo("ABC\\nDEF\\nGHI");
+    assertThat(dto.getBinaryData()).isEqualTo(binaryData);
+    assertThat(dto.getUpdatedAt()).isEqualTo(1500000000000L);
+  }
+
   private static class ReaderToStringFunction implements Function<Reader, String> {
 
     String result = null;
@@ -0,0 +1,128 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.source;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import org.junit.Test;
+import org.sonar.db.protobuf.DbFileSources;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.db.source.SourceLineBlocks.LINES_PER_BLOCK;
+
+public class SourceLineBlocksTest {
+
+  @Test
+  public void encode_and_decode_all_lines() throws IOException {
+    DbFileSources.Data data = newData(2 * LINES_PER_BLOCK + 10);
+
+    DbFileSources.Data decoded = SourceLineBlocks.decode(new ByteArrayInputStream(SourceLineBlocks.encode(data)));
+
+    assertThat(decoded).isEqualTo(data);
+  }
+
+  @Test
+  public void encode_and_decode_no_lines() throws IOException {
+    DbFileSources.Data data = DbFileSources.Data.getDefaultInstance();
+
+    assertThat(SourceLineBlocks.decode(new ByteArrayInputStream(SourceLineBlocks.encode(data)))).isEqualTo(data);
+  }
+
+  @Test
+  public void decode_range_of_lines() throws IOException {
+    byte[] bytes = SourceLineBlocks.encode(newData(3 * LINES_PER_BLOCK));
+
+    assertThat(SourceLineBlocks.decode(new ByteArrayInputStream(bytes), 1, 3).getLinesList())
+      .extracting(DbFileSources.Line::getLine).containsExactly(1, 2, 3);
+    assertThat(SourceLineBlocks.decode(new ByteArrayInputStream(bytes), LINES_PER_BLOCK - 1, LINES_PER_BLOCK + 1).getLinesList())
+      .extracting(DbFileSources.Line::getLine).containsExactly(LINES_PER_BLOCK - 1, LINES_PER_BLOCK, LINES_PER_BLOCK + 1);
+    assertThat(SourceLineBlocks.decode(new ByteArrayInputStream(bytes), 3 * LINES_PER_BLOCK, Integer.MAX_VALUE).getLinesList())
+      .extracting(DbFileSources.Line::getLine).containsExactly(3 * LINES_PER_BLOCK);
+    assertThat(SourceLineBlocks.decode(new ByteArrayInputStream(bytes), 3 * LINES_PER_BLOCK + 1, Integer.MAX_VALUE).getLinesList()).isEmpty();
+  }
+
+  @Test
+  public void decode_range_does_not_read_blocks_after_range() throws IOException {
+    DbFileSources.Data.Builder data = DbFileSources.Data.newBuilder();
+    Random random = new Random(42);
+    for (int i = 1; i <= 10 * LINES_PER_BLOCK; i++) {
+      data.addLinesBuilder().setLine(i).setSource(Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()));
+    }
+    byte[] bytes = SourceLineBlocks.encode(data.build());
+    CountingInputStream input = new CountingInputStream(new ByteArrayInputStream(bytes));
+
+    SourceLineBlocks.decode(input, 1, 10);
+
+    assertThat(input.count.get()).isLessThan(bytes.length / 5);
+  }
+
+  @Test
+  public void decode_data_compressed_as_a_single_block() throws IOException {
+    DbFileSources.Data data = newData(10);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (LZ4BlockOutputStream output = new LZ4BlockOutputStream(bytes)) {
+      data.writeTo(output);
+    }
+
+    assertThat(SourceLineBlocks.decode(new ByteArrayInputStream(bytes.toByteArray()))).isEqualTo(data);
+    assertThat(SourceLineBlocks.decode(new ByteArrayInputStream(bytes.toByteArray()), 2, 3).getLinesList())
+      .extracting(DbFileSources.Line::getLine).containsExactly(2, 3);
+  }
+
+  private static DbFileSources.Data newData(int lines) {
+    DbFileSources.Data.Builder data = DbFileSources.Data.newBuilder();
+    for (int i = 1; i <= lines; i++) {
+      data.addLines(DbFileSources.Line.newBuilder().setLine(i).setSource("line " + i).setScmAuthor("author"));
+    }
+    return data.build();
+  }
+
+  private static class CountingInputStream extends InputStream {
+    private final InputStream delegate;
+    private final AtomicInteger count = new AtomicInteger();
+
+    private CountingInputStream(InputStream delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = delegate.read();
+      if (b >= 0) {
+        count.incrementAndGet();
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = delegate.read(b, off, len);
+      if (read > 0) {
+        count.addAndGet(read);
+      }
+      return read;
+    }
+  }
+}
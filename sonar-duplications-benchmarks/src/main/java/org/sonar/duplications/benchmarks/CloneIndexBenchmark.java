@@ -0,0 +1,81 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.index.CloneIndex;
+
+/**
+ * Insertion of all the blocks of the corpus into a {@link CloneIndex}, and search of blocks by hash
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CloneIndexBenchmark {
+
+  @Param(Corpus.SYNTHETIC)
+  public String corpus;
+
+  @Param({CloneIndexes.PACKED, CloneIndexes.OFF_HEAP, CloneIndexes.MEMORY})
+  public String index;
+
+  private List<List<Block>> blocksByFile;
+  private CloneIndex populatedIndex;
+
+  @Setup
+  public void setUp() {
+    blocksByFile = Corpus.load(corpus).blocks();
+    populatedIndex = CloneIndexes.populate(index, blocksByFile);
+  }
+
+  /**
+   * Includes the sort of the index, which is lazily done by the first query
+   */
+  @Benchmark
+  public int insert() {
+    return CloneIndexes.populate(index, blocksByFile).noResources();
+  }
+
+  @Benchmark
+  public void getBySequenceHash(Blackhole blackhole) {
+    for (List<Block> blocks : blocksByFile) {
+      for (Block block : blocks) {
+        blackhole.consume(populatedIndex.getBySequenceHash(block.getBlockHash()));
+      }
+    }
+  }
+}
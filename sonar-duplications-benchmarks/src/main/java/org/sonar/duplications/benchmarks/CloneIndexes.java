@@ -0,0 +1,64 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.benchmarks;
+
+import java.util.List;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.index.CloneIndex;
+import org.sonar.duplications.index.MemoryCloneIndex;
+import org.sonar.duplications.index.OffHeapCloneIndex;
+import org.sonar.duplications.index.PackedMemoryCloneIndex;
+
+/**
+ * Implementations of {@link CloneIndex} which can be selected by the parameter "index" of benchmarks
+ */
+final class CloneIndexes {
+
+  static final String PACKED = "packed";
+  static final String MEMORY = "memory";
+  static final String OFF_HEAP = "offheap";
+
+  private CloneIndexes() {
+    // only static methods
+  }
+
+  static CloneIndex newIndex(String type) {
+    switch (type) {
+      case PACKED:
+        return new PackedMemoryCloneIndex();
+      case MEMORY:
+        return new MemoryCloneIndex();
+      case OFF_HEAP:
+        return new OffHeapCloneIndex();
+      default:
+        throw new IllegalArgumentException("Unsupported type of index: " + type);
+    }
+  }
+
+  static CloneIndex populate(String type, List<List<Block>> blocksByFile) {
+    CloneIndex index = newIndex(type);
+    for (List<Block> blocks : blocksByFile) {
+      for (Block block : blocks) {
+        index.insert(block);
+      }
+    }
+    return index;
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.BlockChunker;
+import org.sonar.duplications.java.JavaStatementBuilder;
+import org.sonar.duplications.java.JavaTokenProducer;
+import org.sonar.duplications.statement.Statement;
+import org.sonar.duplications.statement.StatementChunker;
+import org.sonar.duplications.token.TokenChunker;
+
+/**
+ * Java source files used as input of benchmarks. The corpus is either {@link #SYNTHETIC}, a set of generated files
+ * sharing many methods, or the path to a directory which is scanned for Java files, for example
+ * {@code tests/perf/projects/huge-file}.
+ */
+class Corpus {
+
+  static final String SYNTHETIC = "synthetic";
+
+  /**
+   * Same block size as the one used by the scanner for Java
+   */
+  static final int BLOCK_SIZE = 10;
+
+  private static final int SYNTHETIC_FILES = 200;
+  private static final int SYNTHETIC_METHODS = 400;
+  private static final int METHODS_BY_FILE = 30;
+
+  private final List<SourceFile> files;
+
+  private Corpus(List<SourceFile> files) {
+    this.files = files;
+  }
+
+  static Corpus load(String corpus) {
+    if (SYNTHETIC.equals(corpus)) {
+      return new Corpus(generate());
+    }
+    File dir = new File(corpus);
+    if (!dir.isDirectory()) {
+      throw new IllegalArgumentException("Corpus must be '" + SYNTHETIC + "' or an existing directory: " + dir.getAbsolutePath());
+    }
+    return new Corpus(readDirectory(dir.toPath()));
+  }
+
+  List<SourceFile> files() {
+    return files;
+  }
+
+  List<List<Statement>> statements() {
+    TokenChunker tokenChunker = JavaTokenProducer.build();
+    StatementChunker statementChunker = JavaStatementBuilder.build();
+    return files.stream()
+      .map(file -> statementChunker.chunk(tokenChunker.chunk(file.content)))
+      .collect(Collectors.toList());
+  }
+
+  List<List<Block>> blocks() {
+    BlockChunker blockChunker = new BlockChunker(BLOCK_SIZE);
+    List<List<Statement>> statements = statements();
+    List<List<Block>> blocks = new ArrayList<>(files.size());
+    for (int i = 0; i < files.size(); i++) {
+      blocks.add(blockChunker.chunk(files.get(i).name, statements.get(i)));
+    }
+    return blocks;
+  }
+
+  private static List<SourceFile> readDirectory(Path dir) {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      return paths
+        .filter(path -> path.toString().endsWith(".java"))
+        .sorted()
+        .map(Corpus::readFile)
+        .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static SourceFile readFile(Path path) {
+    try {
+      return new SourceFile(path.toString(), new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Files are made of methods randomly picked from a shared set, so that they contain many duplications
+   */
+  private static List<SourceFile> generate() {
+    // fixed seed, so that all the runs use the same corpus
+    Random random = new Random(42);
+    String[] methods = new String[SYNTHETIC_METHODS];
+    for (int i = 0; i < methods.length; i++) {
+      methods[i] = generateMethod(random, i);
+    }
+    List<SourceFile> files = new ArrayList<>(SYNTHETIC_FILES);
+    for (int i = 0; i < SYNTHETIC_FILES; i++) {
+      StringBuilder sb = new StringBuilder();
+      sb.append("package org.sample;\n\npublic class Sample").append(i).append(" {\n\n");
+      for (int j = 0; j < METHODS_BY_FILE; j++) {
+        sb.append(methods[random.nextInt(methods.length)]);
+      }
+      sb.append("}\n");
+      files.add(new SourceFile("Sample" + i + ".java", sb.toString()));
+    }
+    return files;
+  }
+
+  private static String generateMethod(Random random, int index) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("  public int method").append(index).append("(int a, int b) {\n");
+    sb.append("    int result = 0;\n");
+    int statements = 5 + random.nextInt(20);
+    for (int i = 0; i < statements; i++) {
+      switch (random.nextInt(4)) {
+        case 0:
+          sb.append("    result += a * ").append(random.nextInt(100)).append(";\n");
+          break;
+        case 1:
+          sb.append("    if (result > b) {\n      result -= b;\n    }\n");
+          break;
+        case 2:
+          sb.append("    for (int i = 0; i < ").append(random.nextInt(10)).append("; i++) {\n      result ^= i;\n    }\n");
+          break;
+        default:
+          sb.append("    // comment ").append(i).append("\n    a = b + result;\n");
+          break;
+      }
+    }
+    sb.append("    return result;\n  }\n\n");
+    return sb.toString();
+  }
+
+  static class SourceFile {
+    final String name;
+    final String content;
+
+    SourceFile(String name, String content) {
+      this.name = name;
+      this.content = content;
+    }
+  }
+}
@@ -0,0 +1,513 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+import org.sonar.duplications.utils.FastStringComparator;
+
+/**
+ * Provides an index, which keeps blocks outside of the Java heap.
+ * <p>
+ * Like {@link PackedMemoryCloneIndex}, blocks are packed into ints, but these ints are stored in a direct buffer,
+ * so that the size of the heap does not need to grow with the number of blocks. Each resource id is stored only once
+ * on the heap and blocks refer to it by its position.
+ * </p>
+ * <p>
+ * Blocks are sorted by hash lazily, on first query. Only the blocks inserted since the previous sort are sorted,
+ * then merged with the blocks which are already sorted.
+ * </p>
+ * <p>
+ * Note that this implementation is not thread-safe and does not support deletion.
+ * </p>
+ *
+ * @since 6.3
+ */
+public class OffHeapCloneIndex extends AbstractCloneIndex {
+
+  private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+  /**
+   * Resource, index in file, first line, last line, first unit and last unit.
+   */
+  private static final int BLOCK_INTS = 6;
+
+  private static final int MAX_BUFFER_INTS = Integer.MAX_VALUE / 4;
+
+  private final int hashInts;
+
+  private final int blockInts;
+
+  /**
+   * Current number of blocks in index.
+   */
+  private int size;
+
+  /**
+   * Number of blocks, starting from the first one, which are sorted by hash.
+   */
+  private int sortedSize;
+
+  private int capacity;
+  private IntBuffer blockData;
+
+  /**
+   * Copy of the smaller sorted run, when merging runs.
+   */
+  private IntBuffer mergeBuffer;
+
+  private final Map<String, Integer> resourceIdsIndex = new HashMap<>();
+  private final List<String> resourceIds = new ArrayList<>();
+
+  /**
+   * Positions of blocks grouped by resource. Blocks of the resource {@code r} are referenced by the positions
+   * from {@code resourceOffsets[r]} (inclusive) to {@code resourceOffsets[r + 1]} (exclusive).
+   */
+  private IntBuffer blocksByResource;
+  private int[] resourceOffsets = new int[1];
+
+  /**
+   * Resources, sorted by {@link FastStringComparator}.
+   */
+  private int[] sortedResources = new int[0];
+
+  private final Block.Builder blockBuilder = Block.builder();
+
+  public OffHeapCloneIndex() {
+    this(8, DEFAULT_INITIAL_CAPACITY);
+  }
+
+  /**
+   * @param hashBytes size of hash in bytes
+   * @param initialCapacity the initial capacity
+   */
+  public OffHeapCloneIndex(int hashBytes, int initialCapacity) {
+    this.hashInts = hashBytes / 4;
+    this.blockInts = hashInts + BLOCK_INTS;
+    this.capacity = Math.max(initialCapacity, 1);
+    this.blockData = allocate(capacity * blockInts);
+    this.blocksByResource = allocate(0);
+    this.mergeBuffer = allocate(0);
+  }
+
+  private static IntBuffer allocate(int ints) {
+    return ByteBuffer.allocateDirect(ints * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * <strong>Note that this implementation does not guarantee that blocks would be sorted by index.</strong>
+   * </p>
+   */
+  @Override
+  public Collection<Block> getByResourceId(String resourceId) {
+    ensureSorted();
+    Integer resource = resourceIdsIndex.get(resourceId);
+    if (resource == null) {
+      return Collections.emptyList();
+    }
+    return getByResource(resource, resourceId);
+  }
+
+  private List<Block> getByResource(int resource, String resourceId) {
+    List<Block> result = new ArrayList<>(resourceOffsets[resource + 1] - resourceOffsets[resource]);
+    for (int i = resourceOffsets[resource]; i < resourceOffsets[resource + 1]; i++) {
+      result.add(createBlock(blocksByResource.get(i), resourceId, null));
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
+    ensureSorted();
+
+    int[] hash = toHash(sequenceHash);
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (compareHash(mid, hash) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+
+    List<Block> result = new ArrayList<>();
+    for (int index = lower; index < size && compareHash(index, hash) == 0; index++) {
+      // extract block (note that there is no need to extract hash)
+      result.add(createBlock(index, resourceIds.get(blockData.get(index * blockInts + hashInts)), sequenceHash));
+    }
+    return result;
+  }
+
+  private int[] toHash(ByteArray byteArray) {
+    int[] hash = byteArray.toIntArray();
+    if (hash.length != hashInts) {
+      throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
+    }
+    return hash;
+  }
+
+  private Block createBlock(int index, String resourceId, @Nullable ByteArray byteHash) {
+    int offset = index * blockInts;
+    ByteArray blockHash;
+
+    if (byteHash == null) {
+      int[] hash = new int[hashInts];
+      for (int j = 0; j < hashInts; j++) {
+        hash[j] = blockData.get(offset++);
+      }
+      blockHash = new ByteArray(hash);
+    } else {
+      blockHash = byteHash;
+      offset += hashInts;
+    }
+
+    // skip resource
+    offset++;
+    int indexInFile = blockData.get(offset++);
+    int firstLineNumber = blockData.get(offset++);
+    int lastLineNumber = blockData.get(offset++);
+    int startUnit = blockData.get(offset++);
+    int endUnit = blockData.get(offset);
+
+    return blockBuilder
+      .setResourceId(resourceId)
+      .setBlockHash(blockHash)
+      .setIndexInFile(indexInFile)
+      .setLines(firstLineNumber, lastLineNumber)
+      .setUnit(startUnit, endUnit)
+      .build();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * <strong>Note that this implementation allows insertion of two blocks with same index for one resource.</strong>
+   * </p>
+   */
+  @Override
+  public void insert(Block block) {
+    int[] hash = toHash(block.getBlockHash());
+    ensureCapacity();
+
+    int offset = size * blockInts;
+    for (int i = 0; i < hashInts; i++) {
+      blockData.put(offset++, hash[i]);
+    }
+    blockData.put(offset++, internResourceId(block.getResourceId()));
+    blockData.put(offset++, block.getIndexInFile());
+    blockData.put(offset++, block.getStartLine());
+    blockData.put(offset++, block.getEndLine());
+    blockData.put(offset++, block.getStartUnit());
+    blockData.put(offset, block.getEndUnit());
+
+    size++;
+  }
+
+  private int internResourceId(String resourceId) {
+    Integer resource = resourceIdsIndex.get(resourceId);
+    if (resource == null) {
+      resource = resourceIds.size();
+      resourceIds.add(resourceId);
+      resourceIdsIndex.put(resourceId, resource);
+    }
+    return resource;
+  }
+
+  /**
+   * Increases the capacity, if necessary.
+   */
+  private void ensureCapacity() {
+    if (size < capacity) {
+      return;
+    }
+    long newCapacity = Math.min((capacity * 3L) / 2 + 1, MAX_BUFFER_INTS / blockInts);
+    if (newCapacity <= capacity) {
+      throw new IllegalStateException("Index can not contain more than " + capacity + " blocks");
+    }
+    IntBuffer newBlockData = allocate((int) newCapacity * blockInts);
+    IntBuffer oldBlockData = blockData.duplicate();
+    oldBlockData.limit(size * blockInts);
+    newBlockData.put(oldBlockData).clear();
+    blockData = newBlockData;
+    capacity = (int) newCapacity;
+  }
+
+  /**
+   * Sorts the blocks inserted since the previous sort and merges them with the blocks already sorted, if necessary.
+   */
+  private void ensureSorted() {
+    if (sortedSize == size) {
+      return;
+    }
+    DataUtils.sort(unsortedBlocks);
+    if (sortedSize > 0) {
+      mergeSortedRuns();
+    }
+    sortedSize = size;
+    indexResources();
+  }
+
+  /**
+   * Merges the two sorted runs in place. Only the smaller run is copied to {@link #mergeBuffer}, which is kept
+   * for next merges, so that merging does not allocate a new buffer for the whole index each time.
+   */
+  private void mergeSortedRuns() {
+    int firstRun = sortedSize;
+    int secondRun = size - sortedSize;
+    IntBuffer buffer = mergeBuffer(Math.min(firstRun, secondRun));
+    if (firstRun <= secondRun) {
+      mergeFromHead(buffer);
+    } else {
+      mergeFromTail(buffer);
+    }
+  }
+
+  private IntBuffer mergeBuffer(int blocks) {
+    if (mergeBuffer.capacity() < blocks * blockInts) {
+      // previous buffer can be reclaimed if the allocation requires it
+      mergeBuffer = null;
+      mergeBuffer = allocate(blocks * blockInts);
+    }
+    return mergeBuffer;
+  }
+
+  /**
+   * The first run is copied to the buffer, and blocks are merged from the start of the index.
+   */
+  private void mergeFromHead(IntBuffer firstRun) {
+    for (int i = 0; i < sortedSize; i++) {
+      copyBlock(blockData, i, firstRun, i);
+    }
+    int i = 0;
+    int j = sortedSize;
+    int k = 0;
+    while (i < sortedSize && j < size) {
+      // on equal hashes, blocks inserted first come first
+      if (compareHash(blockData, j, firstRun, i) < 0) {
+        copyBlock(blockData, j++, blockData, k++);
+      } else {
+        copyBlock(firstRun, i++, blockData, k++);
+      }
+    }
+    while (i < sortedSize) {
+      copyBlock(firstRun, i++, blockData, k++);
+    }
+    // remaining blocks of the second run are already in place
+  }
+
+  /**
+   * The second run is copied to the buffer, and blocks are merged from the end of the index.
+   */
+  private void mergeFromTail(IntBuffer secondRun) {
+    for (int j = sortedSize; j < size; j++) {
+      copyBlock(blockData, j, secondRun, j - sortedSize);
+    }
+    int i = sortedSize - 1;
+    int j = size - sortedSize - 1;
+    int k = size - 1;
+    while (i >= 0 && j >= 0) {
+      // on equal hashes, blocks inserted last come last
+      if (compareHash(blockData, i, secondRun, j) > 0) {
+        copyBlock(blockData, i--, blockData, k--);
+      } else {
+        copyBlock(secondRun, j--, blockData, k--);
+      }
+    }
+    while (j >= 0) {
+      copyBlock(secondRun, j--, blockData, k--);
+    }
+    // remaining blocks of the first run are already in place
+  }
+
+  private void copyBlock(IntBuffer from, int fromIndex, IntBuffer to, int toIndex) {
+    int i = fromIndex * blockInts;
+    int j = toIndex * blockInts;
+    for (int k = 0; k < blockInts; k++, i++, j++) {
+      to.put(j, from.get(i));
+    }
+  }
+
+  /**
+   * Groups positions of blocks by resource, using a counting sort, and sorts resources by {@link FastStringComparator}.
+   */
+  private void indexResources() {
+    int resources = resourceIds.size();
+    resourceOffsets = new int[resources + 1];
+    for (int i = 0; i < size; i++) {
+      resourceOffsets[resourceOf(i) + 1]++;
+    }
+    for (int r = 0; r < resources; r++) {
+      resourceOffsets[r + 1] += resourceOffsets[r];
+    }
+    if (blocksByResource.capacity() < size) {
+      blocksByResource = allocate(capacity);
+    }
+    int[] next = Arrays.copyOf(resourceOffsets, resources);
+    for (int i = 0; i < size; i++) {
+      blocksByResource.put(next[resourceOf(i)]++, i);
+    }
+
+    sortedResources = new int[resources];
+    for (int r = 0; r < resources; r++) {
+      sortedResources[r] = r;
+    }
+    DataUtils.sort(byResourceId);
+  }
+
+  private int resourceOf(int index) {
+    return blockData.get(index * blockInts + hashInts);
+  }
+
+  private int compareHash(int index, int[] hash) {
+    int offset = index * blockInts;
+    for (int k = 0; k < hashInts; k++, offset++) {
+      int value = blockData.get(offset);
+      if (value != hash[k]) {
+        return value < hash[k] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
+  private int compareHash(int i, int j) {
+    return compareHash(blockData, i, blockData, j);
+  }
+
+  private int compareHash(IntBuffer a, int i, IntBuffer b, int j) {
+    int i2 = i * blockInts;
+    int j2 = j * blockInts;
+    for (int k = 0; k < hashInts; k++, i2++, j2++) {
+      int x = a.get(i2);
+      int y = b.get(j2);
+      if (x != y) {
+        return x < y ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
+  private final DataUtils.Sortable unsortedBlocks = new DataUtils.Sortable() {
+    @Override
+    public void swap(int i, int j) {
+      int i2 = (sortedSize + i) * blockInts;
+      int j2 = (sortedSize + j) * blockInts;
+      for (int k = 0; k < blockInts; k++, i2++, j2++) {
+        int x = blockData.get(i2);
+        blockData.put(i2, blockData.get(j2));
+        blockData.put(j2, x);
+      }
+    }
+
+    @Override
+    public boolean isLess(int i, int j) {
+      return compareHash(sortedSize + i, sortedSize + j) < 0;
+    }
+
+    @Override
+    public int size() {
+      return size - sortedSize;
+    }
+  };
+
+  private final DataUtils.Sortable byResourceId = new DataUtils.Sortable() {
+    @Override
+    public void swap(int i, int j) {
+      int tmp = sortedResources[i];
+      sortedResources[i] = sortedResources[j];
+      sortedResources[j] = tmp;
+    }
+
+    @Override
+    public boolean isLess(int i, int j) {
+      String s1 = resourceIds.get(sortedResources[i]);
+      String s2 = resourceIds.get(sortedResources[j]);
+      return FastStringComparator.INSTANCE.compare(s1, s2) < 0;
+    }
+
+    @Override
+    public int size() {
+      return sortedResources.length;
+    }
+  };
+
+  private class ResourceIterator implements Iterator<ResourceBlocks> {
+    private int index = 0;
+
+    @Override
+    public boolean hasNext() {
+      return index < sortedResources.length;
+    }
+
+    @Override
+    public ResourceBlocks next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      int resource = sortedResources[index];
+      index++;
+      String resourceId = resourceIds.get(resource);
+      return new ResourceBlocks(resourceId, getByResource(resource, resourceId));
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Iterator<ResourceBlocks> iterator() {
+    ensureSorted();
+    return new ResourceIterator();
+  }
+
+  /**
+   * Computation is O(1), once index is sorted
+   */
+  @Override
+  public int noResources() {
+    ensureSorted();
+    return resourceIds.size();
+  }
+}
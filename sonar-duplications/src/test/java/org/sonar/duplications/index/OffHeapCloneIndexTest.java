@@ -0,0 +1,214 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.duplications.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapCloneIndexTest {
+
+  private OffHeapCloneIndex index;
+
+  @Before
+  public void setUp() {
+    index = new OffHeapCloneIndex();
+  }
+
+  @Test
+  public void test() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("a", 2));
+    index.insert(newBlock("b", 1));
+    index.insert(newBlock("c", 1));
+    index.insert(newBlock("d", 1));
+    index.insert(newBlock("e", 1));
+    index.insert(newBlock("e", 2));
+    index.insert(newBlock("e", 3));
+
+    assertThat(index.noResources()).isEqualTo(5);
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(5);
+    assertThat(index.getBySequenceHash(new ByteArray(2L))).hasSize(2);
+    assertThat(index.getBySequenceHash(new ByteArray(3L))).hasSize(1);
+    assertThat(index.getBySequenceHash(new ByteArray(4L))).isEmpty();
+    assertThat(index.getByResourceId("a")).hasSize(2);
+    assertThat(index.getByResourceId("b")).hasSize(1);
+    assertThat(index.getByResourceId("e")).hasSize(3);
+    assertThat(index.getByResourceId("does not exist")).isEmpty();
+  }
+
+  @Test
+  public void should_construct_blocks_with_normalized_hash() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("b", 1));
+    index.insert(newBlock("c", 1));
+    ByteArray requestedHash = new ByteArray(1L);
+    Collection<Block> blocks = index.getBySequenceHash(requestedHash);
+    assertThat(blocks).hasSize(3);
+    for (Block block : blocks) {
+      assertThat(block.getBlockHash()).isSameAs(requestedHash);
+    }
+  }
+
+  @Test
+  public void should_restore_all_fields_of_blocks() {
+    Block block = Block.builder()
+      .setResourceId("a")
+      .setBlockHash(new ByteArray(42L))
+      .setIndexInFile(3)
+      .setLines(10, 20)
+      .setUnit(100, 200)
+      .build();
+    index.insert(block);
+
+    Block found = index.getByResourceId("a").iterator().next();
+    assertThat(found).isEqualTo(block);
+    assertThat(found.getStartLine()).isEqualTo(10);
+    assertThat(found.getEndLine()).isEqualTo(20);
+    assertThat(found.getStartUnit()).isEqualTo(100);
+    assertThat(found.getEndUnit()).isEqualTo(200);
+    assertThat(index.getBySequenceHash(new ByteArray(42L))).containsOnly(block);
+  }
+
+  @Test
+  public void iterate() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("c", 1));
+    index.insert(newBlock("b", 1));
+    index.insert(newBlock("c", 2));
+    index.insert(newBlock("a", 2));
+
+    Iterator<ResourceBlocks> it = index.iterator();
+
+    List<ResourceBlocks> resourcesBlocks = new ArrayList<>();
+    while (it.hasNext()) {
+      resourcesBlocks.add(it.next());
+    }
+
+    assertThat(resourcesBlocks).hasSize(3);
+
+    assertThat(resourcesBlocks.get(0).resourceId()).isEqualTo("a");
+    assertThat(resourcesBlocks.get(1).resourceId()).isEqualTo("b");
+    assertThat(resourcesBlocks.get(2).resourceId()).isEqualTo("c");
+
+    assertThat(resourcesBlocks.get(0).blocks()).hasSize(2);
+    assertThat(resourcesBlocks.get(1).blocks()).hasSize(1);
+    assertThat(resourcesBlocks.get(2).blocks()).hasSize(2);
+  }
+
+  @Test
+  public void should_increase_capacity() {
+    CloneIndex index = new OffHeapCloneIndex(8, 1);
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("a", 2));
+    assertThat(index.getByResourceId("a")).hasSize(2);
+  }
+
+  @Test
+  public void should_merge_blocks_inserted_after_query() {
+    index.insert(newBlock("a", 3));
+    index.insert(newBlock("a", 1));
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(1);
+
+    index.insert(newBlock("b", 2));
+    index.insert(newBlock("b", 1));
+    index.insert(newBlock("c", 4));
+
+    assertThat(index.noResources()).isEqualTo(3);
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).extracting(Block::getResourceId).containsExactly("a", "b");
+    assertThat(index.getBySequenceHash(new ByteArray(2L))).extracting(Block::getResourceId).containsExactly("b");
+    assertThat(index.getBySequenceHash(new ByteArray(3L))).extracting(Block::getResourceId).containsExactly("a");
+    assertThat(index.getBySequenceHash(new ByteArray(4L))).extracting(Block::getResourceId).containsExactly("c");
+    assertThat(index.getByResourceId("b")).hasSize(2);
+  }
+
+  @Test
+  public void should_merge_blocks_inserted_after_query_when_they_are_less_than_blocks_already_sorted() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("b", 3));
+    index.insert(newBlock("c", 1));
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).hasSize(2);
+
+    index.insert(newBlock("d", 1));
+    index.insert(newBlock("e", 2));
+
+    assertThat(index.getBySequenceHash(new ByteArray(1L))).extracting(Block::getResourceId).containsExactly("a", "c", "d");
+    assertThat(index.getBySequenceHash(new ByteArray(2L))).extracting(Block::getResourceId).containsExactly("e");
+    assertThat(index.getBySequenceHash(new ByteArray(3L))).extracting(Block::getResourceId).containsExactly("b");
+  }
+
+  @Test
+  public void should_find_same_blocks_as_packed_memory_index() {
+    CloneIndex packed = new PackedMemoryCloneIndex();
+    Random random = new Random(42);
+    for (int i = 0; i < 5_000; i++) {
+      Block block = newBlock("resource" + random.nextInt(100), random.nextInt(500));
+      index.insert(block);
+      packed.insert(block);
+      if (i % 1_000 == 0) {
+        // triggers merge of sorted runs
+        index.getBySequenceHash(block.getBlockHash());
+      }
+    }
+
+    assertThat(index.noResources()).isEqualTo(packed.noResources());
+    for (long hash = 0; hash < 500; hash++) {
+      ByteArray byteArray = new ByteArray(hash);
+      assertThat(index.getBySequenceHash(byteArray)).containsOnlyElementsOf(packed.getBySequenceHash(byteArray))
+        .hasSameSizeAs(packed.getBySequenceHash(byteArray));
+    }
+    for (int resource = 0; resource < 100; resource++) {
+      String resourceId = "resource" + resource;
+      assertThat(index.getByResourceId(resourceId)).containsOnlyElementsOf(packed.getByResourceId(resourceId))
+        .hasSameSizeAs(packed.getByResourceId(resourceId));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void attempt_to_insert_hash_of_incorrect_size() {
+    CloneIndex index = new OffHeapCloneIndex(4, 1);
+    index.insert(newBlock("a", 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void attempt_to_find_hash_of_incorrect_size() {
+    CloneIndex index = new OffHeapCloneIndex(4, 1);
+    index.getBySequenceHash(new ByteArray(1L));
+  }
+
+  private static Block newBlock(String resourceId, long hash) {
+    return Block.builder()
+      .setResourceId(resourceId)
+      .setBlockHash(new ByteArray(hash))
+      .setIndexInFile(1)
+      .setLines(1, 2)
+      .build();
+  }
+
+}
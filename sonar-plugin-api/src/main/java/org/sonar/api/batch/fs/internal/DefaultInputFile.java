@@ -51,7 +51,7 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
     this.publish = false;
   }
 
-  public void checkMetadata() {
+  public synchronized void checkMetadata() {
     if (metadata == null) {
       metadataGenerator.accept(this);
     }
@@ -171,6 +171,15 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
     return metadata.nonBlankLines();
   }
 
+  /**
+   * Hashes of lines for issue tracking, if they were computed with metadata.
+   */
+  @CheckForNull
+  public byte[][] lineHashes() {
+    checkMetadata();
+    return metadata.lineHashes();
+  }
+
   public int[] originalLineOffsets() {
     checkMetadata();
     Preconditions.checkState(metadata.originalLineOffsets() != null, "InputFile is not properly initialized.");
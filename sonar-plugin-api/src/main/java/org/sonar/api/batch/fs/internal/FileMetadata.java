@@ -25,15 +25,10 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
-import java.nio.charset.CharsetEncoder;
-import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import javax.annotation.CheckForNull;
+import java.util.Arrays;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -56,6 +51,7 @@ public class FileMetadata {
 
   private static final char LINE_FEED = '\n';
   private static final char CARRIAGE_RETURN = '\r';
+  private static final int BUFFER_SIZE = 8192;
 
   public abstract static class CharHandler {
 
@@ -72,233 +68,53 @@ public class FileMetadata {
     }
   }
 
-  private static class LineCounter extends CharHandler {
-    private int lines = 1;
-    private int nonBlankLines = 0;
-    private boolean blankLine = true;
-    boolean alreadyLoggedInvalidCharacter = false;
-    private final File file;
-    private final Charset encoding;
-
-    LineCounter(File file, Charset encoding) {
-      this.file = file;
-      this.encoding = encoding;
-    }
-
-    @Override
-    protected void handleAll(char c) {
-      if (!alreadyLoggedInvalidCharacter && c == '\ufffd') {
-        LOG.warn("Invalid character encountered in file {} at line {} for encoding {}. Please fix file content or configure the encoding to be used using property '{}'.", file,
-          lines, encoding, CoreProperties.ENCODING_PROPERTY);
-        alreadyLoggedInvalidCharacter = true;
-      }
-    }
-
-    @Override
-    protected void newLine() {
-      lines++;
-      if (!blankLine) {
-        nonBlankLines++;
-      }
-      blankLine = true;
-    }
-
-    @Override
-    protected void handleIgnoreEoL(char c) {
-      if (!Character.isWhitespace(c)) {
-        blankLine = false;
-      }
-    }
-
-    @Override
-    protected void eof() {
-      if (!blankLine) {
-        nonBlankLines++;
-      }
-    }
-
-    public int lines() {
-      return lines;
-    }
-
-    public int nonBlankLines() {
-      return nonBlankLines;
-    }
-
-  }
-
-  private static class FileHashComputer extends CharHandler {
-    private MessageDigest globalMd5Digest = DigestUtils.getMd5Digest();
-    private StringBuilder sb = new StringBuilder();
-    private final CharsetEncoder encoder;
-    private final File file;
-
-    public FileHashComputer(File f) {
-      encoder = StandardCharsets.UTF_8.newEncoder()
-        .onMalformedInput(CodingErrorAction.REPLACE)
-        .onUnmappableCharacter(CodingErrorAction.REPLACE);
-      file = f;
-    }
-
-    @Override
-    protected void handleIgnoreEoL(char c) {
-      sb.append(c);
-    }
-
-    @Override
-    protected void newLine() {
-      sb.append(LINE_FEED);
-      processBuffer();
-      sb.setLength(0);
-    }
-
-    @Override
-    protected void eof() {
-      if (sb.length() > 0) {
-        processBuffer();
-      }
-    }
-
-    private void processBuffer() {
-      try {
-        if (sb.length() > 0) {
-          ByteBuffer encoded = encoder.encode(CharBuffer.wrap(sb));
-          globalMd5Digest.update(encoded.array(), 0, encoded.limit());
-        }
-      } catch (CharacterCodingException e) {
-        throw new IllegalStateException("Error encoding line hash in file: " + file.getAbsolutePath(), e);
-      }
-    }
-
-    @CheckForNull
-    public String getHash() {
-      return Hex.encodeHexString(globalMd5Digest.digest());
-    }
-  }
-
-  private static class LineHashComputer extends CharHandler {
-    private final MessageDigest lineMd5Digest = DigestUtils.getMd5Digest();
-    private final CharsetEncoder encoder;
-    private final StringBuilder sb = new StringBuilder();
-    private final LineHashConsumer consumer;
-    private final File file;
-    private int line = 1;
-
-    public LineHashComputer(LineHashConsumer consumer, File f) {
-      this.consumer = consumer;
-      this.file = f;
-      this.encoder = StandardCharsets.UTF_8.newEncoder()
-        .onMalformedInput(CodingErrorAction.REPLACE)
-        .onUnmappableCharacter(CodingErrorAction.REPLACE);
-    }
-
-    @Override
-    protected void handleIgnoreEoL(char c) {
-      if (!Character.isWhitespace(c)) {
-        sb.append(c);
-      }
-    }
-
-    @Override
-    protected void newLine() {
-      processBuffer();
-      sb.setLength(0);
-      line++;
-    }
-
-    @Override
-    protected void eof() {
-      if (this.line > 0) {
-        processBuffer();
-      }
-    }
-
-    private void processBuffer() {
-      try {
-        if (sb.length() > 0) {
-          ByteBuffer encoded = encoder.encode(CharBuffer.wrap(sb));
-          lineMd5Digest.update(encoded.array(), 0, encoded.limit());
-          consumer.consume(line, lineMd5Digest.digest());
-        }
-      } catch (CharacterCodingException e) {
-        throw new IllegalStateException("Error encoding line hash in file: " + file.getAbsolutePath(), e);
-      }
-    }
-  }
-
-  private static class LineOffsetCounter extends CharHandler {
-    private long currentOriginalOffset = 0;
-    private IntArrayList originalLineOffsets = new IntArrayList();
-    private long lastValidOffset = 0;
-
-    public LineOffsetCounter() {
-      originalLineOffsets.add(0);
-    }
-
-    @Override
-    protected void handleAll(char c) {
-      currentOriginalOffset++;
-    }
-
-    @Override
-    protected void newLine() {
-      if (currentOriginalOffset > Integer.MAX_VALUE) {
-        throw new IllegalStateException("File is too big: " + currentOriginalOffset);
-      }
-      originalLineOffsets.add((int) currentOriginalOffset);
-    }
-
-    @Override
-    protected void eof() {
-      lastValidOffset = currentOriginalOffset;
-    }
-
-    public int[] getOriginalLineOffsets() {
-      return originalLineOffsets.trimAndGet();
-    }
-
-    public int getLastValidOffset() {
-      if (lastValidOffset > Integer.MAX_VALUE) {
-        throw new IllegalStateException("File is too big: " + lastValidOffset);
-      }
-      return (int) lastValidOffset;
-    }
-
-  }
-
   /**
    * Compute hash of a file ignoring line ends differences.
    * Maximum performance is needed.
    */
   public Metadata readMetadata(File file, Charset encoding) {
-    LineCounter lineCounter = new LineCounter(file, encoding);
-    FileHashComputer fileHashComputer = new FileHashComputer(file);
-    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
-    readFile(file, encoding, lineCounter, fileHashComputer, lineOffsetCounter);
-    return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
-      lineOffsetCounter.getLastValidOffset());
+    return readMetadata(file, encoding, false);
+  }
+
+  /**
+   * Same as {@link #readMetadata(File, Charset)}, but also computes the hashes of lines for issue tracking
+   * during the same read of the file, so that {@link #computeLineHashesForIssueTracking(InputFile, LineHashConsumer)}
+   * does not read the file again.
+   */
+  public Metadata readMetadata(File file, Charset encoding, boolean computeLineHashes) {
+    MetadataComputer computer = new MetadataComputer(file, encoding, true, computeLineHashes ? new LineHashesCollector() : null);
+    readFile(file, encoding, computer);
+    return computer.metadata();
   }
 
   /**
    * For testing purpose
    */
   public Metadata readMetadata(Reader reader) {
-    LineCounter lineCounter = new LineCounter(new File("fromString"), StandardCharsets.UTF_16);
-    FileHashComputer fileHashComputer = new FileHashComputer(new File("fromString"));
-    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
+    MetadataComputer computer = new MetadataComputer(new File("fromString"), StandardCharsets.UTF_16, true, null);
     try {
-      read(reader, lineCounter, fileHashComputer, lineOffsetCounter);
+      computer.read(reader);
     } catch (IOException e) {
       throw new IllegalStateException("Should never occurs", e);
     }
-    return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
-      lineOffsetCounter.getLastValidOffset());
+    return computer.metadata();
+  }
+
+  private static void readFile(File file, Charset encoding, MetadataComputer computer) {
+    try (Reader reader = newReader(file, encoding)) {
+      computer.read(reader);
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", file.getAbsolutePath(), encoding), e);
+    }
+  }
+
+  private static Reader newReader(File file, Charset encoding) throws IOException {
+    return new InputStreamReader(new BOMInputStream(new FileInputStream(file),
+      ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE), encoding);
   }
 
   public static void readFile(File file, Charset encoding, CharHandler... handlers) {
-    try (BOMInputStream bomIn = new BOMInputStream(new FileInputStream(file),
-      ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE);
-      Reader reader = new BufferedReader(new InputStreamReader(bomIn, encoding))) {
+    try (Reader reader = new BufferedReader(newReader(file, encoding))) {
       read(reader, handlers);
     } catch (IOException e) {
       throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", file.getAbsolutePath(), encoding), e);
@@ -360,9 +176,244 @@ public class FileMetadata {
   }
 
   /**
-   * Compute a MD5 hash of each line of the file after removing of all blank chars
+   * Compute a MD5 hash of each line of the file after removing of all blank chars. Hashes are not computed
+   * again if they were computed with the metadata of the file, see {@link #readMetadata(File, Charset, boolean)}.
    */
   public static void computeLineHashesForIssueTracking(InputFile f, LineHashConsumer consumer) {
-    readFile(f.file(), f.charset(), new LineHashComputer(consumer, f.file()));
+    byte[][] lineHashes = f instanceof DefaultInputFile ? ((DefaultInputFile) f).lineHashes() : null;
+    if (lineHashes != null) {
+      for (int i = 0; i < lineHashes.length; i++) {
+        if (lineHashes[i] != null) {
+          consumer.consume(i + 1, lineHashes[i]);
+        }
+      }
+      return;
+    }
+    readFile(f.file(), f.charset(), new MetadataComputer(f.file(), f.charset(), false, consumer));
+  }
+
+  private static class LineHashesCollector implements LineHashConsumer {
+    private byte[][] hashes = new byte[16][];
+
+    @Override
+    public void consume(int lineIdx, @Nullable byte[] hash) {
+      if (lineIdx > hashes.length) {
+        hashes = Arrays.copyOf(hashes, Math.max(lineIdx, hashes.length * 2));
+      }
+      hashes[lineIdx - 1] = hash;
+    }
+
+    private byte[][] hashes(int lineCount) {
+      return Arrays.copyOf(hashes, lineCount);
+    }
+  }
+
+  /**
+   * Computes in a single read of the file the number of lines, the number of non-blank lines, the offsets of lines,
+   * the hash of the file and optionally the hashes of lines. Chars are read by blocks, and are encoded in UTF-8 for
+   * MD5 hashes into reused buffers.
+   */
+  private static final class MetadataComputer {
+    private final File file;
+    private final Charset encoding;
+    private final boolean computeMetadata;
+    @Nullable
+    private final LineHashConsumer lineHashConsumer;
+
+    private final Utf8Digest fileDigest;
+    private final Utf8Digest lineDigest;
+
+    private int lines = 1;
+    private int nonBlankLines = 0;
+    private boolean blankLine = true;
+    private boolean alreadyLoggedInvalidCharacter = false;
+    private long currentOriginalOffset = 0;
+    private final IntArrayList originalLineOffsets = new IntArrayList();
+
+    private MetadataComputer(File file, Charset encoding, boolean computeMetadata, @Nullable LineHashConsumer lineHashConsumer) {
+      this.file = file;
+      this.encoding = encoding;
+      this.computeMetadata = computeMetadata;
+      this.lineHashConsumer = lineHashConsumer;
+      this.fileDigest = computeMetadata ? new Utf8Digest() : null;
+      this.lineDigest = lineHashConsumer != null ? new Utf8Digest() : null;
+      originalLineOffsets.add(0);
+    }
+
+    private void read(Reader reader) throws IOException {
+      char[] buffer = new char[BUFFER_SIZE];
+      boolean afterCR = false;
+      int read = reader.read(buffer);
+      while (read != -1) {
+        for (int i = 0; i < read; i++) {
+          char c = buffer[i];
+          if (afterCR) {
+            if (c == CARRIAGE_RETURN) {
+              newLine();
+              handleAll(c);
+            } else if (c == LINE_FEED) {
+              handleAll(c);
+              newLine();
+            } else {
+              newLine();
+              handleIgnoreEoL(c);
+              handleAll(c);
+            }
+            afterCR = c == CARRIAGE_RETURN;
+          } else if (c == LINE_FEED) {
+            handleAll(c);
+            newLine();
+          } else if (c == CARRIAGE_RETURN) {
+            afterCR = true;
+            handleAll(c);
+          } else {
+            handleIgnoreEoL(c);
+            handleAll(c);
+          }
+        }
+        read = reader.read(buffer);
+      }
+      if (afterCR) {
+        newLine();
+      }
+      eof();
+    }
+
+    private void handleAll(char c) {
+      if (computeMetadata) {
+        if (!alreadyLoggedInvalidCharacter && c == '\ufffd') {
+          LOG.warn("Invalid character encountered in file {} at line {} for encoding {}. Please fix file content or configure the encoding to be used using property '{}'.",
+            file, lines, encoding, CoreProperties.ENCODING_PROPERTY);
+          alreadyLoggedInvalidCharacter = true;
+        }
+        currentOriginalOffset++;
+      }
+    }
+
+    private void handleIgnoreEoL(char c) {
+      boolean whitespace = Character.isWhitespace(c);
+      if (computeMetadata) {
+        if (!whitespace) {
+          blankLine = false;
+        }
+        fileDigest.append(c);
+      }
+      if (lineDigest != null && !whitespace) {
+        lineDigest.append(c);
+      }
+    }
+
+    private void newLine() {
+      if (computeMetadata) {
+        if (!blankLine) {
+          nonBlankLines++;
+        }
+        blankLine = true;
+        fileDigest.append(LINE_FEED);
+        if (currentOriginalOffset > Integer.MAX_VALUE) {
+          throw new IllegalStateException("File is too big: " + currentOriginalOffset);
+        }
+        originalLineOffsets.add((int) currentOriginalOffset);
+      }
+      consumeLineHash();
+      lines++;
+    }
+
+    private void eof() {
+      if (computeMetadata && !blankLine) {
+        nonBlankLines++;
+      }
+      consumeLineHash();
+    }
+
+    private void consumeLineHash() {
+      if (lineDigest != null && !lineDigest.isEmpty()) {
+        lineHashConsumer.consume(lines, lineDigest.digest());
+      }
+    }
+
+    private Metadata metadata() {
+      if (currentOriginalOffset > Integer.MAX_VALUE) {
+        throw new IllegalStateException("File is too big: " + currentOriginalOffset);
+      }
+      byte[][] lineHashes = lineHashConsumer instanceof LineHashesCollector ? ((LineHashesCollector) lineHashConsumer).hashes(lines) : null;
+      return new Metadata(lines, nonBlankLines, Hex.encodeHexString(fileDigest.digest()), originalLineOffsets.trimAndGet(),
+        (int) currentOriginalOffset, lineHashes);
+    }
+  }
+
+  /**
+   * MD5 digest of chars encoded in UTF-8. Malformed surrogates are replaced by '?', as done by
+   * {@link java.nio.charset.CharsetEncoder} with {@link java.nio.charset.CodingErrorAction#REPLACE}.
+   */
+  private static final class Utf8Digest {
+    private final MessageDigest digest = DigestUtils.getMd5Digest();
+    private final byte[] bytes = new byte[BUFFER_SIZE];
+    private int size = 0;
+    private boolean empty = true;
+    private char highSurrogate = 0;
+
+    private void append(char c) {
+      empty = false;
+      if (highSurrogate != 0) {
+        char high = highSurrogate;
+        highSurrogate = 0;
+        if (Character.isLowSurrogate(c)) {
+          writeCodePoint(Character.toCodePoint(high, c));
+          return;
+        }
+        writeCodePoint('?');
+      }
+      if (Character.isHighSurrogate(c)) {
+        highSurrogate = c;
+      } else if (Character.isLowSurrogate(c)) {
+        writeCodePoint('?');
+      } else {
+        writeCodePoint(c);
+      }
+    }
+
+    private void writeCodePoint(int codePoint) {
+      if (size + 4 > bytes.length) {
+        flush();
+      }
+      if (codePoint < 0x80) {
+        bytes[size++] = (byte) codePoint;
+      } else if (codePoint < 0x800) {
+        bytes[size++] = (byte) (0xC0 | (codePoint >> 6));
+        bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else if (codePoint < 0x10000) {
+        bytes[size++] = (byte) (0xE0 | (codePoint >> 12));
+        bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else {
+        bytes[size++] = (byte) (0xF0 | (codePoint >> 18));
+        bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+      }
+    }
+
+    private void flush() {
+      digest.update(bytes, 0, size);
+      size = 0;
+    }
+
+    private boolean isEmpty() {
+      return empty;
+    }
+
+    /**
+     * Returns the digest of the chars appended since the previous call
+     */
+    private byte[] digest() {
+      if (highSurrogate != 0) {
+        highSurrogate = 0;
+        writeCodePoint('?');
+      }
+      flush();
+      empty = true;
+      return digest.digest();
+    }
   }
 }
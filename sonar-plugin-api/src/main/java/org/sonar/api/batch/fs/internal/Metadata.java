@@ -19,19 +19,28 @@
  */
 package org.sonar.api.batch.fs.internal;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
 public class Metadata {
   private final int lines;
   private final int nonBlankLines;
   private final String hash;
   private final int[] originalLineOffsets;
   private final int lastValidOffset;
+  private final byte[][] lineHashes;
 
   public Metadata(int lines, int nonBlankLines, String hash, int[] originalLineOffsets, int lastValidOffset) {
+    this(lines, nonBlankLines, hash, originalLineOffsets, lastValidOffset, null);
+  }
+
+  public Metadata(int lines, int nonBlankLines, String hash, int[] originalLineOffsets, int lastValidOffset, @Nullable byte[][] lineHashes) {
     this.lines = lines;
     this.nonBlankLines = nonBlankLines;
     this.hash = hash;
     this.originalLineOffsets = originalLineOffsets;
     this.lastValidOffset = lastValidOffset;
+    this.lineHashes = lineHashes;
   }
 
   public int lines() {
@@ -54,4 +63,12 @@ public class Metadata {
     return lastValidOffset;
   }
 
+  /**
+   * MD5 hashes of lines for issue tracking, indexed by line - 1. Null for blank lines. Null if not computed.
+   */
+  @CheckForNull
+  public byte[][] lineHashes() {
+    return lineHashes;
+  }
+
 }
@@ -49,6 +49,7 @@ public class TestInputFileBuilder {
   private String hash;
   private int nonBlankLines;
   private int[] originalLineOffsets;
+  private byte[][] lineHashes;
   private boolean publish = true;
 
   public TestInputFileBuilder(String moduleKey, String relativePath) {
@@ -127,6 +128,7 @@ public class TestInputFileBuilder {
     this.setNonBlankLines(metadata.nonBlankLines());
     this.setHash(metadata.hash());
     this.setOriginalLineOffsets(metadata.originalLineOffsets());
+    this.lineHashes = metadata.lineHashes();
     return this;
   }
 
@@ -137,7 +139,7 @@ public class TestInputFileBuilder {
   public DefaultInputFile build() {
     DefaultIndexedFile indexedFile = new DefaultIndexedFile(moduleKey, moduleBaseDir, relativePath, type, id);
     indexedFile.setLanguage(language);
-    DefaultInputFile inputFile = new DefaultInputFile(indexedFile, f -> f.setMetadata(new Metadata(lines, nonBlankLines, hash, originalLineOffsets, lastValidOffset)));
+    DefaultInputFile inputFile = new DefaultInputFile(indexedFile, f -> f.setMetadata(new Metadata(lines, nonBlankLines, hash, originalLineOffsets, lastValidOffset, lineHashes)));
     inputFile.setStatus(status);
     inputFile.setCharset(charset);
     inputFile.setPublish(publish);
@@ -79,4 +79,15 @@ public interface SensorDescriptor {
    */
   SensorDescriptor requireProperties(String... propertyKeys);
 
+  /**
+   * Declare that this {@link Sensor} can be executed concurrently with other thread-safe sensors. Such a {@link Sensor}
+   * must not share mutable state with other sensors nor rely on data saved by them.
+   * Default is to execute the {@link Sensor} alone. Implementations of this interface which do not support
+   * concurrent execution ignore this declaration.
+   * @since 6.3
+   */
+  default SensorDescriptor threadSafe() {
+    return this;
+  }
+
 }
@@ -20,8 +20,11 @@
 package org.sonar.api.batch.fs.internal;
 
 import java.io.File;
+import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
@@ -35,6 +38,7 @@ import org.sonar.api.utils.log.LoggerLevel;
 
 import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.assertj.core.api.Assertions.fail;
 
 public class FileMetadataTest {
@@ -250,6 +254,48 @@ public class FileMetadataTest {
     });
   }
 
+  @Test
+  public void compute_line_hashes_with_metadata() throws Exception {
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, " foo\n\nb ar\r\nbaz \t\n", StandardCharsets.UTF_8, true);
+
+    Metadata metadata = new FileMetadata().readMetadata(tempFile, StandardCharsets.UTF_8, true);
+
+    assertThat(metadata.lines()).isEqualTo(5);
+    assertThat(metadata.lineHashes()).hasSize(5);
+    assertThat(Hex.encodeHexString(metadata.lineHashes()[0])).isEqualTo(md5Hex("foo"));
+    assertThat(metadata.lineHashes()[1]).isNull();
+    assertThat(Hex.encodeHexString(metadata.lineHashes()[2])).isEqualTo(md5Hex("bar"));
+    assertThat(Hex.encodeHexString(metadata.lineHashes()[3])).isEqualTo(md5Hex("baz"));
+    assertThat(metadata.lineHashes()[4]).isNull();
+    assertThat(new FileMetadata().readMetadata(tempFile, StandardCharsets.UTF_8).lineHashes()).isNull();
+  }
+
+  @Test
+  public void do_not_read_file_again_when_line_hashes_are_computed_with_metadata() throws Exception {
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, "foo\nbar", StandardCharsets.UTF_8, true);
+    DefaultInputFile f = new TestInputFileBuilder("foo", tempFile.getName())
+      .setModuleBaseDir(tempFile.getParentFile().toPath())
+      .setCharset(StandardCharsets.UTF_8)
+      .setMetadata(new FileMetadata().readMetadata(tempFile, StandardCharsets.UTF_8, true))
+      .build();
+    tempFile.delete();
+
+    Map<Integer, String> hashes = new HashMap<>();
+    FileMetadata.computeLineHashesForIssueTracking(f, (lineIdx, hash) -> hashes.put(lineIdx, Hex.encodeHexString(hash)));
+
+    assertThat(hashes).containsOnly(entry(1, md5Hex("foo")), entry(2, md5Hex("bar")));
+  }
+
+  @Test
+  public void malformed_surrogates_are_replaced_in_hashes() {
+    Metadata metadata = new FileMetadata().readMetadata(new StringReader("a\uD800b\n\uDC00\uD83D\uDE00\n\uD800"));
+
+    assertThat(metadata.lines()).isEqualTo(3);
+    assertThat(metadata.hash()).isEqualTo(md5Hex("a?b\n?\uD83D\uDE00\n?"));
+  }
+
   @Test
   public void dont_fail_on_empty_file() throws Exception {
     File tempFile = temp.newFile();
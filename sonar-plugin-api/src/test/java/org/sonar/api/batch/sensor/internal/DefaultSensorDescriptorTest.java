@@ -41,6 +41,15 @@ public class DefaultSensorDescriptorTest {
     assertThat(descriptor.type()).isEqualTo(InputFile.Type.MAIN);
     assertThat(descriptor.properties()).containsOnly("sonar.foo.reportPath");
     assertThat(descriptor.ruleRepositories()).containsOnly("squid-java");
+    assertThat(descriptor.isThreadSafe()).isFalse();
+  }
+
+  @Test
+  public void describe_thread_safe() {
+    DefaultSensorDescriptor descriptor = new DefaultSensorDescriptor();
+    descriptor.name("Foo").threadSafe();
+
+    assertThat(descriptor.isThreadSafe()).isTrue();
   }
 
 }
@@ -33,7 +33,7 @@ import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.index.AbstractCloneIndex;
 import org.sonar.duplications.index.CloneIndex;
-import org.sonar.duplications.index.PackedMemoryCloneIndex;
+import org.sonar.duplications.index.OffHeapCloneIndex;
 import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import org.sonar.scanner.protocol.output.FileStructure;
 import org.sonar.scanner.protocol.output.ScannerReport;
@@ -41,7 +41,8 @@ import org.sonar.scanner.report.ReportPublisher;
 
 public class SonarCpdBlockIndex extends AbstractCloneIndex {
 
-  private final CloneIndex mem = new PackedMemoryCloneIndex();
+  // Blocks are kept out of the heap, which would otherwise be dominated by the index on large projects
+  private final CloneIndex mem = new OffHeapCloneIndex();
   private final ReportPublisher publisher;
   private final Settings settings;
   // Files already tokenized
@@ -89,8 +90,12 @@ public class SonarCpdBlockIndex extends AbstractCloneIndex {
     return mem.getByResourceId(resourceKey);
   }
 
+  /**
+   * Synchronized because {@link OffHeapCloneIndex} sorts blocks and reuses internal buffers during lookups, and
+   * {@link org.sonar.scanner.cpd.CpdExecutor} may detect duplications of several files concurrently.
+   */
   @Override
-  public Collection<Block> getBySequenceHash(ByteArray hash) {
+  public synchronized Collection<Block> getBySequenceHash(ByteArray hash) {
     return mem.getBySequenceHash(hash);
   }
 
@@ -105,12 +110,27 @@ public class SonarCpdBlockIndex extends AbstractCloneIndex {
   }
 
   @Override
-  public Iterator<ResourceBlocks> iterator() {
-    return mem.iterator();
+  public synchronized Iterator<ResourceBlocks> iterator() {
+    Iterator<ResourceBlocks> it = mem.iterator();
+    return new Iterator<ResourceBlocks>() {
+      @Override
+      public boolean hasNext() {
+        synchronized (SonarCpdBlockIndex.this) {
+          return it.hasNext();
+        }
+      }
+
+      @Override
+      public ResourceBlocks next() {
+        synchronized (SonarCpdBlockIndex.this) {
+          return it.next();
+        }
+      }
+    };
   }
 
   @Override
-  public int noResources() {
+  public synchronized int noResources() {
     return mem.noResources();
   }
 
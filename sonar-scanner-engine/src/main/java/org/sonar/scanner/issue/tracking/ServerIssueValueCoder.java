@@ -19,22 +19,21 @@
  */
 package org.sonar.scanner.issue.tracking;
 
-import com.persistit.Value;
-import com.persistit.encoding.CoderContext;
-import com.persistit.encoding.ValueCoder;
 import java.io.IOException;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+import org.sonar.scanner.storage.Value;
+import org.sonar.scanner.storage.ValueCoder;
 
 public class ServerIssueValueCoder implements ValueCoder {
 
   @Override
-  public void put(Value value, Object object, CoderContext context) {
+  public void put(Value value, Object object) {
     ServerIssue issue = (ServerIssue) object;
     value.putByteArray(issue.toByteArray());
   }
 
   @Override
-  public Object get(Value value, Class<?> clazz, CoderContext context) {
+  public Object get(Value value) {
     try {
       return ServerIssue.parseFrom(value.getByteArray());
     } catch (IOException e) {
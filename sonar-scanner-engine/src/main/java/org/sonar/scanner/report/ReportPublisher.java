@@ -43,6 +43,7 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.api.utils.Version;
 import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -65,6 +66,7 @@ public class ReportPublisher implements Startable {
   public static final String KEEP_REPORT_PROP_KEY = "sonar.batch.keepReport";
   public static final String VERBOSE_KEY = "sonar.verbose";
   public static final String METADATA_DUMP_FILENAME = "report-task.txt";
+  private static final Version PACKED_REPORT_MIN_SERVER_VERSION = Version.create(6, 3);
 
   private final Settings settings;
   private final ScannerWsClient wsClient;
@@ -147,6 +149,13 @@ public class ReportPublisher implements Startable {
       long stopTime = System.currentTimeMillis();
       LOG.info("Analysis report generated in {}ms, dir size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(reportDir)));
 
+      if (isPackedReportSupported()) {
+        startTime = System.currentTimeMillis();
+        writer.pack();
+        stopTime = System.currentTimeMillis();
+        LOG.debug("Analysis report packed in {}ms", stopTime - startTime);
+      }
+
       startTime = System.currentTimeMillis();
       File reportZip = temp.newFile("batch-report", ".zip");
       ZipUtils.zipDir(reportDir, reportZip);
@@ -158,6 +167,17 @@ public class ReportPublisher implements Startable {
     }
   }
 
+  /**
+   * Servers older than {@link #PACKED_REPORT_MIN_SERVER_VERSION} only read one file per component.
+   */
+  private boolean isPackedReportSupported() {
+    if (analysisMode.isMediumTest()) {
+      return true;
+    }
+    String serverVersion = server.getVersion();
+    return serverVersion != null && Version.parse(serverVersion).isGreaterThanOrEqual(PACKED_REPORT_MIN_SERVER_VERSION);
+  }
+
   /**
    * Uploads the report file to server and returns the generated task id
    */
@@ -22,20 +22,31 @@ package org.sonar.scanner.repository;
 import com.google.common.base.Throwables;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Date;
 import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.MessageException;
+import org.sonar.home.cache.FileCache;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
 import org.sonar.scanner.util.ScannerUtils;
 import org.sonarqube.ws.WsBatch;
 import org.sonarqube.ws.WsBatch.WsProjectResponse;
 import org.sonarqube.ws.WsBatch.WsProjectResponse.FileDataByPath;
+import org.sonarqube.ws.WsBatch.WsProjectResponse.FilePaths;
 import org.sonarqube.ws.WsBatch.WsProjectResponse.Settings;
 import org.sonarqube.ws.client.GetRequest;
 import org.sonarqube.ws.client.HttpException;
@@ -44,18 +55,35 @@ import org.sonarqube.ws.client.WsResponse;
 public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoader {
   private static final Logger LOG = LoggerFactory.getLogger(DefaultProjectRepositoriesLoader.class);
   private static final String BATCH_PROJECT_URL = "/batch/project.protobuf";
+  private static final String CACHE_DIR = "_project_repositories";
   private ScannerWsClient wsClient;
+  private final FileCache fileCache;
 
-  public DefaultProjectRepositoriesLoader(ScannerWsClient wsClient) {
+  public DefaultProjectRepositoriesLoader(ScannerWsClient wsClient, FileCache fileCache) {
     this.wsClient = wsClient;
+    this.fileCache = fileCache;
   }
 
+  /**
+   * The hash and revision of the files returned by the last response of the server are kept in the user cache. When they
+   * exist, only the paths of the files which did not change since this response are requested, and their hash and revision
+   * are taken from the cache. Settings, which may contain secured values, are never cached and are always requested.
+   */
   @Override
   public ProjectRepositories load(String projectKey, boolean issuesMode) {
-    GetRequest request = new GetRequest(getUrl(projectKey, issuesMode));
-    try (WsResponse response = wsClient.call(request)) {
-      InputStream is = response.contentStream();
-      return processStream(is, projectKey);
+    Path cacheFile = cacheFile(projectKey);
+    WsProjectResponse cachedResponse = readCache(cacheFile);
+    try {
+      WsProjectResponse response = call(projectKey, issuesMode, cachedResponse);
+      if (cachedResponse != null) {
+        response = applyDelta(cachedResponse, response);
+        if (response == null) {
+          LOG.debug("Project repository cache is not consistent with server - reloading it");
+          response = call(projectKey, issuesMode, null);
+        }
+      }
+      writeCache(cacheFile, toCachedResponse(response));
+      return toProjectRepositories(response);
     } catch (RuntimeException e) {
       if (shouldThrow(e)) {
         throw e;
@@ -66,7 +94,16 @@ public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoad
     }
   }
 
-  private static String getUrl(String projectKey, boolean issuesMode) {
+  private WsProjectResponse call(String projectKey, boolean issuesMode, @Nullable WsProjectResponse cachedResponse) {
+    Long filesChangedSince = cachedResponse == null || cachedResponse.getTimestamp() == 0 ? null : cachedResponse.getTimestamp();
+    GetRequest request = new GetRequest(getUrl(projectKey, issuesMode, filesChangedSince));
+    try (WsResponse response = wsClient.call(request)) {
+      InputStream is = response.contentStream();
+      return processStream(is, projectKey);
+    }
+  }
+
+  private static String getUrl(String projectKey, boolean issuesMode, @Nullable Long filesChangedSince) {
     StringBuilder builder = new StringBuilder();
 
     builder.append(BATCH_PROJECT_URL)
@@ -74,6 +111,9 @@ public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoad
     if (issuesMode) {
       builder.append("&issues_mode=true");
     }
+    if (filesChangedSince != null) {
+      builder.append("&files_changed_since=").append(filesChangedSince);
+    }
     return builder.toString();
   }
 
@@ -91,33 +131,109 @@ public class DefaultProjectRepositoriesLoader implements ProjectRepositoriesLoad
     return false;
   }
 
-  private static ProjectRepositories processStream(InputStream is, String projectKey) {
+  private static WsProjectResponse processStream(InputStream is, String projectKey) {
     try {
-      WsProjectResponse response = WsProjectResponse.parseFrom(is);
-
-      Table<String, String, FileData> fileDataTable = HashBasedTable.create();
-      Table<String, String, String> settings = HashBasedTable.create();
+      return WsProjectResponse.parseFrom(is);
+    } catch (IOException e) {
+      throw new IllegalStateException("Couldn't load project repository for " + projectKey, e);
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
 
-      Map<String, Settings> settingsByModule = response.getSettingsByModule();
-      for (Map.Entry<String, Settings> e1 : settingsByModule.entrySet()) {
-        for (Map.Entry<String, String> e2 : e1.getValue().getSettings().entrySet()) {
-          settings.put(e1.getKey(), e2.getKey(), e2.getValue());
+  /**
+   * Completes the response with the hash and revision of unchanged files, as stored in the cached response.
+   *
+   * @return {@code null} if an unchanged file is not in cache
+   */
+  @CheckForNull
+  private static WsProjectResponse applyDelta(WsProjectResponse cachedResponse, WsProjectResponse delta) {
+    if (delta.getUnchangedFilePathsByModule().isEmpty()) {
+      return delta;
+    }
+    WsProjectResponse.Builder response = delta.toBuilder();
+    response.getMutableUnchangedFilePathsByModule().clear();
+    Map<String, FileDataByPath> fileDataByModuleAndPath = response.getMutableFileDataByModuleAndPath();
+    for (Map.Entry<String, FilePaths> unchangedPaths : delta.getUnchangedFilePathsByModule().entrySet()) {
+      String moduleKey = unchangedPaths.getKey();
+      FileDataByPath cachedFileDataByPath = cachedResponse.getFileDataByModuleAndPath().get(moduleKey);
+      if (cachedFileDataByPath == null) {
+        return null;
+      }
+      FileDataByPath.Builder fileDataByPath = fileDataByModuleAndPath.containsKey(moduleKey) ? fileDataByModuleAndPath.get(moduleKey).toBuilder()
+        : FileDataByPath.newBuilder();
+      for (String path : unchangedPaths.getValue().getPathsList()) {
+        WsProjectResponse.FileData fileData = cachedFileDataByPath.getFileDataByPath().get(path);
+        if (fileData == null) {
+          return null;
         }
+        fileDataByPath.getMutableFileDataByPath().put(path, fileData);
+      }
+      fileDataByModuleAndPath.put(moduleKey, fileDataByPath.build());
+    }
+    return response.build();
+  }
+
+  /**
+   * Only the hash and revision of files are kept in cache
+   */
+  private static WsProjectResponse toCachedResponse(WsProjectResponse response) {
+    return WsProjectResponse.newBuilder()
+      .setTimestamp(response.getTimestamp())
+      .putAllFileDataByModuleAndPath(response.getFileDataByModuleAndPath())
+      .build();
+  }
+
+  private static ProjectRepositories toProjectRepositories(WsProjectResponse response) {
+    Table<String, String, FileData> fileDataTable = HashBasedTable.create();
+    Table<String, String, String> settings = HashBasedTable.create();
+
+    Map<String, Settings> settingsByModule = response.getSettingsByModule();
+    for (Map.Entry<String, Settings> e1 : settingsByModule.entrySet()) {
+      for (Map.Entry<String, String> e2 : e1.getValue().getSettings().entrySet()) {
+        settings.put(e1.getKey(), e2.getKey(), e2.getValue());
       }
+    }
 
-      Map<String, FileDataByPath> fileDataByModuleAndPath = response.getFileDataByModuleAndPath();
-      for (Map.Entry<String, FileDataByPath> e1 : fileDataByModuleAndPath.entrySet()) {
-        for (Map.Entry<String, WsBatch.WsProjectResponse.FileData> e2 : e1.getValue().getFileDataByPath().entrySet()) {
-          FileData fd = new FileData(e2.getValue().getHash(), e2.getValue().getRevision());
-          fileDataTable.put(e1.getKey(), e2.getKey(), fd);
-        }
+    Map<String, FileDataByPath> fileDataByModuleAndPath = response.getFileDataByModuleAndPath();
+    for (Map.Entry<String, FileDataByPath> e1 : fileDataByModuleAndPath.entrySet()) {
+      for (Map.Entry<String, WsBatch.WsProjectResponse.FileData> e2 : e1.getValue().getFileDataByPath().entrySet()) {
+        FileData fd = new FileData(e2.getValue().getHash(), e2.getValue().getRevision());
+        fileDataTable.put(e1.getKey(), e2.getKey(), fd);
       }
+    }
 
-      return new ProjectRepositories(settings, fileDataTable, new Date(response.getLastAnalysisDate()));
+    return new ProjectRepositories(settings, fileDataTable, new Date(response.getLastAnalysisDate()));
+  }
+
+  private Path cacheFile(String projectKey) {
+    String name = DigestUtils.md5Hex(wsClient.baseUrl() + "|" + projectKey);
+    return fileCache.getDir().toPath().resolve(CACHE_DIR).resolve(name);
+  }
+
+  @CheckForNull
+  private static WsProjectResponse readCache(Path cacheFile) {
+    if (!Files.exists(cacheFile)) {
+      return null;
+    }
+    try (InputStream is = new BufferedInputStream(Files.newInputStream(cacheFile))) {
+      return WsProjectResponse.parseFrom(is);
     } catch (IOException e) {
-      throw new IllegalStateException("Couldn't load project repository for " + projectKey, e);
-    } finally {
-      IOUtils.closeQuietly(is);
+      LOG.debug("Fail to read project repository cache " + cacheFile, e);
+      return null;
+    }
+  }
+
+  private static void writeCache(Path cacheFile, WsProjectResponse response) {
+    try {
+      Files.createDirectories(cacheFile.getParent());
+      Path tempFile = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+      try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+        response.writeTo(os);
+      }
+      Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOG.debug("Fail to write project repository cache " + cacheFile, e);
     }
   }
 }
@@ -19,12 +19,11 @@
  */
 package org.sonar.scanner.scan.measure;
 
-import com.persistit.Value;
-import com.persistit.encoding.CoderContext;
-import com.persistit.encoding.ValueCoder;
 import java.io.Serializable;
 import org.sonar.api.batch.measure.MetricFinder;
 import org.sonar.api.batch.sensor.measure.internal.DefaultMeasure;
+import org.sonar.scanner.storage.Value;
+import org.sonar.scanner.storage.ValueCoder;
 
 class MeasureValueCoder implements ValueCoder {
 
@@ -35,7 +34,7 @@ class MeasureValueCoder implements ValueCoder {
   }
 
   @Override
-  public void put(Value value, Object object, CoderContext context) {
+  public void put(Value value, Object object) {
     DefaultMeasure<?> m = (DefaultMeasure<?>) object;
     org.sonar.api.batch.measure.Metric<?> metric = m.metric();
     value.putString(metric.key());
@@ -43,7 +42,7 @@ class MeasureValueCoder implements ValueCoder {
   }
 
   @Override
-  public Object get(Value value, Class clazz, CoderContext context) {
+  public Object get(Value value) {
     String metricKey = value.getString();
     org.sonar.api.batch.measure.Metric<?> metric = metricFinder.findByKey(metricKey);
     if (metric == null) {
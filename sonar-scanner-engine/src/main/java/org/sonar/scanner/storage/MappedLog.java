@@ -0,0 +1,225 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Append-only file of records, which is memory-mapped by segments. Records are never modified once written, so
+ * they can be read concurrently with the append of new records, as long as the offsets to read were
+ * published safely. A record does not cross segments. Its format is:
+ * <pre>
+ *   key length (int)
+ *   value length (int)
+ *   number of key parts (int)
+ *   for each key part: offset of the previous record sharing the same prefix (long)
+ *   key
+ *   value
+ * </pre>
+ * The value of a record and its position in a chain of records sharing a prefix are described in {@link Storage}.
+ * <p>
+ * Appending is not thread-safe.
+ * </p>
+ */
+final class MappedLog implements Closeable {
+
+  private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+  private final File file;
+  private final RandomAccessFile randomAccessFile;
+  private final FileChannel channel;
+  private final int segmentSize;
+
+  // replaced, never modified, when a segment is added
+  private volatile Segment[] segments = new Segment[0];
+  private ByteBuffer writeBuffer;
+  private long writeBufferStart;
+
+  MappedLog(File file, int segmentSize) throws IOException {
+    this.file = file;
+    this.randomAccessFile = new RandomAccessFile(file, "rw");
+    this.channel = randomAccessFile.getChannel();
+    this.segmentSize = segmentSize;
+  }
+
+  long append(byte[] key, long[] previousOffsets, byte[] value) throws IOException {
+    int recordSize = HEADER_SIZE + Long.BYTES * previousOffsets.length + key.length + value.length;
+    if (writeBuffer == null || writeBuffer.remaining() < recordSize) {
+      addSegment(recordSize);
+    }
+    long offset = writeBufferStart + writeBuffer.position();
+    writeBuffer.putInt(key.length);
+    writeBuffer.putInt(value.length);
+    writeBuffer.putInt(previousOffsets.length);
+    for (long previousOffset : previousOffsets) {
+      writeBuffer.putLong(previousOffset);
+    }
+    writeBuffer.put(key);
+    writeBuffer.put(value);
+    return offset;
+  }
+
+  private void addSegment(int minSize) throws IOException {
+    long start = 0L;
+    Segment[] current = segments;
+    if (current.length > 0) {
+      Segment last = current[current.length - 1];
+      start = last.start + last.buffer.capacity();
+    }
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.max(segmentSize, minSize));
+    Segment[] updated = Arrays.copyOf(current, current.length + 1);
+    updated[current.length] = new Segment(start, buffer);
+    writeBuffer = buffer.duplicate();
+    writeBufferStart = start;
+    segments = updated;
+  }
+
+  byte[] key(long offset) {
+    Segment segment = segment(offset);
+    int position = segment.position(offset);
+    int keyLength = segment.buffer.getInt(position);
+    return segment.read(position + keyPosition(segment, position), keyLength);
+  }
+
+  byte[] value(long offset) {
+    Segment segment = segment(offset);
+    int position = segment.position(offset);
+    int keyLength = segment.buffer.getInt(position);
+    int valueLength = segment.buffer.getInt(position + Integer.BYTES);
+    return segment.read(position + keyPosition(segment, position) + keyLength, valueLength);
+  }
+
+  /**
+   * Offset of the previous record which shares the first {@code prefixParts} parts of the key
+   * of the record at {@code offset}
+   */
+  long previous(long offset, int prefixParts) {
+    Segment segment = segment(offset);
+    int position = segment.position(offset);
+    return segment.buffer.getLong(position + HEADER_SIZE + Long.BYTES * prefixParts);
+  }
+
+  /**
+   * Whether the key of the record at {@code offset} starts with the first {@code length} bytes of {@code key}
+   */
+  boolean keyStartsWith(long offset, byte[] key, int length) {
+    Segment segment = segment(offset);
+    int position = segment.position(offset);
+    if (segment.buffer.getInt(position) < length) {
+      return false;
+    }
+    int keyPosition = position + keyPosition(segment, position);
+    for (int i = 0; i < length; i++) {
+      if (segment.buffer.get(keyPosition + i) != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  boolean keyEquals(long offset, byte[] key) {
+    Segment segment = segment(offset);
+    return segment.buffer.getInt(segment.position(offset)) == key.length && keyStartsWith(offset, key, key.length);
+  }
+
+  /**
+   * Compares the keys of two records by unsigned lexicographic order
+   */
+  int compareKeys(long offset1, long offset2) {
+    Segment segment1 = segment(offset1);
+    int position1 = segment1.position(offset1);
+    int length1 = segment1.buffer.getInt(position1);
+    int keyPosition1 = position1 + keyPosition(segment1, position1);
+    Segment segment2 = segment(offset2);
+    int position2 = segment2.position(offset2);
+    int length2 = segment2.buffer.getInt(position2);
+    int keyPosition2 = position2 + keyPosition(segment2, position2);
+    for (int i = 0; i < Math.min(length1, length2); i++) {
+      int cmp = Integer.compare(segment1.buffer.get(keyPosition1 + i) & 0xFF, segment2.buffer.get(keyPosition2 + i) & 0xFF);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return Integer.compare(length1, length2);
+  }
+
+  private static int keyPosition(Segment segment, int position) {
+    return HEADER_SIZE + Long.BYTES * segment.buffer.getInt(position + 2 * Integer.BYTES);
+  }
+
+  private Segment segment(long offset) {
+    Segment[] current = segments;
+    int low = 0;
+    int high = current.length - 1;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (current[middle].start <= offset) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return current[low];
+  }
+
+  /**
+   * Mapped buffers are released when garbage collected. The file may therefore not be deleted
+   * immediately on Windows, in which case it is deleted with the temporary directory of the scanner.
+   */
+  @Override
+  public void close() throws IOException {
+    segments = new Segment[0];
+    writeBuffer = null;
+    channel.close();
+    randomAccessFile.close();
+    if (!file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+
+  private static class Segment {
+    private final long start;
+    private final ByteBuffer buffer;
+
+    private Segment(long start, ByteBuffer buffer) {
+      this.start = start;
+      this.buffer = buffer;
+    }
+
+    private int position(long offset) {
+      return (int) (offset - start);
+    }
+
+    private byte[] read(int position, int length) {
+      byte[] bytes = new byte[length];
+      ByteBuffer reader = buffer.duplicate();
+      reader.position(position);
+      reader.get(bytes);
+      return bytes;
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongPredicate;
+
+/**
+ * Open-addressing hash table stored in direct memory, which maps keys to offsets in a {@link MappedLog}.
+ * Keys are not stored in the table. A slot only contains the hash and the length of the key, and the
+ * caller checks whether the key at a given offset is the requested one.
+ * <p>
+ * Not thread-safe.
+ * </p>
+ */
+final class OffHeapIndex {
+
+  static final long NOT_FOUND = -1L;
+
+  private static final int SLOT_SIZE = 16;
+  private static final int INITIAL_CAPACITY = 1 << 10;
+  private static final long EMPTY = 0L;
+  private static final long DELETED = -1L;
+
+  private ByteBuffer slots;
+  private int capacity;
+  private int used;
+  private int deleted;
+
+  OffHeapIndex() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  private void allocate(int newCapacity) {
+    this.slots = ByteBuffer.allocateDirect(newCapacity * SLOT_SIZE);
+    this.capacity = newCapacity;
+    this.used = 0;
+    this.deleted = 0;
+  }
+
+  int size() {
+    return used;
+  }
+
+  /**
+   * @return the offset associated to the key, or {@link #NOT_FOUND}
+   */
+  long get(int hash, int keyLength, LongPredicate isKeyAtOffset) {
+    int slot = find(hash, keyLength, isKeyAtOffset);
+    return slot < 0 ? NOT_FOUND : (slots.getLong(slot * SLOT_SIZE) - 1);
+  }
+
+  void put(int hash, int keyLength, LongPredicate isKeyAtOffset, long offset) {
+    int slot = find(hash, keyLength, isKeyAtOffset);
+    if (slot >= 0) {
+      slots.putLong(slot * SLOT_SIZE, offset + 1);
+      return;
+    }
+    if ((used + deleted + 1) * 4L > capacity * 3L) {
+      rehash();
+    }
+    insert(hash, keyLength, offset);
+  }
+
+  boolean remove(int hash, int keyLength, LongPredicate isKeyAtOffset) {
+    int slot = find(hash, keyLength, isKeyAtOffset);
+    if (slot < 0) {
+      return false;
+    }
+    slots.putLong(slot * SLOT_SIZE, DELETED);
+    used--;
+    deleted++;
+    return true;
+  }
+
+  private int find(int hash, int keyLength, LongPredicate isKeyAtOffset) {
+    int mask = capacity - 1;
+    for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+      long value = slots.getLong(slot * SLOT_SIZE);
+      if (value == EMPTY) {
+        return -1;
+      }
+      if (value != DELETED && slots.getInt(slot * SLOT_SIZE + 8) == hash && slots.getInt(slot * SLOT_SIZE + 12) == keyLength
+        && isKeyAtOffset.test(value - 1)) {
+        return slot;
+      }
+    }
+  }
+
+  private void insert(int hash, int keyLength, long offset) {
+    int mask = capacity - 1;
+    int slot = hash & mask;
+    long value = slots.getLong(slot * SLOT_SIZE);
+    while (value != EMPTY && value != DELETED) {
+      slot = (slot + 1) & mask;
+      value = slots.getLong(slot * SLOT_SIZE);
+    }
+    if (value == DELETED) {
+      deleted--;
+    }
+    slots.putLong(slot * SLOT_SIZE, offset + 1);
+    slots.putInt(slot * SLOT_SIZE + 8, hash);
+    slots.putInt(slot * SLOT_SIZE + 12, keyLength);
+    used++;
+  }
+
+  private void rehash() {
+    ByteBuffer oldSlots = slots;
+    int oldCapacity = capacity;
+    // grow only if the table is not mostly filled by deleted slots
+    allocate(used * 2 >= oldCapacity ? (oldCapacity * 2) : oldCapacity);
+    for (int slot = 0; slot < oldCapacity; slot++) {
+      long value = oldSlots.getLong(slot * SLOT_SIZE);
+      if (value != EMPTY && value != DELETED) {
+        insert(oldSlots.getInt(slot * SLOT_SIZE + 8), oldSlots.getInt(slot * SLOT_SIZE + 12), value - 1);
+      }
+    }
+  }
+}
@@ -19,57 +19,87 @@
  */
 package org.sonar.scanner.storage;
 
-import com.google.common.collect.Sets;
-import com.persistit.Exchange;
-import com.persistit.Key;
-import com.persistit.KeyFilter;
-import com.persistit.exception.PersistitException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongFunction;
 import javax.annotation.CheckForNull;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
 /**
+ * Values are appended to a {@link MappedLog} and are located by two {@link OffHeapIndex}:
+ * <ul>
+ *   <li>the index of keys, which gives the offset of the last record of each key</li>
+ *   <li>the index of prefixes, which gives the offset of the last record whose key starts with a given
+ *   prefix (the first parts of a key). Each record is linked to the previous record sharing the same prefix,
+ *   so that all the values of a prefix are listed without scanning the whole storage. Records which are
+ *   removed or replaced stay in these chains, but are ignored as they are not referenced by the index of keys anymore.</li>
+ * </ul>
  * <p>
- * This storage is not thread-safe, due to direct usage of {@link com.persistit.Exchange}
+ * This storage is thread-safe. Reads are concurrent, writes are exclusive. Iterables reflect the content of
+ * the storage when their iterator is created.
  * </p>
  */
 public class Storage<V> {
 
   private final String name;
-  private final Exchange exchange;
+  private final MappedLog log;
+  private final Map<String, ValueCoder> coders;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private OffHeapIndex keys = new OffHeapIndex();
+  private OffHeapIndex prefixes = new OffHeapIndex();
 
-  Storage(String name, Exchange exchange) {
+  Storage(String name, MappedLog log, Map<String, ValueCoder> coders) {
     this.name = name;
-    this.exchange = exchange;
+    this.log = log;
+    this.coders = coders;
   }
 
   public Storage<V> put(Object key, V value) {
-    resetKey(key);
-    return doPut(value);
+    return doPut(new Object[] {key}, value);
   }
 
   public Storage<V> put(Object firstKey, Object secondKey, V value) {
-    resetKey(firstKey, secondKey);
-    return doPut(value);
+    return doPut(new Object[] {firstKey, secondKey}, value);
   }
 
   public Storage<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doPut(value);
+    return doPut(new Object[] {firstKey, secondKey, thirdKey}, value);
   }
 
   public Storage<V> put(Object[] key, V value) {
-    resetKey(key);
-    return doPut(value);
+    return doPut(key, value);
   }
 
-  private Storage<V> doPut(V value) {
+  private Storage<V> doPut(Object[] keyParts, V value) {
     try {
-      exchange.getValue().put(value);
-      exchange.store();
-      return this;
+      byte[] key = StorageKey.encode(keyParts);
+      int[] prefixLengths = StorageKey.prefixLengths(key);
+      byte[] encodedValue = Value.forWrite(coders).put(value).toByteArray();
+      lock.writeLock().lock();
+      try {
+        long[] previousOffsets = new long[keyParts.length];
+        for (int i = 0; i < keyParts.length; i++) {
+          previousOffsets[i] = findPrefix(key, prefixLengths[i]);
+        }
+        long offset = log.append(key, previousOffsets, encodedValue);
+        for (int i = 0; i < keyParts.length; i++) {
+          int prefixLength = prefixLengths[i];
+          prefixes.put(StorageKey.hash(key, prefixLength), prefixLength, o -> log.keyStartsWith(o, key, prefixLength), offset);
+        }
+        keys.put(StorageKey.hash(key, key.length), key.length, o -> log.keyEquals(o, key), offset);
+        return this;
+      } finally {
+        lock.writeLock().unlock();
+      }
     } catch (Exception e) {
       throw new IllegalStateException("Fail to put element in the storage '" + name + "'", e);
     }
@@ -79,8 +109,7 @@ public class Storage<V> {
    * Returns the value object associated with keys, or null if not found.
    */
   public V get(Object key) {
-    resetKey(key);
-    return doGet();
+    return doGet(key);
   }
 
   /**
@@ -88,8 +117,7 @@ public class Storage<V> {
    */
   @CheckForNull
   public V get(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doGet();
+    return doGet(firstKey, secondKey);
   }
 
   /**
@@ -97,8 +125,7 @@ public class Storage<V> {
    */
   @CheckForNull
   public V get(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doGet();
+    return doGet(firstKey, secondKey, thirdKey);
   }
 
   /**
@@ -106,115 +133,105 @@ public class Storage<V> {
    */
   @CheckForNull
   public V get(Object[] key) {
-    resetKey(key);
-    return doGet();
+    return doGet(key);
   }
 
-  @SuppressWarnings("unchecked")
   @CheckForNull
-  private V doGet() {
+  private V doGet(Object... keyParts) {
     try {
-      exchange.fetch();
-      if (!exchange.getValue().isDefined()) {
-        return null;
-      }
-      return (V) exchange.getValue().get();
+      long offset = findKey(StorageKey.encode(keyParts));
+      return offset == OffHeapIndex.NOT_FOUND ? null : readValue(offset);
     } catch (Exception e) {
-      // TODO add parameters to message
       throw new IllegalStateException("Fail to get element from cache " + name, e);
     }
   }
 
   public boolean containsKey(Object key) {
-    resetKey(key);
-    return doContainsKey();
+    return doContainsKey(key);
   }
 
   public boolean containsKey(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doContainsKey();
+    return doContainsKey(firstKey, secondKey);
   }
 
   public boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doContainsKey();
+    return doContainsKey(firstKey, secondKey, thirdKey);
   }
 
   public boolean containsKey(Object[] key) {
-    resetKey(key);
-    return doContainsKey();
+    return doContainsKey(key);
   }
 
-  private boolean doContainsKey() {
+  private boolean doContainsKey(Object... keyParts) {
     try {
-      exchange.fetch();
-      return exchange.isValueDefined();
+      return findKey(StorageKey.encode(keyParts)) != OffHeapIndex.NOT_FOUND;
     } catch (Exception e) {
-      // TODO add parameters to message
       throw new IllegalStateException("Fail to check if element is in cache " + name, e);
     }
   }
 
   public boolean remove(Object key) {
-    resetKey(key);
-    return doRemove();
+    return doRemove(key);
   }
 
   public boolean remove(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doRemove();
+    return doRemove(firstKey, secondKey);
   }
 
   public boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doRemove();
+    return doRemove(firstKey, secondKey, thirdKey);
   }
 
   public boolean remove(Object[] key) {
-    resetKey(key);
-    return doRemove();
+    return doRemove(key);
   }
 
-  private boolean doRemove() {
+  private boolean doRemove(Object... keyParts) {
     try {
-      return exchange.remove();
+      byte[] key = StorageKey.encode(keyParts);
+      lock.writeLock().lock();
+      try {
+        return removeKey(key);
+      } finally {
+        lock.writeLock().unlock();
+      }
     } catch (Exception e) {
-      // TODO add parameters to message
       throw new IllegalStateException("Fail to get element from cache " + name, e);
     }
   }
 
   /**
    * Removes everything in the specified group.
-   *
-   * @param group The group name.
    */
   public Storage<V> clear(Object key) {
-    resetKey(key);
-    return doClear();
+    return doClear(key);
   }
 
   public Storage<V> clear(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doClear();
+    return doClear(firstKey, secondKey);
   }
 
   public Storage<V> clear(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doClear();
+    return doClear(firstKey, secondKey, thirdKey);
   }
 
   public Storage<V> clear(Object[] key) {
-    resetKey(key);
-    return doClear();
+    return doClear(key);
   }
 
-  private Storage<V> doClear() {
+  private Storage<V> doClear(Object... keyParts) {
     try {
-      Key to = new Key(exchange.getKey());
-      to.append(Key.AFTER);
-      exchange.removeKeyRange(exchange.getKey(), to);
-      return this;
+      byte[] prefix = StorageKey.encode(keyParts);
+      lock.writeLock().lock();
+      try {
+        for (long offset : liveOffsetsWithPrefix(prefix, keyParts.length)) {
+          removeKey(log.key(offset));
+        }
+        removeKey(prefix);
+        return this;
+      } finally {
+        lock.writeLock().unlock();
+      }
     } catch (Exception e) {
       throw new IllegalStateException("Fail to clear values from cache " + name, e);
     }
@@ -224,54 +241,29 @@ public class Storage<V> {
    * Clears the default as well as all group caches.
    */
   public void clear() {
+    lock.writeLock().lock();
     try {
-      exchange.clear();
-      exchange.removeAll();
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to clear cache", e);
+      // records stay in the log, which is deleted at the end of analysis
+      keys = new OffHeapIndex();
+      prefixes = new OffHeapIndex();
+    } finally {
+      lock.writeLock().unlock();
     }
   }
 
   /**
    * Returns the set of cache keys associated with this group.
-   * TODO implement a lazy-loading equivalent with Iterator/Iterable
    *
-   * @param group The group.
    * @return The set of cache keys for this group.
    */
   @SuppressWarnings("rawtypes")
   public Set keySet(Object key) {
-    try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(key);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
-    }
+    return doKeySet(key);
   }
 
   @SuppressWarnings("rawtypes")
   public Set keySet(Object firstKey, Object secondKey) {
-    try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(firstKey);
-      iteratorExchange.append(secondKey);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
-    }
+    return doKeySet(firstKey, secondKey);
   }
 
   /**
@@ -280,15 +272,16 @@ public class Storage<V> {
    * @return The set containing the keys for this cache.
    */
   public Set<Object> keySet() {
+    return doKeySet();
+  }
+
+  private Set<Object> doKeySet(Object... keyParts) {
     try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
+      Set<Object> result = new LinkedHashSet<>();
+      for (long offset : sortedLiveOffsets(keyParts)) {
+        result.add(StorageKey.decode(log.key(offset))[keyParts.length]);
       }
-      return keys;
+      return result;
     } catch (Exception e) {
       throw new IllegalStateException("Fail to get keys from cache " + name, e);
     }
@@ -298,177 +291,137 @@ public class Storage<V> {
    * Lazy-loading values for given keys
    */
   public Iterable<V> values(Object firstKey, Object secondKey) {
-    return new ValueIterable<>(exchange, firstKey, secondKey);
+    return new OffsetIterable<>(this::readValue, firstKey, secondKey);
   }
 
   /**
    * Lazy-loading values for a given key
    */
   public Iterable<V> values(Object firstKey) {
-    return new ValueIterable<>(exchange, firstKey);
+    return new OffsetIterable<>(this::readValue, firstKey);
   }
 
   /**
    * Lazy-loading values
    */
   public Iterable<V> values() {
-    return new ValueIterable<>(exchange);
+    return new OffsetIterable<>(this::readValue);
   }
 
   public Iterable<Entry<V>> entries() {
-    return new EntryIterable<>(exchange);
+    return new OffsetIterable<>(this::readEntry);
   }
 
   public Iterable<Entry<V>> entries(Object firstKey) {
-    return new EntryIterable<>(exchange, firstKey);
+    return new OffsetIterable<>(this::readEntry, firstKey);
   }
 
-  private void resetKey(Object key) {
-    exchange.clear();
-    exchange.append(key);
+  private long findKey(byte[] key) {
+    lock.readLock().lock();
+    try {
+      return keys.get(StorageKey.hash(key, key.length), key.length, o -> log.keyEquals(o, key));
+    } finally {
+      lock.readLock().unlock();
+    }
   }
 
-  private void resetKey(Object first, Object second) {
-    exchange.clear();
-    exchange.append(first).append(second);
+  private long findPrefix(byte[] key, int prefixLength) {
+    return prefixes.get(StorageKey.hash(key, prefixLength), prefixLength, o -> log.keyStartsWith(o, key, prefixLength));
   }
 
-  private void resetKey(Object first, Object second, Object third) {
-    exchange.clear();
-    exchange.append(first).append(second).append(third);
+  private boolean removeKey(byte[] key) {
+    return keys.remove(StorageKey.hash(key, key.length), key.length, o -> log.keyEquals(o, key));
   }
 
-  private void resetKey(Object[] keys) {
-    exchange.clear();
-    for (Object o : keys) {
-      exchange.append(o);
-    }
+  private boolean isLive(long offset) {
+    byte[] key = log.key(offset);
+    return keys.get(StorageKey.hash(key, key.length), key.length, o -> o == offset || log.keyEquals(o, key)) == offset;
   }
 
-  //
-  // LAZY ITERATORS AND ITERABLES
-  //
-
-  private static class ValueIterable<T> implements Iterable<T> {
-    private final Exchange originExchange;
-    private final Object[] keys;
-
-    private ValueIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
-      this.keys = keys;
-    }
-
-    @Override
-    public Iterator<T> iterator() {
-      originExchange.clear();
-      KeyFilter filter = new KeyFilter();
-      for (Object key : keys) {
-        originExchange.append(key);
-        filter = filter.append(KeyFilter.simpleTerm(key));
+  /**
+   * Offsets of the last records of the keys starting with {@code prefix} and having more
+   * than {@code prefixParts} parts. Must be called with lock.
+   */
+  private List<Long> liveOffsetsWithPrefix(byte[] prefix, int prefixParts) {
+    List<Long> offsets = new ArrayList<>();
+    long offset = findPrefix(prefix, prefix.length);
+    while (offset != OffHeapIndex.NOT_FOUND) {
+      if (isLive(offset)) {
+        offsets.add(offset);
       }
-      originExchange.append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(originExchange);
-      return new ValueIterator<>(iteratorExchange, filter);
+      offset = log.previous(offset, prefixParts);
     }
+    return offsets;
   }
 
-  private static class ValueIterator<T> implements Iterator<T> {
-    private final Exchange exchange;
-    private final KeyFilter keyFilter;
-
-    private ValueIterator(Exchange exchange, KeyFilter keyFilter) {
-      this.exchange = exchange;
-      this.keyFilter = keyFilter;
+  private Long[] sortedLiveOffsets(Object... keyParts) {
+    byte[] prefix = StorageKey.encode(keyParts);
+    Long[] offsets;
+    lock.readLock().lock();
+    try {
+      offsets = liveOffsetsWithPrefix(prefix, keyParts.length).toArray(new Long[0]);
+    } finally {
+      lock.readLock().unlock();
     }
+    Arrays.sort(offsets, log::compareKeys);
+    return offsets;
+  }
 
-    @Override
-    public boolean hasNext() {
-      try {
-        return exchange.hasNext(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-    }
+  @SuppressWarnings("unchecked")
+  private V readValue(long offset) {
+    return (V) Value.forRead(coders, log.value(offset)).get();
+  }
 
-    @SuppressWarnings("unchecked")
-    @Override
-    public T next() {
-      try {
-        exchange.next(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-      if (exchange.getValue().isDefined()) {
-        return (T) exchange.getValue().get();
-      }
-      throw new NoSuchElementException();
-    }
+  private Entry<V> readEntry(long offset) {
+    return new Entry<>(StorageKey.decode(log.key(offset)), readValue(offset));
+  }
 
-    @Override
-    public void remove() {
-      throw new UnsupportedOperationException("Removing an item is not supported");
-    }
+  void close() throws IOException {
+    log.close();
   }
 
-  private static class EntryIterable<T> implements Iterable<Entry<T>> {
-    private final Exchange originExchange;
-    private final Object[] keys;
+  //
+  // LAZY ITERATORS AND ITERABLES
+  //
+
+  private class OffsetIterable<T> implements Iterable<T> {
+    private final LongFunction<T> reader;
+    private final Object[] keyParts;
 
-    private EntryIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
-      this.keys = keys;
+    private OffsetIterable(LongFunction<T> reader, Object... keyParts) {
+      this.reader = reader;
+      this.keyParts = keyParts;
     }
 
     @Override
-    public Iterator<Entry<T>> iterator() {
-      originExchange.clear();
-      KeyFilter filter = new KeyFilter();
-      for (Object key : keys) {
-        originExchange.append(key);
-        filter = filter.append(KeyFilter.simpleTerm(key));
-      }
-      originExchange.append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(originExchange);
-      return new EntryIterator<>(iteratorExchange, filter);
+    public Iterator<T> iterator() {
+      return new OffsetIterator<>(sortedLiveOffsets(keyParts), reader);
     }
   }
 
-  private static class EntryIterator<T> implements Iterator<Entry<T>> {
-    private final Exchange exchange;
-    private final KeyFilter keyFilter;
+  private static class OffsetIterator<T> implements Iterator<T> {
+    private final Long[] offsets;
+    private final LongFunction<T> reader;
+    private int index = 0;
 
-    private EntryIterator(Exchange exchange, KeyFilter keyFilter) {
-      this.exchange = exchange;
-      this.keyFilter = keyFilter;
+    private OffsetIterator(Long[] offsets, LongFunction<T> reader) {
+      this.offsets = offsets;
+      this.reader = reader;
     }
 
     @Override
     public boolean hasNext() {
-      try {
-        return exchange.hasNext(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
+      return index < offsets.length;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    public Entry<T> next() {
-      try {
-        exchange.next(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-      if (exchange.getValue().isDefined()) {
-        T value = (T) exchange.getValue().get();
-        Key key = exchange.getKey();
-        Object[] array = new Object[key.getDepth()];
-        for (int i = 0; i < key.getDepth(); i++) {
-          array[i] = key.indexTo(i - key.getDepth()).decode();
-        }
-        return new Entry<>(array, value);
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
       }
-      throw new NoSuchElementException();
+      T next = reader.apply(offsets[index]);
+      index++;
+      return next;
     }
 
     @Override
@@ -0,0 +1,165 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Binary encoding of the keys of {@link Storage}. A key is made of parts (strings, integers or longs). Each part
+ * is self-delimited, so that:
+ * <ul>
+ *   <li>the encoding of the first parts of a key is a prefix of the encoding of the key</li>
+ *   <li>the unsigned lexicographic order of encoded keys is the order of keys compared part by part</li>
+ * </ul>
+ */
+final class StorageKey {
+
+  private static final byte INTEGER = 0x10;
+  private static final byte LONG = 0x20;
+  private static final byte STRING = 0x30;
+
+  private static final byte STRING_END = 0x00;
+  private static final byte STRING_ESCAPE = 0x01;
+
+  private StorageKey() {
+    // only statics
+  }
+
+  static byte[] encode(Object... parts) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream(16 * parts.length);
+    for (Object part : parts) {
+      if (part instanceof String) {
+        output.write(STRING);
+        for (byte b : ((String) part).getBytes(UTF_8)) {
+          if (b == STRING_END || b == STRING_ESCAPE) {
+            output.write(STRING_ESCAPE);
+            output.write(b + 1);
+          } else {
+            output.write(b);
+          }
+        }
+        output.write(STRING_END);
+      } else if (part instanceof Integer) {
+        output.write(INTEGER);
+        writeBigEndian(output, (Integer) part ^ Integer.MIN_VALUE, Integer.BYTES);
+      } else if (part instanceof Long) {
+        output.write(LONG);
+        writeBigEndian(output, (Long) part ^ Long.MIN_VALUE, Long.BYTES);
+      } else {
+        throw new IllegalArgumentException("Unsupported type of key: " + (part == null ? null : part.getClass().getName()));
+      }
+    }
+    return output.toByteArray();
+  }
+
+  private static void writeBigEndian(ByteArrayOutputStream output, long value, int size) {
+    for (int i = size - 1; i >= 0; i--) {
+      output.write((int) (value >>> (8 * i)));
+    }
+  }
+
+  static Object[] decode(byte[] key) {
+    List<Object> parts = new ArrayList<>();
+    int i = 0;
+    while (i < key.length) {
+      byte type = key[i];
+      i++;
+      switch (type) {
+        case INTEGER:
+          parts.add((int) (readBigEndian(key, i, Integer.BYTES) ^ Integer.MIN_VALUE));
+          i += Integer.BYTES;
+          break;
+        case LONG:
+          parts.add(readBigEndian(key, i, Long.BYTES) ^ Long.MIN_VALUE);
+          i += Long.BYTES;
+          break;
+        case STRING:
+          ByteArrayOutputStream string = new ByteArrayOutputStream();
+          while (key[i] != STRING_END) {
+            if (key[i] == STRING_ESCAPE) {
+              i++;
+              string.write(key[i] - 1);
+            } else {
+              string.write(key[i]);
+            }
+            i++;
+          }
+          i++;
+          parts.add(new String(string.toByteArray(), UTF_8));
+          break;
+        default:
+          throw new IllegalStateException("Unknown type of key part: " + type);
+      }
+    }
+    return parts.toArray();
+  }
+
+  private static long readBigEndian(byte[] bytes, int offset, int size) {
+    long value = 0L;
+    for (int i = 0; i < size; i++) {
+      value = (value << 8) | (bytes[offset + i] & 0xFF);
+    }
+    return value;
+  }
+
+  /**
+   * Byte length of the first parts of a key: element {@code i} is the length of the first {@code i} parts, so
+   * that the first element is zero and the last one is the length of the key.
+   */
+  static int[] prefixLengths(byte[] key) {
+    List<Integer> lengths = new ArrayList<>();
+    lengths.add(0);
+    int i = 0;
+    while (i < key.length) {
+      byte type = key[i];
+      i++;
+      if (type == INTEGER) {
+        i += Integer.BYTES;
+      } else if (type == LONG) {
+        i += Long.BYTES;
+      } else {
+        while (key[i] != STRING_END) {
+          i += key[i] == STRING_ESCAPE ? 2 : 1;
+        }
+        i++;
+      }
+      lengths.add(i);
+    }
+    int[] result = new int[lengths.size()];
+    for (int j = 0; j < result.length; j++) {
+      result[j] = lengths.get(j);
+    }
+    return result;
+  }
+
+  static int hash(byte[] key, int length) {
+    int h = 1;
+    for (int i = 0; i < length; i++) {
+      h = 31 * h + key[i];
+    }
+    // spread bits, as lower bits are used to select slots of the index
+    h *= 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -20,28 +20,23 @@
 package org.sonar.scanner.storage;
 
 import com.google.common.base.Preconditions;
-import com.persistit.Exchange;
-import com.persistit.Persistit;
-import com.persistit.Value;
-import com.persistit.Volume;
-import com.persistit.encoding.CoderManager;
-import com.persistit.encoding.ValueCoder;
-import com.persistit.exception.PersistitException;
-
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import org.picocontainer.Startable;
 import org.sonar.api.batch.ScannerSide;
 
 @ScannerSide
 public class Storages implements Startable {
-  private final Map<String, Exchange> cacheMap = new HashMap<>();
-  private Persistit persistit;
-  private Volume volume;
+  private final Map<String, Storage<?>> cacheMap = new HashMap<>();
+  private final Map<String, ValueCoder> coders = new ConcurrentHashMap<>();
+  private final StoragesManager storagesManager;
+  private boolean started = false;
 
   public Storages(StoragesManager storagesManager) {
-    persistit = storagesManager.persistit();
+    this.storagesManager = storagesManager;
     doStart();
   }
 
@@ -51,27 +46,20 @@ public class Storages implements Startable {
   }
 
   private void doStart() {
-    try {
-      persistit.flush();
-      volume = persistit.createTemporaryVolume();
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to create a cache volume", e);
-    }
+    started = true;
   }
 
   public void registerValueCoder(Class<?> clazz, ValueCoder coder) {
-    CoderManager cm = persistit.getCoderManager();
-    cm.registerValueCoder(clazz, coder);
+    coders.put(clazz.getName(), coder);
   }
 
   public <V> Storage<V> createCache(String cacheName) {
-    Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
+    Preconditions.checkState(started && storagesManager.tempDir() != null, "Caches are not initialized");
     Preconditions.checkState(!cacheMap.containsKey(cacheName), "Cache is already created: %s", cacheName);
     try {
-      Exchange exchange = persistit.getExchange(volume, cacheName, true);
-      exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
-      Storage<V> cache = new Storage<>(cacheName, exchange);
-      cacheMap.put(cacheName, exchange);
+      File file = File.createTempFile(cacheName, ".log", storagesManager.tempDir());
+      Storage<V> cache = new Storage<>(cacheName, new MappedLog(file, storagesManager.segmentSize()), coders);
+      cacheMap.put(cacheName, cache);
       return cache;
     } catch (Exception e) {
       throw new IllegalStateException("Fail to create cache: " + cacheName, e);
@@ -80,20 +68,15 @@ public class Storages implements Startable {
 
   @Override
   public void stop() {
-    for (Entry<String, Exchange> e : cacheMap.entrySet()) {
-      persistit.releaseExchange(e.getValue());
-    }
-
-    cacheMap.clear();
-
-    if (volume != null) {
-      try {
-        volume.close();
-        volume.delete();
-      } catch (PersistitException e) {
-        throw new IllegalStateException("Fail to close caches", e);
+    try {
+      for (Storage<?> cache : cacheMap.values()) {
+        cache.close();
       }
-      volume = null;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to close caches", e);
+    } finally {
+      cacheMap.clear();
+      started = false;
     }
   }
 }
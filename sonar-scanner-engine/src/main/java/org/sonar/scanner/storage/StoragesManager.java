@@ -19,15 +19,12 @@
  */
 package org.sonar.scanner.storage;
 
-import com.persistit.Persistit;
-import com.persistit.exception.PersistitException;
-import com.persistit.logging.Slf4jAdapter;
+import com.google.common.annotations.VisibleForTesting;
 import java.io.File;
-import java.util.Properties;
 import org.picocontainer.Startable;
-import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 
 import static org.sonar.core.util.FileUtils.deleteQuietly;
 
@@ -38,32 +35,33 @@ import static org.sonar.core.util.FileUtils.deleteQuietly;
  */
 @ScannerSide
 public class StoragesManager implements Startable {
+
+  /**
+   * Size in Mb of the segments of storage files which are mapped in memory at once
+   */
+  @VisibleForTesting
+  static final String SEGMENT_SIZE_PROPERTY = "sonar.scanner.storage.segmentSizeMb";
+  private static final int DEFAULT_SEGMENT_SIZE_MB = 16;
+
   private File tempDir;
-  private Persistit persistit;
   private final TempFolder tempFolder;
+  private final int segmentSize;
 
-  public StoragesManager(TempFolder tempFolder) {
+  public StoragesManager(TempFolder tempFolder, GlobalProperties properties) {
     this.tempFolder = tempFolder;
-    initPersistit();
+    this.segmentSize = segmentSizeMb(properties) * 1024 * 1024;
+    initStorages();
+  }
+
+  private static int segmentSizeMb(GlobalProperties properties) {
+    String value = properties.property(SEGMENT_SIZE_PROPERTY);
+    int size = value == null ? 0 : Integer.parseInt(value);
+    return size > 0 ? size : DEFAULT_SEGMENT_SIZE_MB;
   }
 
-  private void initPersistit() {
+  private void initStorages() {
     try {
       tempDir = tempFolder.newDir("caches");
-      persistit = new Persistit();
-      persistit.setPersistitLogger(new Slf4jAdapter(LoggerFactory.getLogger("PERSISTIT")));
-      Properties props = new Properties();
-      props.setProperty("datapath", tempDir.getAbsolutePath());
-      props.setProperty("logpath", "${datapath}/log");
-      props.setProperty("logfile", "${logpath}/persistit_${timestamp}.log");
-      props.setProperty("buffer.count.8192", "10");
-      props.setProperty("journalpath", "${datapath}/journal");
-      props.setProperty("tmpvoldir", "${datapath}");
-      props.setProperty("volume.1", "${datapath}/persistit,create,pageSize:8192,initialPages:10,extensionPages:100,maximumPages:25000");
-      props.setProperty("jmx", "false");
-      persistit.setProperties(props);
-      persistit.initialize();
-
     } catch (Exception e) {
       throw new IllegalStateException("Fail to start caches", e);
     }
@@ -76,14 +74,6 @@ public class StoragesManager implements Startable {
 
   @Override
   public void stop() {
-    if (persistit != null) {
-      try {
-        persistit.close(false);
-        persistit = null;
-      } catch (PersistitException e) {
-        throw new IllegalStateException("Fail to close caches", e);
-      }
-    }
     deleteQuietly(tempDir);
     tempDir = null;
   }
@@ -92,7 +82,7 @@ public class StoragesManager implements Startable {
     return tempDir;
   }
 
-  Persistit persistit() {
-    return persistit;
+  int segmentSize() {
+    return segmentSize;
   }
 }
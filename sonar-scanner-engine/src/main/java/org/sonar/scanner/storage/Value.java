@@ -0,0 +1,245 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Serialized form of a value of {@link Storage}. Strings, numbers, booleans and byte arrays are natively
+ * supported. Other objects are encoded by the {@link ValueCoder} registered for their class, if any, else
+ * by Java serialization.
+ */
+public class Value {
+
+  /**
+   * Values larger than 64Mb are rejected
+   */
+  static final int MAXIMUM_SIZE = 64 * 1024 * 1024;
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte INTEGER = 2;
+  private static final byte LONG = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte BOOLEAN = 5;
+  private static final byte BYTES = 6;
+  private static final byte CODED = 7;
+  private static final byte SERIALIZED = 8;
+
+  private final Map<String, ValueCoder> coders;
+  private final BoundedOutputStream bytes;
+  private final DataOutputStream output;
+  private final DataInputStream input;
+
+  private Value(Map<String, ValueCoder> coders, @Nullable byte[] data) {
+    this.coders = coders;
+    if (data == null) {
+      this.bytes = new BoundedOutputStream();
+      this.output = new DataOutputStream(bytes);
+      this.input = null;
+    } else {
+      this.bytes = null;
+      this.output = null;
+      this.input = new DataInputStream(new ByteArrayInputStream(data));
+    }
+  }
+
+  static Value forWrite(Map<String, ValueCoder> coders) {
+    return new Value(coders, null);
+  }
+
+  static Value forRead(Map<String, ValueCoder> coders, byte[] data) {
+    return new Value(coders, data);
+  }
+
+  public Value put(@Nullable Object object) {
+    try {
+      if (object == null) {
+        output.writeByte(NULL);
+      } else if (object instanceof String) {
+        output.writeByte(STRING);
+        writeString((String) object);
+      } else if (object instanceof Integer) {
+        output.writeByte(INTEGER);
+        output.writeInt((Integer) object);
+      } else if (object instanceof Long) {
+        output.writeByte(LONG);
+        output.writeLong((Long) object);
+      } else if (object instanceof Double) {
+        output.writeByte(DOUBLE);
+        output.writeDouble((Double) object);
+      } else if (object instanceof Boolean) {
+        output.writeByte(BOOLEAN);
+        output.writeBoolean((Boolean) object);
+      } else if (object instanceof byte[]) {
+        output.writeByte(BYTES);
+        writeBytes((byte[]) object);
+      } else {
+        putObject(object);
+      }
+      return this;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to encode value", e);
+    }
+  }
+
+  private void putObject(Object object) throws IOException {
+    String className = object.getClass().getName();
+    ValueCoder coder = coders.get(className);
+    if (coder != null) {
+      output.writeByte(CODED);
+      writeString(className);
+      coder.put(this, object);
+    } else if (object instanceof Serializable) {
+      output.writeByte(SERIALIZED);
+      ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+      try (ObjectOutputStream objectOutput = new ObjectOutputStream(serialized)) {
+        objectOutput.writeObject(object);
+      }
+      writeBytes(serialized.toByteArray());
+    } else {
+      throw new IllegalArgumentException("No coder registered for values of " + className);
+    }
+  }
+
+  public Value putString(@Nullable String s) {
+    return put(s);
+  }
+
+  public Value putByteArray(@Nullable byte[] b) {
+    return put(b);
+  }
+
+  @CheckForNull
+  public Object get() {
+    try {
+      byte type = input.readByte();
+      switch (type) {
+        case NULL:
+          return null;
+        case STRING:
+          return readString();
+        case INTEGER:
+          return input.readInt();
+        case LONG:
+          return input.readLong();
+        case DOUBLE:
+          return input.readDouble();
+        case BOOLEAN:
+          return input.readBoolean();
+        case BYTES:
+          return readBytes();
+        case CODED:
+          return getCodedObject();
+        case SERIALIZED:
+          return getSerializedObject();
+        default:
+          throw new IllegalStateException("Unknown type of value: " + type);
+      }
+    } catch (IOException | ClassNotFoundException e) {
+      throw new IllegalStateException("Fail to decode value", e);
+    }
+  }
+
+  private Object getCodedObject() throws IOException {
+    String className = readString();
+    ValueCoder coder = coders.get(className);
+    if (coder == null) {
+      throw new IllegalStateException("No coder registered for values of " + className);
+    }
+    return coder.get(this);
+  }
+
+  private Object getSerializedObject() throws IOException, ClassNotFoundException {
+    try (ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(readBytes()))) {
+      return objectInput.readObject();
+    }
+  }
+
+  @CheckForNull
+  public String getString() {
+    return (String) get();
+  }
+
+  @CheckForNull
+  public byte[] getByteArray() {
+    return (byte[]) get();
+  }
+
+  byte[] toByteArray() {
+    return bytes.toByteArray();
+  }
+
+  private void writeString(String s) throws IOException {
+    // UTF-8 encoding is not shorter than the number of chars
+    bytes.checkSize(s.length());
+    writeBytes(s.getBytes(UTF_8));
+  }
+
+  private String readString() throws IOException {
+    return new String(readBytes(), UTF_8);
+  }
+
+  private void writeBytes(byte[] b) throws IOException {
+    output.writeInt(b.length);
+    output.write(b);
+  }
+
+  private byte[] readBytes() throws IOException {
+    byte[] b = new byte[input.readInt()];
+    input.readFully(b);
+    return b;
+  }
+
+  /**
+   * Fails as soon as the maximum size is exceeded, before allocating memory
+   */
+  private static class BoundedOutputStream extends ByteArrayOutputStream {
+    @Override
+    public synchronized void write(int b) {
+      checkSize(1);
+      super.write(b);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+      checkSize(len);
+      super.write(b, off, len);
+    }
+
+    private void checkSize(int len) {
+      if ((long) count + len > MAXIMUM_SIZE) {
+        throw new IllegalArgumentException("Value is larger than " + MAXIMUM_SIZE + " bytes");
+      }
+    }
+  }
+}
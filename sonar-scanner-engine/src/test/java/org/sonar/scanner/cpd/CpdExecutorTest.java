@@ -215,6 +215,32 @@ public class CpdExecutorTest {
 
   @Test
   public void timeout() {
+    insertLargeFiles();
+    executor.execute(1);
+
+    readDuplications(0);
+    assertThat(logTester.logs(LoggerLevel.WARN))
+      .usingElementComparator((l, r) -> l.matches(r) ? 0 : 1)
+      .containsOnly(
+        "Timeout during detection of duplications for .*Foo1.php",
+        "Timeout during detection of duplications for .*Foo2.php");
+  }
+
+  @Test
+  public void timeout_on_several_threads() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "2");
+    insertLargeFiles();
+    executor.execute(1);
+
+    readDuplications(0);
+    assertThat(logTester.logs(LoggerLevel.WARN))
+      .usingElementComparator((l, r) -> l.matches(r) ? 0 : 1)
+      .containsOnly(
+        "Timeout during detection of duplications for .*Foo1.php",
+        "Timeout during detection of duplications for .*Foo2.php");
+  }
+
+  private void insertLargeFiles() {
     for (int i = 1; i <= 2; i++) {
       DefaultInputFile component = createComponent("src/Foo" + i + ".php", 100);
       List<Block> blocks = new ArrayList<>();
@@ -229,14 +255,43 @@ public class CpdExecutorTest {
       }
       index.insert((InputFile) component, blocks);
     }
-    executor.execute(1);
+  }
 
-    readDuplications(0);
-    assertThat(logTester.logs(LoggerLevel.WARN))
-      .usingElementComparator((l, r) -> l.matches(r) ? 0 : 1)
-      .containsOnly(
-        "Timeout during detection of duplications for .*Foo1.php",
-        "Timeout during detection of duplications for .*Foo2.php");
+  @Test
+  public void defaultThreads() {
+    assertThat(executor.getThreads()).isEqualTo(1);
+
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "4");
+    assertThat(executor.getThreads()).isEqualTo(4);
+  }
+
+  @Test
+  public void detectDuplicationsOnSeveralThreads() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "4");
+    index.insert((InputFile) batchComponent1, createBlocks(batchComponent1, "abcd123"));
+    index.insert((InputFile) batchComponent2, createBlocks(batchComponent2, "abcd123"));
+    index.insert((InputFile) batchComponent3, createBlocks(batchComponent3, "efgh567"));
+
+    executor.execute();
+
+    Duplication[] dups = readDuplications(1);
+    assertDuplication(dups[0], 1, 4, batchComponent2.batchId(), 1, 4);
+    assertThat(reader.readComponentDuplications(batchComponent2.batchId())).hasSize(1);
+    assertThat(reader.readComponentDuplications(batchComponent3.batchId())).hasSize(0);
+  }
+
+  private List<Block> createBlocks(DefaultInputFile component, String hashPrefix) {
+    List<Block> blocks = new ArrayList<>();
+    for (int j = 1; j <= 3; j++) {
+      blocks.add(Block.builder()
+        .setResourceId(component.key())
+        .setIndexInFile(j)
+        .setLines(j, j + 1)
+        .setUnit(j * 100, j * 100 + 99)
+        .setBlockHash(new ByteArray((hashPrefix + j).getBytes()))
+        .build());
+    }
+    return blocks;
   }
 
   private Duplication[] readDuplications(int expected) {
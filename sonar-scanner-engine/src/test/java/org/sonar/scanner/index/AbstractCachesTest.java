@@ -44,9 +44,12 @@ public abstract class AbstractCachesTest {
 
   private static StoragesManager createCacheOnTemp() {
     Map<String, String> props = ImmutableMap.of(CoreProperties.WORKING_DIRECTORY, temp.getRoot().getAbsolutePath(),
-      CoreProperties.GLOBAL_WORKING_DIRECTORY, temp.getRoot().getAbsolutePath());
+      CoreProperties.GLOBAL_WORKING_DIRECTORY, temp.getRoot().getAbsolutePath(),
+      // small segments, so that storages are mapped in several segments
+      "sonar.scanner.storage.segmentSizeMb", "1");
 
-    return new StoragesManager(new GlobalTempFolderProvider().provide(new GlobalProperties(props)));
+    GlobalProperties properties = new GlobalProperties(props);
+    return new StoragesManager(new GlobalTempFolderProvider().provide(properties), properties);
   }
 
   @BeforeClass
@@ -0,0 +1,131 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.phases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.fs.internal.DefaultInputModule;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
+import org.sonar.scanner.events.EventBus;
+import org.sonar.scanner.sensor.SensorWrapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SensorsExecutorTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  DefaultInputModule module = new DefaultInputModule("project");
+  ScannerExtensionDictionnary selector = mock(ScannerExtensionDictionnary.class);
+  SensorContext context = mock(SensorContext.class);
+  Settings settings = new MapSettings();
+  List<String> executions = Collections.synchronizedList(new ArrayList<>());
+  SensorsExecutor executor;
+
+  @Before
+  public void setUp() {
+    executor = new SensorsExecutor(selector, module, mock(EventBus.class), settings);
+  }
+
+  @Test
+  public void default_threads() {
+    assertThat(executor.getThreads()).isEqualTo(1);
+
+    settings.setProperty(SensorsExecutor.THREADS_PROPERTY, 4);
+    assertThat(executor.getThreads()).isEqualTo(4);
+  }
+
+  @Test
+  public void execute_sensors_in_order() {
+    Sensor sensor1 = newSensor("sensor1", true, null);
+    Sensor sensor2 = newSensor("sensor2", true, null);
+    Sensor sensor3 = newSensor("sensor3", false, null);
+    when(selector.select(Sensor.class, module, true, null)).thenReturn(Arrays.asList(sensor1, sensor2, sensor3));
+
+    executor.execute(context);
+
+    assertThat(executions).containsExactly("sensor1", "sensor2", "sensor3");
+  }
+
+  @Test
+  public void execute_thread_safe_sensors_concurrently() {
+    settings.setProperty(SensorsExecutor.THREADS_PROPERTY, 2);
+    // both sensors must be running at the same time to go through the barrier
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    Sensor sensor1 = newSensor("sensor1", true, barrier);
+    Sensor sensor2 = newSensor("sensor2", true, barrier);
+    Sensor sensor3 = newSensor("sensor3", false, null);
+    Sensor sensor4 = newSensor("sensor4", true, null);
+    when(selector.select(Sensor.class, module, true, null)).thenReturn(Arrays.asList(sensor1, sensor2, sensor3, sensor4));
+
+    executor.execute(context);
+
+    assertThat(executions).hasSize(4);
+    assertThat(executions.subList(0, 2)).containsOnly("sensor1", "sensor2");
+    assertThat(executions.subList(2, 4)).containsExactly("sensor3", "sensor4");
+  }
+
+  @Test
+  public void propagate_failure_of_concurrent_sensor() {
+    settings.setProperty(SensorsExecutor.THREADS_PROPERTY, 2);
+    SensorWrapper sensor = mock(SensorWrapper.class);
+    when(sensor.isThreadSafe()).thenReturn(true);
+    doThrow(new IllegalArgumentException("Boom")).when(sensor).analyse(any(Project.class), eq(context));
+    when(selector.select(Sensor.class, module, true, null)).thenReturn(Arrays.asList(sensor));
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Boom");
+
+    executor.execute(context);
+  }
+
+  private Sensor newSensor(String name, boolean threadSafe, CyclicBarrier barrier) {
+    SensorWrapper sensor = mock(SensorWrapper.class);
+    when(sensor.isThreadSafe()).thenReturn(threadSafe);
+    doAnswer(invocation -> {
+      if (barrier != null) {
+        barrier.await(10, TimeUnit.SECONDS);
+      }
+      executions.add(name);
+      return null;
+    }).when(sensor).analyse(any(Project.class), eq(context));
+    return sensor;
+  }
+}
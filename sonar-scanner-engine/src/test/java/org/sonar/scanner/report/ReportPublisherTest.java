@@ -19,6 +19,7 @@
  */
 package org.sonar.scanner.report;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PipedInputStream;
@@ -45,6 +46,7 @@ import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.core.config.CorePropertyDefinitions;
 import org.sonar.scanner.analysis.DefaultAnalysisMode;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
+import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.scan.ImmutableProjectReactor;
 import org.sonarqube.ws.WsCe;
 import org.sonarqube.ws.client.WsRequest;
@@ -173,6 +175,42 @@ public class ReportPublisherTest {
     assertThat(reportDir).doesNotExist();
   }
 
+  @Test
+  public void pack_report_if_supported_by_server() throws Exception {
+    when(server.getVersion()).thenReturn("6.3");
+
+    File reportDir = executeWithOneComponent();
+
+    assertThat(new File(reportDir, "packed-index.pb")).isFile();
+    assertThat(new File(reportDir, "component-1.pb")).doesNotExist();
+  }
+
+  @Test
+  public void do_not_pack_report_if_not_supported_by_server() throws Exception {
+    when(server.getVersion()).thenReturn("6.2");
+
+    File reportDir = executeWithOneComponent();
+
+    assertThat(new File(reportDir, "packed-index.pb")).doesNotExist();
+    assertThat(new File(reportDir, "component-1.pb")).isFile();
+  }
+
+  private File executeWithOneComponent() throws IOException {
+    TempFolder tempFolder = mock(TempFolder.class);
+    when(tempFolder.newFile("batch-report", ".zip")).thenReturn(temp.newFile());
+    ReportPublisherStep step = writer -> writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).build());
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, tempFolder, new ReportPublisherStep[] {step});
+    WsResponse response = mock(WsResponse.class);
+    when(response.failIfNotSuccessful()).thenReturn(response);
+    when(response.contentStream()).thenReturn(new ByteArrayInputStream(WsCe.SubmitResponse.newBuilder().setTaskId("TASK-1").build().toByteArray()));
+    when(wsClient.call(any(WsRequest.class))).thenReturn(response);
+
+    underTest.start();
+    underTest.execute();
+
+    return new File(temp.getRoot(), "batch-report");
+  }
+
   @Test
   public void test_ws_parameters() throws Exception {
     ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, mock(TempFolder.class), new ReportPublisherStep[0]);
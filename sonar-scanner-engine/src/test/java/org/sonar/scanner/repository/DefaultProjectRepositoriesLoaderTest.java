@@ -19,23 +19,34 @@
  */
 package org.sonar.scanner.repository;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Resources;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.MessageException;
+import org.sonar.home.cache.FileCache;
+import org.sonar.home.cache.FileCacheBuilder;
+import org.sonar.scanner.bootstrap.Slf4jLogger;
 import org.sonar.scanner.WsTestUtil;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
 import org.sonarqube.ws.WsBatch.WsProjectResponse;
+import org.sonarqube.ws.WsBatch.WsProjectResponse.FileDataByPath;
+import org.sonarqube.ws.WsBatch.WsProjectResponse.FilePaths;
+import org.sonarqube.ws.WsBatch.WsProjectResponse.Settings;
 import org.sonarqube.ws.client.HttpException;
 import org.sonarqube.ws.client.WsRequest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -44,16 +55,20 @@ public class DefaultProjectRepositoriesLoaderTest {
   private final static String PROJECT_KEY = "foo?";
   @Rule
   public ExpectedException thrown = ExpectedException.none();
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
 
   private DefaultProjectRepositoriesLoader loader;
   private ScannerWsClient wsClient;
+  private FileCache fileCache;
 
   @Before
   public void prepare() throws IOException {
     wsClient = mock(ScannerWsClient.class);
     InputStream is = mockData();
     WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", is);
-    loader = new DefaultProjectRepositoriesLoader(wsClient);
+    fileCache = new FileCacheBuilder(new Slf4jLogger()).setUserHome(temp.newFolder()).build();
+    loader = new DefaultProjectRepositoriesLoader(wsClient, fileCache);
   }
 
   @Test
@@ -110,6 +125,104 @@ public class DefaultProjectRepositoriesLoaderTest {
     WsTestUtil.verifyCall(wsClient, "/batch/project.protobuf?key=foo%3F");
   }
 
+  @Test
+  public void request_only_files_changed_since_previous_response() throws IOException {
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", toStream(WsProjectResponse.newBuilder()
+      .setTimestamp(1_000L)
+      .putAllFileDataByModuleAndPath(ImmutableMap.of("foo", fileDataByPath("src/A.java", "hashA", "rev1", "src/B.java", "hashB", "rev1")))
+      .build()));
+    loader.load(PROJECT_KEY, false);
+
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F&files_changed_since=1000", toStream(WsProjectResponse.newBuilder()
+      .setTimestamp(2_000L)
+      .putAllFileDataByModuleAndPath(ImmutableMap.of("foo", fileDataByPath("src/B.java", "hashB2", "rev2", "src/C.java", "hashC", "rev2")))
+      .putAllUnchangedFilePathsByModule(ImmutableMap.of("foo", FilePaths.newBuilder().addPaths("src/A.java").build()))
+      .build()));
+    ProjectRepositories proj = loader.load(PROJECT_KEY, false);
+
+    WsTestUtil.verifyCall(wsClient, "/batch/project.protobuf?key=foo%3F&files_changed_since=1000");
+    assertThat(proj.fileData("foo", "src/A.java").hash()).isEqualTo("hashA");
+    assertThat(proj.fileData("foo", "src/B.java").hash()).isEqualTo("hashB2");
+    assertThat(proj.fileData("foo", "src/C.java").revision()).isEqualTo("rev2");
+  }
+
+  @Test
+  public void reload_all_files_when_unchanged_file_is_not_in_cache() throws IOException {
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", toStream(WsProjectResponse.newBuilder()
+      .setTimestamp(1_000L)
+      .build()));
+    loader.load(PROJECT_KEY, false);
+
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F&files_changed_since=1000", toStream(WsProjectResponse.newBuilder()
+      .setTimestamp(2_000L)
+      .putAllUnchangedFilePathsByModule(ImmutableMap.of("foo", FilePaths.newBuilder().addPaths("src/A.java").build()))
+      .build()));
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", toStream(WsProjectResponse.newBuilder()
+      .setTimestamp(2_000L)
+      .putAllFileDataByModuleAndPath(ImmutableMap.of("foo", fileDataByPath("src/A.java", "hashA", "rev1")))
+      .build()));
+    ProjectRepositories proj = loader.load(PROJECT_KEY, false);
+
+    assertThat(proj.fileData("foo", "src/A.java").hash()).isEqualTo("hashA");
+  }
+
+  @Test
+  public void do_not_cache_settings() throws IOException {
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", toStream(WsProjectResponse.newBuilder()
+      .setTimestamp(1_000L)
+      .putAllSettingsByModule(ImmutableMap.of("foo", settings("sonar.foo.secured", "secret")))
+      .putAllFileDataByModuleAndPath(ImmutableMap.of("foo", fileDataByPath("src/A.java", "hashA", "rev1")))
+      .build()));
+    loader.load(PROJECT_KEY, false);
+
+    File[] cacheFiles = new File(fileCache.getDir(), "_project_repositories").listFiles();
+    assertThat(cacheFiles).hasSize(1);
+    WsProjectResponse cachedResponse = WsProjectResponse.parseFrom(Files.readAllBytes(cacheFiles[0].toPath()));
+    assertThat(cachedResponse.getSettingsByModule()).isEmpty();
+    assertThat(cachedResponse.getFileDataByModuleAndPath()).containsOnlyKeys("foo");
+  }
+
+  @Test
+  public void request_settings_when_files_are_in_cache() throws IOException {
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F", toStream(WsProjectResponse.newBuilder()
+      .setTimestamp(1_000L)
+      .putAllSettingsByModule(ImmutableMap.of("foo", settings("sonar.foo", "old")))
+      .putAllFileDataByModuleAndPath(ImmutableMap.of("foo", fileDataByPath("src/A.java", "hashA", "rev1")))
+      .build()));
+    loader.load(PROJECT_KEY, false);
+
+    WsTestUtil.mockStream(wsClient, "/batch/project.protobuf?key=foo%3F&files_changed_since=1000", toStream(WsProjectResponse.newBuilder()
+      .setTimestamp(1_000L)
+      .putAllSettingsByModule(ImmutableMap.of("foo", settings("sonar.foo", "new")))
+      .putAllUnchangedFilePathsByModule(ImmutableMap.of("foo", FilePaths.newBuilder().addPaths("src/A.java").build()))
+      .build()));
+    ProjectRepositories proj = loader.load(PROJECT_KEY, false);
+
+    assertThat(proj.settings("foo")).containsOnly(entry("sonar.foo", "new"));
+    assertThat(proj.fileData("foo", "src/A.java").hash()).isEqualTo("hashA");
+  }
+
+  private static Settings settings(String key, String value) {
+    return Settings.newBuilder().putAllSettings(ImmutableMap.of(key, value)).build();
+  }
+
+  private static FileDataByPath fileDataByPath(String... pathHashAndRevisions) {
+    FileDataByPath.Builder builder = FileDataByPath.newBuilder();
+    for (int i = 0; i < pathHashAndRevisions.length; i += 3) {
+      builder.getMutableFileDataByPath().put(pathHashAndRevisions[i], WsProjectResponse.FileData.newBuilder()
+        .setHash(pathHashAndRevisions[i + 1])
+        .setRevision(pathHashAndRevisions[i + 2])
+        .build());
+    }
+    return builder.build();
+  }
+
+  private static InputStream toStream(WsProjectResponse response) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    response.writeTo(os);
+    return new ByteArrayInputStream(os.toByteArray());
+  }
+
   private InputStream mockData() throws IOException {
     ByteArrayOutputStream os = new ByteArrayOutputStream();
     WsProjectResponse.Builder projectResponseBuilder = WsProjectResponse.newBuilder();
@@ -26,6 +26,8 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Before;
@@ -57,7 +59,7 @@ public class MetadataGeneratorTest {
   public void setUp() {
     MockitoAnnotations.initMocks(this);
     metadata = new FileMetadata();
-    generator = new MetadataGenerator(new DefaultInputModule("module"), statusDetection, metadata);
+    generator = new MetadataGenerator(new DefaultInputModule("module"), statusDetection, metadata, false);
   }
 
   @Test
@@ -115,4 +117,20 @@ public class MetadataGeneratorTest {
     assertThat(inputFile.relativePath()).isEqualTo("src/main/java/foo/Bar.java");
     assertThat(inputFile.lines()).isEqualTo(1);
   }
+
+  @Test
+  public void compute_line_hashes_with_metadata() throws Exception {
+    Path baseDir = temp.newFolder().toPath();
+    Path srcFile = baseDir.resolve("src/main/java/foo/Bar.java");
+    FileUtils.write(srcFile.toFile(), "first line\n\n  third line");
+    MetadataGenerator generatorWithLineHashes = new MetadataGenerator(new DefaultInputModule("module"), statusDetection, metadata, true);
+
+    DefaultInputFile inputFile = createInputFileWithMetadata(generatorWithLineHashes, baseDir, "src/main/java/foo/Bar.java");
+
+    assertThat(inputFile.lineHashes()).hasSize(3);
+    assertThat(Hex.encodeHexString(inputFile.lineHashes()[0])).isEqualTo(DigestUtils.md5Hex("firstline"));
+    assertThat(inputFile.lineHashes()[1]).isNull();
+    assertThat(Hex.encodeHexString(inputFile.lineHashes()[2])).isEqualTo(DigestUtils.md5Hex("thirdline"));
+    assertThat(createInputFileWithMetadata(generator, baseDir, "src/main/java/foo/Bar.java").lineHashes()).isNull();
+  }
 }
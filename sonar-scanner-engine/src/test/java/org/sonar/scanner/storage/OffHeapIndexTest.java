@@ -0,0 +1,74 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapIndexTest {
+
+  private OffHeapIndex underTest = new OffHeapIndex();
+
+  @Test
+  public void put_get_and_remove() {
+    underTest.put(1, 10, o -> o == 100L, 100L);
+    underTest.put(1, 10, o -> o == 200L, 200L);
+
+    assertThat(underTest.get(1, 10, o -> o == 100L)).isEqualTo(100L);
+    assertThat(underTest.get(1, 10, o -> o == 200L)).isEqualTo(200L);
+    assertThat(underTest.get(1, 11, o -> true)).isEqualTo(OffHeapIndex.NOT_FOUND);
+    assertThat(underTest.get(2, 10, o -> true)).isEqualTo(OffHeapIndex.NOT_FOUND);
+
+    assertThat(underTest.remove(1, 10, o -> o == 100L)).isTrue();
+    assertThat(underTest.remove(1, 10, o -> o == 100L)).isFalse();
+    assertThat(underTest.get(1, 10, o -> o == 100L)).isEqualTo(OffHeapIndex.NOT_FOUND);
+    // still found after the deleted slot
+    assertThat(underTest.get(1, 10, o -> o == 200L)).isEqualTo(200L);
+    assertThat(underTest.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void replace_offset_of_existing_key() {
+    underTest.put(1, 10, o -> false, 0L);
+    underTest.put(1, 10, o -> o == 0L, 50L);
+
+    assertThat(underTest.get(1, 10, o -> true)).isEqualTo(50L);
+    assertThat(underTest.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void grow_when_filled() {
+    for (long i = 0; i < 100_000; i++) {
+      long offset = i;
+      underTest.put((int) (i * 31), 8, o -> o == offset, offset);
+    }
+    for (long i = 0; i < 100_000; i += 2) {
+      long offset = i;
+      underTest.remove((int) (i * 31), 8, o -> o == offset);
+    }
+
+    assertThat(underTest.size()).isEqualTo(50_000);
+    for (long i = 0; i < 100_000; i++) {
+      long offset = i;
+      assertThat(underTest.get((int) (i * 31), 8, o -> o == offset)).isEqualTo(i % 2 == 0 ? OffHeapIndex.NOT_FOUND : i);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import com.google.common.primitives.UnsignedBytes;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StorageKeyTest {
+
+  @Test
+  public void encode_and_decode() {
+    Object[] key = {"foo", 42, -3L, "", "\u0000\u0001é"};
+
+    assertThat(StorageKey.decode(StorageKey.encode(key))).containsExactly(key);
+  }
+
+  @Test
+  public void encoding_of_first_parts_is_prefix() {
+    byte[] key = StorageKey.encode("foo", 42, "bar");
+
+    int[] lengths = StorageKey.prefixLengths(key);
+
+    assertThat(lengths).hasSize(4);
+    assertThat(lengths[0]).isEqualTo(0);
+    assertThat(lengths[1]).isEqualTo(StorageKey.encode("foo").length);
+    assertThat(lengths[2]).isEqualTo(StorageKey.encode("foo", 42).length);
+    assertThat(lengths[3]).isEqualTo(key.length);
+  }
+
+  @Test
+  public void order_of_encoded_keys_is_order_of_parts() {
+    assertOrdered(StorageKey.encode("a"), StorageKey.encode("a", "b"));
+    assertOrdered(StorageKey.encode("a", "z"), StorageKey.encode("ab"));
+    assertOrdered(StorageKey.encode("a\u0000"), StorageKey.encode("a\u0001"));
+    assertOrdered(StorageKey.encode("a\u0001"), StorageKey.encode("a\u0002"));
+    assertOrdered(StorageKey.encode(-10), StorageKey.encode(2));
+    assertOrdered(StorageKey.encode(Long.MIN_VALUE), StorageKey.encode(Long.MAX_VALUE));
+    assertOrdered(StorageKey.encode(Integer.MAX_VALUE), StorageKey.encode(""));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void fail_on_unsupported_type() {
+    StorageKey.encode(new Object());
+  }
+
+  private static void assertOrdered(byte[] lower, byte[] greater) {
+    assertThat(UnsignedBytes.lexicographicalComparator().compare(lower, greater)).isNegative();
+  }
+}
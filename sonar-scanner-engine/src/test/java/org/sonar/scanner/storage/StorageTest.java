@@ -20,6 +20,11 @@
 package org.sonar.scanner.storage;
 
 import com.google.common.collect.Iterables;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Test;
 import org.sonar.scanner.index.AbstractCachesTest;
 import org.sonar.scanner.storage.Storage;
@@ -249,4 +254,80 @@ public class StorageTest extends AbstractCachesTest {
     cache.clear("foo", "bar", "baz");
     cache.clear();
   }
+
+  @Test
+  public void integer_keys_are_ordered_before_string_keys() {
+    Storage<String> cache = caches.createCache("issues");
+    cache.put("module", "issue3", "c");
+    cache.put(10, "issue2", "b");
+    cache.put(-1, "issue1", "a");
+    cache.put(0, "issue4", "d");
+
+    assertThat(cache.keySet()).containsExactly(-1, 0, 10, "module");
+    assertThat(cache.values()).containsExactly("a", "d", "b", "c");
+    assertThat(cache.values(10)).containsExactly("b");
+    assertThat(cache.get(-1, "issue1")).isEqualTo("a");
+  }
+
+  @Test
+  public void replace_value() {
+    Storage<String> cache = caches.createCache("capitals");
+    cache.put("europe", "germany", "bonn");
+    cache.put("europe", "germany", "berlin");
+
+    assertThat(cache.get("europe", "germany")).isEqualTo("berlin");
+    assertThat(cache.values("europe")).containsExactly("berlin");
+    assertThat(cache.keySet("europe")).containsExactly("germany");
+  }
+
+  @Test
+  public void store_values_larger_than_segments() {
+    Storage<String> cache = caches.createCache("large");
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 3 * 1024 * 1024; i++) {
+      sb.append((char) ('a' + i % 26));
+    }
+    cache.put("small1", "a");
+    cache.put("large", sb.toString());
+    cache.put("small2", "b");
+
+    assertThat(cache.get("large")).isEqualTo(sb.toString());
+    assertThat(cache.values()).containsExactly(sb.toString(), "a", "b");
+  }
+
+  @Test
+  public void read_concurrently() throws Exception {
+    Storage<Integer> cache = caches.createCache("numbers");
+    for (int i = 0; i < 10_000; i++) {
+      cache.put("group" + (i % 10), i, i);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        futures.add(executor.submit(() -> {
+          int sum = 0;
+          for (int i = 0; i < 10_000; i++) {
+            sum += cache.get("group" + (i % 10), i);
+          }
+          for (Integer value : cache.values("group3")) {
+            assertThat(value % 10).isEqualTo(3);
+          }
+          return sum;
+        }));
+      }
+      // concurrent writes of other keys
+      for (int i = 10_000; i < 20_000; i++) {
+        cache.put("other", i, i);
+      }
+      for (Future<Integer> future : futures) {
+        assertThat(future.get()).isEqualTo(49_995_000);
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(cache.values("group3")).hasSize(1_000);
+    assertThat(cache.values("other")).hasSize(10_000);
+  }
 }
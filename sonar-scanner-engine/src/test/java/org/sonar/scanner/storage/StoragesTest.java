@@ -20,8 +20,6 @@
 package org.sonar.scanner.storage;
 
 import java.io.Serializable;
-
-import com.persistit.exception.PersistitException;
 import org.junit.Test;
 import org.sonar.scanner.index.AbstractCachesTest;
 import org.sonar.scanner.storage.Storage;
@@ -57,8 +55,9 @@ public class StoragesTest extends AbstractCachesTest {
 
     caches.stop();
 
-    // manager continues up
-    assertThat(cachesManager.persistit().isInitialized()).isTrue();
+    // manager continues up, files of storages are deleted
+    assertThat(cachesManager.tempDir()).isDirectory();
+    assertThat(cachesManager.tempDir().listFiles()).isEmpty();
 
     caches = new Storages(cachesManager);
     caches.start();
@@ -66,7 +65,7 @@ public class StoragesTest extends AbstractCachesTest {
   }
 
   @Test
-  public void leak_test() throws PersistitException {
+  public void leak_test() {
     caches.stop();
 
     int len = 1 * 1024 * 1024;
@@ -80,14 +79,50 @@ public class StoragesTest extends AbstractCachesTest {
       caches.start();
       Storage<String> c = caches.<String>createCache("test" + i);
       c.put("key" + i, sb.toString());
-      cachesManager.persistit().flush();
+      assertThat(c.get("key" + i)).isEqualTo(sb.toString());
 
       caches.stop();
     }
   }
 
+  @Test
+  public void should_fail_to_create_cache_when_stopped() {
+    caches.stop();
+    try {
+      caches.createCache("foo");
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Caches are not initialized");
+    }
+  }
+
+  @Test
+  public void should_encode_values_with_registered_coder() {
+    caches.registerValueCoder(Element.class, new ValueCoder() {
+      @Override
+      public void put(Value value, Object object) {
+        value.putString(((Element) object).name);
+      }
+
+      @Override
+      public Object get(Value value) {
+        return new Element(value.getString());
+      }
+    });
+    Storage<Element> cache = caches.createCache("foo");
+
+    cache.put("a", new Element("first"));
+
+    assertThat(cache.get("a").name).isEqualTo("first");
+  }
+
   private static class Element implements Serializable {
     private static final long serialVersionUID = 1L;
+    private final String name;
+
+    private Element(String name) {
+      this.name = name;
+    }
 
   }
 }
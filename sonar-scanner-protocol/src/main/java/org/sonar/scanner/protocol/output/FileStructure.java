@@ -20,9 +20,14 @@
 package org.sonar.scanner.protocol.output;
 
 import java.io.File;
+import javax.annotation.CheckForNull;
 
 /**
- * Structure of files in the zipped report
+ * Structure of files in the zipped report.
+ * <p>
+ * Data of components are written in one file per component and per {@link Domain}. Before being zipped, they can be
+ * packed into a single data file, {@link #packedDataFile()}, with an index of the offsets of components data,
+ * {@link #packedIndexFile()}. Readers detect the packed layout by the presence of the index.
  */
 public class FileStructure {
 
@@ -48,6 +53,23 @@ public class FileStructure {
       this.filePrefix = filePrefix;
       this.fileSuffix = fileSuffix;
     }
+
+    /**
+     * @return the component ref if {@code fileName} is the name of a file of this domain, else {@code null}
+     */
+    @CheckForNull
+    Integer parseComponentRef(String fileName) {
+      if (fileName.length() <= filePrefix.length() + fileSuffix.length() || !fileName.startsWith(filePrefix) || !fileName.endsWith(fileSuffix)) {
+        return null;
+      }
+      String ref = fileName.substring(filePrefix.length(), fileName.length() - fileSuffix.length());
+      for (int i = 0; i < ref.length(); i++) {
+        if (!Character.isDigit(ref.charAt(i))) {
+          return null;
+        }
+      }
+      return Integer.parseInt(ref);
+    }
   }
 
   private final File dir;
@@ -78,7 +100,15 @@ public class FileStructure {
   public File contextProperties() {
     return new File(dir, "context-props.pb");
   }
-  
+
+  public File packedDataFile() {
+    return new File(dir, "packed-data.bin");
+  }
+
+  public File packedIndexFile() {
+    return new File(dir, "packed-index.pb");
+  }
+
   public File root() {
     return dir;
   }
@@ -0,0 +1,190 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.core.util.Protobuf;
+
+/**
+ * Read-only access to the component data of a packed report. The data file is memory-mapped, so
+ * that opening the data of a component does not require any I/O. The mapping is released by {@link #close()}, otherwise
+ * the data file can not be deleted on Windows before the buffer is garbage collected.
+ */
+class PackedReport implements Closeable {
+
+  private final Map<FileStructure.Domain, Map<Integer, ScannerReport.PackedReportEntry>> entriesByDomain = new EnumMap<>(FileStructure.Domain.class);
+  private final File dataFile;
+  @CheckForNull
+  private volatile MappedByteBuffer data;
+  private volatile boolean closed = false;
+
+  private PackedReport(File dataFile, @CheckForNull MappedByteBuffer data) {
+    this.dataFile = dataFile;
+    this.data = data;
+  }
+
+  static PackedReport open(FileStructure fileStructure) {
+    File dataFile = fileStructure.packedDataFile();
+    PackedReport report;
+    try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      // a single buffer can not map more than 2Gb. Components of bigger files are read on demand.
+      report = new PackedReport(dataFile, size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to open packed report: " + dataFile, e);
+    }
+    try (CloseableIterator<ScannerReport.PackedReportEntry> entries = Protobuf.readStream(fileStructure.packedIndexFile(), ScannerReport.PackedReportEntry.parser())) {
+      while (entries.hasNext()) {
+        ScannerReport.PackedReportEntry entry = entries.next();
+        report.entriesByDomain
+          .computeIfAbsent(FileStructure.Domain.valueOf(entry.getDomain()), d -> new HashMap<>())
+          .put(entry.getComponentRef(), entry);
+      }
+    }
+    return report;
+  }
+
+  boolean has(FileStructure.Domain domain, int componentRef) {
+    return entry(domain, componentRef) != null;
+  }
+
+  @CheckForNull
+  InputStream open(FileStructure.Domain domain, int componentRef) {
+    ScannerReport.PackedReportEntry entry = entry(domain, componentRef);
+    if (entry == null) {
+      return null;
+    }
+    if (closed) {
+      throw new IllegalStateException("Packed report is closed: " + dataFile);
+    }
+    MappedByteBuffer mapped = data;
+    ByteBuffer buffer;
+    if (mapped != null) {
+      buffer = mapped.duplicate();
+      buffer.position((int) entry.getOffset());
+      buffer.limit((int) (entry.getOffset() + entry.getLength()));
+      buffer = buffer.slice();
+    } else {
+      buffer = read(entry);
+    }
+    return new ByteBufferInputStream(buffer);
+  }
+
+  /**
+   * Releases the mapping of the data file. Must be called once all components have been read, as streams
+   * opened before are not readable anymore.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    MappedByteBuffer buffer = data;
+    data = null;
+    if (buffer != null) {
+      unmap(buffer);
+    }
+  }
+
+  private ByteBuffer read(ScannerReport.PackedReportEntry entry) {
+    ByteBuffer buffer = ByteBuffer.allocate((int) entry.getLength());
+    try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+      long position = entry.getOffset();
+      while (buffer.hasRemaining()) {
+        int read = channel.read(buffer, position);
+        if (read < 0) {
+          throw new IllegalStateException("Packed report is truncated: " + dataFile);
+        }
+        position += read;
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read packed report: " + dataFile, e);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * There is no public API to unmap a buffer before it is garbage collected. The cleaner of the
+   * JDK implementation is used when available, else the mapping is released by GC.
+   */
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) {
+        Method cleanMethod = cleaner.getClass().getMethod("clean");
+        cleanMethod.setAccessible(true);
+        cleanMethod.invoke(cleaner);
+      }
+    } catch (Exception e) {
+      // not supported by JVM, mapping is released by GC
+    }
+  }
+
+  @CheckForNull
+  private ScannerReport.PackedReportEntry entry(FileStructure.Domain domain, int componentRef) {
+    Map<Integer, ScannerReport.PackedReportEntry> entries = entriesByDomain.get(domain);
+    return entries == null ? null : entries.get(componentRef);
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int read = Math.min(len, buffer.remaining());
+      buffer.get(bytes, off, read);
+      return read;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -22,7 +22,14 @@ package org.sonar.scanner.protocol.output;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import org.sonar.core.util.ContextException;
 import org.sonar.core.util.Protobuf;
 
@@ -144,4 +151,73 @@ public class ScannerReportWriter {
     return fileStructure.fileFor(FileStructure.Domain.SOURCE, componentRef);
   }
 
+  /**
+   * Moves the data of all components into a single data file, indexed by component and domain. Data are
+   * grouped by component, in the order of refs. Must be called once all data have been written, as
+   * the other methods of this class do not support the packed layout.
+   */
+  public void pack() {
+    List<ComponentFile> componentFiles = listComponentFiles();
+    File dataFile = fileStructure.packedDataFile();
+    File indexFile = fileStructure.packedIndexFile();
+    try (FileChannel output = FileChannel.open(dataFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      OutputStream indexOutput = new BufferedOutputStream(new FileOutputStream(indexFile))) {
+      ScannerReport.PackedReportEntry.Builder entry = ScannerReport.PackedReportEntry.newBuilder();
+      long offset = 0;
+      for (ComponentFile componentFile : componentFiles) {
+        long length = transfer(componentFile.file, output);
+        entry.clear()
+          .setDomain(componentFile.domain.name())
+          .setComponentRef(componentFile.ref)
+          .setOffset(offset)
+          .setLength(length)
+          .build()
+          .writeDelimitedTo(indexOutput);
+        offset += length;
+        Files.delete(componentFile.file.toPath());
+      }
+    } catch (IOException e) {
+      throw ContextException.of("Unable to pack report", e).addContext("dir", fileStructure.root());
+    }
+  }
+
+  private List<ComponentFile> listComponentFiles() {
+    List<ComponentFile> componentFiles = new ArrayList<>();
+    File[] files = fileStructure.root().listFiles();
+    if (files != null) {
+      for (File file : files) {
+        for (FileStructure.Domain domain : FileStructure.Domain.values()) {
+          Integer ref = domain.parseComponentRef(file.getName());
+          if (ref != null && file.isFile()) {
+            componentFiles.add(new ComponentFile(domain, ref, file));
+          }
+        }
+      }
+    }
+    componentFiles.sort(Comparator.<ComponentFile>comparingInt(f -> f.ref).thenComparing(f -> f.domain));
+    return componentFiles;
+  }
+
+  private static long transfer(File file, FileChannel output) throws IOException {
+    try (FileChannel input = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = input.size();
+      long transferred = 0;
+      while (transferred < size) {
+        transferred += input.transferTo(transferred, size - transferred, output);
+      }
+      return size;
+    }
+  }
+
+  private static class ComponentFile {
+    private final FileStructure.Domain domain;
+    private final int ref;
+    private final File file;
+
+    private ComponentFile(FileStructure.Domain domain, int ref, File file) {
+      this.domain = domain;
+      this.ref = ref;
+      this.file = file;
+    }
+  }
 }
@@ -28,12 +28,14 @@ import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.scanner.protocol.output.ScannerReport.Measure.StringValue;
 import org.sonar.scanner.protocol.output.ScannerReport.SyntaxHighlightingRule.HighlightingType;
 import org.sonar.scanner.protocol.output.ScannerReport.Test.TestStatus;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -45,6 +47,9 @@ public class ScannerReportReaderTest {
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
 
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
   File dir;
 
   ScannerReportReader underTest;
@@ -377,4 +382,69 @@ public class ScannerReportReaderTest {
   public void return_null_when_no_file_source() throws Exception {
     assertThat(underTest.readFileSource(UNKNOWN_COMPONENT_REF)).isNull();
   }
+
+  @Test
+  public void read_packed_report() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).setPath("src/Foo.java").build());
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(2).setPath("src/Bar.java").build());
+    writer.writeComponentMeasures(1, singletonList(ScannerReport.Measure.newBuilder()
+      .setStringValue(StringValue.newBuilder().setValue("value_a"))
+      .build()));
+    writer.writeComponentIssues(2, asList(ScannerReport.Issue.newBuilder().setMsg("issue 1").build(), ScannerReport.Issue.newBuilder().setMsg("issue 2").build()));
+    FileUtils.write(writer.getSourceFile(2), "line1\nline2", UTF_8);
+    writer.pack();
+
+    assertThat(underTest.readComponent(1).getPath()).isEqualTo("src/Foo.java");
+    assertThat(underTest.readComponent(2).getPath()).isEqualTo("src/Bar.java");
+    assertThat(underTest.readComponentMeasures(1)).hasSize(1);
+    assertThat(underTest.readComponentMeasures(2)).isEmpty();
+    assertThat(underTest.readComponentIssues(2)).extracting(ScannerReport.Issue::getMsg).containsExactly("issue 1", "issue 2");
+    assertThat(underTest.hasComponentData(FileStructure.Domain.SOURCE, 2)).isTrue();
+    assertThat(underTest.hasComponentData(FileStructure.Domain.SOURCE, 1)).isFalse();
+    try (InputStream source = underTest.openComponentData(FileStructure.Domain.SOURCE, 2)) {
+      assertThat(IOUtils.toString(source, UTF_8)).isEqualTo("line1\nline2");
+    }
+    assertThat(underTest.openComponentData(FileStructure.Domain.SOURCE, 1)).isNull();
+  }
+
+  @Test
+  public void files_of_components_are_extracted_from_packed_report() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).build());
+    FileUtils.write(writer.getSourceFile(1), "line1\nline2", UTF_8);
+    writer.writeTests(1, singletonList(ScannerReport.Test.newBuilder().setName("test").build()));
+    writer.pack();
+    assertThat(writer.getSourceFile(1)).doesNotExist();
+
+    File source = underTest.readFileSource(1);
+    assertThat(source).isEqualTo(writer.getSourceFile(1));
+    assertThat(FileUtils.readFileToString(source, UTF_8)).isEqualTo("line1\nline2");
+    assertThat(underTest.readFileSource(1)).isEqualTo(source);
+    assertThat(underTest.readTests(1)).isFile();
+    assertThat(underTest.readCoverageDetails(1)).isNull();
+    assertThat(underTest.readFileSource(2)).isNull();
+  }
+
+  @Test
+  public void fail_to_read_packed_report_after_close() {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).build());
+    writer.pack();
+    assertThat(underTest.readComponent(1).getRef()).isEqualTo(1);
+
+    underTest.close();
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Packed report is closed");
+
+    underTest.readComponent(1);
+  }
+
+  @Test
+  public void close_does_nothing_if_report_is_not_packed() {
+    underTest.close();
+
+    assertThat(underTest.readComponentIssues(UNKNOWN_COMPONENT_REF)).isEmpty();
+  }
 }
@@ -34,6 +34,7 @@ import org.sonar.scanner.protocol.output.ScannerReport.SyntaxHighlightingRule.Hi
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 public class ScannerReportWriterTest {
 
@@ -299,4 +300,27 @@ public class ScannerReportWriterTest {
 
     assertThat(underTest.hasComponentData(FileStructure.Domain.COVERAGE_DETAILS, 1)).isTrue();
   }
+
+  @Test
+  public void pack_component_files() {
+    underTest.writeComponent(ScannerReport.Component.newBuilder().setRef(2).build());
+    underTest.writeComponent(ScannerReport.Component.newBuilder().setRef(1).build());
+    underTest.writeComponentIssues(1, asList(ScannerReport.Issue.newBuilder().setMsg("the message").build()));
+    underTest.writeMetadata(ScannerReport.Metadata.newBuilder().setRootComponentRef(1).build());
+
+    underTest.pack();
+
+    FileStructure fileStructure = underTest.getFileStructure();
+    assertThat(fileStructure.fileFor(FileStructure.Domain.COMPONENT, 1)).doesNotExist();
+    assertThat(fileStructure.fileFor(FileStructure.Domain.COMPONENT, 2)).doesNotExist();
+    assertThat(fileStructure.fileFor(FileStructure.Domain.ISSUES, 1)).doesNotExist();
+    // files which are not related to components are kept
+    assertThat(fileStructure.metadataFile()).exists();
+    assertThat(fileStructure.packedDataFile()).exists();
+    try (CloseableIterator<ScannerReport.PackedReportEntry> index = Protobuf.readStream(fileStructure.packedIndexFile(), ScannerReport.PackedReportEntry.parser())) {
+      // grouped by component
+      assertThat(index).extracting(ScannerReport.PackedReportEntry::getComponentRef, ScannerReport.PackedReportEntry::getDomain)
+        .containsExactly(tuple(1, "ISSUES"), tuple(1, "COMPONENT"), tuple(2, "COMPONENT"));
+    }
+  }
 }